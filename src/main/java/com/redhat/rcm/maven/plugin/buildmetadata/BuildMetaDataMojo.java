@@ -18,11 +18,14 @@ package com.redhat.rcm.maven.plugin.buildmetadata;
 import java.io.File;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.Properties;
 
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.scm.ScmBranch;
@@ -41,6 +44,7 @@ import com.redhat.rcm.maven.plugin.buildmetadata.data.ScmMetaDataProvider;
 import com.redhat.rcm.maven.plugin.buildmetadata.io.AdditionalLocationsSupport;
 import com.redhat.rcm.maven.plugin.buildmetadata.io.BuildPropertiesFileHelper;
 import com.redhat.rcm.maven.plugin.buildmetadata.io.BuildXmlFileHelper;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ModificationScope;
 import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmNoRevisionException;
 import com.redhat.rcm.maven.plugin.buildmetadata.util.FilePathNormalizer;
 
@@ -61,6 +65,26 @@ public final class BuildMetaDataMojo extends AbstractBuildMojo // NOPMD
 
   // --- constants ------------------------------------------------------------
 
+  /**
+   * The phases of the default lifecycle in the order they are run.
+   */
+  private static final List<String> DEFAULT_LIFECYCLE_PHASES = Arrays.asList(
+      "validate", "initialize", "generate-sources", "process-sources",
+      "generate-resources", "process-resources", "compile", "process-classes",
+      "generate-test-sources", "process-test-sources",
+      "generate-test-resources", "process-test-resources", "test-compile",
+      "process-test-classes", "test", "prepare-package", "package",
+      "pre-integration-test", "integration-test", "post-integration-test",
+      "verify", "install", "deploy");
+
+  /**
+   * The phase the <code>build-point</code> goal is bound to by default.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String BUILD_POINT_DEFAULT_PHASE = "prepare-package";
+
   // --- members --------------------------------------------------------------
 
   // ... Mojo infrastructure ..................................................
@@ -473,6 +497,77 @@ public final class BuildMetaDataMojo extends AbstractBuildMojo // NOPMD
    */
   private int queryRangeInDays;
 
+  /**
+   * The strategy to widen the query range if no change log has been found.
+   * With <code>exponential</code> the range is doubled on each retry, with
+   * <code>linear</code> the initial range is added. If the revision cache is
+   * used, the range of the last successful query is the initial range of the
+   * next build.
+   *
+   * @parameter expression="${buildMetaData.queryRangeStrategy}"
+   *            default-value="exponential"
+   * @since 1.7.1
+   */
+  private String queryRangeStrategy;
+
+  /**
+   * The time in seconds after which no further change log query is started.
+   * A value of <code>0</code> disables the deadline.
+   *
+   * @parameter expression="${buildMetaData.queryDeadlineInSeconds}"
+   *            default-value="120"
+   * @since 1.7.1
+   */
+  private int queryDeadlineInSeconds;
+
+  /**
+   * The time in seconds a single SCM operation of the Maven SCM provider, for
+   * example a status or change log query, may take. If the operation has not
+   * completed in time, the SCM command is stopped. A missing revision is then
+   * handled according to <code>failOnMissingRevision</code>, otherwise the
+   * revision and the modification status are set to <code>unknown</code> and
+   * a warning is logged. A value of <code>0</code> disables the deadline.
+   *
+   * @parameter expression="${buildMetaData.scmOperationTimeoutInSeconds}"
+   *            default-value="0"
+   * @since 1.7.1
+   */
+  private int scmOperationTimeoutInSeconds;
+
+  /**
+   * The time in seconds all SCM operations of the Maven SCM provider for a
+   * module may take together. Operations still running at the deadline are
+   * stopped and no further operation is started. The missing revision is
+   * handled as for <code>scmOperationTimeoutInSeconds</code>. A value of
+   * <code>0</code> disables the deadline.
+   *
+   * @parameter expression="${buildMetaData.scmTimeoutInSeconds}"
+   *            default-value="0"
+   * @since 1.7.1
+   */
+  private int scmTimeoutInSeconds;
+
+  /**
+   * Flag to fetch the SCM information on a background thread while the build
+   * continues. The information is joined as soon as it is required: to create
+   * the full version, to run custom providers, to add the build properties to
+   * the filters (<code>addToFilters</code>) or if no <code>build-point</code>
+   * goal of the project is bound to a phase run by the build. Otherwise it is
+   * joined by the first <code>build-point</code> goal, which adds it to the
+   * build properties, the Manifest and the project properties. The XML report
+   * does not contain the SCM information then.
+   * <p>
+   * Only the phases of the default lifecycle requested on the command line
+   * are considered. Builds that request goals only, such as
+   * <code>mvn buildmetadata:provide-buildmetadata</code>, join the information
+   * immediately.
+   * </p>
+   *
+   * @parameter expression="${buildMetaData.asyncScm}" default-value="false"
+   * @since 1.7.1
+   */
+  private boolean asyncScm;
+
   /**
    * Flag to fail if local modifications have been found. The value is
    * <code>true</code> if the build should fail if there are modifications (any
@@ -514,6 +609,334 @@ public final class BuildMetaDataMojo extends AbstractBuildMojo // NOPMD
    */
   private List<String> addToLocations;
 
+  /**
+   * Flag to read the revision of Git working copies directly from the files in
+   * the <code>.git</code> directory (<code>HEAD</code>, refs, packed refs and
+   * the commit object) instead of launching the <code>git</code> executable.
+   * If the files cannot be read, the SCM provider is used as a fallback.
+   *
+   * @parameter expression="${buildMetaData.nativeGit}" default-value="true"
+   * @since 1.7.1
+   */
+  private boolean nativeGit;
+
+  /**
+   * Flag to read the last changed revision and date of Subversion working
+   * copies from the working copy metadata, like the last changed fields of
+   * <code>svn info</code>. The repository server is not contacted. If the
+   * metadata cannot be read, for example because no <code>svn</code> client
+   * is installed, the revision is fetched with the SCM provider of Maven SCM.
+   * Set to <code>false</code> to always use the SCM provider.
+   *
+   * @parameter expression="${buildMetaData.svnLocalRevision}"
+   *            default-value="true"
+   * @since 1.7.1
+   */
+  private boolean svnLocalRevision;
+
+  /**
+   * Flag to fetch the revision and the local modifications of Mercurial
+   * working copies with a single <code>hg</code> process. The process is
+   * started as a command server that runs both <code>hg log</code> and
+   * <code>hg status</code>. If <code>hg</code> cannot be run, the Mercurial
+   * provider of Maven SCM is used.
+   *
+   * @parameter expression="${buildMetaData.hgCommandServer}"
+   *            default-value="true"
+   * @since 1.7.1
+   */
+  private boolean hgCommandServer;
+
+  /**
+   * Flag to read the revision of Git working copies with a single
+   * <code>git cat-file --batch</code> process per repository if the
+   * repository files cannot be read natively. The process is shared by the
+   * modules of the build that collect SCM information at the same time and
+   * ends when the last of them is done. If the process cannot be started,
+   * the Git provider of Maven SCM is used.
+   *
+   * @parameter expression="${buildMetaData.gitBatchProcess}"
+   *            default-value="true"
+   * @since 1.7.1
+   */
+  private boolean gitBatchProcess;
+
+  /**
+   * Flag to check Git working copies for modifications by comparing the index
+   * with the working tree instead of running <code>git status</code>. Only
+   * files whose size or modification time differ from the index are read and
+   * the files are checked on all processors. Working copies that convert line
+   * endings or contain symbolic links or submodules are checked with
+   * <code>git status</code>.
+   *
+   * @parameter expression="${buildMetaData.gitIndexStatus}"
+   *            default-value="false"
+   * @since 1.7.1
+   */
+  private boolean gitIndexStatus;
+
+  /**
+   * Flag to read the revision from the environment variables the continuous
+   * integration server sets for the checked out commit. If the date of the
+   * commit is provided as well, the SCM is not queried for the revision. The
+   * first variable whose value is a valid revision of the SCM is used. The
+   * working copy is still checked for modifications.
+   *
+   * @parameter expression="${buildMetaData.ciRevision}" default-value="false"
+   * @since 1.7.1
+   */
+  private boolean ciRevision;
+
+  /**
+   * The names of the environment variables to read the revision identifier
+   * from if <code>ciRevision</code> is set. Defaults to
+   * <code>GIT_COMMIT</code>, <code>CI_COMMIT_SHA</code>,
+   * <code>GITHUB_SHA</code>, <code>SVN_REVISION</code> and
+   * <code>MERCURIAL_REVISION</code>.
+   *
+   * @parameter
+   * @since 1.7.1
+   */
+  private List<String> ciRevisionIdVariables;
+
+  /**
+   * The names of the environment variables to read the date of the revision
+   * from if <code>ciRevision</code> is set. The values are either ISO 8601
+   * timestamps with time zone or seconds since the epoch. Defaults to
+   * <code>CI_COMMIT_TIMESTAMP</code>.
+   *
+   * @parameter
+   * @since 1.7.1
+   */
+  private List<String> ciRevisionDateVariables;
+
+  /**
+   * Flag to detect the type of SCM from the working copy if the POM provides
+   * no SCM connection. The base directory and its parents are searched for
+   * the administrative files of Git, Mercurial and Subversion. The revision is
+   * read from the working copy by the readers enabled with
+   * <code>nativeGit</code>, <code>svnLocalRevision</code> and
+   * <code>hgCommandServer</code>. The URL of the SCM is reported as a
+   * <code>file:</code> URL to the root of the working copy.
+   *
+   * @parameter expression="${buildMetaData.detectScm}" default-value="false"
+   * @since 1.7.1
+   */
+  private boolean detectScm;
+
+  /**
+   * Flag to determine the commit that last changed each module of the build.
+   * The history of Git repositories is walked once for all modules of the
+   * build, following the first parent of each commit, and the result is
+   * published as <code>build.scmRevision.module.id</code> and
+   * <code>build.scmRevision.module.date</code>.
+   *
+   * @parameter expression="${buildMetaData.moduleRevision}"
+   *            default-value="false"
+   * @since 1.7.1
+   */
+  private boolean moduleRevision;
+
+  /**
+   * The maximum number of commits to read to determine the last change of the
+   * modules of the build. Modules not changed within these commits have no
+   * module revision.
+   *
+   * @parameter expression="${buildMetaData.moduleRevisionMaxCommits}"
+   *            default-value="10000"
+   * @since 1.7.1
+   */
+  private int moduleRevisionMaxCommits;
+
+  /**
+   * Flag to collect the revisions of working copies nested within the base
+   * directory, such as Git submodules, Subversion externals and Mercurial
+   * subrepositories. The working copies are queried concurrently and their
+   * revisions are published as
+   * <code>build.scmRevision.sub.&lt;path&gt;.id</code>, <code>.date</code> and
+   * <code>.locallyModified</code>.
+   *
+   * @parameter expression="${buildMetaData.nestedWorkingCopies}"
+   *            default-value="false"
+   * @since 1.7.1
+   */
+  private boolean nestedWorkingCopies;
+
+  /**
+   * The number of directory levels below the base directory to search for
+   * nested working copies.
+   *
+   * @parameter expression="${buildMetaData.nestedWorkingCopiesDepth}"
+   *            default-value="3"
+   * @since 1.7.1
+   */
+  private int nestedWorkingCopiesDepth;
+
+  /**
+   * Flag to add metrics of the SCM queries to the build meta data as
+   * <code>build.metrics.scm.*</code> properties and to log a summary of them
+   * for each module. The metrics show the wall time per kind of query, the
+   * number of child processes, the length of their output, the number of
+   * retries and the hits and misses of the caches shared between modules.
+   * The number of timeouts and retries and the time spent in operations of
+   * the Maven SCM provider are added as <code>build.scmOperations.*</code>
+   * properties.
+   *
+   * @parameter expression="${buildMetaData.scmMetrics}"
+   *            default-value="false"
+   * @since 1.7.1
+   */
+  private boolean scmMetrics;
+
+  /**
+   * Flag to query the SCM only once per build for all modules located in the
+   * same working copy. For Git, Mercurial and Bazaar the root of the working
+   * copy is queried and its revision and local modification status are reused
+   * by all modules. For other SCMs each module is queried for its own
+   * directory and results are only reused by modules with the same directory
+   * and SCM connection URL.
+   *
+   * @parameter expression="${buildMetaData.shareScmResults}"
+   *            default-value="true"
+   * @since 1.7.1
+   */
+  private boolean shareScmResults;
+
+  /**
+   * Flag to persist the SCM revision between builds. The revision is reused as
+   * long as the state of the working copy has not changed. The state is
+   * determined by the <code>HEAD</code> and index of Git, the
+   * <code>wc.db</code> of Subversion or the <code>dirstate</code> of
+   * Mercurial working copies. Other SCMs are always queried.
+   *
+   * @parameter expression="${buildMetaData.useRevisionCache}"
+   *            default-value="true"
+   * @since 1.7.1
+   */
+  private boolean useRevisionCache;
+
+  /**
+   * The file to persist the SCM revision to if <code>useRevisionCache</code>
+   * is set.
+   *
+   * @parameter default-value=
+   *            "${project.build.directory}/buildmetadata-scm-revision.properties"
+   * @since 1.7.1
+   */
+  private File revisionCacheFile;
+
+  /**
+   * The file with the SCM information computed before the build, for example
+   * by the orchestration of a sandboxed build. If the file exists, the SCM
+   * build properties are read from it and the SCM is not accessed at all. The
+   * file is either a properties file or a JSON object with the names of the
+   * build properties as keys, such as <code>build.scmRevision.id</code>,
+   * <code>build.scmRevision.date</code> and
+   * <code>build.scmLocallyModified</code>. Dates are ISO 8601 timestamps,
+   * seconds or milliseconds since the epoch or dates in the
+   * <code>buildDatePattern</code>. The file is read once per build.
+   *
+   * @parameter expression="${buildMetaData.revisionFile}"
+   * @since 1.7.1
+   */
+  private File revisionFile;
+
+  /**
+   * Flag to limit the check for local modifications to the files that changed
+   * since the last check found no modifications. After a clean check the size
+   * and modification time of the files of the working copy are stored. The
+   * next check queries the SCM only for the files that changed since. If the
+   * checked out revision or an ignore file has changed, all files are checked.
+   * The snapshot is not used if <code>remoteVersion</code> is set. Taking the
+   * snapshot walks all files of the working copy, so the flag pays off only
+   * if the SCM is slow to check the working copy. Working copies with more
+   * than 100000 files are always checked completely.
+   *
+   * @parameter expression="${buildMetaData.useModificationSnapshot}"
+   *            default-value="false"
+   * @since 1.7.1
+   */
+  private boolean useModificationSnapshot;
+
+  /**
+   * The file to store the snapshot of the working copy in if
+   * <code>useModificationSnapshot</code> is set.
+   *
+   * @parameter default-value=
+   *            "${project.build.directory}/buildmetadata-scm-snapshot.txt"
+   * @since 1.7.1
+   */
+  private File modificationSnapshotFile;
+
+  /**
+   * The part of the working copy to check for local modifications if
+   * <code>validateCheckout</code> is set. With <code>repository</code> the
+   * whole working copy is checked, with <code>module</code> only the base
+   * directory of the module and the <code>modificationCheckPaths</code>. The
+   * module scope limits the work done by each module of a multi module build
+   * and makes the locally modified flag describe the sources of the artifact.
+   *
+   * @parameter expression="${buildMetaData.modificationCheckScope}"
+   *            default-value="repository"
+   * @since 1.7.1
+   */
+  private String modificationCheckScope;
+
+  /**
+   * The paths to check for local modifications in addition to the base
+   * directory of the module if <code>modificationCheckScope</code> is set to
+   * <code>module</code>. Relative paths are resolved against the base
+   * directory of the module.
+   *
+   * @parameter
+   * @since 1.7.1
+   */
+  private List<String> modificationCheckPaths;
+
+  /**
+   * The patterns of the modified files to report. If no pattern is given, all
+   * files are reported. The patterns are matched against the paths reported by
+   * the SCM.
+   *
+   * @parameter
+   * @since 1.7.1
+   */
+  private List<String> modificationCheckIncludes;
+
+  /**
+   * The patterns of the modified files not to report. The patterns are matched
+   * against the paths reported by the SCM.
+   *
+   * @parameter
+   * @since 1.7.1
+   */
+  private List<String> modificationCheckExcludes;
+
+  /**
+   * The maximum number of locally modified files to list per type of
+   * modification. The number of all modified files and a digest over them are
+   * stored in separate properties. A value of <code>0</code> or less lists
+   * all files.
+   *
+   * @parameter expression="${buildMetaData.modifiedFilesLimit}"
+   *            default-value="20"
+   * @since 1.7.1
+   */
+  private int modifiedFilesLimit;
+
+  /**
+   * The file to write the complete list of locally modified files to. Each
+   * line contains the type of the modification and the path, separated by a
+   * tab. If not set, the list is not written. The list is streamed to a file
+   * in the same directory while the working copy is checked. Modules that
+   * write the list do not share their modification results with other
+   * modules.
+   *
+   * @parameter expression="${buildMetaData.modifiedFilesFile}"
+   * @since 1.7.1
+   */
+  private File modifiedFilesFile;
+
   // ****************************** Initializer *******************************
 
   // ****************************** Constructors ******************************
@@ -575,11 +998,28 @@ public void execute() throws MojoExecutionException, MojoFailureException
   {
     final Date buildDate = session.getStartTime();
 
+    final ScmInfo scmInfo = createScmInfo();
+    ScmMetaDataFuture scmFuture = null;
+    if (asyncScm)
+    {
+      scmFuture =
+          ScmMetaDataFuture.start(new ScmMetaDataProvider(project, session,
+              scmInfo), project.getArtifactId(), failOnMissingRevision);
+    }
+
     provideBuildUser(projectProperties, buildMetaDataProperties);
     provideMavenMetaData(buildMetaDataProperties);
     provideHostMetaData(buildMetaDataProperties);
-    final ScmInfo scmInfo = provideScmMetaData(buildMetaDataProperties);
+    if (scmFuture == null)
+    {
+      provideScmMetaData(buildMetaDataProperties, scmInfo);
+    }
     provideBuildDateMetaData(buildMetaDataProperties, buildDate);
+    if (scmFuture != null && isScmMetaDataRequired())
+    {
+      scmFuture.join(buildMetaDataProperties, getLog());
+      scmFuture = null;
+    }
     provideBuildVersionMetaData(buildMetaDataProperties, buildDate);
 
     // The custom providers are required to be run at the end.
@@ -588,6 +1028,93 @@ public void execute() throws MojoExecutionException, MojoFailureException
     provideBuildMetaData(buildMetaDataProperties, scmInfo, providers, false);
 
     writeBuildMetaData(helper, buildMetaDataProperties);
+
+    if (scmFuture != null)
+    {
+      scmFuture.publish(session, project);
+    }
+  }
+
+  /**
+   * Checks if the SCM information is required before the build meta data is
+   * written by this goal. Resources are filtered with the written build
+   * properties before a <code>build-point</code> goal runs, so the information
+   * is required if the properties are added to the filters.
+   *
+   * @return <code>true</code> if the SCM information is required now,
+   *         <code>false</code> if it is joined by a later
+   *         <code>build-point</code> goal.
+   */
+  private boolean isScmMetaDataRequired()
+  {
+    return addReleaseNumberToFullVersion || addLocallyModifiedTagToFullVersion
+           || addToFilters || (providers != null && !providers.isEmpty())
+           || !isBuildPointReached();
+  }
+
+  /**
+   * Checks if a <code>build-point</code> goal of the project is run by this
+   * build. The goal is run if it is bound to a phase of the default lifecycle
+   * that is reached by the phases requested for the build. Goals bound to
+   * other phases are not considered to be run, so that the SCM information is
+   * joined by this goal rather than lost.
+   *
+   * @return <code>true</code> if a <code>build-point</code> goal is run,
+   *         <code>false</code> otherwise.
+   */
+  private boolean isBuildPointReached()
+  {
+    final int lastPhase = findLastRequestedPhase();
+    if (lastPhase < 0)
+    {
+      return false;
+    }
+
+    for (final Object pluginObject : project.getBuildPlugins())
+    {
+      final Plugin plugin = (Plugin) pluginObject;
+      if ("buildmetadata-maven-plugin".equals(plugin.getArtifactId()))
+      {
+        for (final Object executionObject : plugin.getExecutions())
+        {
+          final PluginExecution execution = (PluginExecution) executionObject;
+          if (execution.getGoals().contains("build-point"))
+          {
+            final String phase =
+                StringUtils.isNotBlank(execution.getPhase()) ? execution
+                    .getPhase() : BUILD_POINT_DEFAULT_PHASE;
+            final int index = DEFAULT_LIFECYCLE_PHASES.indexOf(phase);
+            if (index >= 0 && index <= lastPhase)
+            {
+              return true;
+            }
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the index of the last phase of the default lifecycle requested for
+   * the build.
+   *
+   * @return the index of the last requested phase, <code>-1</code> if no phase
+   *         of the default lifecycle is requested.
+   */
+  private int findLastRequestedPhase()
+  {
+    int lastPhase = -1;
+    final List<?> goals = session.getGoals();
+    if (goals != null)
+    {
+      for (final Object goal : goals)
+      {
+        lastPhase =
+            Math.max(lastPhase, DEFAULT_LIFECYCLE_PHASES.indexOf(goal));
+      }
+    }
+    return lastPhase;
   }
 
   private void writeBuildMetaData(final BuildPropertiesFileHelper helper,
@@ -636,31 +1163,20 @@ public void execute() throws MojoExecutionException, MojoFailureException
     mavenMetaDataProvider.provideBuildMetaData(buildMetaDataProperties);
   }
 
-  private ScmInfo provideScmMetaData(final Properties buildMetaDataProperties)
-    throws MojoFailureException
+  private void provideScmMetaData(final Properties buildMetaDataProperties,
+      final ScmInfo scmInfo) throws MojoFailureException
   {
-    final ScmInfo scmInfo = createScmInfo();
     try
     {
       final ScmMetaDataProvider scmMetaDataProvider =
-          new ScmMetaDataProvider(project, scmInfo);
+          new ScmMetaDataProvider(project, session, scmInfo);
       scmMetaDataProvider.provideBuildMetaData(buildMetaDataProperties);
     }
     catch (final ScmNoRevisionException e)
     {
-        if (failOnMissingRevision)
-        {
-            throw new MojoFailureException(e.getMessage()); // NOPMD
-        }
-        else
-        {
-                getLog().info( "Unable to determine SCM revision information "
-                                   +
-                    (e.getCause() == null ? "" : e.getCause().getMessage()));
-                getLog().debug( "Unable to determine SCM revision information: ", e );
-        }
+      ScmMetaDataFuture.handleMissingRevision(e, getLog(),
+          failOnMissingRevision);
     }
-    return scmInfo;
   }
 
   private void provideHostMetaData(final Properties buildMetaDataProperties)
@@ -692,10 +1208,49 @@ public void execute() throws MojoExecutionException, MojoFailureException
         new ScmControl(failOnLocalModifications, ignoreDotFilesInBaseDir,
             offline, addScmInfo, validateCheckout, failOnMissingRevision);
     final ScmInfo scmInfo =
-        new ScmInfo(scmManager, connectionType, scmDateFormat, basedir,
-            scmCredentials, tagBase, queryRangeInDays, buildDatePattern,
-            scmControl, StringUtils.isNotBlank(remoteVersion) ? new ScmBranch(
-                remoteVersion) : null);
+        new ScmInfo.Builder()
+            .setScmManager(scmManager)
+            .setConnectionType(connectionType)
+            .setScmDateFormat(scmDateFormat)
+            .setBasedir(basedir)
+            .setScmCrendentials(scmCredentials)
+            .setTagBase(tagBase)
+            .setQueryRangeInDays(queryRangeInDays)
+            .setQueryRangeStrategy(queryRangeStrategy)
+            .setQueryDeadlineInSeconds(queryDeadlineInSeconds)
+            .setOperationTimeoutInSeconds(scmOperationTimeoutInSeconds)
+            .setTimeoutInSeconds(scmTimeoutInSeconds)
+            .setBuildDatePattern(buildDatePattern)
+            .setScmControl(scmControl)
+            .setRemoteVersion(
+                StringUtils.isNotBlank(remoteVersion) ? new ScmBranch(
+                    remoteVersion) : null)
+            .setNativeGit(nativeGit)
+            .setSvnLocalRevision(svnLocalRevision)
+            .setHgCommandServer(hgCommandServer)
+            .setGitBatchProcess(gitBatchProcess)
+            .setGitIndexStatus(gitIndexStatus)
+            .setCiRevision(ciRevision)
+            .setCiRevisionIdVariables(ciRevisionIdVariables)
+            .setCiRevisionDateVariables(ciRevisionDateVariables)
+            .setDetectScm(detectScm)
+            .setModuleRevision(moduleRevision)
+            .setModuleRevisionMaxCommits(moduleRevisionMaxCommits)
+            .setNestedWorkingCopies(nestedWorkingCopies)
+            .setNestedWorkingCopiesDepth(nestedWorkingCopiesDepth)
+            .setScmMetrics(scmMetrics)
+            .setShareScmResults(shareScmResults)
+            .setRevisionCacheFile(useRevisionCache ? revisionCacheFile : null)
+            .setRevisionFile(revisionFile)
+            .setModificationSnapshotFile(
+                useModificationSnapshot ? modificationSnapshotFile : null)
+            .setModificationScope(
+                new ModificationScope(modificationCheckScope,
+                    modificationCheckPaths, modificationCheckIncludes,
+                    modificationCheckExcludes))
+            .setModifiedFilesLimit(modifiedFilesLimit)
+            .setModifiedFilesFile(modifiedFilesFile)
+            .build();
     return scmInfo;
   }
 
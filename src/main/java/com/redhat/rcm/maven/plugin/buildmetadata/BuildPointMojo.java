@@ -104,6 +104,7 @@ public final class BuildPointMojo extends AbstractBuildMojo
           new BuildPropertiesFileHelper(getLog(), propertiesOutputFile,
               filePathNormalizer);
       helper.readBuildPropertiesFile(buildMetaDataProperties);
+      joinScmMetaData(buildMetaDataProperties);
 
       provideBuildPointInfo(buildMetaDataProperties, helper);
       provideBuildMetaData(buildMetaDataProperties, null, providers, true);
@@ -121,6 +122,25 @@ public final class BuildPointMojo extends AbstractBuildMojo
     }
   }
 
+  /**
+   * Adds the SCM information fetched in the background by the
+   * <code>provide-buildmetadata</code> goal, if it is still pending.
+   *
+   * @param buildMetaDataProperties the build meta data properties.
+   * @throws MojoExecutionException if fetching the SCM information failed.
+   * @throws MojoFailureException if no revision has been found and the build
+   *           is requested to fail in this case.
+   */
+  private void joinScmMetaData(final Properties buildMetaDataProperties)
+    throws MojoExecutionException, MojoFailureException
+  {
+    final ScmMetaDataFuture scmFuture = ScmMetaDataFuture.take(session, project);
+    if (scmFuture != null)
+    {
+      scmFuture.join(buildMetaDataProperties, getLog());
+    }
+  }
+
   private void provideBuildPointInfo(final Properties buildMetaDataProperties,
       final BuildPropertiesFileHelper helper)
   {
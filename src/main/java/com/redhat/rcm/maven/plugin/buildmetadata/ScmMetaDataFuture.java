@@ -0,0 +1,224 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata;
+
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.data.ScmMetaDataProvider;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmNoRevisionException;
+
+/**
+ * Fetches the SCM build meta data on a background thread. The future is
+ * published to the session so that a later goal of the same project may join
+ * it.
+ */
+public final class ScmMetaDataFuture
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The prefix of the key to store the future in the execution properties of
+   * the session. The key is completed by the identifier of the project.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String SESSION_KEY_PREFIX =
+      ScmMetaDataFuture.class.getName() + '.';
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The task fetching the SCM build meta data.
+   */
+  private final FutureTask<Properties> task;
+
+  /**
+   * The flag to fail the build if no revision can be fetched.
+   */
+  private final boolean failOnMissingRevision;
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   *
+   * @param task the task fetching the SCM build meta data.
+   * @param failOnMissingRevision the flag to fail the build if no revision can
+   *          be fetched.
+   */
+  private ScmMetaDataFuture(final FutureTask<Properties> task,
+      final boolean failOnMissingRevision)
+  {
+    this.task = task;
+    this.failOnMissingRevision = failOnMissingRevision;
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  /**
+   * Starts fetching the SCM build meta data on a background thread.
+   *
+   * @param provider the provider of the SCM build meta data.
+   * @param projectId the identifier of the project to name the thread.
+   * @param failOnMissingRevision the flag to fail the build if no revision can
+   *          be fetched.
+   * @return the future to join the SCM build meta data.
+   */
+  public static ScmMetaDataFuture start(final ScmMetaDataProvider provider,
+      final String projectId, final boolean failOnMissingRevision)
+  {
+    final FutureTask<Properties> task =
+        new FutureTask<Properties>(new Callable<Properties>()
+        {
+          public Properties call()
+          {
+            final Properties scmProperties = new Properties();
+            provider.provideBuildMetaData(scmProperties);
+            return scmProperties;
+          }
+        });
+    final Thread thread = new Thread(task, "buildmetadata-scm-" + projectId);
+    thread.setDaemon(true);
+    thread.start();
+    return new ScmMetaDataFuture(task, failOnMissingRevision);
+  }
+
+  /**
+   * Removes the future published for the given project from the session.
+   *
+   * @param session the session the future is published to.
+   * @param project the project the future has been started for.
+   * @return the future or <code>null</code> if none has been published.
+   */
+  public static ScmMetaDataFuture take(final MavenSession session,
+      final MavenProject project)
+  {
+    final Object future =
+        session.getExecutionProperties().remove(createKey(project));
+    return future instanceof ScmMetaDataFuture ? (ScmMetaDataFuture) future
+        : null;
+  }
+
+  private static String createKey(final MavenProject project)
+  {
+    return SESSION_KEY_PREFIX + project.getId();
+  }
+
+  // --- get&set --------------------------------------------------------------
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * Publishes this future to the session to be joined by a later goal of the
+   * given project.
+   *
+   * @param session the session to publish the future to.
+   * @param project the project the future has been started for.
+   */
+  public void publish(final MavenSession session, final MavenProject project)
+  {
+    session.getExecutionProperties().put(createKey(project), this);
+  }
+
+  /**
+   * Waits for the SCM build meta data and adds it to the given properties.
+   *
+   * @param buildMetaDataProperties the build meta data properties.
+   * @param log the logger to report a missing revision to.
+   * @throws MojoExecutionException if fetching the SCM build meta data failed
+   *           or has been interrupted.
+   * @throws MojoFailureException if no revision has been found and the build
+   *           is requested to fail in this case.
+   */
+  public void join(final Properties buildMetaDataProperties, final Log log)
+    throws MojoExecutionException, MojoFailureException
+  {
+    try
+    {
+      buildMetaDataProperties.putAll(task.get());
+    }
+    catch (final InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new MojoExecutionException(
+          "Interrupted while waiting for SCM revision information.", e);
+    }
+    catch (final ExecutionException e)
+    {
+      final Throwable cause = e.getCause();
+      if (cause instanceof ScmNoRevisionException)
+      {
+        handleMissingRevision((ScmNoRevisionException) cause, log,
+            failOnMissingRevision);
+      }
+      else if (cause instanceof RuntimeException)
+      {
+        throw (RuntimeException) cause;
+      }
+      else
+      {
+        throw new MojoExecutionException(
+            "Cannot fetch SCM revision information.", cause);
+      }
+    }
+  }
+
+  /**
+   * Handles the failure to fetch a revision.
+   *
+   * @param e the exception signaling the missing revision.
+   * @param log the logger to report the missing revision to.
+   * @param failOnMissingRevision the flag to fail the build if no revision can
+   *          be fetched.
+   * @throws MojoFailureException if the build is requested to fail.
+   */
+  static void handleMissingRevision(final ScmNoRevisionException e,
+      final Log log, final boolean failOnMissingRevision)
+    throws MojoFailureException
+  {
+    if (failOnMissingRevision)
+    {
+      throw new MojoFailureException(e.getMessage()); // NOPMD
+    }
+    else
+    {
+      log.info("Unable to determine SCM revision information "
+               + (e.getCause() == null ? "" : e.getCause().getMessage()));
+      log.debug("Unable to determine SCM revision information: ", e);
+    }
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
@@ -133,6 +133,67 @@ public final class Constant
   public static final String PROP_NAME_SCM_REVISION_DATE =
       "build.scmRevision.date";
 
+  /**
+   * The name of the project property that stores the revision that last
+   * changed the module.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  public static final String PROP_NAME_SCM_MODULE_REVISION_ID =
+      "build.scmRevision.module.id";
+
+  /**
+   * The name of the project property that stores the date of the revision that
+   * last changed the module.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  public static final String PROP_NAME_SCM_MODULE_REVISION_DATE =
+      "build.scmRevision.module.date";
+
+  /**
+   * The prefix of the project properties that store the revisions of working
+   * copies nested within the working copy of the project. The prefix is
+   * followed by the path of the nested working copy and one of the suffixes
+   * {@link #SCM_SUB_SUFFIX_ID}, {@link #SCM_SUB_SUFFIX_DATE} and
+   * {@link #SCM_SUB_SUFFIX_LOCALLY_MODIFIED}.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  public static final String PROP_NAME_SCM_SUB_PREFIX =
+      "build.scmRevision.sub.";
+
+  /**
+   * The suffix of the property that stores the revision of a nested working
+   * copy.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  public static final String SCM_SUB_SUFFIX_ID = ".id";
+
+  /**
+   * The suffix of the property that stores the revision date of a nested
+   * working copy.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  public static final String SCM_SUB_SUFFIX_DATE = ".date";
+
+  /**
+   * The suffix of the property that stores the information if a nested
+   * working copy is locally modified.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  public static final String SCM_SUB_SUFFIX_LOCALLY_MODIFIED =
+      ".locallyModified";
+
   /**
    * The name of the project property that stores the information if the local
    * sources are modified.
@@ -153,6 +214,68 @@ public final class Constant
   public static final String PROP_NAME_SCM_LOCALLY_MODIFIED_FILES =
       "build.scmLocallyModified.files";
 
+  /**
+   * The name of the project property that stores the number of files that are
+   * locally modified. The list of files may show only some of them.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  public static final String PROP_NAME_SCM_LOCALLY_MODIFIED_COUNT =
+      "build.scmLocallyModified.count";
+
+  /**
+   * The name of the project property that stores the digest over all files
+   * that are locally modified.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  public static final String PROP_NAME_SCM_LOCALLY_MODIFIED_DIGEST =
+      "build.scmLocallyModified.digest";
+
+  /**
+   * The name of the project property that stores the number of SCM operations
+   * that have been stopped because they did not complete in time.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  public static final String PROP_NAME_SCM_OPERATIONS_TIMEOUTS =
+      "build.scmOperations.timeouts";
+
+  /**
+   * The name of the project property that stores the number of change log
+   * queries repeated with a wider range.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  public static final String PROP_NAME_SCM_OPERATIONS_RETRIES =
+      "build.scmOperations.retries";
+
+  /**
+   * The name of the project property that stores the time in milliseconds
+   * spent in SCM operations.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  public static final String PROP_NAME_SCM_OPERATIONS_ELAPSED =
+      "build.scmOperations.elapsed";
+
+  /**
+   * The prefix of the project properties that store metrics of the SCM
+   * queries. The prefix is followed by the name of a kind of query and
+   * <code>.count</code> or <code>.time</code>, or by the name of a counter
+   * such as <code>processes</code>.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  public static final String PROP_NAME_METRICS_SCM_PREFIX =
+      "build.metrics.scm.";
+
   /**
    * The name of the project property that stores the formatted build date.
    * <p>
@@ -522,7 +645,14 @@ public final class Constant
     final Section scm =
         new Section(SECTION_BUILD_SCM, PROP_NAME_SCM_REVISION_ID,
             PROP_NAME_SCM_REVISION_DATE, PROP_NAME_SCM_URL,
-            PROP_NAME_SCM_LOCALLY_MODIFIED_FILES);
+            PROP_NAME_SCM_MODULE_REVISION_ID,
+            PROP_NAME_SCM_MODULE_REVISION_DATE,
+            PROP_NAME_SCM_LOCALLY_MODIFIED_FILES,
+            PROP_NAME_SCM_LOCALLY_MODIFIED_COUNT,
+            PROP_NAME_SCM_LOCALLY_MODIFIED_DIGEST,
+            PROP_NAME_SCM_OPERATIONS_TIMEOUTS,
+            PROP_NAME_SCM_OPERATIONS_RETRIES,
+            PROP_NAME_SCM_OPERATIONS_ELAPSED);
     sections.add(scm);
 
     final Section artifact =
@@ -565,7 +695,13 @@ public final class Constant
     final Set<String> properties =
         new HashSet<String>(Arrays.asList(new String[]
         { PROP_NAME_SCM_REVISION_ID, PROP_NAME_SCM_REVISION_DATE,
-         PROP_NAME_SCM_URL, PROP_NAME_SCM_LOCALLY_MODIFIED_FILES,
+         PROP_NAME_SCM_URL, PROP_NAME_SCM_MODULE_REVISION_ID,
+         PROP_NAME_SCM_MODULE_REVISION_DATE,
+         PROP_NAME_SCM_LOCALLY_MODIFIED_FILES,
+         PROP_NAME_SCM_LOCALLY_MODIFIED_COUNT,
+         PROP_NAME_SCM_LOCALLY_MODIFIED_DIGEST,
+         PROP_NAME_SCM_OPERATIONS_TIMEOUTS, PROP_NAME_SCM_OPERATIONS_RETRIES,
+         PROP_NAME_SCM_OPERATIONS_ELAPSED,
          PROP_NAME_BUILD_DATE, PROP_NAME_BUILD_TIMESTAMP, PROP_NAME_BUILD_YEAR,
          PROP_NAME_COPYRIGHT_YEAR, DEFAULT_DATE_PATTERN, PROP_NAME_GROUP_ID,
          PROP_NAME_ARTIFACT_ID, PROP_NAME_VERSION, PROP_NAME_FULL_VERSION,
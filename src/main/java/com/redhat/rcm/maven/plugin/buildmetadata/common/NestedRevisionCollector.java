@@ -0,0 +1,375 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.common;
+
+import java.io.File;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.maven.scm.ScmFileSet;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.AbstractBuildMojo;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.LocallyModifiedInfo;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.NestedWorkingCopy;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.Revision;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.RevisionNumberFetcher;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmException;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmExecutor;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.WorkingCopyLocator;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.git.GitRevisionNumberFetcher;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.hg.HgRevisionNumberFetcher;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.maven.ScmAccessInfo;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.svn.SvnRevisionNumberFetcher;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.svn.SvnStatusReader;
+
+/**
+ * Collects the revisions of the working copies nested within the base
+ * directory of a project, such as Git submodules, Subversion externals and
+ * Mercurial subrepositories. The working copies are queried concurrently on
+ * a pool of their own, so the collection takes about as long as the query of
+ * the slowest working copy and the queries of the enclosing working copy do
+ * not wait behind them.
+ * <p>
+ * Nested working copies have no SCM connection URL, so they are queried by
+ * reading the repository files or by running the SCM executable directly.
+ * Subversion externals are checked for modifications with
+ * <code>svn status</code>.
+ * </p>
+ */
+public final class NestedRevisionCollector extends AbstractBuildMojo
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The directory to search for nested working copies.
+   */
+  private final File baseDirectory;
+
+  /**
+   * The number of directory levels to search for nested working copies.
+   */
+  private final int maxDepth;
+
+  /**
+   * The information to query the enclosing working copy. Provides the limits
+   * to apply to the queries of the nested working copies.
+   */
+  private final ScmAccessInfo scmAccessInfo;
+
+  /**
+   * The date pattern to use to format revision dates.
+   */
+  private final String buildDatePattern;
+
+  /**
+   * The working copies found by {@link #start(boolean)}.
+   */
+  private final List<NestedWorkingCopy> copies =
+      new ArrayList<NestedWorkingCopy>();
+
+  /**
+   * The running queries in the order of {@link #copies}.
+   */
+  private final List<Future<Result>> results = new ArrayList<Future<Result>>();
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   *
+   * @param baseDirectory the directory to search for nested working copies.
+   * @param maxDepth the number of directory levels to search for nested
+   *          working copies.
+   * @param scmAccessInfo the information to query the enclosing working copy.
+   * @param buildDatePattern the date pattern to use to format revision dates.
+   */
+  public NestedRevisionCollector(final File baseDirectory, final int maxDepth,
+      final ScmAccessInfo scmAccessInfo, final String buildDatePattern)
+  {
+    this.baseDirectory = baseDirectory;
+    this.maxDepth = maxDepth;
+    this.scmAccessInfo = scmAccessInfo;
+    this.buildDatePattern = buildDatePattern;
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  /**
+   * The result of the query of a nested working copy.
+   */
+  private static final class Result
+  {
+    /**
+     * The revision of the working copy, <code>null</code> if unknown.
+     */
+    private final Revision revision;
+
+    /**
+     * The modification status of the working copy, <code>null</code> if
+     * unknown or not requested.
+     */
+    private final LocallyModifiedInfo modifications;
+
+    private Result(final Revision revision,
+        final LocallyModifiedInfo modifications)
+    {
+      this.revision = revision;
+      this.modifications = modifications;
+    }
+  }
+
+  /**
+   * The fallback for Subversion externals whose metadata cannot be read. Checks
+   * for modifications with <code>svn status</code>.
+   */
+  private static final class SvnStatusRevisionNumberFetcher implements
+      RevisionNumberFetcher
+  {
+    public Revision fetchLatestRevisionNumber() throws ScmException
+    {
+      return null;
+    }
+
+    public LocallyModifiedInfo containsModifications(final ScmFileSet fileSet)
+      throws ScmException
+    {
+      return new SvnStatusReader(fileSet.getBasedir()).readModifications();
+    }
+  }
+
+  /**
+   * The fallback for nested working copies that cannot be queried directly.
+   * Nested working copies have no connection URL to use a Maven SCM provider.
+   */
+  private static final class UnavailableRevisionNumberFetcher implements
+      RevisionNumberFetcher
+  {
+    public Revision fetchLatestRevisionNumber() throws ScmException
+    {
+      return null;
+    }
+
+    public LocallyModifiedInfo containsModifications(final ScmFileSet fileSet)
+      throws ScmException
+    {
+      throw new ScmException("Cannot check " + fileSet.getBasedir()
+                             + " for modifications.");
+    }
+  }
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  // --- get&set --------------------------------------------------------------
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * Searches the nested working copies and starts to query them.
+   *
+   * @param checkModifications the flag that signals that the working copies
+   *          are checked for modifications.
+   */
+  public void start(final boolean checkModifications)
+  {
+    copies.addAll(WorkingCopyLocator.findNested(baseDirectory, maxDepth));
+    if (copies.isEmpty())
+    {
+      return;
+    }
+    final ExecutorService executor =
+        ScmExecutor.createNestedExecutor(copies.size());
+    for (final NestedWorkingCopy copy : copies)
+    {
+      results.add(executor.submit(new Callable<Result>()
+      {
+        public Result call() throws ScmException
+        {
+          return query(copy, checkModifications);
+        }
+      }));
+    }
+    executor.shutdown();
+    if (getLog().isDebugEnabled())
+    {
+      getLog().debug("Querying nested working copies " + copies + '.');
+    }
+  }
+
+  /**
+   * Waits for the queries started by {@link #start(boolean)} and adds their
+   * results to the property set. Queries not finished within the overall SCM
+   * timeout are cancelled.
+   *
+   * @param buildMetaDataProperties the build meta data properties.
+   */
+  public void provideBuildMetaData(final Properties buildMetaDataProperties)
+  {
+    final DateFormat format =
+        new SimpleDateFormat(buildDatePattern, Locale.ENGLISH);
+    final long timeoutInSeconds = scmAccessInfo.getTimeoutInSeconds();
+    final long deadline =
+        System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(timeoutInSeconds);
+    for (int i = 0; i < copies.size(); i++)
+    {
+      final NestedWorkingCopy copy = copies.get(i);
+      final Future<Result> future = results.get(i);
+      try
+      {
+        final Result result =
+            timeoutInSeconds > 0 ? future.get(
+                Math.max(0L, deadline - System.currentTimeMillis()),
+                TimeUnit.MILLISECONDS) : future.get();
+        provideResult(buildMetaDataProperties, format, copy.getPath(), result);
+      }
+      catch (final InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+        cancelFrom(i);
+        return;
+      }
+      catch (final ExecutionException e)
+      {
+        handleFailedQuery(copy, e.getCause());
+      }
+      catch (final TimeoutException e)
+      {
+        future.cancel(true);
+        handleFailedQuery(copy, e);
+      }
+    }
+  }
+
+  private void cancelFrom(final int index)
+  {
+    for (int i = index; i < results.size(); i++)
+    {
+      results.get(i).cancel(true);
+    }
+  }
+
+  private Result query(final NestedWorkingCopy copy,
+      final boolean checkModifications) throws ScmException
+  {
+    final RevisionNumberFetcher fetcher = createFetcher(copy);
+    final Revision revision = fetcher.fetchLatestRevisionNumber();
+    LocallyModifiedInfo modifications = null;
+    if (checkModifications)
+    {
+      try
+      {
+        modifications =
+            fetcher.containsModifications(new ScmFileSet(copy.getDirectory()));
+      }
+      catch (final ScmException e)
+      {
+        if (getLog().isDebugEnabled())
+        {
+          getLog().debug("Cannot check " + copy + " for modifications.", e);
+        }
+      }
+    }
+    return new Result(revision, modifications);
+  }
+
+  private RevisionNumberFetcher createFetcher(final NestedWorkingCopy copy)
+  {
+    final File directory = copy.getDirectory();
+    final RevisionNumberFetcher unavailable =
+        new UnavailableRevisionNumberFetcher();
+    final String scmType = copy.getScmType();
+    if ("git".equals(scmType))
+    {
+      return new GitRevisionNumberFetcher(directory,
+          createAccessInfo(directory), unavailable);
+    }
+    else if ("hg".equals(scmType))
+    {
+      return new HgRevisionNumberFetcher(directory,
+          createAccessInfo(directory), unavailable);
+    }
+    return new SvnRevisionNumberFetcher(directory,
+        new SvnStatusRevisionNumberFetcher());
+  }
+
+  /**
+   * Creates the information to check a nested working copy for modifications.
+   * The limits of the enclosing working copy apply, the modification scope
+   * and the failure on modifications do not.
+   *
+   * @param directory the root directory of the nested working copy.
+   * @return the information to check the nested working copy.
+   */
+  private ScmAccessInfo createAccessInfo(final File directory)
+  {
+    final ScmAccessInfo info = new ScmAccessInfo();
+    info.setRootDirectory(directory);
+    info.setModuleDirectory(directory);
+    info.setIgnoreDotFilesInBaseDir(scmAccessInfo.isIgnoreDotFilesInBaseDir());
+    info.setModifiedFilesLimit(scmAccessInfo.getModifiedFilesLimit());
+    return info;
+  }
+
+  private void provideResult(final Properties buildMetaDataProperties,
+      final DateFormat format, final String path, final Result result)
+  {
+    final String prefix = Constant.PROP_NAME_SCM_SUB_PREFIX + path;
+    if (result.revision != null)
+    {
+      buildMetaDataProperties.setProperty(prefix + Constant.SCM_SUB_SUFFIX_ID,
+          result.revision.getId());
+      buildMetaDataProperties.setProperty(
+          prefix + Constant.SCM_SUB_SUFFIX_DATE,
+          format.format(result.revision.getDate()));
+    }
+    if (result.modifications != null)
+    {
+      buildMetaDataProperties.setProperty(
+          prefix + Constant.SCM_SUB_SUFFIX_LOCALLY_MODIFIED,
+          String.valueOf(result.modifications.isLocallyModified()));
+    }
+  }
+
+  private void handleFailedQuery(final NestedWorkingCopy copy,
+      final Throwable cause)
+  {
+    if (getLog().isWarnEnabled())
+    {
+      getLog().warn("Cannot fetch revision of nested working copy " + copy
+                    + ": " + cause);
+    }
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
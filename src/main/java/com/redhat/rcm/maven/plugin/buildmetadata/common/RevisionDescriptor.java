@@ -0,0 +1,516 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Properties;
+
+import org.codehaus.plexus.util.FileUtils;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmException;
+import com.redhat.rcm.maven.plugin.buildmetadata.util.DateUtils;
+
+/**
+ * The SCM information of a build computed before the build, for example by
+ * the orchestration of a sandboxed build. The descriptor is a properties or
+ * JSON file with the names of the build properties as keys, such as
+ * <code>build.scmRevision.id</code> and <code>build.scmLocallyModified</code>.
+ * In JSON files nested objects are joined with dots, so
+ * <code>{"build":{"scmRevision":{"id":"1234"}}}</code> provides the same
+ * revision as the flat key. Keys that are not SCM build properties are
+ * ignored.
+ * <p>
+ * Dates are read as ISO 8601 timestamps with time zone, seconds or
+ * milliseconds since the epoch or in the date pattern of the build, and are
+ * written in the date pattern of the build.
+ * </p>
+ */
+public final class RevisionDescriptor
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The prefix of the build properties on the revision.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String REVISION_PREFIX = "build.scmRevision.";
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The file the descriptor has been read from.
+   */
+  private final File file;
+
+  /**
+   * The SCM build properties of the descriptor.
+   */
+  private final Properties values;
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  private RevisionDescriptor(final File file, final Properties values)
+  {
+    this.file = file;
+    this.values = values;
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  /**
+   * Reads the members of JSON objects into properties.
+   */
+  private static final class JsonReader
+  {
+    /**
+     * The JSON document.
+     */
+    private final String content;
+
+    /**
+     * The index of the next character to read.
+     */
+    private int position;
+
+    private JsonReader(final String content)
+    {
+      this.content = content;
+    }
+
+    private void readDocument(final Properties target) throws IOException
+    {
+      readObject("", target);
+      skipWhitespace();
+      if (position < content.length())
+      {
+        throw error("Unexpected content after the object");
+      }
+    }
+
+    private void readObject(final String prefix, final Properties target)
+      throws IOException
+    {
+      expect('{');
+      skipWhitespace();
+      if (peek() == '}')
+      {
+        position++;
+        return;
+      }
+      while (true)
+      {
+        skipWhitespace();
+        final String key = prefix + readString();
+        skipWhitespace();
+        expect(':');
+        skipWhitespace();
+        readValue(key, target);
+        skipWhitespace();
+        final char next = next();
+        if (next == '}')
+        {
+          return;
+        }
+        if (next != ',')
+        {
+          throw error("Expected ',' or '}'");
+        }
+      }
+    }
+
+    private void readValue(final String key, final Properties target)
+      throws IOException
+    {
+      final char first = peek();
+      if (first == '{')
+      {
+        readObject(key + '.', target);
+      }
+      else if (first == '"')
+      {
+        target.setProperty(key, readString());
+      }
+      else if (first == '[')
+      {
+        throw error("Arrays are not supported");
+      }
+      else if (first == '-' || isDigit(first))
+      {
+        target.setProperty(key, readNumber());
+      }
+      else if (first == 'n')
+      {
+        expectWord("null");
+      }
+      else if (first == 't' || first == 'f')
+      {
+        final String word = first == 't' ? "true" : "false";
+        expectWord(word);
+        target.setProperty(key, word);
+      }
+      else
+      {
+        throw error("Expected a value");
+      }
+    }
+
+    private String readNumber() throws IOException
+    {
+      final int start = position;
+      if (peek() == '-')
+      {
+        position++;
+      }
+      if (peek() == '0')
+      {
+        position++;
+      }
+      else
+      {
+        readDigits();
+      }
+      if (position < content.length() && content.charAt(position) == '.')
+      {
+        position++;
+        readDigits();
+      }
+      if (position < content.length()
+          && Character.toLowerCase(content.charAt(position)) == 'e')
+      {
+        position++;
+        final char sign = peek();
+        if (sign == '+' || sign == '-')
+        {
+          position++;
+        }
+        readDigits();
+      }
+      return content.substring(start, position);
+    }
+
+    private void readDigits() throws IOException
+    {
+      if (!isDigit(peek()))
+      {
+        throw error("Expected a digit");
+      }
+      while (position < content.length() && isDigit(content.charAt(position)))
+      {
+        position++;
+      }
+    }
+
+    private static boolean isDigit(final char c)
+    {
+      return c >= '0' && c <= '9';
+    }
+
+    private void expectWord(final String word) throws IOException
+    {
+      if (!content.startsWith(word, position))
+      {
+        throw error("Expected '" + word + '\'');
+      }
+      position += word.length();
+    }
+
+    private String readString() throws IOException
+    {
+      expect('"');
+      final StringBuilder buffer = new StringBuilder();
+      while (true)
+      {
+        final char c = next();
+        if (c == '"')
+        {
+          return buffer.toString();
+        }
+        if (c != '\\')
+        {
+          buffer.append(c);
+          continue;
+        }
+        final char escaped = next();
+        switch (escaped)
+        {
+          case 'b':
+            buffer.append('\b');
+            break;
+          case 'f':
+            buffer.append('\f');
+            break;
+          case 'n':
+            buffer.append('\n');
+            break;
+          case 'r':
+            buffer.append('\r');
+            break;
+          case 't':
+            buffer.append('\t');
+            break;
+          case 'u':
+            if (position + 4 > content.length())
+            {
+              throw error("Incomplete escape sequence");
+            }
+            try
+            {
+              buffer.append((char) Integer.parseInt(
+                  content.substring(position, position + 4), 16));
+            }
+            catch (final NumberFormatException e)
+            {
+              throw error("Invalid escape sequence");
+            }
+            position += 4;
+            break;
+          default:
+            buffer.append(escaped);
+        }
+      }
+    }
+
+    private void skipWhitespace()
+    {
+      while (position < content.length()
+             && Character.isWhitespace(content.charAt(position)))
+      {
+        position++;
+      }
+    }
+
+    private void expect(final char expected) throws IOException
+    {
+      if (next() != expected)
+      {
+        throw error("Expected '" + expected + '\'');
+      }
+    }
+
+    private char peek() throws IOException
+    {
+      if (position >= content.length())
+      {
+        throw error("Unexpected end of document");
+      }
+      return content.charAt(position);
+    }
+
+    private char next() throws IOException
+    {
+      final char c = peek();
+      position++;
+      return c;
+    }
+
+    private IOException error(final String message)
+    {
+      return new IOException(message + " at offset " + position + '.');
+    }
+  }
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  /**
+   * Reads the descriptor from the given file. Files whose content starts with
+   * <code>{</code> are read as JSON, all others as properties.
+   *
+   * @param file the file to read.
+   * @return the descriptor.
+   * @throws IOException if the file cannot be read or does not provide the
+   *           revision identifier.
+   */
+  public static RevisionDescriptor read(final File file) throws IOException
+  {
+    final String content = FileUtils.fileRead(file, "UTF-8");
+    final Properties all = new Properties();
+    if (content.trim().startsWith("{"))
+    {
+      try
+      {
+        new JsonReader(content.trim()).readDocument(all);
+      }
+      catch (final IOException e)
+      {
+        throw new IOException("Cannot parse " + file + ": " + e.getMessage());
+      }
+    }
+    else
+    {
+      all.load(new StringReader(content));
+    }
+
+    final Properties values = new Properties();
+    for (final String key : all.stringPropertyNames())
+    {
+      if (key.startsWith(REVISION_PREFIX)
+          || key.startsWith(Constant.PROP_NAME_SCM_LOCALLY_MODIFIED))
+      {
+        values.setProperty(key, all.getProperty(key).trim());
+      }
+    }
+    if (values.getProperty(Constant.PROP_NAME_SCM_REVISION_ID, "").length()
+        == 0)
+    {
+      throw new IOException("No " + Constant.PROP_NAME_SCM_REVISION_ID
+                            + " in " + file + '.');
+    }
+    return new RevisionDescriptor(file, values);
+  }
+
+  // --- get&set --------------------------------------------------------------
+
+  /**
+   * Returns the file the descriptor has been read from.
+   *
+   * @return the file the descriptor has been read from.
+   */
+  public File getFile()
+  {
+    return file;
+  }
+
+  /**
+   * Returns the identifier of the revision.
+   *
+   * @return the identifier of the revision.
+   */
+  public String getRevisionId()
+  {
+    return values.getProperty(Constant.PROP_NAME_SCM_REVISION_ID);
+  }
+
+  /**
+   * Returns the URL to the SCM.
+   *
+   * @return the URL to the SCM, <code>null</code> if not provided.
+   */
+  public String getUrl()
+  {
+    return values.getProperty(Constant.PROP_NAME_SCM_URL);
+  }
+
+  /**
+   * Checks whether the working copy has been locally modified.
+   *
+   * @return <code>true</code> if the working copy has been locally modified,
+   *         <code>false</code> if it has not or the information is not
+   *         provided.
+   */
+  public boolean isLocallyModified()
+  {
+    return "true".equals(values
+        .getProperty(Constant.PROP_NAME_SCM_LOCALLY_MODIFIED));
+  }
+
+  /**
+   * Returns the locally modified files.
+   *
+   * @return the locally modified files, <code>null</code> if not provided.
+   */
+  public String getLocallyModifiedFiles()
+  {
+    return values.getProperty(Constant.PROP_NAME_SCM_LOCALLY_MODIFIED_FILES);
+  }
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * Adds the SCM build properties of the descriptor to the given properties.
+   *
+   * @param buildMetaDataProperties the build meta data properties.
+   * @param buildDatePattern the date pattern to format revision dates.
+   * @param includeModifications the flag to add the information on local
+   *          modifications.
+   * @throws ScmException if a date cannot be parsed.
+   */
+  public void provide(final Properties buildMetaDataProperties,
+      final String buildDatePattern, final boolean includeModifications)
+    throws ScmException
+  {
+    final DateFormat format =
+        new SimpleDateFormat(buildDatePattern, Locale.ENGLISH);
+    for (final String key : values.stringPropertyNames())
+    {
+      if (!includeModifications && !key.startsWith(REVISION_PREFIX))
+      {
+        continue;
+      }
+      final String value = values.getProperty(key);
+      buildMetaDataProperties.setProperty(key, isDate(key) ? format
+          .format(parseDate(key, value, format)) : value);
+    }
+  }
+
+  private static boolean isDate(final String key)
+  {
+    return Constant.PROP_NAME_SCM_REVISION_DATE.equals(key)
+           || Constant.PROP_NAME_SCM_MODULE_REVISION_DATE.equals(key)
+           || key.startsWith(Constant.PROP_NAME_SCM_SUB_PREFIX)
+              && key.endsWith(Constant.SCM_SUB_SUFFIX_DATE);
+  }
+
+  private Date parseDate(final String key, final String value,
+      final DateFormat buildDateFormat) throws ScmException
+  {
+    if (value.matches("\\d{12,13}"))
+    {
+      return new Date(Long.parseLong(value));
+    }
+    final Date date = DateUtils.parseDate(value);
+    if (date != null)
+    {
+      return date;
+    }
+    try
+    {
+      return buildDateFormat.parse(value);
+    }
+    catch (final ParseException e)
+    {
+      throw new ScmException("Cannot parse date '" + value + "' of " + key
+                             + " in " + file + '.', e);
+    }
+  }
+
+  // --- object basics --------------------------------------------------------
+
+  /**
+   * Returns the string representation of the object.
+   *
+   * @return the string representation of the object.
+   */
+  @Override
+  public String toString()
+  {
+    return file + ": " + values;
+  }
+}
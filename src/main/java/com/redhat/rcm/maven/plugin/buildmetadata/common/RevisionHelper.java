@@ -15,22 +15,55 @@
  */
 package com.redhat.rcm.maven.plugin.buildmetadata.common;
 
+import java.io.File;
+import java.io.IOException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.apache.maven.scm.ScmFileSet;
+import org.apache.maven.scm.ScmVersion;
 import org.apache.maven.scm.manager.ScmManager;
+import org.codehaus.plexus.util.FileUtils;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.EnvironmentRevisionNumberFetcher;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.IncrementalRevisionNumberFetcher;
 import com.redhat.rcm.maven.plugin.buildmetadata.scm.LocallyModifiedInfo;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ModificationScope;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ModifiedFilesCollector;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.PersistentRevisionNumberFetcher;
 import com.redhat.rcm.maven.plugin.buildmetadata.scm.Revision;
 import com.redhat.rcm.maven.plugin.buildmetadata.scm.RevisionNumberFetcher;
 import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmException;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmExecutor;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmMetrics;
 import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmNoRevisionException;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmOperationTimer;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmResultCache;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmTimeoutException;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.SharedRevisionNumberFetcher;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.WorkingCopyFingerprint;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.git.GitHistoryWalker;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.git.GitRepository;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.git.GitRevisionNumberFetcher;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.hg.HgRevisionNumberFetcher;
 import com.redhat.rcm.maven.plugin.buildmetadata.scm.maven.MavenScmRevisionNumberFetcher;
 import com.redhat.rcm.maven.plugin.buildmetadata.scm.maven.ScmAccessInfo;
 import com.redhat.rcm.maven.plugin.buildmetadata.scm.maven.ScmConnectionInfo;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.maven.ScmRepositoryRegistry;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.svn.SvnRevisionNumberFetcher;
 import com.redhat.rcm.maven.plugin.buildmetadata.AbstractBuildMojo;
 
 /**
@@ -53,6 +86,11 @@ public final class RevisionHelper extends AbstractBuildMojo
    */
   private final ScmManager scmManager;
 
+  /**
+   * The registry to look up SCM repositories and providers.
+   */
+  private final ScmRepositoryRegistry repositoryRegistry;
+
   /**
    * The information to connect to the SCM.
    */
@@ -68,6 +106,17 @@ public final class RevisionHelper extends AbstractBuildMojo
    */
   private final String buildDatePattern;
 
+  /**
+   * The cache to share the results with other modules of the build. May be
+   * <code>null</code> if results are not shared.
+   */
+  private final ScmResultCache resultCache;
+
+  /**
+   * The key identifying the working copy within the result cache.
+   */
+  private final String resultCacheKey;
+
   // ****************************** Initializer *******************************
 
   // ****************************** Constructors ******************************
@@ -83,11 +132,60 @@ public final class RevisionHelper extends AbstractBuildMojo
   public RevisionHelper(final ScmManager scmManager,
       final ScmConnectionInfo scmConnectionInfo,
       final ScmAccessInfo scmAccessInfo, final String buildDatePattern)
+  {
+    this(scmManager, scmConnectionInfo, scmAccessInfo, buildDatePattern, null,
+        null);
+  }
+
+  /**
+   * Constructor sharing the SCM results with other modules of the build.
+   *
+   * @param scmManager the manager instance to access the SCM system.
+   * @param scmConnectionInfo the information to connect to the SCM.
+   * @param scmAccessInfo the information to query the SCM.
+   * @param buildDatePattern the date pattern to use to format revision dates.
+   * @param resultCache the cache to share the results with other modules of
+   *          the build, <code>null</code> to not share results.
+   * @param resultCacheKey the key identifying the working copy within the
+   *          result cache.
+   */
+  public RevisionHelper(final ScmManager scmManager,
+      final ScmConnectionInfo scmConnectionInfo,
+      final ScmAccessInfo scmAccessInfo, final String buildDatePattern,
+      final ScmResultCache resultCache, final String resultCacheKey)
+  {
+    this(scmManager, new ScmRepositoryRegistry(), scmConnectionInfo,
+        scmAccessInfo, buildDatePattern, resultCache, resultCacheKey);
+  }
+
+  /**
+   * Constructor sharing SCM repositories and providers and the SCM results
+   * with other modules of the build.
+   *
+   * @param scmManager the manager instance to access the SCM system.
+   * @param repositoryRegistry the registry to look up SCM repositories and
+   *          providers.
+   * @param scmConnectionInfo the information to connect to the SCM.
+   * @param scmAccessInfo the information to query the SCM.
+   * @param buildDatePattern the date pattern to use to format revision dates.
+   * @param resultCache the cache to share the results with other modules of
+   *          the build, <code>null</code> to not share results.
+   * @param resultCacheKey the key identifying the working copy within the
+   *          result cache.
+   */
+  public RevisionHelper(final ScmManager scmManager,
+      final ScmRepositoryRegistry repositoryRegistry,
+      final ScmConnectionInfo scmConnectionInfo,
+      final ScmAccessInfo scmAccessInfo, final String buildDatePattern,
+      final ScmResultCache resultCache, final String resultCacheKey)
   {
     this.scmManager = scmManager;
+    this.repositoryRegistry = repositoryRegistry;
     this.scmConnectionInfo = scmConnectionInfo;
     this.scmAccessInfo = scmAccessInfo;
     this.buildDatePattern = buildDatePattern;
+    this.resultCache = resultCache;
+    this.resultCacheKey = resultCacheKey;
   }
 
   // ****************************** Inner Classes *****************************
@@ -101,7 +199,10 @@ public final class RevisionHelper extends AbstractBuildMojo
   // --- business -------------------------------------------------------------
 
   /**
-   * Fetches the revision information and adds it to the property sets.
+   * Fetches the revision information and adds it to the property sets. If the
+   * SCM does not answer in time, the build fails if a revision is required.
+   * Otherwise the revision and the modification status are set to
+   * <code>unknown</code>.
    *
    * @param buildMetaDataProperties the build meta data properties.
    * @param scmControl the properties to control the gathering of SCM info.
@@ -110,12 +211,32 @@ public final class RevisionHelper extends AbstractBuildMojo
   public void provideScmBuildInfo(final Properties buildMetaDataProperties,
       final ScmControl scmControl) throws ScmException
   {
+    final long start = System.currentTimeMillis();
     final boolean failOnMissingRevision = scmControl.isFailOnMissingRevision();
 
     final RevisionNumberFetcher revisionFetcher =
-        new MavenScmRevisionNumberFetcher(scmManager, scmConnectionInfo,
-            scmAccessInfo);
-    final Revision revision = revisionFetcher.fetchLatestRevisionNumber();
+        createRevisionFetcher(scmControl.isValidateCheckout());
+    final Future<LocallyModifiedInfo> modifications =
+        scmControl.isValidateCheckout() ? startModificationCheck(revisionFetcher)
+            : null;
+    Revision revision = null;
+    ScmTimeoutException timeout = null;
+    try
+    {
+      revision = revisionFetcher.fetchLatestRevisionNumber();
+    }
+    catch (final ScmTimeoutException e)
+    {
+      timeout = e;
+    }
+    finally
+    {
+      if (revision == null && modifications != null)
+      {
+        modifications.cancel(true);
+      }
+    }
+
     if (revision != null)
     {
       buildMetaDataProperties.setProperty(Constant.PROP_NAME_SCM_URL,
@@ -130,17 +251,450 @@ public final class RevisionHelper extends AbstractBuildMojo
       buildMetaDataProperties.setProperty(Constant.PROP_NAME_SCM_REVISION_DATE,
           revisionDateString);
 
-      final boolean validateCheckout = scmControl.isValidateCheckout();
-      if (validateCheckout)
+      if (scmAccessInfo.isModuleRevision())
+      {
+        provideModuleRevision(buildMetaDataProperties, format);
+      }
+      if (modifications != null)
       {
-        provideLocallyModifiedInfo(buildMetaDataProperties, revisionFetcher);
+        provideLocallyModifiedInfo(buildMetaDataProperties, modifications);
       }
     }
     else if (failOnMissingRevision)
     {
+      if (timeout != null)
+      {
+        throw new ScmNoRevisionException("Cannot fetch SCM revision in time. "
+                                         + scmConnectionInfo, timeout);
+      }
       throw new ScmNoRevisionException("Cannot fetch SCM revision. "
                                        + scmConnectionInfo);
     }
+    else if (timeout != null)
+    {
+      provideUnknownRevision(buildMetaDataProperties, modifications != null,
+          timeout);
+    }
+    provideOperationInfo(buildMetaDataProperties);
+    provideMetrics(buildMetaDataProperties, System.currentTimeMillis() - start);
+  }
+
+  /**
+   * Provides the revision that last changed the module. The revision is read
+   * from the history of Git working copies only. If the results are shared,
+   * the history is walked once for all modules of the build.
+   *
+   * @param buildMetaDataProperties the build meta data properties.
+   * @param format the format to use to format the revision date.
+   */
+  private void provideModuleRevision(final Properties buildMetaDataProperties,
+      final DateFormat format)
+  {
+    if (!"git".equals(scmConnectionInfo.getScmType())
+        || scmConnectionInfo.getRemoteVersion() != null)
+    {
+      if (getLog().isDebugEnabled())
+      {
+        getLog().debug("Module revisions are only provided for local Git"
+                       + " working copies.");
+      }
+      return;
+    }
+
+    final File moduleDirectory = scmAccessInfo.getModuleDirectory();
+    try
+    {
+      final GitRepository repository = GitRepository.find(moduleDirectory);
+      if (repository == null)
+      {
+        return;
+      }
+      final String path =
+          GitHistoryWalker.toPath(repository.getWorkTree(), moduleDirectory);
+      if (path == null)
+      {
+        return;
+      }
+
+      final Map<String, Revision> changes;
+      if (resultCache != null)
+      {
+        changes =
+            resultCache.get(resultCacheKey + "#modules",
+                new Callable<Map<String, Revision>>()
+                {
+                  public Map<String, Revision> call() throws IOException
+                  {
+                    return findLastChanges(repository,
+                        collectModulePaths(repository, path));
+                  }
+                });
+      }
+      else
+      {
+        changes = findLastChanges(repository, Collections.singleton(path));
+      }
+
+      final Revision revision = changes.get(path);
+      if (revision != null)
+      {
+        buildMetaDataProperties.setProperty(
+            Constant.PROP_NAME_SCM_MODULE_REVISION_ID, revision.getId());
+        buildMetaDataProperties.setProperty(
+            Constant.PROP_NAME_SCM_MODULE_REVISION_DATE,
+            format.format(revision.getDate()));
+      }
+    }
+    catch (final IOException e)
+    {
+      handleFailedModuleRevision(e);
+    }
+    catch (final ScmException e)
+    {
+      handleFailedModuleRevision(e);
+    }
+  }
+
+  private void handleFailedModuleRevision(final Exception e)
+  {
+    if (getLog().isWarnEnabled())
+    {
+      getLog().warn("Cannot determine module revision: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Returns the paths of all modules of the build within the working copy.
+   *
+   * @param repository the repository of the working copy.
+   * @param modulePath the path of the current module.
+   * @return the paths of the modules relative to the root of the working copy.
+   * @throws IOException if a path cannot be resolved.
+   */
+  private Set<String> collectModulePaths(final GitRepository repository,
+      final String modulePath) throws IOException
+  {
+    final Set<String> paths = new HashSet<String>();
+    paths.add(modulePath);
+    for (final File directory : scmAccessInfo.getReactorDirectories())
+    {
+      final String path =
+          GitHistoryWalker.toPath(repository.getWorkTree(), directory);
+      if (path != null)
+      {
+        paths.add(path);
+      }
+    }
+    return paths;
+  }
+
+  private Map<String, Revision> findLastChanges(
+      final GitRepository repository, final Collection<String> paths)
+    throws IOException
+  {
+    final long start = System.currentTimeMillis();
+    final Map<String, Revision> changes =
+        new GitHistoryWalker(repository,
+            scmAccessInfo.getModuleRevisionMaxCommits())
+            .findLastChanges(paths);
+    if (getLog().isDebugEnabled())
+    {
+      getLog().debug(
+          "Found last changes of " + changes.size() + " of " + paths.size()
+              + " modules in " + (System.currentTimeMillis() - start)
+              + "ms.");
+    }
+    return changes;
+  }
+
+  private void provideUnknownRevision(final Properties buildMetaDataProperties,
+      final boolean validateCheckout, final ScmTimeoutException timeout)
+  {
+    buildMetaDataProperties.setProperty(Constant.PROP_NAME_SCM_URL,
+        scmConnectionInfo.getConnectionUrl());
+    buildMetaDataProperties.setProperty(Constant.PROP_NAME_SCM_REVISION_ID,
+        "unknown");
+    if (validateCheckout)
+    {
+      buildMetaDataProperties.setProperty(
+          Constant.PROP_NAME_SCM_LOCALLY_MODIFIED, "unknown");
+    }
+    if (getLog().isWarnEnabled())
+    {
+      getLog().warn("Failed to fetch SCM revision: " + timeout.getMessage());
+    }
+  }
+
+  /**
+   * Provides the number of timeouts and retries and the time spent in SCM
+   * operations, if metrics are requested and any operation has been run. The
+   * values differ from build to build, so they are not provided by default.
+   *
+   * @param buildMetaDataProperties the build meta data properties.
+   */
+  private void provideOperationInfo(final Properties buildMetaDataProperties)
+  {
+    final ScmOperationTimer timer = scmAccessInfo.getOperationTimer();
+    if (!scmAccessInfo.isScmMetrics()
+        || timer.getOperations() == 0 && timer.getTimeouts() == 0)
+    {
+      return;
+    }
+    buildMetaDataProperties.setProperty(
+        Constant.PROP_NAME_SCM_OPERATIONS_TIMEOUTS,
+        String.valueOf(timer.getTimeouts()));
+    buildMetaDataProperties.setProperty(
+        Constant.PROP_NAME_SCM_OPERATIONS_RETRIES,
+        String.valueOf(timer.getRetries()));
+    buildMetaDataProperties.setProperty(
+        Constant.PROP_NAME_SCM_OPERATIONS_ELAPSED,
+        String.valueOf(timer.getElapsedInMillis()));
+  }
+
+  /**
+   * Logs a summary of the metrics of the SCM queries and adds the metrics to
+   * the build properties, if requested. Without the request the summary is
+   * logged on debug level only.
+   *
+   * @param buildMetaDataProperties the build meta data properties.
+   * @param timeInMillis the wall time in milliseconds spent to provide the SCM
+   *          information.
+   */
+  private void provideMetrics(final Properties buildMetaDataProperties,
+      final long timeInMillis)
+  {
+    final boolean requested = scmAccessInfo.isScmMetrics();
+    if (!requested && !getLog().isDebugEnabled())
+    {
+      return;
+    }
+
+    final ScmOperationTimer timer = scmAccessInfo.getOperationTimer();
+    final ScmMetrics metrics = timer.getMetrics();
+    final File module = scmAccessInfo.getModuleDirectory();
+    final String summary =
+        "SCM information of " + (module != null ? module.getName() : "module")
+            + " provided in " + timeInMillis + "ms: " + metrics
+            + ", retries=" + timer.getRetries() + ", timeouts="
+            + timer.getTimeouts();
+    if (!requested)
+    {
+      getLog().debug(summary);
+      return;
+    }
+    if (getLog().isInfoEnabled())
+    {
+      getLog().info(summary);
+    }
+
+    final String prefix = Constant.PROP_NAME_METRICS_SCM_PREFIX;
+    buildMetaDataProperties.setProperty(prefix + "time",
+        String.valueOf(timeInMillis));
+    for (final Map.Entry<String, ScmMetrics.Call> entry : metrics.getCalls()
+        .entrySet())
+    {
+      final ScmMetrics.Call call = entry.getValue();
+      buildMetaDataProperties.setProperty(prefix + entry.getKey() + ".count",
+          String.valueOf(call.getCount()));
+      buildMetaDataProperties.setProperty(prefix + entry.getKey() + ".time",
+          String.valueOf(call.getTimeInMillis()));
+    }
+    buildMetaDataProperties.setProperty(prefix + "processes",
+        String.valueOf(metrics.getProcesses()));
+    buildMetaDataProperties.setProperty(prefix + "outputBytes",
+        String.valueOf(metrics.getOutputBytes()));
+    buildMetaDataProperties.setProperty(prefix + "retries",
+        String.valueOf(timer.getRetries()));
+    buildMetaDataProperties.setProperty(prefix + "timeouts",
+        String.valueOf(timer.getTimeouts()));
+    buildMetaDataProperties.setProperty(prefix + "cacheHits",
+        String.valueOf(metrics.getCacheHits()));
+    buildMetaDataProperties.setProperty(prefix + "cacheMisses",
+        String.valueOf(metrics.getCacheMisses()));
+  }
+
+  /**
+   * Creates the fetcher to access the SCM. For Git working copies the revision
+   * is read from the repository files if requested and differences to a remote
+   * version are determined from the names of the changed files only. For
+   * Subversion working copies the revision is read from the working copy
+   * metadata. For Mercurial working copies the revision and the modifications
+   * of the whole working copy are fetched by a single process if requested. If
+   * a revision cache file is provided, the revision is persisted between
+   * builds. If requested, the revision is read from the environment variables
+   * of the continuous integration server. If a modification snapshot file is
+   * provided, only files changed since the last clean check are checked for
+   * modifications. If a result cache is provided, the results are shared
+   * with the other modules of the build.
+   *
+   * @param checkModifications the flag that signals that the working copy is
+   *          checked for modifications.
+   * @return the fetcher to access the SCM.
+   */
+  private RevisionNumberFetcher createRevisionFetcher(
+      final boolean checkModifications)
+  {
+    final ModificationScope scope = scmAccessInfo.getModificationScope();
+    RevisionNumberFetcher fetcher =
+        new MavenScmRevisionNumberFetcher(scmManager, repositoryRegistry,
+            scmConnectionInfo, scmAccessInfo);
+    if (scmAccessInfo.isNativeGit()
+        && "git".equals(scmConnectionInfo.getScmType()))
+    {
+      final ScmVersion remoteVersion = scmConnectionInfo.getRemoteVersion();
+      fetcher =
+          new GitRevisionNumberFetcher(scmAccessInfo.getRootDirectory(),
+              scmAccessInfo, remoteVersion != null ? remoteVersion.getName()
+                  : null, scmAccessInfo.getGitProcessRegistry(), fetcher);
+    }
+    else if (scmAccessInfo.isSvnLocalRevision()
+             && "svn".equals(scmConnectionInfo.getScmType()))
+    {
+      fetcher =
+          new SvnRevisionNumberFetcher(scmAccessInfo.getRootDirectory(),
+              scmAccessInfo.getOperationTimer(), fetcher);
+    }
+    else if (scmAccessInfo.isHgCommandServer()
+             && "hg".equals(scmConnectionInfo.getScmType()))
+    {
+      final boolean combineStatus =
+          checkModifications && scmConnectionInfo.getRemoteVersion() == null
+              && (scope == null || !scope.isModuleScoped());
+      fetcher =
+          new HgRevisionNumberFetcher(scmAccessInfo.getRootDirectory(),
+              combineStatus ? scmAccessInfo : null, fetcher);
+    }
+    final File rootDirectory = scmAccessInfo.getRootDirectory();
+    final String scmType = scmConnectionInfo.getScmType();
+    final File revisionCacheFile = scmAccessInfo.getRevisionCacheFile();
+    if (revisionCacheFile != null)
+    {
+      final String fingerprint =
+          WorkingCopyFingerprint.create(rootDirectory, scmType);
+      if (fingerprint != null)
+      {
+        fetcher =
+            new PersistentRevisionNumberFetcher(revisionCacheFile,
+                fingerprint, scmConnectionInfo.getConnectionUrl(), fetcher);
+      }
+    }
+    if (scmAccessInfo.isCiRevision()
+        && scmConnectionInfo.getRemoteVersion() == null)
+    {
+      fetcher =
+          new EnvironmentRevisionNumberFetcher(scmType,
+              scmAccessInfo.getCiRevisionIdVariables(),
+              scmAccessInfo.getCiRevisionDateVariables(), System.getenv(),
+              fetcher);
+    }
+    final String filter = createModificationsFilter(scope);
+    final File snapshotFile = scmAccessInfo.getModificationSnapshotFile();
+    if (snapshotFile != null && scmConnectionInfo.getRemoteVersion() == null)
+    {
+      fetcher =
+          new IncrementalRevisionNumberFetcher(snapshotFile, rootDirectory,
+              scmType, filter, fetcher);
+    }
+    if (resultCache != null)
+    {
+      fetcher =
+          new SharedRevisionNumberFetcher(resultCache, resultCacheKey,
+              createSharedFilter(filter), fetcher, scmAccessInfo
+                  .getOperationTimer().getMetrics());
+    }
+    return fetcher;
+  }
+
+  /**
+   * Returns the description of everything that determines the modification
+   * results besides the checked directory: the scope, the files ignored, the
+   * stop at the first modification if the build fails on it and the number
+   * of files reported.
+   *
+   * @param scope the modification scope, may be <code>null</code>.
+   * @return the description of the modification results.
+   */
+  private String createModificationsFilter(final ModificationScope scope)
+  {
+    return (scope != null ? scope.toString() : "") + "|ignoreDotFiles="
+           + scmAccessInfo.isIgnoreDotFilesInBaseDir() + "|failFast="
+           + scmAccessInfo.isFailIndicated() + "|limit="
+           + scmAccessInfo.getModifiedFilesLimit();
+  }
+
+  /**
+   * Returns the description of the shared modification results. Results with
+   * a complete list of modified files are not shared, since the list file
+   * belongs to the module that requested it.
+   *
+   * @param filter the description of the modification results.
+   * @return the description of the shared modification results,
+   *         <code>null</code> if the results are not to be shared.
+   */
+  private String createSharedFilter(final String filter)
+  {
+    if (scmAccessInfo.getModifiedFilesFile() != null)
+    {
+      return null;
+    }
+    return filter;
+  }
+
+  /**
+   * Starts the check for locally modified files. The check does not depend on
+   * the revision and therefore runs while the revision is fetched. Depending on
+   * the modification scope either the whole working copy or only the module
+   * directory and its additional paths are checked. The file sets name the
+   * directories only and the status is determined by the SCM. The files are
+   * only enumerated on the Java side if a modification snapshot is used.
+   *
+   * @param revisionFetcher the fetcher to use.
+   * @return the future to access the modification information.
+   */
+  private Future<LocallyModifiedInfo> startModificationCheck(
+      final RevisionNumberFetcher revisionFetcher)
+  {
+    return ScmExecutor.submit(new Callable<LocallyModifiedInfo>()
+    {
+      public LocallyModifiedInfo call()
+      {
+        final ModificationScope scope = scmAccessInfo.getModificationScope();
+        if (scope == null || !scope.isModuleScoped())
+        {
+          return revisionFetcher.containsModifications(new ScmFileSet(
+              scmAccessInfo.getRootDirectory()));
+        }
+        return checkScopedModifications(revisionFetcher, scope);
+      }
+    });
+  }
+
+  /**
+   * Checks the directories of the module scope and merges the results.
+   *
+   * @param revisionFetcher the fetcher to use.
+   * @param scope the scope defining the directories to check.
+   * @return the merged modification information.
+   */
+  private LocallyModifiedInfo checkScopedModifications(
+      final RevisionNumberFetcher revisionFetcher,
+      final ModificationScope scope)
+  {
+    final List<File> directories =
+        scope.getDirectories(scmAccessInfo.getRootDirectory(),
+            scmAccessInfo.getModuleDirectory());
+    final List<LocallyModifiedInfo> infos =
+        new ArrayList<LocallyModifiedInfo>(directories.size());
+    for (final File directory : directories)
+    {
+      if (getLog().isDebugEnabled())
+      {
+        getLog().debug("Checking " + directory + " for modifications.");
+      }
+      infos.add(revisionFetcher.containsModifications(new ScmFileSet(
+          directory)));
+    }
+    return ModifiedFilesCollector.merge(infos);
   }
 
   // --- object basics --------------------------------------------------------
@@ -149,48 +703,113 @@ public final class RevisionHelper extends AbstractBuildMojo
    * Provides the information of locally modified files to the build properties.
    *
    * @param buildMetaDataProperties the build meta data properties.
-   * @param revisionFetcher the fetcher to use.
+   * @param modifications the future to access the modification information.
    * @throws ScmException if the creation of the modification information
    *           failed.
    */
   private void provideLocallyModifiedInfo(
       final Properties buildMetaDataProperties,
-      final RevisionNumberFetcher revisionFetcher) throws ScmException
+      final Future<LocallyModifiedInfo> modifications) throws ScmException
   {
+    final LocallyModifiedInfo info;
     try
     {
-      final ScmFileSet fileSet =
-          new ScmFileSet(scmAccessInfo.getRootDirectory(), "**/*", null);
-      final LocallyModifiedInfo info =
-          revisionFetcher.containsModifications(fileSet);
+      info = modifications.get();
+    }
+    catch (final InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      handleFailedModificationCheck(buildMetaDataProperties, e);
+      return;
+    }
+    catch (final ExecutionException e)
+    {
+      handleFailedModificationCheck(buildMetaDataProperties, e.getCause());
+      return;
+    }
+
+    writeModifiedFilesList(info);
+    buildMetaDataProperties.setProperty(
+        Constant.PROP_NAME_SCM_LOCALLY_MODIFIED,
+        String.valueOf(info.isLocallyModified()));
+    if (info.isLocallyModified())
+    {
       buildMetaDataProperties.setProperty(
-          Constant.PROP_NAME_SCM_LOCALLY_MODIFIED,
-          String.valueOf(info.isLocallyModified()));
-      if (info.isLocallyModified())
+          Constant.PROP_NAME_SCM_LOCALLY_MODIFIED_FILES, info.getFiles());
+      if (info.getCount() >= 0)
       {
         buildMetaDataProperties.setProperty(
-            Constant.PROP_NAME_SCM_LOCALLY_MODIFIED_FILES, info.getFiles());
-        if (scmAccessInfo.isFailIndicated())
-        {
-          throw new ScmException("Local Modifications detected ("
-                                 + info.getFiles() + ").");
-        }
+            Constant.PROP_NAME_SCM_LOCALLY_MODIFIED_COUNT,
+            String.valueOf(info.getCount()));
+      }
+      if (info.getDigest() != null)
+      {
+        buildMetaDataProperties.setProperty(
+            Constant.PROP_NAME_SCM_LOCALLY_MODIFIED_DIGEST, info.getDigest());
+      }
+      if (scmAccessInfo.isFailIndicated())
+      {
+        throw new ScmException("Local Modifications detected ("
+                               + info.getFiles() + ").");
       }
     }
-    catch (final Exception e)
+  }
+
+  /**
+   * Moves the complete list of modified files to the configured file, if
+   * requested. If only a part of the list is known, for example because the
+   * check stopped at the first modification, the file is removed.
+   *
+   * @param info the modification information.
+   */
+  private void writeModifiedFilesList(final LocallyModifiedInfo info)
+  {
+    final File target = scmAccessInfo.getModifiedFilesFile();
+    if (target == null)
     {
-      if (scmAccessInfo.isFailIndicated())
+      return;
+    }
+    try
+    {
+      if (info.getListFile() != null)
       {
-        throw new ScmException(e);
+        ModifiedFilesCollector.moveListFile(info.getListFile(), target);
+      }
+      else if (info.isLocallyModified())
+      {
+        target.delete();
       }
       else
       {
-        buildMetaDataProperties.setProperty(
-            Constant.PROP_NAME_SCM_LOCALLY_MODIFIED, "unknown");
-        if (getLog().isInfoEnabled())
-        {
-          getLog().info("Failed to check modification status.");
-        }
+        target.getParentFile().mkdirs();
+        FileUtils.fileWrite(target.getAbsolutePath(), "");
+      }
+    }
+    catch (final IOException e)
+    {
+      if (getLog().isWarnEnabled())
+      {
+        getLog().warn("Cannot write list of modified files to " + target + '.',
+            e);
+      }
+    }
+  }
+
+  private void handleFailedModificationCheck(
+      final Properties buildMetaDataProperties, final Throwable cause)
+    throws ScmException
+  {
+    if (scmAccessInfo.isFailIndicated())
+    {
+      throw new ScmException(cause);
+    }
+    else
+    {
+      buildMetaDataProperties.setProperty(
+          Constant.PROP_NAME_SCM_LOCALLY_MODIFIED, "unknown");
+      if (getLog().isInfoEnabled())
+      {
+        getLog().info("Failed to check modification status.");
       }
     }
   }
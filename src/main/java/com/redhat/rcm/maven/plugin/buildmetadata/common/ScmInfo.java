@@ -17,9 +17,13 @@ package com.redhat.rcm.maven.plugin.buildmetadata.common;
 
 import java.io.File;
 
+import java.util.List;
+
 import org.apache.maven.scm.ScmVersion;
 import org.apache.maven.scm.manager.ScmManager;
 
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ModificationScope;
+
 /**
  * Bundles the SCM information to be passed to meta data providers.
  *
@@ -97,55 +101,887 @@ public final class ScmInfo
    */
   private final ScmVersion remoteVersion;
 
+  /**
+   * The flag to read the revision of Git working copies directly from the
+   * repository files instead of launching the <code>git</code> executable. If
+   * the files cannot be read, the SCM provider is used as a fallback.
+   */
+  private final boolean nativeGit;
+
+  /**
+   * The flag to read the last changed revision of Subversion working copies
+   * from the working copy metadata without contacting the repository server.
+   */
+  private final boolean svnLocalRevision;
+
+  /**
+   * The flag to fetch the revision and the local modifications of Mercurial
+   * working copies with a single command server process.
+   */
+  private final boolean hgCommandServer;
+
+  /**
+   * The flag to read the revision of Git working copies with a
+   * <code>git cat-file</code> process shared by all modules of the build if
+   * the repository files cannot be read.
+   */
+  private final boolean gitBatchProcess;
+
+  /**
+   * The flag to check Git working copies for modifications by comparing the
+   * index with the working tree instead of running <code>git status</code>.
+   */
+  private final boolean gitIndexStatus;
+
+  /**
+   * The flag to read the revision from the environment variables of the
+   * continuous integration server.
+   */
+  private final boolean ciRevision;
+
+  /**
+   * The names of the environment variables to read the revision identifier
+   * from.
+   */
+  private final List<String> ciRevisionIdVariables;
+
+  /**
+   * The names of the environment variables to read the revision date from.
+   */
+  private final List<String> ciRevisionDateVariables;
+
+  /**
+   * The flag to detect the type of SCM from the working copy if the project
+   * provides no SCM connection.
+   */
+  private final boolean detectScm;
+
+  /**
+   * The flag to determine the last change of each module of the build.
+   */
+  private final boolean moduleRevision;
+
+  /**
+   * The maximum number of commits to read to determine the last change of the
+   * modules of the build.
+   */
+  private final int moduleRevisionMaxCommits;
+
+  /**
+   * The flag to collect the revisions of working copies nested within the
+   * base directory.
+   */
+  private final boolean nestedWorkingCopies;
+
+  /**
+   * The number of directory levels to search for nested working copies.
+   */
+  private final int nestedWorkingCopiesDepth;
+
+  /**
+   * The flag to add metrics of the SCM queries to the build meta data.
+   */
+  private final boolean scmMetrics;
+
+  /**
+   * The flag to share the SCM results with all modules of the build located in
+   * the same working copy.
+   */
+  private final boolean shareScmResults;
+
+  /**
+   * The file to persist the revision to between builds. May be
+   * <code>null</code> if the revision is not to be persisted.
+   */
+  private final File revisionCacheFile;
+
+  /**
+   * The file with the SCM information computed before the build. May be
+   * <code>null</code> if the SCM is to be queried.
+   */
+  private final File revisionFile;
+
+  /**
+   * The name of the strategy to widen the query range if no change log has
+   * been found.
+   */
+  private final String queryRangeStrategy;
+
+  /**
+   * The file to store the snapshot of the working copy in after a check found
+   * no modifications. May be <code>null</code> if every check is to query all
+   * files.
+   */
+  private final File modificationSnapshotFile;
+
+  /**
+   * The part of the working copy to check for local modifications. May be
+   * <code>null</code> if the whole working copy is checked.
+   */
+  private final ModificationScope modificationScope;
+
+  /**
+   * The maximum number of modified files to report per type of modification.
+   */
+  private final int modifiedFilesLimit;
+
+  /**
+   * The file to write the complete list of modified files to. May be
+   * <code>null</code>.
+   */
+  private final File modifiedFilesFile;
+
+  /**
+   * The time in seconds after which no further change log query is started.
+   */
+  private final int queryDeadlineInSeconds;
+
+  /**
+   * The time in seconds a single SCM operation may take before it is stopped.
+   */
+  private final int operationTimeoutInSeconds;
+
+  /**
+   * The time in seconds all SCM operations may take together before they are
+   * stopped.
+   */
+  private final int timeoutInSeconds;
+
   // ****************************** Initializer *******************************
 
   // ****************************** Constructors ******************************
 
-  // CHECKSTYLE:OFF
   /**
    * Default constructor.
    *
-   * @param scmManager the manager instance to access the SCM system.
-   * @param connectionType the value for connectionType.
-   * @param scmDateFormat the value for scmDateFormat.
-   * @param basedir the value for basedir.
-   * @param scmCrendentials the authentication for the SCM server.
-   * @param tagBase the url of tags base directory (used by svn protocol).
-   * @param queryRangeInDays the range of the query in days to fetch change log
-   *          entries from the SCM.
-   * @param buildDatePattern the date pattern to use to format the build and
-   *          revision dates.
-   * @param scmControl the information to control the gathering of SCM meta
-   *          data.
-   * @param remoteVersion the branch or tag version on the remote server to
-   *          compare against.
-   * @note This argument list is quite long. The next time we touch this class,
-   *       we should provide a builder.
-   */
-  public ScmInfo(
-      final ScmManager scmManager,
-      final String connectionType, // NOPMD
-      final String scmDateFormat, final File basedir,
-      final ScmCredentials scmCrendentials, final String tagBase,
-      final int queryRangeInDays, final String buildDatePattern,
-      final ScmControl scmControl, final ScmVersion remoteVersion)
-  {
-    this.scmManager = scmManager;
-    this.connectionType = connectionType;
-    this.scmDateFormat = scmDateFormat;
-    this.basedir = basedir;
-    this.scmCrendentials = scmCrendentials;
-    this.tagBase = tagBase;
-    this.queryRangeInDays = queryRangeInDays;
-    this.buildDatePattern = buildDatePattern;
-    this.scmControl = scmControl;
-    this.remoteVersion = remoteVersion;
-  }
-
-  // CHECKSTYLE:ON
+   * @param builder the builder providing the values.
+   */
+  private ScmInfo(final Builder builder)
+  {
+    this.scmManager = builder.scmManager;
+    this.connectionType = builder.connectionType;
+    this.scmDateFormat = builder.scmDateFormat;
+    this.basedir = builder.basedir;
+    this.scmCrendentials = builder.scmCrendentials;
+    this.tagBase = builder.tagBase;
+    this.queryRangeInDays = builder.queryRangeInDays;
+    this.buildDatePattern = builder.buildDatePattern;
+    this.scmControl = builder.scmControl;
+    this.remoteVersion = builder.remoteVersion;
+    this.nativeGit = builder.nativeGit;
+    this.svnLocalRevision = builder.svnLocalRevision;
+    this.hgCommandServer = builder.hgCommandServer;
+    this.gitBatchProcess = builder.gitBatchProcess;
+    this.gitIndexStatus = builder.gitIndexStatus;
+    this.ciRevision = builder.ciRevision;
+    this.ciRevisionIdVariables = builder.ciRevisionIdVariables;
+    this.ciRevisionDateVariables = builder.ciRevisionDateVariables;
+    this.detectScm = builder.detectScm;
+    this.moduleRevision = builder.moduleRevision;
+    this.moduleRevisionMaxCommits = builder.moduleRevisionMaxCommits;
+    this.nestedWorkingCopies = builder.nestedWorkingCopies;
+    this.nestedWorkingCopiesDepth = builder.nestedWorkingCopiesDepth;
+    this.scmMetrics = builder.scmMetrics;
+    this.shareScmResults = builder.shareScmResults;
+    this.revisionCacheFile = builder.revisionCacheFile;
+    this.revisionFile = builder.revisionFile;
+    this.queryRangeStrategy = builder.queryRangeStrategy;
+    this.modificationSnapshotFile = builder.modificationSnapshotFile;
+    this.modificationScope = builder.modificationScope;
+    this.modifiedFilesLimit = builder.modifiedFilesLimit;
+    this.modifiedFilesFile = builder.modifiedFilesFile;
+    this.queryDeadlineInSeconds = builder.queryDeadlineInSeconds;
+    this.operationTimeoutInSeconds = builder.operationTimeoutInSeconds;
+    this.timeoutInSeconds = builder.timeoutInSeconds;
+  }
 
   // ****************************** Inner Classes *****************************
 
+  /**
+   * Collects the values to create an {@link ScmInfo} instance.
+   */
+  public static final class Builder
+  {
+    /**
+     * The manager instance to access the SCM system.
+     */
+    private ScmManager scmManager;
+
+    /**
+     * The SCM connection to use. Can either be "connection" or
+     * "developerConnection".
+     */
+    private String connectionType;
+
+    /**
+     * The date format of the log entries that are retrieved from the SCM.
+     */
+    private String scmDateFormat;
+
+    /**
+     * The directory where the files under SCM control are located.
+     */
+    private File basedir;
+
+    /**
+     * The authentication for the SCM server.
+     */
+    private ScmCredentials scmCrendentials;
+
+    /**
+     * The url of tags base directory (used by svn protocol).
+     */
+    private String tagBase;
+
+    /**
+     * The range of the query in days to fetch change log entries from the SCM.
+     */
+    private int queryRangeInDays;
+
+    /**
+     * The date pattern to use to format the build and revision dates.
+     */
+    private String buildDatePattern;
+
+    /**
+     * The information to control the gathering of SCM meta data.
+     */
+    private ScmControl scmControl;
+
+    /**
+     * The branch or tag version on the remote server to compare against.
+     */
+    private ScmVersion remoteVersion;
+
+    /**
+     * The flag to read the revision of Git working copies directly from the
+     * repository files.
+     */
+    private boolean nativeGit;
+
+    /**
+     * The flag to read the last changed revision of Subversion working copies
+     * from the working copy metadata.
+     */
+    private boolean svnLocalRevision;
+
+    /**
+     * The flag to fetch the revision and the local modifications of Mercurial
+     * working copies with a single command server process.
+     */
+    private boolean hgCommandServer;
+
+    /**
+     * The flag to read the revision of Git working copies with a
+     * <code>git cat-file</code> process shared by all modules of the build if
+     * the repository files cannot be read.
+     */
+    private boolean gitBatchProcess;
+
+    /**
+     * The flag to check Git working copies for modifications by comparing the
+     * index with the working tree instead of running <code>git status</code>.
+     */
+    private boolean gitIndexStatus;
+
+    /**
+     * The flag to read the revision from the environment variables of the
+     * continuous integration server.
+     */
+    private boolean ciRevision;
+
+    /**
+     * The names of the environment variables to read the revision identifier
+     * from.
+     */
+    private List<String> ciRevisionIdVariables;
+
+    /**
+     * The names of the environment variables to read the revision date from.
+     */
+    private List<String> ciRevisionDateVariables;
+
+    /**
+     * The flag to detect the type of SCM from the working copy if the project
+     * provides no SCM connection.
+     */
+    private boolean detectScm;
+
+    /**
+     * The flag to determine the last change of each module of the build.
+     */
+    private boolean moduleRevision;
+
+    /**
+     * The maximum number of commits to read to determine the last change of
+     * the modules of the build.
+     */
+    private int moduleRevisionMaxCommits;
+
+    /**
+     * The flag to collect the revisions of working copies nested within the
+     * base directory.
+     */
+    private boolean nestedWorkingCopies;
+
+    /**
+     * The number of directory levels to search for nested working copies.
+     */
+    private int nestedWorkingCopiesDepth;
+
+    /**
+     * The flag to add metrics of the SCM queries to the build meta data.
+     */
+    private boolean scmMetrics;
+
+    /**
+     * The flag to share the SCM results with all modules of the build located
+     * in the same working copy.
+     */
+    private boolean shareScmResults;
+
+    /**
+     * The file to persist the revision to between builds.
+     */
+    private File revisionCacheFile;
+
+    /**
+     * The file with the SCM information computed before the build.
+     */
+    private File revisionFile;
+
+    /**
+     * The name of the strategy to widen the query range.
+     */
+    private String queryRangeStrategy;
+
+    /**
+     * The file to store the snapshot of the working copy in.
+     */
+    private File modificationSnapshotFile;
+
+    /**
+     * The part of the working copy to check for local modifications.
+     */
+    private ModificationScope modificationScope;
+
+    /**
+     * The maximum number of modified files to report per type of
+     * modification.
+     */
+    private int modifiedFilesLimit;
+
+    /**
+     * The file to write the complete list of modified files to.
+     */
+    private File modifiedFilesFile;
+
+    /**
+     * The time in seconds after which no further change log query is started.
+     */
+    private int queryDeadlineInSeconds;
+
+    /**
+     * The time in seconds a single SCM operation may take before it is
+     * stopped.
+     */
+    private int operationTimeoutInSeconds;
+
+    /**
+     * The time in seconds all SCM operations may take together before they
+     * are stopped.
+     */
+    private int timeoutInSeconds;
+
+    /**
+     * Sets the manager instance to access the SCM system.
+     *
+     * @param scmManager the manager instance to access the SCM system.
+     * @return a reference to this builder.
+     */
+    public Builder setScmManager(final ScmManager scmManager)
+    {
+      this.scmManager = scmManager;
+      return this;
+    }
+
+    /**
+     * Sets the SCM connection to use. Can either be "connection" or
+     * "developerConnection".
+     *
+     * @param connectionType the SCM connection to use.
+     * @return a reference to this builder.
+     */
+    public Builder setConnectionType(final String connectionType)
+    {
+      this.connectionType = connectionType;
+      return this;
+    }
+
+    /**
+     * Sets the date format of the log entries that are retrieved from the SCM.
+     *
+     * @param scmDateFormat the date format of the log entries.
+     * @return a reference to this builder.
+     */
+    public Builder setScmDateFormat(final String scmDateFormat)
+    {
+      this.scmDateFormat = scmDateFormat;
+      return this;
+    }
+
+    /**
+     * Sets the directory where the files under SCM control are located.
+     *
+     * @param basedir the directory where the files under SCM control are
+     *          located.
+     * @return a reference to this builder.
+     */
+    public Builder setBasedir(final File basedir)
+    {
+      this.basedir = basedir;
+      return this;
+    }
+
+    /**
+     * Sets the authentication for the SCM server.
+     *
+     * @param scmCrendentials the authentication for the SCM server.
+     * @return a reference to this builder.
+     */
+    public Builder setScmCrendentials(final ScmCredentials scmCrendentials)
+    {
+      this.scmCrendentials = scmCrendentials;
+      return this;
+    }
+
+    /**
+     * Sets the url of tags base directory (used by svn protocol).
+     *
+     * @param tagBase the url of tags base directory.
+     * @return a reference to this builder.
+     */
+    public Builder setTagBase(final String tagBase)
+    {
+      this.tagBase = tagBase;
+      return this;
+    }
+
+    /**
+     * Sets the range of the query in days to fetch change log entries from the
+     * SCM.
+     *
+     * @param queryRangeInDays the range of the query in days.
+     * @return a reference to this builder.
+     */
+    public Builder setQueryRangeInDays(final int queryRangeInDays)
+    {
+      this.queryRangeInDays = queryRangeInDays;
+      return this;
+    }
+
+    /**
+     * Sets the date pattern to use to format the build and revision dates.
+     *
+     * @param buildDatePattern the date pattern to use.
+     * @return a reference to this builder.
+     */
+    public Builder setBuildDatePattern(final String buildDatePattern)
+    {
+      this.buildDatePattern = buildDatePattern;
+      return this;
+    }
+
+    /**
+     * Sets the information to control the gathering of SCM meta data.
+     *
+     * @param scmControl the information to control the gathering of SCM meta
+     *          data.
+     * @return a reference to this builder.
+     */
+    public Builder setScmControl(final ScmControl scmControl)
+    {
+      this.scmControl = scmControl;
+      return this;
+    }
+
+    /**
+     * Sets the branch or tag version on the remote server to compare against.
+     *
+     * @param remoteVersion the branch or tag version on the remote server.
+     * @return a reference to this builder.
+     */
+    public Builder setRemoteVersion(final ScmVersion remoteVersion)
+    {
+      this.remoteVersion = remoteVersion;
+      return this;
+    }
+
+    /**
+     * Sets the flag to read the revision of Git working copies directly from
+     * the repository files.
+     *
+     * @param nativeGit the flag to read the revision of Git working copies
+     *          directly from the repository files.
+     * @return a reference to this builder.
+     */
+    public Builder setNativeGit(final boolean nativeGit)
+    {
+      this.nativeGit = nativeGit;
+      return this;
+    }
+
+    /**
+     * Sets the flag to read the last changed revision of Subversion working
+     * copies from the working copy metadata.
+     *
+     * @param svnLocalRevision the flag to read the last changed revision of
+     *          Subversion working copies from the working copy metadata.
+     * @return a reference to this builder.
+     */
+    public Builder setSvnLocalRevision(final boolean svnLocalRevision)
+    {
+      this.svnLocalRevision = svnLocalRevision;
+      return this;
+    }
+
+    /**
+     * Sets the flag to fetch the revision and the local modifications of
+     * Mercurial working copies with a single command server process.
+     *
+     * @param hgCommandServer the flag to fetch the revision and the local
+     *          modifications of Mercurial working copies with a single command
+     *          server process.
+     * @return a reference to this builder.
+     */
+    public Builder setHgCommandServer(final boolean hgCommandServer)
+    {
+      this.hgCommandServer = hgCommandServer;
+      return this;
+    }
+
+    /**
+     * Sets the flag to read the revision of Git working copies with a
+     * <code>git cat-file</code> process shared by all modules of the build if
+     * the repository files cannot be read.
+     *
+     * @param gitBatchProcess the flag to read the revision of Git working
+     *          copies with a shared <code>git cat-file</code> process.
+     * @return a reference to this builder.
+     */
+    public Builder setGitBatchProcess(final boolean gitBatchProcess)
+    {
+      this.gitBatchProcess = gitBatchProcess;
+      return this;
+    }
+
+    /**
+     * Sets the flag to check Git working copies for modifications by
+     * comparing the index with the working tree instead of running
+     * <code>git status</code>.
+     *
+     * @param gitIndexStatus the flag to check Git working copies for
+     *          modifications by comparing the index with the working tree.
+     * @return a reference to this builder.
+     */
+    public Builder setGitIndexStatus(final boolean gitIndexStatus)
+    {
+      this.gitIndexStatus = gitIndexStatus;
+      return this;
+    }
+
+    /**
+     * Sets the flag to read the revision from the environment variables of
+     * the continuous integration server.
+     *
+     * @param ciRevision the flag to read the revision from the environment
+     *          variables of the continuous integration server.
+     * @return a reference to this builder.
+     */
+    public Builder setCiRevision(final boolean ciRevision)
+    {
+      this.ciRevision = ciRevision;
+      return this;
+    }
+
+    /**
+     * Sets the names of the environment variables to read the revision
+     * identifier from.
+     *
+     * @param ciRevisionIdVariables the names of the environment variables to
+     *          read the revision identifier from.
+     * @return a reference to this builder.
+     */
+    public Builder setCiRevisionIdVariables(
+        final List<String> ciRevisionIdVariables)
+    {
+      this.ciRevisionIdVariables = ciRevisionIdVariables;
+      return this;
+    }
+
+    /**
+     * Sets the names of the environment variables to read the revision date
+     * from.
+     *
+     * @param ciRevisionDateVariables the names of the environment variables
+     *          to read the revision date from.
+     * @return a reference to this builder.
+     */
+    public Builder setCiRevisionDateVariables(
+        final List<String> ciRevisionDateVariables)
+    {
+      this.ciRevisionDateVariables = ciRevisionDateVariables;
+      return this;
+    }
+
+    /**
+     * Sets the flag to detect the type of SCM from the working copy if the
+     * project provides no SCM connection.
+     *
+     * @param detectScm the flag to detect the type of SCM from the working
+     *          copy.
+     * @return a reference to this builder.
+     */
+    public Builder setDetectScm(final boolean detectScm)
+    {
+      this.detectScm = detectScm;
+      return this;
+    }
+
+    /**
+     * Sets the flag to determine the last change of each module of the build.
+     *
+     * @param moduleRevision the flag to determine the last change of each
+     *          module of the build.
+     * @return a reference to this builder.
+     */
+    public Builder setModuleRevision(final boolean moduleRevision)
+    {
+      this.moduleRevision = moduleRevision;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of commits to read to determine the last change
+     * of the modules of the build.
+     *
+     * @param moduleRevisionMaxCommits the maximum number of commits to read.
+     * @return a reference to this builder.
+     */
+    public Builder setModuleRevisionMaxCommits(
+        final int moduleRevisionMaxCommits)
+    {
+      this.moduleRevisionMaxCommits = moduleRevisionMaxCommits;
+      return this;
+    }
+
+    /**
+     * Sets the flag to collect the revisions of working copies nested within
+     * the base directory.
+     *
+     * @param nestedWorkingCopies the flag to collect the revisions of working
+     *          copies nested within the base directory.
+     * @return a reference to this builder.
+     */
+    public Builder setNestedWorkingCopies(final boolean nestedWorkingCopies)
+    {
+      this.nestedWorkingCopies = nestedWorkingCopies;
+      return this;
+    }
+
+    /**
+     * Sets the number of directory levels to search for nested working
+     * copies.
+     *
+     * @param nestedWorkingCopiesDepth the number of directory levels to search
+     *          for nested working copies.
+     * @return a reference to this builder.
+     */
+    public Builder setNestedWorkingCopiesDepth(
+        final int nestedWorkingCopiesDepth)
+    {
+      this.nestedWorkingCopiesDepth = nestedWorkingCopiesDepth;
+      return this;
+    }
+
+    /**
+     * Sets the flag to add metrics of the SCM queries to the build meta data.
+     *
+     * @param scmMetrics the flag to add metrics of the SCM queries to the
+     *          build meta data.
+     * @return a reference to this builder.
+     */
+    public Builder setScmMetrics(final boolean scmMetrics)
+    {
+      this.scmMetrics = scmMetrics;
+      return this;
+    }
+
+    /**
+     * Sets the flag to share the SCM results with all modules of the build
+     * located in the same working copy.
+     *
+     * @param shareScmResults the flag to share the SCM results with all modules
+     *          of the build located in the same working copy.
+     * @return a reference to this builder.
+     */
+    public Builder setShareScmResults(final boolean shareScmResults)
+    {
+      this.shareScmResults = shareScmResults;
+      return this;
+    }
+
+    /**
+     * Sets the file to persist the revision to between builds.
+     *
+     * @param revisionCacheFile the file to persist the revision to between
+     *          builds, <code>null</code> if the revision is not to be
+     *          persisted.
+     * @return a reference to this builder.
+     */
+    public Builder setRevisionCacheFile(final File revisionCacheFile)
+    {
+      this.revisionCacheFile = revisionCacheFile;
+      return this;
+    }
+
+    /**
+     * Sets the file with the SCM information computed before the build.
+     *
+     * @param revisionFile the file with the SCM information computed before
+     *          the build, <code>null</code> if the SCM is to be queried.
+     * @return a reference to this builder.
+     */
+    public Builder setRevisionFile(final File revisionFile)
+    {
+      this.revisionFile = revisionFile;
+      return this;
+    }
+
+    /**
+     * Sets the name of the strategy to widen the query range if no change log
+     * has been found.
+     *
+     * @param queryRangeStrategy the name of the strategy to widen the query
+     *          range.
+     * @return a reference to this builder.
+     */
+    public Builder setQueryRangeStrategy(final String queryRangeStrategy)
+    {
+      this.queryRangeStrategy = queryRangeStrategy;
+      return this;
+    }
+
+    /**
+     * Sets the file to store the snapshot of the working copy in after a check
+     * found no modifications.
+     *
+     * @param modificationSnapshotFile the file to store the snapshot in,
+     *          <code>null</code> if every check is to query all files.
+     * @return a reference to this builder.
+     */
+    public Builder setModificationSnapshotFile(
+        final File modificationSnapshotFile)
+    {
+      this.modificationSnapshotFile = modificationSnapshotFile;
+      return this;
+    }
+
+    /**
+     * Sets the part of the working copy to check for local modifications.
+     *
+     * @param modificationScope the part of the working copy to check,
+     *          <code>null</code> if the whole working copy is checked.
+     * @return a reference to this builder.
+     */
+    public Builder setModificationScope(
+        final ModificationScope modificationScope)
+    {
+      this.modificationScope = modificationScope;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of modified files to report per type of
+     * modification.
+     *
+     * @param modifiedFilesLimit the maximum number of modified files to report
+     *          per type, a value of <code>0</code> or less reports all files.
+     * @return a reference to this builder.
+     */
+    public Builder setModifiedFilesLimit(final int modifiedFilesLimit)
+    {
+      this.modifiedFilesLimit = modifiedFilesLimit;
+      return this;
+    }
+
+    /**
+     * Sets the file to write the complete list of modified files to.
+     *
+     * @param modifiedFilesFile the file to write the complete list to,
+     *          <code>null</code> if the list is not to be written.
+     * @return a reference to this builder.
+     */
+    public Builder setModifiedFilesFile(final File modifiedFilesFile)
+    {
+      this.modifiedFilesFile = modifiedFilesFile;
+      return this;
+    }
+
+    /**
+     * Sets the time in seconds after which no further change log query is
+     * started.
+     *
+     * @param queryDeadlineInSeconds the time in seconds after which no further
+     *          change log query is started, <code>0</code> for no deadline.
+     * @return a reference to this builder.
+     */
+    public Builder setQueryDeadlineInSeconds(final int queryDeadlineInSeconds)
+    {
+      this.queryDeadlineInSeconds = queryDeadlineInSeconds;
+      return this;
+    }
+
+    /**
+     * Sets the time in seconds a single SCM operation may take before it is
+     * stopped.
+     *
+     * @param operationTimeoutInSeconds the time in seconds a single SCM
+     *          operation may take, <code>0</code> for no deadline.
+     * @return a reference to this builder.
+     */
+    public Builder setOperationTimeoutInSeconds(
+        final int operationTimeoutInSeconds)
+    {
+      this.operationTimeoutInSeconds = operationTimeoutInSeconds;
+      return this;
+    }
+
+    /**
+     * Sets the time in seconds all SCM operations may take together before
+     * they are stopped.
+     *
+     * @param timeoutInSeconds the time in seconds all SCM operations may take,
+     *          <code>0</code> for no deadline.
+     * @return a reference to this builder.
+     */
+    public Builder setTimeoutInSeconds(final int timeoutInSeconds)
+    {
+      this.timeoutInSeconds = timeoutInSeconds;
+      return this;
+    }
+
+    /**
+     * Creates the SCM information instance.
+     *
+     * @return the SCM information instance.
+     */
+    public ScmInfo build()
+    {
+      return new ScmInfo(this);
+    }
+  }
+
   // ********************************* Methods ********************************
 
   // --- init -----------------------------------------------------------------
@@ -272,6 +1108,299 @@ public final class ScmInfo
     return remoteVersion;
   }
 
+  /**
+   * Returns the flag to read the revision of Git working copies directly from
+   * the repository files instead of launching the <code>git</code> executable.
+   * If the files cannot be read, the SCM provider is used as a fallback.
+   *
+   * @return the flag to read the revision of Git working copies directly from
+   *         the repository files.
+   */
+  public boolean isNativeGit()
+  {
+    return nativeGit;
+  }
+
+  /**
+   * Returns the flag to read the last changed revision of Subversion working
+   * copies from the working copy metadata without contacting the repository
+   * server.
+   *
+   * @return the flag to read the last changed revision of Subversion working
+   *         copies from the working copy metadata.
+   */
+  public boolean isSvnLocalRevision()
+  {
+    return svnLocalRevision;
+  }
+
+  /**
+   * Returns the flag to fetch the revision and the local modifications of
+   * Mercurial working copies with a single command server process.
+   *
+   * @return the flag to fetch the revision and the local modifications of
+   *         Mercurial working copies with a single command server process.
+   */
+  public boolean isHgCommandServer()
+  {
+    return hgCommandServer;
+  }
+
+  /**
+   * Returns the flag to read the revision of Git working copies with a
+   * <code>git cat-file</code> process shared by all modules of the build if
+   * the repository files cannot be read.
+   *
+   * @return the flag to read the revision of Git working copies with a shared
+   *         <code>git cat-file</code> process.
+   */
+  public boolean isGitBatchProcess()
+  {
+    return gitBatchProcess;
+  }
+
+  /**
+   * Returns the flag to check Git working copies for modifications by
+   * comparing the index with the working tree instead of running
+   * <code>git status</code>.
+   *
+   * @return the flag to check Git working copies for modifications by
+   *         comparing the index with the working tree.
+   */
+  public boolean isGitIndexStatus()
+  {
+    return gitIndexStatus;
+  }
+
+  /**
+   * Returns the flag to read the revision from the environment variables of
+   * the continuous integration server.
+   *
+   * @return the flag to read the revision from the environment variables of
+   *         the continuous integration server.
+   */
+  public boolean isCiRevision()
+  {
+    return ciRevision;
+  }
+
+  /**
+   * Returns the names of the environment variables to read the revision
+   * identifier from.
+   *
+   * @return the names of the environment variables to read the revision
+   *         identifier from. May be <code>null</code> or empty to use the
+   *         defaults.
+   */
+  public List<String> getCiRevisionIdVariables()
+  {
+    return ciRevisionIdVariables;
+  }
+
+  /**
+   * Returns the names of the environment variables to read the revision date
+   * from.
+   *
+   * @return the names of the environment variables to read the revision date
+   *         from. May be <code>null</code> or empty to use the defaults.
+   */
+  public List<String> getCiRevisionDateVariables()
+  {
+    return ciRevisionDateVariables;
+  }
+
+  /**
+   * Returns the flag to detect the type of SCM from the working copy if the
+   * project provides no SCM connection.
+   *
+   * @return the flag to detect the type of SCM from the working copy.
+   */
+  public boolean isDetectScm()
+  {
+    return detectScm;
+  }
+
+  /**
+   * Returns the flag to determine the last change of each module of the build.
+   *
+   * @return the flag to determine the last change of each module of the build.
+   */
+  public boolean isModuleRevision()
+  {
+    return moduleRevision;
+  }
+
+  /**
+   * Returns the maximum number of commits to read to determine the last change
+   * of the modules of the build.
+   *
+   * @return the maximum number of commits to read.
+   */
+  public int getModuleRevisionMaxCommits()
+  {
+    return moduleRevisionMaxCommits;
+  }
+
+  /**
+   * Returns the flag to collect the revisions of working copies nested within
+   * the base directory.
+   *
+   * @return the flag to collect the revisions of nested working copies.
+   */
+  public boolean isNestedWorkingCopies()
+  {
+    return nestedWorkingCopies;
+  }
+
+  /**
+   * Returns the number of directory levels to search for nested working
+   * copies.
+   *
+   * @return the number of directory levels to search for nested working
+   *         copies.
+   */
+  public int getNestedWorkingCopiesDepth()
+  {
+    return nestedWorkingCopiesDepth;
+  }
+
+  /**
+   * Returns the flag to add metrics of the SCM queries to the build meta data.
+   *
+   * @return the flag to add metrics of the SCM queries to the build meta data.
+   */
+  public boolean isScmMetrics()
+  {
+    return scmMetrics;
+  }
+
+  /**
+   * Returns the flag to share the SCM results with all modules of the build
+   * located in the same working copy.
+   *
+   * @return the flag to share the SCM results with all modules of the build
+   *         located in the same working copy.
+   */
+  public boolean isShareScmResults()
+  {
+    return shareScmResults;
+  }
+
+  /**
+   * Returns the file to persist the revision to between builds.
+   *
+   * @return the file to persist the revision to between builds,
+   *         <code>null</code> if the revision is not to be persisted.
+   */
+  public File getRevisionCacheFile()
+  {
+    return revisionCacheFile;
+  }
+
+  /**
+   * Returns the file with the SCM information computed before the build.
+   *
+   * @return the file with the SCM information computed before the build,
+   *         <code>null</code> if the SCM is to be queried.
+   */
+  public File getRevisionFile()
+  {
+    return revisionFile;
+  }
+
+  /**
+   * Returns the name of the strategy to widen the query range if no change log
+   * has been found.
+   *
+   * @return the name of the strategy to widen the query range.
+   */
+  public String getQueryRangeStrategy()
+  {
+    return queryRangeStrategy;
+  }
+
+  /**
+   * Returns the file to store the snapshot of the working copy in after a
+   * check found no modifications.
+   *
+   * @return the file to store the snapshot in, <code>null</code> if every
+   *         check is to query all files.
+   */
+  public File getModificationSnapshotFile()
+  {
+    return modificationSnapshotFile;
+  }
+
+  /**
+   * Returns the part of the working copy to check for local modifications.
+   *
+   * @return the part of the working copy to check, <code>null</code> if the
+   *         whole working copy is checked.
+   */
+  public ModificationScope getModificationScope()
+  {
+    return modificationScope;
+  }
+
+  /**
+   * Returns the maximum number of modified files to report per type of
+   * modification.
+   *
+   * @return the maximum number of modified files to report per type, a value
+   *         of <code>0</code> or less reports all files.
+   */
+  public int getModifiedFilesLimit()
+  {
+    return modifiedFilesLimit;
+  }
+
+  /**
+   * Returns the file to write the complete list of modified files to.
+   *
+   * @return the file to write the complete list to, <code>null</code> if the
+   *         list is not to be written.
+   */
+  public File getModifiedFilesFile()
+  {
+    return modifiedFilesFile;
+  }
+
+  /**
+   * Returns the time in seconds after which no further change log query is
+   * started.
+   *
+   * @return the time in seconds after which no further change log query is
+   *         started, <code>0</code> for no deadline.
+   */
+  public int getQueryDeadlineInSeconds()
+  {
+    return queryDeadlineInSeconds;
+  }
+
+  /**
+   * Returns the time in seconds a single SCM operation may take before it is
+   * stopped.
+   *
+   * @return the time in seconds a single SCM operation may take,
+   *         <code>0</code> for no deadline.
+   */
+  public int getOperationTimeoutInSeconds()
+  {
+    return operationTimeoutInSeconds;
+  }
+
+  /**
+   * Returns the time in seconds all SCM operations may take together before
+   * they are stopped.
+   *
+   * @return the time in seconds all SCM operations may take, <code>0</code>
+   *         for no deadline.
+   */
+  public int getTimeoutInSeconds()
+  {
+    return timeoutInSeconds;
+  }
+
   // --- business -------------------------------------------------------------
 
   // --- object basics --------------------------------------------------------
@@ -15,9 +15,15 @@
  */
 package com.redhat.rcm.maven.plugin.buildmetadata.data;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Properties;
+import java.util.concurrent.Callable;
 
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.scm.manager.NoSuchScmProviderException;
 import org.apache.maven.scm.provider.ScmProviderRepositoryWithHost;
@@ -25,13 +31,22 @@ import org.apache.maven.scm.repository.ScmRepository;
 import org.apache.maven.scm.repository.ScmRepositoryException;
 import org.codehaus.plexus.util.StringUtils;
 
+import com.redhat.rcm.maven.plugin.buildmetadata.common.Constant;
+import com.redhat.rcm.maven.plugin.buildmetadata.common.NestedRevisionCollector;
+import com.redhat.rcm.maven.plugin.buildmetadata.common.RevisionDescriptor;
 import com.redhat.rcm.maven.plugin.buildmetadata.common.RevisionHelper;
 import com.redhat.rcm.maven.plugin.buildmetadata.common.ScmControl;
 import com.redhat.rcm.maven.plugin.buildmetadata.common.ScmCredentials;
 import com.redhat.rcm.maven.plugin.buildmetadata.common.ScmInfo;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmException;
 import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmNoRevisionException;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmResultCache;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmTypeDetector;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.WorkingCopyLocator;
 import com.redhat.rcm.maven.plugin.buildmetadata.scm.maven.ScmAccessInfo;
 import com.redhat.rcm.maven.plugin.buildmetadata.scm.maven.ScmConnectionInfo;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.git.GitProcessRegistry;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.maven.ScmRepositoryRegistry;
 
 
 /**
@@ -61,8 +76,24 @@ public class ScmMetaDataProvider extends AbstractMetaDataProvider
    * @see com.redhat.rcm.maven.plugin.buildmetadata.data.AbstractMetaDataProvider#AbstractMetaDataProvider()
    */
   public ScmMetaDataProvider(final MavenProject project, final ScmInfo scmInfo)
+  {
+    this(project, null, scmInfo);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param project the Maven project.
+   * @param session the Maven session to share SCM results with the other
+   *          modules of the build. May be <code>null</code>.
+   * @param scmInfo the value for scmInfo.
+   * @see com.redhat.rcm.maven.plugin.buildmetadata.data.AbstractMetaDataProvider#AbstractMetaDataProvider()
+   */
+  public ScmMetaDataProvider(final MavenProject project,
+      final MavenSession session, final ScmInfo scmInfo)
   {
     this.project = project;
+    this.session = session;
     this.scmInfo = scmInfo;
   }
 
@@ -85,17 +116,46 @@ public class ScmMetaDataProvider extends AbstractMetaDataProvider
   public final void provideBuildMetaData(final Properties buildMetaDataProperties)
   {
     final ScmControl scmControl = scmInfo.getScmControl();
+    final File revisionFile = scmInfo.getRevisionFile();
     if (scmControl.isAddScmInfo() && !scmControl.isOffline()
-        && project.getScm() != null)
+        && revisionFile != null && revisionFile.isFile())
+    {
+      provideRevisionFile(buildMetaDataProperties, scmControl, revisionFile);
+    }
+    else if (scmControl.isAddScmInfo() && !scmControl.isOffline()
+             && (project.getScm() != null || scmInfo.isDetectScm()))
     {
       try
       {
-        final ScmConnectionInfo scmConnectionInfo = loadConnectionInfo();
+        final ScmRepositoryRegistry registry =
+            session != null ? ScmRepositoryRegistry.getInstance(session)
+                : new ScmRepositoryRegistry();
+        final ScmConnectionInfo scmConnectionInfo =
+            project.getScm() != null ? loadConnectionInfo(registry)
+                : detectConnectionInfo();
+        if (scmConnectionInfo == null)
+        {
+          getLog().debug("Skipping SCM data since " + scmInfo.getBasedir()
+                         + " is not within a working copy.");
+          return;
+        }
         final ScmAccessInfo scmAccessInfo = createScmAccessInfo();
-        final RevisionHelper helper =
-            new RevisionHelper(scmInfo.getScmManager(), scmConnectionInfo,
-                scmAccessInfo, scmInfo.getBuildDatePattern());
-        helper.provideScmBuildInfo(buildMetaDataProperties, scmControl);
+        try
+        {
+          final NestedRevisionCollector nestedCollector =
+              startNestedRevisionCollector(scmAccessInfo);
+          final RevisionHelper helper =
+              createRevisionHelper(registry, scmConnectionInfo, scmAccessInfo);
+          helper.provideScmBuildInfo(buildMetaDataProperties, scmControl);
+          if (nestedCollector != null)
+          {
+            nestedCollector.provideBuildMetaData(buildMetaDataProperties);
+          }
+        }
+        finally
+        {
+          releaseGitProcesses(scmAccessInfo.getGitProcessRegistry());
+        }
       }
       catch (final IllegalArgumentException e)
       {
@@ -127,10 +187,224 @@ public class ScmMetaDataProvider extends AbstractMetaDataProvider
     }
   }
 
+  /**
+   * Provides the SCM build information from the file computed before the
+   * build. The file is read once per build session and the SCM is not
+   * accessed. The URL of the SCM connection of the project is preferred over
+   * the URL of the file, since the file is shared by all modules.
+   *
+   * @param buildMetaDataProperties the build meta data properties.
+   * @param scmControl the properties to control the gathering of SCM info.
+   * @param revisionFile the file to read.
+   * @throws ScmException if the file cannot be read or local modifications
+   *           are recorded and not permitted.
+   */
+  private void provideRevisionFile(final Properties buildMetaDataProperties,
+      final ScmControl scmControl, final File revisionFile)
+    throws ScmException
+  {
+    final RevisionDescriptor descriptor = readRevisionFile(revisionFile);
+    descriptor.provide(buildMetaDataProperties, scmInfo.getBuildDatePattern(),
+        scmControl.isValidateCheckout());
+    if (project.getScm() != null)
+    {
+      try
+      {
+        buildMetaDataProperties.setProperty(Constant.PROP_NAME_SCM_URL,
+            getConnection());
+      }
+      catch (final IllegalStateException e)
+      {
+        getLog().debug("Using SCM URL of " + revisionFile + '.');
+      }
+    }
+    if (getLog().isDebugEnabled())
+    {
+      getLog().debug("Read SCM revision " + descriptor.getRevisionId()
+                     + " from " + revisionFile + '.');
+    }
+
+    if (scmControl.isValidateCheckout() && descriptor.isLocallyModified()
+        && scmControl.isFailOnLocalModifications()
+        && !scmControl.isIgnoreDotFilesInBaseDir())
+    {
+      throw new ScmException("Local Modifications detected ("
+                             + descriptor.getLocallyModifiedFiles() + ").");
+    }
+  }
+
+  private RevisionDescriptor readRevisionFile(final File revisionFile)
+    throws ScmException
+  {
+    final Callable<RevisionDescriptor> read =
+        new Callable<RevisionDescriptor>()
+        {
+          public RevisionDescriptor call() throws IOException
+          {
+            return RevisionDescriptor.read(revisionFile);
+          }
+        };
+    try
+    {
+      if (session != null)
+      {
+        return ScmResultCache.getInstance(session).get(
+            "revisionFile|" + revisionFile.getAbsolutePath(), read);
+      }
+      return read.call();
+    }
+    catch (final Exception e)
+    {
+      throw new ScmNoRevisionException("Cannot read SCM revision from "
+                                       + revisionFile + '.', e);
+    }
+  }
+
+  /**
+   * Detects the working copy the base directory belongs to and creates the
+   * connection information from its root directory. No connection URL needs
+   * to be parsed. The revision is read by the local reader of the detected
+   * type, unless the reader has been disabled.
+   *
+   * @return the connection information, <code>null</code> if the base
+   *         directory is not within a working copy.
+   */
+  private ScmConnectionInfo detectConnectionInfo()
+  {
+    final ScmTypeDetector detector =
+        session != null ? ScmTypeDetector.getInstance(session)
+            : new ScmTypeDetector();
+    final ScmTypeDetector.WorkingCopy workingCopy =
+        detector.detect(scmInfo.getBasedir());
+    if (workingCopy == null)
+    {
+      return null;
+    }
+
+    final String scmType = workingCopy.getScmType();
+    if (getLog().isDebugEnabled())
+    {
+      getLog().debug("Detected working copy " + workingCopy + '.');
+    }
+
+    final String path =
+        workingCopy.getRoot().getAbsolutePath().replace('\\', '/');
+    final ScmConnectionInfo info = new ScmConnectionInfo();
+    info.setScmConnectionUrl("scm:" + scmType + ":file://"
+                             + (path.startsWith("/") ? "" : "/") + path);
+    info.setTagBase(scmInfo.getTagBase());
+    info.setRemoteVersion(scmInfo.getRemoteVersion());
+    return info;
+  }
+
+  /**
+   * Starts to collect the revisions of the working copies nested within the
+   * base directory, if requested. The nested working copies are queried while
+   * the revision of the project is fetched.
+   *
+   * @param scmAccessInfo the information to query the SCM.
+   * @return the running collector, <code>null</code> if not requested.
+   */
+  private NestedRevisionCollector startNestedRevisionCollector(
+      final ScmAccessInfo scmAccessInfo)
+  {
+    if (!scmInfo.isNestedWorkingCopies())
+    {
+      return null;
+    }
+    final NestedRevisionCollector collector =
+        new NestedRevisionCollector(scmInfo.getBasedir(),
+            scmInfo.getNestedWorkingCopiesDepth(), scmAccessInfo,
+            scmInfo.getBuildDatePattern());
+    collector.start(scmInfo.getScmControl().isValidateCheckout());
+    return collector;
+  }
+
+  /**
+   * Creates the helper to fetch the revision information. If results are to be
+   * shared, the results are stored in the cache of the session. For
+   * distributed SCMs, whose results do not depend on the module, the helper
+   * queries the root of the working copy, so all modules within the working
+   * copy share a single query. For other SCMs the module directory is queried
+   * as usual, since the revision and the modifications of a module differ
+   * from those of the whole working copy.
+   *
+   * @param registry the registry to look up SCM repositories and providers.
+   * @param scmConnectionInfo the information to connect to the SCM.
+   * @param scmAccessInfo the information to query the SCM.
+   * @return the helper to fetch the revision information.
+   */
+  private RevisionHelper createRevisionHelper(
+      final ScmRepositoryRegistry registry,
+      final ScmConnectionInfo scmConnectionInfo,
+      final ScmAccessInfo scmAccessInfo)
+  {
+    if (scmInfo.isShareScmResults() && session != null)
+    {
+      final String scmType = scmConnectionInfo.getScmType();
+      final File root =
+          isDistributed(scmType) ? WorkingCopyLocator.findRoot(
+              scmAccessInfo.getRootDirectory(), scmType) : scmAccessInfo
+              .getRootDirectory();
+      if (root != null)
+      {
+        scmAccessInfo.setRootDirectory(root);
+        final String key = createResultCacheKey(scmConnectionInfo, root);
+        if (getLog().isDebugEnabled())
+        {
+          getLog().debug("Sharing SCM results for '" + key + "'.");
+        }
+        return new RevisionHelper(scmInfo.getScmManager(), registry,
+            scmConnectionInfo, scmAccessInfo, scmInfo.getBuildDatePattern(),
+            ScmResultCache.getInstance(session), key);
+      }
+    }
+
+    return new RevisionHelper(scmInfo.getScmManager(), registry,
+        scmConnectionInfo, scmAccessInfo, scmInfo.getBuildDatePattern(), null,
+        null);
+  }
+
+  /**
+   * Checks whether the results of the given SCM depend on the local
+   * repository only, so that they are the same for all modules of a working
+   * copy.
+   *
+   * @param scmType the type of the SCM.
+   * @return <code>true</code> for distributed SCMs, <code>false</code>
+   *         otherwise.
+   */
+  private static boolean isDistributed(final String scmType)
+  {
+    return "git".equals(scmType) || "hg".equals(scmType)
+           || "bazaar".equals(scmType);
+  }
+
+  /**
+   * Creates the key to identify the working copy in the result cache. Maven
+   * appends the artifact identifier to an inherited connection URL, so for
+   * distributed SCMs, whose results depend on the local repository only, the
+   * URL is reduced to the SCM type.
+   *
+   * @param scmConnectionInfo the information to connect to the SCM.
+   * @param root the directory queried for the results.
+   * @return the key to identify the working copy.
+   */
+  private static String createResultCacheKey(
+      final ScmConnectionInfo scmConnectionInfo, final File root)
+  {
+    final String scmType = scmConnectionInfo.getScmType();
+    final String url =
+        isDistributed(scmType) ? scmType : scmConnectionInfo
+            .getConnectionUrl();
+    return root.getAbsolutePath() + '|' + url;
+  }
+
   /**
    * Load user name password from settings if user has not set them via JVM
    * properties.
    *
+   * @param registry the registry to look up the parsed SCM repository.
    * @return the connection information to connect to the SCM system.
    * @throws IllegalStateException if the connection string to the SCM cannot be
    *           fetched.
@@ -139,7 +413,8 @@ public class ScmMetaDataProvider extends AbstractMetaDataProvider
    * @throws NoSuchScmProviderException if there is no provider for the SCM
    *           connection URL.
    */
-  private ScmConnectionInfo loadConnectionInfo() throws IllegalStateException,
+  private ScmConnectionInfo loadConnectionInfo(
+      final ScmRepositoryRegistry registry) throws IllegalStateException,
     ScmRepositoryException, NoSuchScmProviderException
   {
     final String scmConnection = getConnection();
@@ -147,7 +422,8 @@ public class ScmMetaDataProvider extends AbstractMetaDataProvider
     if (credentials.getUserName() == null || credentials.getPassword() == null)
     {
       final ScmRepository repository =
-          scmInfo.getScmManager().makeScmRepository(scmConnection);
+          registry.getParsedRepository(scmInfo.getScmManager(),
+              scmConnection);
       if (repository.getProviderRepository() instanceof ScmProviderRepositoryWithHost)
       {
         final ScmProviderRepositoryWithHost repositoryWithHost =
@@ -236,10 +512,83 @@ public class ScmMetaDataProvider extends AbstractMetaDataProvider
     accessInfo.setIgnoreDotFilesInBaseDir(scmInfo.getScmControl()
         .isIgnoreDotFilesInBaseDir());
     accessInfo.setQueryRangeInDays(scmInfo.getQueryRangeInDays());
+    accessInfo.setQueryRangeStrategy(scmInfo.getQueryRangeStrategy());
+    accessInfo.setQueryDeadlineInSeconds(scmInfo.getQueryDeadlineInSeconds());
+    accessInfo.setOperationTimeoutInSeconds(scmInfo
+        .getOperationTimeoutInSeconds());
+    accessInfo.setTimeoutInSeconds(scmInfo.getTimeoutInSeconds());
+    accessInfo.setNativeGit(scmInfo.isNativeGit());
+    accessInfo.setSvnLocalRevision(scmInfo.isSvnLocalRevision());
+    accessInfo.setHgCommandServer(scmInfo.isHgCommandServer());
+    accessInfo.setGitIndexStatus(scmInfo.isGitIndexStatus());
+    accessInfo.setCiRevision(scmInfo.isCiRevision());
+    accessInfo.setCiRevisionIdVariables(scmInfo.getCiRevisionIdVariables());
+    accessInfo
+        .setCiRevisionDateVariables(scmInfo.getCiRevisionDateVariables());
+    if (scmInfo.isNativeGit() && scmInfo.isGitBatchProcess())
+    {
+      final GitProcessRegistry processes =
+          session != null ? GitProcessRegistry.getInstance(session)
+              : new GitProcessRegistry();
+      processes.acquire();
+      accessInfo.setGitProcessRegistry(processes);
+    }
+    accessInfo.setModuleRevision(scmInfo.isModuleRevision());
+    accessInfo.setModuleRevisionMaxCommits(scmInfo
+        .getModuleRevisionMaxCommits());
+    accessInfo.setScmMetrics(scmInfo.isScmMetrics());
+    if (scmInfo.isModuleRevision() && session != null)
+    {
+      accessInfo.setReactorDirectories(getReactorDirectories());
+    }
+    accessInfo.setRevisionCacheFile(scmInfo.getRevisionCacheFile());
+    accessInfo.setModificationSnapshotFile(scmInfo
+        .getModificationSnapshotFile());
+    accessInfo.setModuleDirectory(scmInfo.getBasedir());
+    accessInfo.setModificationScope(scmInfo.getModificationScope());
+    accessInfo.setModifiedFilesLimit(scmInfo.getModifiedFilesLimit());
+    accessInfo.setModifiedFilesFile(scmInfo.getModifiedFilesFile());
 
     return accessInfo;
   }
 
+  /**
+   * Releases the <code>git cat-file</code> processes used by this module. The
+   * processes are closed once no module of the session uses them any longer.
+   *
+   * @param processes the processes to release, may be <code>null</code>.
+   */
+  private static void releaseGitProcesses(final GitProcessRegistry processes)
+  {
+    if (processes != null)
+    {
+      processes.release();
+    }
+  }
+
+  /**
+   * Returns the base directories of all modules of the build.
+   *
+   * @return the base directories of all modules of the build.
+   */
+  @SuppressWarnings("unchecked")
+  private List<File> getReactorDirectories()
+  {
+    final List<MavenProject> projects = session.getSortedProjects();
+    final List<File> directories = new ArrayList<File>();
+    if (projects != null)
+    {
+      for (final MavenProject reactorProject : projects)
+      {
+        if (reactorProject.getBasedir() != null)
+        {
+          directories.add(reactorProject.getBasedir());
+        }
+      }
+    }
+    return directories;
+  }
+
   // --- object basics --------------------------------------------------------
 
 }
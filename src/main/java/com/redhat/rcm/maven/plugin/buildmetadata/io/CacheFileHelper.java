@@ -0,0 +1,155 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Helper to read and update a properties file that caches values between
+ * builds. Updates are merged with the values already stored in the file and
+ * written to a temporary file first so that readers never see a partially
+ * written file.
+ */
+public final class CacheFileHelper
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The lock to serialize updates within this virtual machine.
+   */
+  private static final Object LOCK = new Object();
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The cache file.
+   */
+  private final File cacheFile;
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   *
+   * @param cacheFile the cache file.
+   */
+  public CacheFileHelper(final File cacheFile)
+  {
+    this.cacheFile = cacheFile;
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  // --- get&set --------------------------------------------------------------
+
+  /**
+   * Returns the cache file.
+   *
+   * @return the cache file.
+   */
+  public File getCacheFile()
+  {
+    return cacheFile;
+  }
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * Reads the values from the cache file.
+   *
+   * @return the values of the cache file, empty if the file does not exist.
+   * @throws IOException if the file cannot be read.
+   */
+  public Properties read() throws IOException
+  {
+    final Properties properties = new Properties();
+    if (cacheFile.isFile())
+    {
+      final InputStream in =
+          new BufferedInputStream(new FileInputStream(cacheFile));
+      try
+      {
+        properties.load(in);
+      }
+      finally
+      {
+        IOUtil.close(in);
+      }
+    }
+    return properties;
+  }
+
+  /**
+   * Merges the given values into the cache file.
+   *
+   * @param values the values to store.
+   * @throws IOException if the file cannot be read or written.
+   */
+  public void update(final Properties values) throws IOException
+  {
+    synchronized (LOCK)
+    {
+      final Properties properties = read();
+      properties.putAll(values);
+
+      final File directory = cacheFile.getParentFile();
+      if (directory != null)
+      {
+        directory.mkdirs();
+      }
+      final File tempFile = new File(directory, cacheFile.getName() + ".tmp");
+      final OutputStream out =
+          new BufferedOutputStream(new FileOutputStream(tempFile));
+      try
+      {
+        properties.store(out, "Build meta data cache");
+        out.close();
+      }
+      finally
+      {
+        IOUtil.close(out);
+      }
+
+      if (!tempFile.renameTo(cacheFile)
+          && !(cacheFile.delete() && tempFile.renameTo(cacheFile)))
+      {
+        throw new IOException("Cannot rename " + tempFile + " to "
+                              + cacheFile + '.');
+      }
+    }
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
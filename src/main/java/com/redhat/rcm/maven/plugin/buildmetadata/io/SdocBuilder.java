@@ -25,7 +25,9 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.TreeSet;
 
 import org.apache.commons.lang.time.DateFormatUtils;
 import org.codehaus.plexus.util.StringUtils;
@@ -250,9 +252,69 @@ public final class SdocBuilder extends AbstractBuildMojo
     createValueElement("revision-date", date, parent);
     createContentElement("url", Constant.PROP_NAME_SCM_URL, parent);
     createLocallyModifiedFiles(parent);
+    createSubmodulesElement(parent);
     docRoot.appendChild(parent);
   }
 
+  private void createSubmodulesElement(final Element scm)
+  {
+    final Set<String> paths = findSubmodulePaths();
+    if (paths.isEmpty())
+    {
+      return;
+    }
+
+    final Element parent = document.createElement("submodules");
+    for (final String path : paths)
+    {
+      final String prefix = Constant.PROP_NAME_SCM_SUB_PREFIX + path;
+      final Element submodule = document.createElement("submodule");
+      submodule.setAttribute("path", path);
+      createContentElement("revision", prefix + Constant.SCM_SUB_SUFFIX_ID,
+          submodule);
+      final String date = formatDate(prefix + Constant.SCM_SUB_SUFFIX_DATE);
+      createValueElement("revision-date", date, submodule);
+      createContentElement("locally-modified",
+          prefix + Constant.SCM_SUB_SUFFIX_LOCALLY_MODIFIED, submodule);
+      parent.appendChild(submodule);
+    }
+    scm.appendChild(parent);
+  }
+
+  private Set<String> findSubmodulePaths()
+  {
+    final Set<String> paths = new TreeSet<String>();
+    for (final Object key : buildMetaDataProperties.keySet())
+    {
+      final String path = toSubmodulePath(String.valueOf(key));
+      if (path != null)
+      {
+        paths.add(path);
+      }
+    }
+    return paths;
+  }
+
+  private static String toSubmodulePath(final String key)
+  {
+    if (!key.startsWith(Constant.PROP_NAME_SCM_SUB_PREFIX))
+    {
+      return null;
+    }
+    final String name =
+        key.substring(Constant.PROP_NAME_SCM_SUB_PREFIX.length());
+    for (final String suffix : new String[]
+    { Constant.SCM_SUB_SUFFIX_ID, Constant.SCM_SUB_SUFFIX_DATE,
+     Constant.SCM_SUB_SUFFIX_LOCALLY_MODIFIED })
+    {
+      if (name.endsWith(suffix) && name.length() > suffix.length())
+      {
+        return name.substring(0, name.length() - suffix.length());
+      }
+    }
+    return null;
+  }
+
   private void createLocallyModifiedFiles(final Element scm)
   {
     final String value =
@@ -262,6 +324,10 @@ public final class SdocBuilder extends AbstractBuildMojo
     if (StringUtils.isNotBlank(value))
     {
       final Element parent = document.createElement("locally-modified-files");
+      setAttribute(parent, "count",
+          Constant.PROP_NAME_SCM_LOCALLY_MODIFIED_COUNT);
+      setAttribute(parent, "digest",
+          Constant.PROP_NAME_SCM_LOCALLY_MODIFIED_DIGEST);
 
       final String filesValue = Constant.prettifyFilesValue(value);
       renderFiles(parent, filesValue);
@@ -269,6 +335,16 @@ public final class SdocBuilder extends AbstractBuildMojo
     }
   }
 
+  private void setAttribute(final Element element, final String name,
+      final String propertyKey)
+  {
+    final String value = buildMetaDataProperties.getProperty(propertyKey);
+    if (StringUtils.isNotBlank(value))
+    {
+      element.setAttribute(name, value);
+    }
+  }
+
   private void renderFiles(final Element lmf, final String value)
   {
     final String stringValue = Constant.prettify(value);
@@ -494,7 +570,8 @@ public final class SdocBuilder extends AbstractBuildMojo
 
   private void createMetaDataElement(final Element parent, final String key)
   {
-    if (Constant.isIntendedForMiscSection(key))
+    if (Constant.isIntendedForMiscSection(key)
+        && toSubmodulePath(key) == null)
     {
       final Element metadata = createContentElement("metadata", key, parent);
       if (metadata != null)
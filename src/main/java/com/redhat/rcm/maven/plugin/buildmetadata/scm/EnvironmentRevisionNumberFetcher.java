@@ -0,0 +1,253 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.scm.ScmFileSet;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.AbstractBuildMojo;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.maven.StringRevision;
+import com.redhat.rcm.maven.plugin.buildmetadata.util.DateUtils;
+
+/**
+ * Reads the revision from the environment variables continuous integration
+ * servers set for the checked out commit. The first variable with a value
+ * that is a valid revision identifier for the type of SCM is used, so that
+ * the same list of variables serves Git, Subversion and Mercurial. If a date
+ * variable is set as well, the SCM is not queried at all. Otherwise the
+ * revision of the delegate is used if it identifies the same revision, and
+ * the revision of the delegate replaces the one of the environment if it does
+ * not. Checking for modifications is always delegated.
+ */
+public final class EnvironmentRevisionNumberFetcher extends AbstractBuildMojo
+    implements RevisionNumberFetcher
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The variables Jenkins, GitLab CI and GitHub Actions set for the checked
+   * out revision, used if no variables are configured.
+   */
+  public static final List<String> DEFAULT_ID_VARIABLES = Collections
+      .unmodifiableList(Arrays.asList("GIT_COMMIT", "CI_COMMIT_SHA",
+          "GITHUB_SHA", "SVN_REVISION", "MERCURIAL_REVISION"));
+
+  /**
+   * The variables continuous integration servers set for the date of the
+   * checked out revision, used if no variables are configured.
+   */
+  public static final List<String> DEFAULT_DATE_VARIABLES = Collections
+      .unmodifiableList(Arrays.asList("CI_COMMIT_TIMESTAMP"));
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The type of the SCM, such as <code>git</code>.
+   */
+  private final String scmType;
+
+  /**
+   * The names of the variables to read the revision identifier from in order
+   * of precedence.
+   */
+  private final List<String> idVariables;
+
+  /**
+   * The names of the variables to read the revision date from in order of
+   * precedence.
+   */
+  private final List<String> dateVariables;
+
+  /**
+   * The environment to read the variables from.
+   */
+  private final Map<String, String> environment;
+
+  /**
+   * The fetcher to query for missing information and modifications.
+   */
+  private final RevisionNumberFetcher delegate;
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   *
+   * @param scmType the type of the SCM, such as <code>git</code>.
+   * @param idVariables the names of the variables to read the revision
+   *          identifier from. If empty, {@link #DEFAULT_ID_VARIABLES} are
+   *          used.
+   * @param dateVariables the names of the variables to read the revision date
+   *          from. If empty, {@link #DEFAULT_DATE_VARIABLES} are used.
+   * @param environment the environment to read the variables from.
+   * @param delegate the fetcher to query for missing information and
+   *          modifications.
+   */
+  public EnvironmentRevisionNumberFetcher(final String scmType,
+      final List<String> idVariables, final List<String> dateVariables,
+      final Map<String, String> environment,
+      final RevisionNumberFetcher delegate)
+  {
+    this.scmType = scmType;
+    this.idVariables =
+        idVariables != null && !idVariables.isEmpty() ? idVariables
+            : DEFAULT_ID_VARIABLES;
+    this.dateVariables =
+        dateVariables != null && !dateVariables.isEmpty() ? dateVariables
+            : DEFAULT_DATE_VARIABLES;
+    this.environment = environment;
+    this.delegate = delegate;
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  // --- get&set --------------------------------------------------------------
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Revision fetchLatestRevisionNumber() throws ScmException
+  {
+    final String id = readId();
+    if (id == null)
+    {
+      return delegate.fetchLatestRevisionNumber();
+    }
+
+    final Date date = readDate();
+    if (date != null)
+    {
+      final Revision revision = new StringRevision(id, date);
+      if (getLog().isDebugEnabled())
+      {
+        getLog().debug("Read revision '" + revision
+                       + "' from the environment.");
+      }
+      return revision;
+    }
+
+    final Revision revision = delegate.fetchLatestRevisionNumber();
+    if (revision != null && !id.equalsIgnoreCase(revision.getId())
+        && getLog().isDebugEnabled())
+    {
+      getLog().debug("Revision '" + id + "' of the environment does not match"
+                     + " the working copy, using revision '" + revision
+                     + "'.");
+    }
+    return revision;
+  }
+
+  /**
+   * Returns the first value of the identifier variables that is a valid
+   * identifier for the type of SCM.
+   *
+   * @return the identifier, <code>null</code> if no variable is set.
+   */
+  private String readId()
+  {
+    for (final String variable : idVariables)
+    {
+      final String value = trim(environment.get(variable));
+      if (value != null && isValidId(value))
+      {
+        return value;
+      }
+    }
+    return null;
+  }
+
+  private boolean isValidId(final String value)
+  {
+    if ("git".equals(scmType))
+    {
+      return value.matches("[0-9a-fA-F]{40}|[0-9a-fA-F]{64}");
+    }
+    else if ("svn".equals(scmType))
+    {
+      return value.matches("\\d+");
+    }
+    else if ("hg".equals(scmType))
+    {
+      return value.matches("[0-9a-fA-F]{40}");
+    }
+    return false;
+  }
+
+  /**
+   * Returns the first value of the date variables that can be parsed.
+   *
+   * @return the date, <code>null</code> if no variable is set.
+   */
+  private Date readDate()
+  {
+    for (final String variable : dateVariables)
+    {
+      final String value = trim(environment.get(variable));
+      if (value != null)
+      {
+        final Date date = DateUtils.parseDate(value);
+        if (date != null)
+        {
+          return date;
+        }
+        if (getLog().isDebugEnabled())
+        {
+          getLog().debug("Ignoring date '" + value + "' of " + variable + '.');
+        }
+      }
+    }
+    return null;
+  }
+
+  private static String trim(final String value)
+  {
+    if (value == null)
+    {
+      return null;
+    }
+    final String trimmed = value.trim();
+    return trimmed.length() > 0 ? trimmed : null;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public LocallyModifiedInfo containsModifications(final ScmFileSet fileSet)
+    throws ScmException
+  {
+    return delegate.containsModifications(fileSet);
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
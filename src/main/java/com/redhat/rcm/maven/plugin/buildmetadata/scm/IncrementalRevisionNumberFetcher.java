@@ -0,0 +1,332 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.scm.ScmFileSet;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.AbstractBuildMojo;
+
+/**
+ * Limits the check for modifications to the files that changed since the last
+ * check found no modifications. The state of that check is stored as a
+ * {@link ModificationSnapshot}. Fetching the revision is always delegated.
+ * <p>
+ * The full check is run if there is no snapshot, the fingerprint of the
+ * working copy has changed, an ignore file has changed or too many files have
+ * changed.
+ * </p>
+ * <p>
+ * Each checked directory has its own snapshot. The snapshot of the root
+ * directory of the working copy is stored in the given file, the snapshots of
+ * other directories in files next to it.
+ * </p>
+ */
+public final class IncrementalRevisionNumberFetcher extends AbstractBuildMojo
+    implements RevisionNumberFetcher
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The maximum number of changed files to check individually. If more files
+   * have changed, the full check is run.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int MAX_CANDIDATES = 256;
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The file to store the snapshot in.
+   */
+  private final File snapshotFile;
+
+  /**
+   * The root directory of the working copy.
+   */
+  private final File rootDirectory;
+
+  /**
+   * The type of the SCM as given in the connection URL.
+   */
+  private final String scmType;
+
+  /**
+   * The description of the filter applied to the reported modifications. A
+   * snapshot is only valid for the filter it has been taken with.
+   */
+  private final String filter;
+
+  /**
+   * The fetcher to delegate the checks to.
+   */
+  private final RevisionNumberFetcher delegate;
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   *
+   * @param snapshotFile the file to store the snapshot in.
+   * @param rootDirectory the root directory of the working copy.
+   * @param scmType the type of the SCM as given in the connection URL.
+   * @param delegate the fetcher to delegate the checks to.
+   */
+  public IncrementalRevisionNumberFetcher(final File snapshotFile,
+      final File rootDirectory, final String scmType,
+      final RevisionNumberFetcher delegate)
+  {
+    this(snapshotFile, rootDirectory, scmType, "", delegate);
+  }
+
+  /**
+   * Constructor for checks filtering the reported modifications.
+   *
+   * @param snapshotFile the file to store the snapshot in.
+   * @param rootDirectory the root directory of the working copy.
+   * @param scmType the type of the SCM as given in the connection URL.
+   * @param filter the description of the filter applied to the reported
+   *          modifications.
+   * @param delegate the fetcher to delegate the checks to.
+   */
+  public IncrementalRevisionNumberFetcher(final File snapshotFile,
+      final File rootDirectory, final String scmType, final String filter,
+      final RevisionNumberFetcher delegate)
+  {
+    this.snapshotFile = snapshotFile;
+    this.rootDirectory = rootDirectory;
+    this.scmType = scmType;
+    this.filter = filter;
+    this.delegate = delegate;
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  // --- get&set --------------------------------------------------------------
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Revision fetchLatestRevisionNumber() throws ScmException
+  {
+    return delegate.fetchLatestRevisionNumber();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public LocallyModifiedInfo containsModifications(final ScmFileSet fileSet)
+    throws ScmException
+  {
+    final File baseDirectory = fileSet.getBasedir();
+    final String fingerprint = createFingerprint(baseDirectory);
+    if (fingerprint == null)
+    {
+      return delegate.containsModifications(fileSet);
+    }
+
+    final File file = getSnapshotFile(baseDirectory);
+    final ModificationSnapshot current =
+        ModificationSnapshot.take(baseDirectory);
+    if (current == null)
+    {
+      if (getLog().isDebugEnabled())
+      {
+        getLog().debug("Not taking a snapshot of " + baseDirectory
+                       + " since it contains more than "
+                       + ModificationSnapshot.MAX_FILES + " files.");
+      }
+      return delegate.containsModifications(fileSet);
+    }
+    final List<String> candidates = readCandidates(file, current, fingerprint);
+
+    final LocallyModifiedInfo info;
+    if (candidates == null)
+    {
+      info = delegate.containsModifications(fileSet);
+    }
+    else if (candidates.isEmpty())
+    {
+      if (getLog().isDebugEnabled())
+      {
+        getLog().debug("No files changed since the last clean check.");
+      }
+      return new LocallyModifiedInfo(false, null);
+    }
+    else
+    {
+      if (getLog().isDebugEnabled())
+      {
+        getLog().debug("Checking " + candidates.size()
+                       + " files changed since the last clean check.");
+      }
+      info =
+          delegate.containsModifications(new ScmFileSet(baseDirectory,
+              toFiles(candidates)));
+    }
+
+    if (!info.isLocallyModified())
+    {
+      writeSnapshot(file, baseDirectory, current);
+    }
+    return info;
+  }
+
+  /**
+   * Returns the files to check.
+   *
+   * @param file the file the previous snapshot is stored in.
+   * @param current the snapshot of the current state of the working copy.
+   * @param fingerprint the current fingerprint of the working copy.
+   * @return the relative paths of the files to check, <code>null</code> if
+   *         the full check is to be run.
+   */
+  private List<String> readCandidates(final File file,
+      final ModificationSnapshot current, final String fingerprint)
+  {
+    final ModificationSnapshot previous;
+    try
+    {
+      previous = ModificationSnapshot.read(file);
+    }
+    catch (final IOException e)
+    {
+      if (getLog().isDebugEnabled())
+      {
+        getLog().debug("Cannot read snapshot " + file + '.', e);
+      }
+      return null;
+    }
+
+    if (previous == null || !fingerprint.equals(previous.getFingerprint()))
+    {
+      return null;
+    }
+
+    final List<String> candidates = current.getCandidates(previous);
+    if (candidates.size() > MAX_CANDIDATES)
+    {
+      return null;
+    }
+    for (final String path : candidates)
+    {
+      if (isIgnoreFile(path))
+      {
+        return null;
+      }
+    }
+    return candidates;
+  }
+
+  private static boolean isIgnoreFile(final String path)
+  {
+    final String name = path.substring(path.lastIndexOf('/') + 1);
+    return ".gitignore".equals(name) || ".hgignore".equals(name)
+           || ".cvsignore".equals(name) || ".bzrignore".equals(name);
+  }
+
+  private static List<File> toFiles(final List<String> paths)
+  {
+    final List<File> files = new ArrayList<File>(paths.size());
+    for (final String path : paths)
+    {
+      files.add(new File(path));
+    }
+    return files;
+  }
+
+  /**
+   * Returns the fingerprint of the working copy for a check of the given
+   * directory. The fingerprint includes the directory and the filter.
+   *
+   * @param baseDirectory the directory to check.
+   * @return the fingerprint, <code>null</code> if the state of the working
+   *         copy cannot be determined.
+   */
+  private String createFingerprint(final File baseDirectory)
+  {
+    final String fingerprint =
+        WorkingCopyFingerprint.createStatusFingerprint(rootDirectory, scmType);
+    if (fingerprint == null)
+    {
+      return null;
+    }
+    return fingerprint + '|' + baseDirectory.getAbsolutePath() + '|' + filter;
+  }
+
+  private File getSnapshotFile(final File baseDirectory)
+  {
+    if (baseDirectory.getAbsoluteFile().equals(rootDirectory.getAbsoluteFile()))
+    {
+      return snapshotFile;
+    }
+    final String suffix =
+        Integer.toHexString(baseDirectory.getAbsolutePath().hashCode());
+    return new File(snapshotFile.getParentFile(), snapshotFile.getName() + '-'
+                                                  + suffix);
+  }
+
+  /**
+   * Stores the snapshot with the fingerprint of the working copy after the
+   * check, since checking may update the administrative files, for example
+   * the Git index.
+   *
+   * @param file the file to store the snapshot in.
+   * @param baseDirectory the checked directory.
+   * @param snapshot the snapshot to store.
+   */
+  private void writeSnapshot(final File file, final File baseDirectory,
+      final ModificationSnapshot snapshot)
+  {
+    final String fingerprint = createFingerprint(baseDirectory);
+    if (fingerprint == null)
+    {
+      return;
+    }
+    try
+    {
+      snapshot.write(file, fingerprint);
+    }
+    catch (final IOException e)
+    {
+      if (getLog().isDebugEnabled())
+      {
+        getLog().debug("Cannot write snapshot " + file + '.', e);
+      }
+    }
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
@@ -15,8 +15,12 @@
  */
 package com.redhat.rcm.maven.plugin.buildmetadata.scm;
 
+import java.io.File;
+
 /**
- * Stores the information about locally modified files.
+ * Stores the information about locally modified files. The list of files may
+ * be bounded. In this case the number of files and the digest describe the
+ * complete list and the complete list may be found in a separate file.
  *
  * @author <a href="mailto:robert.reiner@smartics.de">Robert Reiner</a>
  * @version $Revision:591 $
@@ -41,6 +45,22 @@ public final class LocallyModifiedInfo
    */
   private final String files;
 
+  /**
+   * The number of modified files, <code>-1</code> if unknown.
+   */
+  private final int count;
+
+  /**
+   * The digest over all modified files. May be <code>null</code> if unknown.
+   */
+  private final String digest;
+
+  /**
+   * The file containing the complete list of modified files. May be
+   * <code>null</code> if the list has not been written.
+   */
+  private final File listFile;
+
   // ****************************** Initializer *******************************
 
   // ****************************** Constructors ******************************
@@ -53,9 +73,31 @@ public final class LocallyModifiedInfo
    * @param files the list of files that where reported to be modified.
    */
   public LocallyModifiedInfo(final boolean locallyModified, final String files)
+  {
+    this(locallyModified, files, locallyModified ? -1 : 0, null, null);
+  }
+
+  /**
+   * Constructor for a summary of the modified files.
+   *
+   * @param locallyModified the flag that shows whether the files are modified (
+   *          <code>true</code>) or not (<code>false</code>).
+   * @param files the list of files that where reported to be modified. May be
+   *          a subset of all modified files.
+   * @param count the number of modified files, <code>-1</code> if unknown.
+   * @param digest the digest over all modified files. May be <code>null</code>
+   *          if unknown.
+   * @param listFile the file containing the complete list of modified files.
+   *          May be <code>null</code>.
+   */
+  public LocallyModifiedInfo(final boolean locallyModified, final String files,
+      final int count, final String digest, final File listFile)
   {
     this.locallyModified = locallyModified;
     this.files = normalize(files);
+    this.count = count;
+    this.digest = digest;
+    this.listFile = listFile;
   }
 
   // ****************************** Inner Classes *****************************
@@ -98,6 +140,40 @@ public final class LocallyModifiedInfo
     return files;
   }
 
+  /**
+   * Returns the number of modified files.
+   *
+   * @return the number of modified files, <code>-1</code> if unknown.
+   */
+  public int getCount()
+  {
+    return count;
+  }
+
+  /**
+   * Returns the digest over all modified files. The digest does not depend on
+   * the order the files have been reported in.
+   *
+   * @return the digest over all modified files, <code>null</code> if unknown.
+   */
+  public String getDigest()
+  {
+    return digest;
+  }
+
+  /**
+   * Returns the file containing the complete list of modified files. Each
+   * line contains the type of the modification and the path separated by a
+   * tab.
+   *
+   * @return the file containing the complete list of modified files,
+   *         <code>null</code> if the list has not been written.
+   */
+  public File getListFile()
+  {
+    return listFile;
+  }
+
   // --- business -------------------------------------------------------------
 
   // --- object basics --------------------------------------------------------
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.codehaus.plexus.util.SelectorUtils;
+
+/**
+ * Defines the part of the working copy that is checked for local
+ * modifications. Either the whole working copy is checked or only the
+ * directory of the module plus additional paths. The reported files may be
+ * further restricted by include and exclude patterns.
+ */
+public final class ModificationScope implements Serializable
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The class version identifier.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The name of the scope checking the whole working copy.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  public static final String SCOPE_REPOSITORY = "repository";
+
+  /**
+   * The name of the scope checking the directory of the module and the
+   * additional paths.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  public static final String SCOPE_MODULE = "module";
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The flag to restrict the check to the module directory and the additional
+   * paths.
+   */
+  private final boolean moduleScoped;
+
+  /**
+   * The paths to check in addition to the module directory. Relative paths are
+   * resolved against the module directory.
+   */
+  private final List<String> paths;
+
+  /**
+   * The patterns of files to report. If empty, all files are reported.
+   */
+  private final List<String> includes;
+
+  /**
+   * The patterns of files not to report.
+   */
+  private final List<String> excludes;
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   *
+   * @param scope the name of the scope, either {@value #SCOPE_REPOSITORY} or
+   *          {@value #SCOPE_MODULE}. If <code>null</code>,
+   *          {@value #SCOPE_REPOSITORY} is assumed.
+   * @param paths the paths to check in addition to the module directory. May
+   *          be <code>null</code>.
+   * @param includes the patterns of files to report. May be <code>null</code>
+   *          to report all files.
+   * @param excludes the patterns of files not to report. May be
+   *          <code>null</code>.
+   * @throws IllegalArgumentException if the scope is not known.
+   */
+  public ModificationScope(final String scope, final List<String> paths,
+      final List<String> includes, final List<String> excludes)
+    throws IllegalArgumentException
+  {
+    if (scope != null && !SCOPE_REPOSITORY.equals(scope)
+        && !SCOPE_MODULE.equals(scope))
+    {
+      throw new IllegalArgumentException("Unknown modification check scope '"
+                                         + scope + "'. Use '"
+                                         + SCOPE_REPOSITORY + "' or '"
+                                         + SCOPE_MODULE + "'.");
+    }
+    this.moduleScoped = SCOPE_MODULE.equals(scope);
+    this.paths = copy(paths);
+    this.includes = normalize(includes);
+    this.excludes = normalize(excludes);
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  private static List<String> copy(final List<String> values)
+  {
+    if (values == null || values.isEmpty())
+    {
+      return Collections.emptyList();
+    }
+    return Collections.unmodifiableList(new ArrayList<String>(values));
+  }
+
+  private static List<String> normalize(final List<String> patterns)
+  {
+    final List<String> normalized = new ArrayList<String>();
+    if (patterns != null)
+    {
+      for (final String pattern : patterns)
+      {
+        if (pattern != null && pattern.trim().length() > 0)
+        {
+          normalized.add(toPlatformPath(pattern.trim()));
+        }
+      }
+    }
+    return Collections.unmodifiableList(normalized);
+  }
+
+  private static String toPlatformPath(final String path)
+  {
+    return path.replace('/', File.separatorChar).replace('\\',
+        File.separatorChar);
+  }
+
+  // --- get&set --------------------------------------------------------------
+
+  /**
+   * Returns the flag to restrict the check to the module directory and the
+   * additional paths.
+   *
+   * @return <code>true</code> if only the module is checked,
+   *         <code>false</code> if the whole working copy is checked.
+   */
+  public boolean isModuleScoped()
+  {
+    return moduleScoped;
+  }
+
+  /**
+   * Checks if any include or exclude patterns restrict the reported files.
+   *
+   * @return <code>true</code> if patterns are defined, <code>false</code> if
+   *         all files are reported.
+   */
+  public boolean isFiltered()
+  {
+    return !includes.isEmpty() || !excludes.isEmpty();
+  }
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * Returns the directories to check. For the repository scope this is the
+   * root directory of the working copy. For the module scope these are the
+   * module directory and the existing additional paths. Paths located within
+   * another path to check are dropped.
+   *
+   * @param rootDirectory the root directory of the working copy.
+   * @param moduleDirectory the base directory of the module.
+   * @return the directories to check.
+   */
+  public List<File> getDirectories(final File rootDirectory,
+      final File moduleDirectory)
+  {
+    final List<File> directories = new ArrayList<File>();
+    if (!moduleScoped)
+    {
+      directories.add(rootDirectory);
+      return directories;
+    }
+
+    add(directories, moduleDirectory);
+    for (final String path : paths)
+    {
+      File directory = new File(path);
+      if (!directory.isAbsolute())
+      {
+        directory = new File(moduleDirectory, path);
+      }
+      if (directory.exists())
+      {
+        add(directories, directory);
+      }
+    }
+    return directories;
+  }
+
+  private static void add(final List<File> directories, final File directory)
+  {
+    final File canonical = canonicalize(directory);
+    for (final File existing : directories)
+    {
+      if (isWithin(canonical, existing))
+      {
+        return;
+      }
+    }
+    for (int i = directories.size() - 1; i >= 0; i--)
+    {
+      if (isWithin(directories.get(i), canonical))
+      {
+        directories.remove(i);
+      }
+    }
+    directories.add(canonical);
+  }
+
+  private static File canonicalize(final File file)
+  {
+    try
+    {
+      return file.getCanonicalFile();
+    }
+    catch (final IOException e)
+    {
+      return file.getAbsoluteFile();
+    }
+  }
+
+  private static boolean isWithin(final File file, final File directory)
+  {
+    for (File current = file; current != null; current =
+        current.getParentFile())
+    {
+      if (current.equals(directory))
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Checks if the modification of the file with the given path is to be
+   * reported.
+   *
+   * @param path the path of the file as reported by the SCM.
+   * @return <code>true</code> if the file matches at least one include pattern
+   *         (or no include pattern is given) and no exclude pattern,
+   *         <code>false</code> otherwise.
+   */
+  public boolean isReported(final String path)
+  {
+    final String platformPath = toPlatformPath(path);
+    return (includes.isEmpty() || matches(includes, platformPath))
+           && !matches(excludes, platformPath);
+  }
+
+  private static boolean matches(final List<String> patterns, final String path)
+  {
+    for (final String pattern : patterns)
+    {
+      if (SelectorUtils.matchPath(pattern, path))
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // --- object basics --------------------------------------------------------
+
+  /**
+   * Returns the string representation of the scope. Scopes with equal string
+   * representations report the same files.
+   *
+   * @return the string representation of the scope.
+   */
+  @Override
+  public String toString()
+  {
+    return (moduleScoped ? SCOPE_MODULE : SCOPE_REPOSITORY) + " paths="
+           + paths + " includes=" + includes + " excludes=" + excludes;
+  }
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * The size and modification time of the files of a working copy at a point in
+ * time the working copy had no local modifications. Comparing a new snapshot
+ * with the stored one yields the files that may have been modified since.
+ * <p>
+ * The administrative directories of SCMs, the build directories of Maven
+ * projects and symbolic links to directories are not part of the snapshot.
+ * Snapshots of working copies with more than {@link #MAX_FILES} files are not
+ * taken, since walking them costs more than the check they save.
+ * </p>
+ */
+public final class ModificationSnapshot
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The names of directories that are never part of a snapshot.
+   */
+  private static final Set<String> SKIPPED_DIRECTORIES = new HashSet<String>();
+
+  /**
+   * The time in milliseconds before the creation of a snapshot within which a
+   * modification of a file may not be reflected in its modification time due
+   * to the time stamp granularity of the file system.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final long RACY_INTERVAL_MILLIS = 2000L;
+
+  /**
+   * The prefix of header lines in the snapshot file.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String HEADER_PREFIX = "# ";
+
+  /**
+   * The maximum number of files of a snapshot.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  public static final int MAX_FILES = 100000;
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The fingerprint of the working copy the snapshot has been stored with.
+   * <code>null</code> for a snapshot that has not been read from a file.
+   */
+  private final String fingerprint;
+
+  /**
+   * The point in time in milliseconds the snapshot has been taken.
+   */
+  private final long created;
+
+  /**
+   * The size and modification time by path relative to the base directory.
+   */
+  private final Map<String, long[]> entries;
+
+  // ****************************** Initializer *******************************
+
+  static
+  {
+    SKIPPED_DIRECTORIES.add(".git");
+    SKIPPED_DIRECTORIES.add(".svn");
+    SKIPPED_DIRECTORIES.add(".hg");
+    SKIPPED_DIRECTORIES.add(".bzr");
+    SKIPPED_DIRECTORIES.add("CVS");
+  }
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   *
+   * @param fingerprint the fingerprint of the working copy the snapshot has
+   *          been stored with.
+   * @param created the point in time in milliseconds the snapshot has been
+   *          taken.
+   * @param entries the size and modification time by relative path.
+   */
+  private ModificationSnapshot(final String fingerprint, final long created,
+      final Map<String, long[]> entries)
+  {
+    this.fingerprint = fingerprint;
+    this.created = created;
+    this.entries = entries;
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  /**
+   * Takes a snapshot of the files in the given directory.
+   *
+   * @param baseDirectory the directory to take the snapshot of.
+   * @return the snapshot, <code>null</code> if the directory contains more
+   *         than {@link #MAX_FILES} files or cannot be resolved.
+   */
+  public static ModificationSnapshot take(final File baseDirectory)
+  {
+    final long created = System.currentTimeMillis();
+    final Map<String, long[]> entries = new HashMap<String, long[]>();
+    try
+    {
+      if (!walk(baseDirectory.getCanonicalFile(), "", entries))
+      {
+        return null;
+      }
+    }
+    catch (final IOException e)
+    {
+      return null;
+    }
+    return new ModificationSnapshot(null, created, entries);
+  }
+
+  /**
+   * Adds the files of the given directory to the entries.
+   *
+   * @param directory the directory to walk, with canonical path.
+   * @param prefix the relative path of the directory.
+   * @param entries the entries to add to.
+   * @return <code>false</code> if the maximum number of files is exceeded,
+   *         <code>true</code> otherwise.
+   * @throws IOException if the canonical path of a directory cannot be
+   *           determined.
+   */
+  private static boolean walk(final File directory, final String prefix,
+      final Map<String, long[]> entries) throws IOException
+  {
+    final File[] files = directory.listFiles();
+    if (files == null)
+    {
+      return true;
+    }
+
+    final boolean mavenProject = new File(directory, "pom.xml").isFile();
+    for (final File file : files)
+    {
+      final String name = file.getName();
+      final String path = prefix + name;
+      if (file.isDirectory())
+      {
+        if (!SKIPPED_DIRECTORIES.contains(name)
+            && !(mavenProject && "target".equals(name))
+            && !isSymbolicLink(file)
+            && !walk(file, path + '/', entries))
+        {
+          return false;
+        }
+      }
+      else
+      {
+        if (entries.size() >= MAX_FILES)
+        {
+          return false;
+        }
+        entries.put(path, new long[] { file.length(), file.lastModified() });
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks whether the given directory is a symbolic link. The parent of the
+   * directory is expected to have a canonical path.
+   *
+   * @param directory the directory to check.
+   * @return <code>true</code> if the directory is a symbolic link,
+   *         <code>false</code> otherwise.
+   * @throws IOException if the canonical path cannot be determined.
+   */
+  private static boolean isSymbolicLink(final File directory)
+    throws IOException
+  {
+    return !directory.getCanonicalFile().equals(directory.getAbsoluteFile());
+  }
+
+  /**
+   * Reads a snapshot from the given file.
+   *
+   * @param snapshotFile the file to read from.
+   * @return the snapshot, <code>null</code> if the file does not exist.
+   * @throws IOException if the file cannot be read or is corrupt.
+   */
+  public static ModificationSnapshot read(final File snapshotFile)
+    throws IOException
+  {
+    if (!snapshotFile.isFile())
+    {
+      return null;
+    }
+
+    final BufferedReader reader =
+        new BufferedReader(new InputStreamReader(new FileInputStream(
+            snapshotFile), "UTF-8"));
+    try
+    {
+      final String fingerprint = readHeader(reader);
+      final long created = Long.parseLong(readHeader(reader));
+      final Map<String, long[]> entries = new HashMap<String, long[]>();
+      String line;
+      while ((line = reader.readLine()) != null)
+      {
+        final int first = line.indexOf('\t');
+        final int second = line.indexOf('\t', first + 1);
+        if (first < 0 || second < 0)
+        {
+          throw new IOException("Corrupt snapshot line: " + line);
+        }
+        entries.put(line.substring(second + 1), new long[] {
+            Long.parseLong(line.substring(0, first)),
+            Long.parseLong(line.substring(first + 1, second)) });
+      }
+      return new ModificationSnapshot(fingerprint, created, entries);
+    }
+    catch (final NumberFormatException e)
+    {
+      throw new IOException("Corrupt snapshot file " + snapshotFile + ": "
+                            + e.getMessage());
+    }
+    finally
+    {
+      IOUtil.close(reader);
+    }
+  }
+
+  private static String readHeader(final BufferedReader reader)
+    throws IOException
+  {
+    final String line = reader.readLine();
+    if (line == null || !line.startsWith(HEADER_PREFIX))
+    {
+      throw new IOException("Missing snapshot header.");
+    }
+    return line.substring(HEADER_PREFIX.length());
+  }
+
+  // --- get&set --------------------------------------------------------------
+
+  /**
+   * Returns the fingerprint of the working copy the snapshot has been stored
+   * with.
+   *
+   * @return the fingerprint of the working copy, <code>null</code> if the
+   *         snapshot has not been read from a file.
+   */
+  public String getFingerprint()
+  {
+    return fingerprint;
+  }
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * Returns the paths of the files that have been added, removed or changed
+   * in this snapshot compared to the given previous snapshot. Files whose
+   * modification time is too close to the creation of the previous snapshot
+   * to be reliable are always included.
+   *
+   * @param previous the snapshot to compare to.
+   * @return the relative paths of the files that may have been modified.
+   */
+  public List<String> getCandidates(final ModificationSnapshot previous)
+  {
+    final List<String> candidates = new ArrayList<String>();
+    final long racyLimit = previous.created - RACY_INTERVAL_MILLIS;
+    for (final Map.Entry<String, long[]> entry : entries.entrySet())
+    {
+      final long[] current = entry.getValue();
+      final long[] recorded = previous.entries.get(entry.getKey());
+      if (recorded == null || recorded[0] != current[0]
+          || recorded[1] != current[1] || recorded[1] >= racyLimit)
+      {
+        candidates.add(entry.getKey());
+      }
+    }
+    for (final String path : previous.entries.keySet())
+    {
+      if (!entries.containsKey(path))
+      {
+        candidates.add(path);
+      }
+    }
+    return candidates;
+  }
+
+  /**
+   * Writes the snapshot to the given file.
+   *
+   * @param snapshotFile the file to write to.
+   * @param workingCopyFingerprint the fingerprint of the working copy to store
+   *          with the snapshot.
+   * @throws IOException if the file cannot be written.
+   */
+  public void write(final File snapshotFile,
+      final String workingCopyFingerprint) throws IOException
+  {
+    final File directory = snapshotFile.getParentFile();
+    if (directory != null)
+    {
+      directory.mkdirs();
+    }
+    final File tempFile = new File(directory, snapshotFile.getName() + ".tmp");
+    final Writer writer =
+        new BufferedWriter(new OutputStreamWriter(
+            new FileOutputStream(tempFile), "UTF-8"));
+    try
+    {
+      writer.write(HEADER_PREFIX + workingCopyFingerprint + '\n');
+      writer.write(HEADER_PREFIX + created + '\n');
+      for (final Map.Entry<String, long[]> entry : entries.entrySet())
+      {
+        final long[] value = entry.getValue();
+        writer.write(String.valueOf(value[0]));
+        writer.write('\t');
+        writer.write(String.valueOf(value[1]));
+        writer.write('\t');
+        writer.write(entry.getKey());
+        writer.write('\n');
+      }
+      writer.close();
+    }
+    finally
+    {
+      IOUtil.close(writer);
+    }
+
+    if (!tempFile.renameTo(snapshotFile)
+        && !(snapshotFile.delete() && tempFile.renameTo(snapshotFile)))
+    {
+      throw new IOException("Cannot rename " + tempFile + " to "
+                            + snapshotFile + '.');
+    }
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
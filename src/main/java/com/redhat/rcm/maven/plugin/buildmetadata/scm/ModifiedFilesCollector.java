@@ -0,0 +1,478 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Collects modified files into a bounded summary. The summary keeps the number
+ * of files, a digest over all files and the first paths of each type of
+ * modification. Optionally the complete list is streamed to a file. The
+ * memory required does not depend on the number of modified files.
+ * <p>
+ * The list files belong to the check that created them. They are consumed by
+ * {@link #merge(List)} or moved to their final location by the caller and are
+ * never left in the temporary directory of the system.
+ * </p>
+ */
+public final class ModifiedFilesCollector
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The modulus to add the digests of the files with. The digests are added
+   * so that the result does not depend on the order of the files.
+   */
+  private static final BigInteger MODULUS = BigInteger.ONE.shiftLeft(160);
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The maximum number of paths to keep per type of modification. A value of
+   * <code>0</code> or less keeps all paths.
+   */
+  private final int limit;
+
+  /**
+   * The paths kept per type of modification.
+   */
+  private final Map<String, TreeSet<String>> paths =
+      new TreeMap<String, TreeSet<String>>();
+
+  /**
+   * The algorithm to compute the digest of a single file.
+   */
+  private final MessageDigest algorithm;
+
+  /**
+   * The sum of the digests of all files.
+   */
+  private BigInteger digest = BigInteger.ZERO;
+
+  /**
+   * The number of files collected.
+   */
+  private int count;
+
+  /**
+   * The file the complete list is written to. May be <code>null</code>.
+   */
+  private File listFile;
+
+  /**
+   * The writer to the list file. May be <code>null</code>.
+   */
+  private Writer listWriter;
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   *
+   * @param limit the maximum number of paths to keep per type of modification.
+   *          A value of <code>0</code> or less keeps all paths.
+   * @param listFile the file to stream the complete list to,
+   *          <code>null</code> to not write the list.
+   * @throws ScmException if the digest algorithm is not available or the list
+   *           file cannot be created.
+   */
+  public ModifiedFilesCollector(final int limit, final File listFile)
+    throws ScmException
+  {
+    this.limit = limit;
+    this.algorithm = createAlgorithm();
+    if (listFile != null)
+    {
+      try
+      {
+        listWriter =
+            new BufferedWriter(new OutputStreamWriter(new FileOutputStream(
+                listFile), "UTF-8"));
+        this.listFile = listFile;
+      }
+      catch (final IOException e)
+      {
+        listFile.delete();
+        throw new ScmException("Cannot create list of modified files.", e);
+      }
+    }
+  }
+
+  /**
+   * Creates a file to stream a list of modified files to. The file is created
+   * next to the final list file so that it can be moved there.
+   *
+   * @param target the final list file.
+   * @return the new, empty file.
+   * @throws ScmException if the file cannot be created.
+   */
+  public static File createListFile(final File target) throws ScmException
+  {
+    final File directory = target.getAbsoluteFile().getParentFile();
+    try
+    {
+      directory.mkdirs();
+      return File.createTempFile(target.getName() + '.', ".part", directory);
+    }
+    catch (final IOException e)
+    {
+      throw new ScmException("Cannot create list of modified files in "
+                             + directory + '.', e);
+    }
+  }
+
+  /**
+   * Moves a list file to its final location.
+   *
+   * @param listFile the list file created by {@link #createListFile(File)}.
+   * @param target the final list file.
+   * @throws IOException if the list file cannot be moved.
+   */
+  public static void moveListFile(final File listFile, final File target)
+    throws IOException
+  {
+    target.delete();
+    if (!listFile.renameTo(target))
+    {
+      try
+      {
+        FileUtils.copyFile(listFile, target);
+      }
+      finally
+      {
+        listFile.delete();
+      }
+    }
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  private static MessageDigest createAlgorithm() throws ScmException
+  {
+    try
+    {
+      return MessageDigest.getInstance("SHA-1");
+    }
+    catch (final NoSuchAlgorithmException e)
+    {
+      throw new ScmException("Cannot create digest of modified files.", e);
+    }
+  }
+
+  // --- get&set --------------------------------------------------------------
+
+  /**
+   * Returns the number of files collected.
+   *
+   * @return the number of files collected.
+   */
+  public int getCount()
+  {
+    return count;
+  }
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * Adds a modified file.
+   *
+   * @param path the path of the file.
+   * @param type the type of the modification, for example
+   *          <code>modified</code>.
+   * @throws ScmException if the file cannot be added to the list file.
+   */
+  public void add(final String path, final String type) throws ScmException
+  {
+    final String normalizedPath = path.replace('\\', '/');
+    count++;
+    digest = digest.add(hash(type + '\t' + normalizedPath)).mod(MODULUS);
+    keep(normalizedPath, type);
+    if (listWriter != null)
+    {
+      try
+      {
+        listWriter.write(type);
+        listWriter.write('\t');
+        listWriter.write(normalizedPath);
+        listWriter.write('\n');
+      }
+      catch (final IOException e)
+      {
+        IOUtil.close(listWriter);
+        listWriter = null;
+        listFile.delete();
+        listFile = null;
+        throw new ScmException("Cannot write list of modified files.", e);
+      }
+    }
+  }
+
+  private BigInteger hash(final String entry) throws ScmException
+  {
+    try
+    {
+      return new BigInteger(1, algorithm.digest(entry.getBytes("UTF-8")));
+    }
+    catch (final IOException e)
+    {
+      throw new ScmException("Cannot create digest of modified files.", e);
+    }
+  }
+
+  private void keep(final String path, final String type)
+  {
+    TreeSet<String> kept = paths.get(type);
+    if (kept == null)
+    {
+      kept = new TreeSet<String>();
+      paths.put(type, kept);
+    }
+    kept.add(path);
+    if (limit > 0 && kept.size() > limit)
+    {
+      kept.pollLast();
+    }
+  }
+
+  /**
+   * Merges the summaries of several checks. The digests are combined the same
+   * way the digests of single files are, so the result equals the summary of
+   * a single check of all files. The lists of kept files are concatenated.
+   * The list files of the summaries are merged into a new list file and
+   * deleted.
+   *
+   * @param infos the summaries to merge.
+   * @return the merged summary.
+   * @throws ScmException if the list files cannot be merged.
+   */
+  public static LocallyModifiedInfo merge(final List<LocallyModifiedInfo> infos)
+    throws ScmException
+  {
+    if (infos.size() == 1)
+    {
+      return infos.get(0);
+    }
+
+    final StringBuilder files = new StringBuilder();
+    int count = 0;
+    BigInteger digest = BigInteger.ZERO;
+    boolean listComplete = true;
+    final List<File> listFiles = new ArrayList<File>(infos.size());
+    for (final LocallyModifiedInfo info : infos)
+    {
+      if (info.getListFile() != null)
+      {
+        listFiles.add(info.getListFile());
+      }
+      if (!info.isLocallyModified())
+      {
+        continue;
+      }
+      listComplete &= info.getListFile() != null;
+      if (files.length() > 0)
+      {
+        files.append(' ');
+      }
+      files.append(info.getFiles());
+      count = count < 0 || info.getCount() < 0 ? -1 : count + info.getCount();
+      digest =
+          digest == null || info.getDigest() == null ? null : digest.add(
+              new BigInteger(info.getDigest(), 16)).mod(MODULUS);
+    }
+
+    final File listFile;
+    try
+    {
+      listFile =
+          listComplete && !listFiles.isEmpty() ? concatenate(listFiles) : null;
+    }
+    finally
+    {
+      for (final File file : listFiles)
+      {
+        file.delete();
+      }
+    }
+    if (files.length() == 0)
+    {
+      return new LocallyModifiedInfo(false, null, 0, null, listFile);
+    }
+    return new LocallyModifiedInfo(true, files.toString(), count,
+        digest != null ? renderDigest(digest) : null, listFile);
+  }
+
+  private static File concatenate(final List<File> listFiles)
+    throws ScmException
+  {
+    File listFile = null;
+    try
+    {
+      listFile =
+          File.createTempFile("merged.", ".part", listFiles.get(0)
+              .getAbsoluteFile().getParentFile());
+      final OutputStream out =
+          new BufferedOutputStream(new FileOutputStream(listFile));
+      try
+      {
+        for (final File file : listFiles)
+        {
+          final InputStream in = new FileInputStream(file);
+          try
+          {
+            IOUtil.copy(in, out);
+          }
+          finally
+          {
+            IOUtil.close(in);
+          }
+        }
+      }
+      finally
+      {
+        IOUtil.close(out);
+      }
+      return listFile;
+    }
+    catch (final IOException e)
+    {
+      if (listFile != null)
+      {
+        listFile.delete();
+      }
+      throw new ScmException("Cannot write list of modified files.", e);
+    }
+  }
+
+  /**
+   * Creates the summary of the collected files and closes the list file.
+   *
+   * @return the summary of the collected files.
+   * @throws ScmException if the list file cannot be written.
+   */
+  public LocallyModifiedInfo createInfo() throws ScmException
+  {
+    if (listWriter != null)
+    {
+      try
+      {
+        listWriter.close();
+      }
+      catch (final IOException e)
+      {
+        listFile.delete();
+        listFile = null;
+        throw new ScmException("Cannot write list of modified files.", e);
+      }
+      finally
+      {
+        listWriter = null;
+      }
+    }
+
+    if (count == 0)
+    {
+      return new LocallyModifiedInfo(false, null, 0, null, listFile);
+    }
+    return new LocallyModifiedInfo(true, renderFiles(), count,
+        renderDigest(digest), listFile);
+  }
+
+  /**
+   * Renders the kept files in the format of the Maven SCM API, in descending
+   * order of their paths.
+   *
+   * @return the blank separated list of kept files.
+   */
+  private String renderFiles()
+  {
+    final TreeMap<String, String> entries =
+        new TreeMap<String, String>(Collections.reverseOrder());
+    for (final Map.Entry<String, TreeSet<String>> entry : paths.entrySet())
+    {
+      for (final String path : entry.getValue())
+      {
+        entries.put(path + ':' + entry.getKey(), renderEntry(path,
+            entry.getKey()));
+      }
+    }
+
+    final StringBuilder buffer = new StringBuilder(512);
+    for (final String entry : entries.values())
+    {
+      if (buffer.length() > 0)
+      {
+        buffer.append(' ');
+      }
+      buffer.append(entry);
+    }
+    return buffer.toString();
+  }
+
+  /**
+   * Renders a single file in the format of the Maven SCM API.
+   *
+   * @param path the path of the file.
+   * @param type the type of the modification.
+   * @return the rendered file.
+   */
+  public static String renderEntry(final String path, final String type)
+  {
+    return '[' + path + ':' + type + ']';
+  }
+
+  private static String renderDigest(final BigInteger digest)
+  {
+    final String hex = digest.toString(16);
+    final StringBuilder buffer = new StringBuilder(40);
+    for (int i = hex.length(); i < 40; i++)
+    {
+      buffer.append('0');
+    }
+    return buffer.append(hex).toString();
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
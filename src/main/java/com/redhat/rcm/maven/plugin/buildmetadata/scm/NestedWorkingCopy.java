@@ -0,0 +1,122 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm;
+
+import java.io.File;
+
+/**
+ * A working copy located within another working copy, such as a Git
+ * submodule, a Subversion external or a Mercurial subrepository.
+ */
+public final class NestedWorkingCopy
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The path of the working copy relative to the enclosing directory,
+   * separated by slashes.
+   */
+  private final String path;
+
+  /**
+   * The root directory of the working copy.
+   */
+  private final File directory;
+
+  /**
+   * The type of the SCM as given in connection URLs, such as <code>git</code>.
+   */
+  private final String scmType;
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   *
+   * @param path the path of the working copy relative to the enclosing
+   *          directory, separated by slashes.
+   * @param directory the root directory of the working copy.
+   * @param scmType the type of the SCM as given in connection URLs.
+   */
+  public NestedWorkingCopy(final String path, final File directory,
+      final String scmType)
+  {
+    this.path = path;
+    this.directory = directory;
+    this.scmType = scmType;
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  // --- get&set --------------------------------------------------------------
+
+  /**
+   * Returns the path of the working copy relative to the enclosing directory,
+   * separated by slashes.
+   *
+   * @return the path of the working copy.
+   */
+  public String getPath()
+  {
+    return path;
+  }
+
+  /**
+   * Returns the root directory of the working copy.
+   *
+   * @return the root directory of the working copy.
+   */
+  public File getDirectory()
+  {
+    return directory;
+  }
+
+  /**
+   * Returns the type of the SCM as given in connection URLs, such as
+   * <code>git</code>.
+   *
+   * @return the type of the SCM.
+   */
+  public String getScmType()
+  {
+    return scmType;
+  }
+
+  // --- business -------------------------------------------------------------
+
+  // --- object basics --------------------------------------------------------
+
+  /**
+   * Returns the path and the type of the working copy.
+   *
+   * @return the path and the type of the working copy.
+   */
+  @Override
+  public String toString()
+  {
+    return path + " (" + scmType + ')';
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.Properties;
+
+import org.apache.maven.scm.ScmFileSet;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.AbstractBuildMojo;
+import com.redhat.rcm.maven.plugin.buildmetadata.io.CacheFileHelper;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.maven.StringRevision;
+
+/**
+ * Persists the revision fetched by the delegate to a file and reuses it in
+ * later builds as long as the fingerprint of the working copy is unchanged.
+ * Checking for modifications is always delegated since the fingerprint does
+ * not cover changes to the files of the working copy.
+ */
+public final class PersistentRevisionNumberFetcher extends AbstractBuildMojo
+    implements RevisionNumberFetcher
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The key to the fingerprint of the working copy.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String KEY_FINGERPRINT = "fingerprint";
+
+  /**
+   * The key to the SCM connection URL.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String KEY_URL = "url";
+
+  /**
+   * The key to the revision identifier.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String KEY_REVISION_ID = "revision.id";
+
+  /**
+   * The key to the revision date in milliseconds since the epoch.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String KEY_REVISION_DATE = "revision.date";
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The file to persist the revision to.
+   */
+  private final CacheFileHelper cacheFile;
+
+  /**
+   * The fingerprint of the working copy the revision is valid for.
+   */
+  private final String fingerprint;
+
+  /**
+   * The SCM connection URL the revision is valid for.
+   */
+  private final String connectionUrl;
+
+  /**
+   * The fetcher to query if the persisted revision is not valid.
+   */
+  private final RevisionNumberFetcher delegate;
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   *
+   * @param cacheFile the file to persist the revision to.
+   * @param fingerprint the fingerprint of the working copy the revision is
+   *          valid for.
+   * @param connectionUrl the SCM connection URL the revision is valid for.
+   * @param delegate the fetcher to query if the persisted revision is not
+   *          valid.
+   */
+  public PersistentRevisionNumberFetcher(final File cacheFile,
+      final String fingerprint, final String connectionUrl,
+      final RevisionNumberFetcher delegate)
+  {
+    this.cacheFile = new CacheFileHelper(cacheFile);
+    this.fingerprint = fingerprint;
+    this.connectionUrl = connectionUrl;
+    this.delegate = delegate;
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  // --- get&set --------------------------------------------------------------
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Revision fetchLatestRevisionNumber() throws ScmException
+  {
+    final Revision cached = readRevision();
+    if (cached != null)
+    {
+      if (getLog().isDebugEnabled())
+      {
+        getLog().debug("Reusing revision '" + cached + "' from "
+                       + cacheFile.getCacheFile() + '.');
+      }
+      return cached;
+    }
+
+    final Revision revision = delegate.fetchLatestRevisionNumber();
+    if (revision != null)
+    {
+      writeRevision(revision);
+    }
+    return revision;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public LocallyModifiedInfo containsModifications(final ScmFileSet fileSet)
+    throws ScmException
+  {
+    return delegate.containsModifications(fileSet);
+  }
+
+  private Revision readRevision()
+  {
+    final Properties properties;
+    try
+    {
+      properties = cacheFile.read();
+    }
+    catch (final IOException e)
+    {
+      if (getLog().isDebugEnabled())
+      {
+        getLog().debug(
+            "Cannot read revision cache " + cacheFile.getCacheFile() + '.', e);
+      }
+      return null;
+    }
+
+    if (!fingerprint.equals(properties.getProperty(KEY_FINGERPRINT))
+        || !connectionUrl.equals(properties.getProperty(KEY_URL)))
+    {
+      return null;
+    }
+
+    final String id = properties.getProperty(KEY_REVISION_ID);
+    final String date = properties.getProperty(KEY_REVISION_DATE);
+    if (id == null || date == null)
+    {
+      return null;
+    }
+    try
+    {
+      return new StringRevision(id, new Date(Long.parseLong(date)));
+    }
+    catch (final NumberFormatException e)
+    {
+      return null;
+    }
+  }
+
+  private void writeRevision(final Revision revision)
+  {
+    final Properties properties = new Properties();
+    properties.setProperty(KEY_FINGERPRINT, fingerprint);
+    properties.setProperty(KEY_URL, connectionUrl);
+    properties.setProperty(KEY_REVISION_ID, revision.getId());
+    properties.setProperty(KEY_REVISION_DATE,
+        String.valueOf(revision.getDate().getTime()));
+    try
+    {
+      cacheFile.update(properties);
+    }
+    catch (final IOException e)
+    {
+      if (getLog().isDebugEnabled())
+      {
+        getLog().debug(
+            "Cannot write revision cache " + cacheFile.getCacheFile() + '.', e);
+      }
+    }
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
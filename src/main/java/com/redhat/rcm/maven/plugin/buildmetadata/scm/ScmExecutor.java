@@ -0,0 +1,206 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs SCM queries on a small, bounded pool of daemon threads. Idle threads
+ * are terminated so that the pool does not keep resources after the build.
+ * Single SCM operations that run with a deadline use a separate pool without
+ * bound, so that a query waiting for its operation never blocks the thread
+ * the operation needs. Work that only reads files, such as hashing the files
+ * of a working copy, runs on a third pool sized to the number of processors.
+ * Nested working copies are queried on pools of their own, so that the
+ * queries of a module never wait behind them.
+ */
+public final class ScmExecutor
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The maximum number of SCM queries to run concurrently.
+   */
+  private static final int POOL_SIZE = Math.max(2, Math.min(4, Runtime
+      .getRuntime().availableProcessors()));
+
+  /**
+   * The maximum number of nested working copies to query concurrently.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int MAX_NESTED_POOL_SIZE = 16;
+
+  /**
+   * The time in seconds an idle thread is kept alive.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final long KEEP_ALIVE_SECONDS = 10L;
+
+  /**
+   * The pool to run the queries.
+   */
+  private static final ExecutorService EXECUTOR = createExecutor();
+
+  /**
+   * The pool to run single operations with a deadline.
+   */
+  private static final ExecutorService OPERATION_EXECUTOR =
+      createOperationExecutor();
+
+  /**
+   * The pool to run work that only reads files.
+   */
+  private static final ExecutorService WORK_EXECUTOR = createWorkExecutor();
+
+  // --- members --------------------------------------------------------------
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Utilities pattern.
+   */
+  private ScmExecutor()
+  {
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  private static ExecutorService createExecutor()
+  {
+    final ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+            createThreadFactory("buildmetadata-scm-"));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  private static ExecutorService createOperationExecutor()
+  {
+    return new ThreadPoolExecutor(0, Integer.MAX_VALUE, KEEP_ALIVE_SECONDS,
+        TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+        createThreadFactory("buildmetadata-scm-operation-"));
+  }
+
+  private static ExecutorService createWorkExecutor()
+  {
+    final int size = Runtime.getRuntime().availableProcessors();
+    final ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(size, size, KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+            createThreadFactory("buildmetadata-scm-work-"));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Creates a pool to query the given number of nested working copies
+   * concurrently, up to {@value #MAX_NESTED_POOL_SIZE} at a time. The caller
+   * shuts the pool down once the queries are done.
+   *
+   * @param queries the number of nested working copies to query.
+   * @return the pool.
+   */
+  public static ExecutorService createNestedExecutor(final int queries)
+  {
+    final int size = Math.max(1, Math.min(MAX_NESTED_POOL_SIZE, queries));
+    final ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(size, size, KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+            createThreadFactory("buildmetadata-scm-nested-"));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  private static ThreadFactory createThreadFactory(final String prefix)
+  {
+    final AtomicInteger counter = new AtomicInteger();
+    return new ThreadFactory()
+    {
+      public Thread newThread(final Runnable runnable)
+      {
+        final Thread thread =
+            new Thread(runnable, prefix + counter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+  }
+
+  // --- get&set --------------------------------------------------------------
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * Submits the given query for execution.
+   *
+   * @param <T> the type of the result of the query.
+   * @param query the query to run.
+   * @return the future to access the result of the query.
+   */
+  public static <T> Future<T> submit(final Callable<T> query)
+  {
+    return EXECUTOR.submit(query);
+  }
+
+  /**
+   * Submits the given operation for execution on a thread of its own.
+   *
+   * @param <T> the type of the result of the operation.
+   * @param operation the operation to run.
+   * @return the future to access the result of the operation.
+   */
+  public static <T> Future<T> submitOperation(final Callable<T> operation)
+  {
+    return OPERATION_EXECUTOR.submit(operation);
+  }
+
+  /**
+   * Submits work that only reads files and never waits for other submitted
+   * tasks. The work runs concurrently on all processors.
+   *
+   * @param <T> the type of the result of the work.
+   * @param work the work to run.
+   * @return the future to access the result of the work.
+   */
+  public static <T> Future<T> submitWork(final Callable<T> work)
+  {
+    return WORK_EXECUTOR.submit(work);
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
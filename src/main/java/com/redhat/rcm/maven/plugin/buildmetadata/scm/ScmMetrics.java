@@ -0,0 +1,288 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records where the time of SCM queries is spent. For each kind of query the
+ * number of calls and their wall time are recorded. In addition the number of
+ * child processes started, the bytes of output they produced and the hits and
+ * misses of the caches shared between the modules of a build are counted.
+ * <p>
+ * Instances are safe to be used by multiple threads.
+ * </p>
+ */
+public final class ScmMetrics
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The name of the calls fetching the change log.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  public static final String CHANGELOG = "changelog";
+
+  /**
+   * The name of the calls checking for modifications.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  public static final String STATUS = "status";
+
+  /**
+   * The name of the calls creating SCM repositories.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  public static final String REPOSITORY = "repository";
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The number of calls and their wall time by name.
+   */
+  private final SortedMap<String, Call> calls = new TreeMap<String, Call>();
+
+  /**
+   * The number of child processes started.
+   */
+  private final AtomicInteger processes = new AtomicInteger();
+
+  /**
+   * The number of bytes written by child processes.
+   */
+  private final AtomicLong outputBytes = new AtomicLong();
+
+  /**
+   * The number of results found in a cache.
+   */
+  private final AtomicInteger cacheHits = new AtomicInteger();
+
+  /**
+   * The number of results not found in a cache.
+   */
+  private final AtomicInteger cacheMisses = new AtomicInteger();
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   */
+  public ScmMetrics()
+  {
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  /**
+   * The number of calls of one kind and their wall time.
+   */
+  public static final class Call
+  {
+    /**
+     * The number of calls.
+     */
+    private int count;
+
+    /**
+     * The wall time of all calls in milliseconds.
+     */
+    private long timeInMillis;
+
+    private Call()
+    {
+    }
+
+    private Call(final Call call)
+    {
+      this.count = call.count;
+      this.timeInMillis = call.timeInMillis;
+    }
+
+    /**
+     * Returns the number of calls.
+     *
+     * @return the number of calls.
+     */
+    public int getCount()
+    {
+      return count;
+    }
+
+    /**
+     * Returns the wall time of all calls in milliseconds.
+     *
+     * @return the wall time of all calls in milliseconds.
+     */
+    public long getTimeInMillis()
+    {
+      return timeInMillis;
+    }
+  }
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  // --- get&set --------------------------------------------------------------
+
+  /**
+   * Returns the calls recorded so far by name.
+   *
+   * @return a copy of the calls recorded so far, sorted by name.
+   */
+  public SortedMap<String, Call> getCalls()
+  {
+    synchronized (calls)
+    {
+      final SortedMap<String, Call> copy = new TreeMap<String, Call>();
+      for (final Map.Entry<String, Call> entry : calls.entrySet())
+      {
+        copy.put(entry.getKey(), new Call(entry.getValue()));
+      }
+      return copy;
+    }
+  }
+
+  /**
+   * Returns the number of child processes started.
+   *
+   * @return the number of child processes started.
+   */
+  public int getProcesses()
+  {
+    return processes.get();
+  }
+
+  /**
+   * Returns the number of bytes written by child processes.
+   *
+   * @return the number of bytes written by child processes.
+   */
+  public long getOutputBytes()
+  {
+    return outputBytes.get();
+  }
+
+  /**
+   * Returns the number of results found in a cache.
+   *
+   * @return the number of results found in a cache.
+   */
+  public int getCacheHits()
+  {
+    return cacheHits.get();
+  }
+
+  /**
+   * Returns the number of results not found in a cache.
+   *
+   * @return the number of results not found in a cache.
+   */
+  public int getCacheMisses()
+  {
+    return cacheMisses.get();
+  }
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * Records a call.
+   *
+   * @param name the name of the kind of call, such as {@link #CHANGELOG}.
+   * @param timeInMillis the wall time of the call in milliseconds.
+   */
+  public void recordCall(final String name, final long timeInMillis)
+  {
+    synchronized (calls)
+    {
+      Call call = calls.get(name);
+      if (call == null)
+      {
+        call = new Call();
+        calls.put(name, call);
+      }
+      call.count++;
+      call.timeInMillis += timeInMillis;
+    }
+  }
+
+  /**
+   * Records a child process.
+   *
+   * @param bytes the number of bytes the process has written, <code>0</code>
+   *          if unknown.
+   */
+  public void recordProcess(final long bytes)
+  {
+    processes.incrementAndGet();
+    outputBytes.addAndGet(bytes);
+  }
+
+  /**
+   * Records the lookup of a result in a cache.
+   *
+   * @param hit <code>true</code> if the result has been found,
+   *          <code>false</code> if it had to be computed.
+   */
+  public void recordCacheLookup(final boolean hit)
+  {
+    if (hit)
+    {
+      cacheHits.incrementAndGet();
+    }
+    else
+    {
+      cacheMisses.incrementAndGet();
+    }
+  }
+
+  // --- object basics --------------------------------------------------------
+
+  /**
+   * Returns a summary of the metrics on a single line.
+   *
+   * @return a summary of the metrics.
+   */
+  @Override
+  public String toString()
+  {
+    final StringBuilder buffer = new StringBuilder(128);
+    for (final Map.Entry<String, Call> entry : getCalls().entrySet())
+    {
+      final Call call = entry.getValue();
+      buffer.append(entry.getKey()).append('=').append(call.getCount())
+          .append('/').append(call.getTimeInMillis()).append("ms, ");
+    }
+    buffer.append("processes=").append(getProcesses()).append(", output=")
+        .append(getOutputBytes()).append("B, cache=").append(getCacheHits())
+        .append(" hits/").append(getCacheMisses()).append(" misses");
+    return buffer.toString();
+  }
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.maven.scm.ScmResult;
+
+/**
+ * Runs SCM operations with a deadline per operation and a deadline for all
+ * operations. An operation that does not complete in time is interrupted,
+ * which makes the command line utilities used by Maven SCM destroy the child
+ * process, and the caller receives a {@link ScmTimeoutException}. The number
+ * of operations, timeouts and retries and the time spent are recorded.
+ */
+public final class ScmOperationTimer
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The time in milliseconds a single operation may take. A value of
+   * <code>0</code> or less disables the deadline.
+   */
+  private final long operationTimeoutInMillis;
+
+  /**
+   * The point in time in milliseconds after which no operation may run, or
+   * <code>0</code> if there is no deadline for all operations.
+   */
+  private final long deadline;
+
+  /**
+   * The number of operations started.
+   */
+  private final AtomicInteger operations = new AtomicInteger();
+
+  /**
+   * The number of operations that did not complete in time.
+   */
+  private final AtomicInteger timeouts = new AtomicInteger();
+
+  /**
+   * The number of operations repeated with different parameters.
+   */
+  private final AtomicInteger retries = new AtomicInteger();
+
+  /**
+   * The time in milliseconds spent in operations.
+   */
+  private final AtomicLong elapsedInMillis = new AtomicLong();
+
+  /**
+   * The metrics to record the child processes of the operations in.
+   */
+  private final ScmMetrics metrics = new ScmMetrics();
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor. The deadline for all operations starts now.
+   *
+   * @param operationTimeoutInSeconds the time in seconds a single operation may
+   *          take, <code>0</code> or less for no deadline.
+   * @param timeoutInSeconds the time in seconds all operations may take,
+   *          <code>0</code> or less for no deadline.
+   */
+  public ScmOperationTimer(final int operationTimeoutInSeconds,
+      final int timeoutInSeconds)
+  {
+    this.operationTimeoutInMillis = operationTimeoutInSeconds * 1000L;
+    this.deadline =
+        timeoutInSeconds > 0 ? System.currentTimeMillis() + timeoutInSeconds
+                                                            * 1000L : 0L;
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  /**
+   * An operation on the SCM.
+   *
+   * @param <T> the type of the result of the operation.
+   */
+  public interface Operation<T>
+  {
+    /**
+     * Runs the operation.
+     *
+     * @return the result of the operation.
+     * @throws org.apache.maven.scm.ScmException if the operation fails.
+     */
+    T execute() throws org.apache.maven.scm.ScmException;
+  }
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  // --- get&set --------------------------------------------------------------
+
+  /**
+   * Returns the number of operations started.
+   *
+   * @return the number of operations started.
+   */
+  public int getOperations()
+  {
+    return operations.get();
+  }
+
+  /**
+   * Returns the number of operations that did not complete in time.
+   *
+   * @return the number of operations that did not complete in time.
+   */
+  public int getTimeouts()
+  {
+    return timeouts.get();
+  }
+
+  /**
+   * Returns the number of operations repeated with different parameters.
+   *
+   * @return the number of operations repeated with different parameters.
+   */
+  public int getRetries()
+  {
+    return retries.get();
+  }
+
+  /**
+   * Returns the time in milliseconds spent in operations. Operations running
+   * concurrently are added up.
+   *
+   * @return the time in milliseconds spent in operations.
+   */
+  public long getElapsedInMillis()
+  {
+    return elapsedInMillis.get();
+  }
+
+  /**
+   * Returns the metrics of the SCM queries the operations are part of. Each
+   * operation is recorded as a child process with the length of its output.
+   *
+   * @return the metrics of the SCM queries.
+   */
+  public ScmMetrics getMetrics()
+  {
+    return metrics;
+  }
+
+  /**
+   * Returns the time the next operation may take. Operations not run by this
+   * timer use it to bound their own work.
+   *
+   * @return the time in milliseconds, <code>0</code> for no deadline or a
+   *         negative value if the deadline for all operations has passed.
+   */
+  public long getTimeoutInMillis()
+  {
+    return calcTimeout(System.currentTimeMillis());
+  }
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * Records that an operation is repeated with different parameters.
+   */
+  public void recordRetry()
+  {
+    retries.incrementAndGet();
+  }
+
+  /**
+   * Records that an operation not run by this timer did not complete in time.
+   */
+  public void recordTimeout()
+  {
+    timeouts.incrementAndGet();
+  }
+
+  /**
+   * Runs the given operation within the deadlines. Without deadlines the
+   * operation runs on the calling thread.
+   *
+   * @param <T> the type of the result of the operation.
+   * @param name the name of the operation for messages.
+   * @param operation the operation to run.
+   * @return the result of the operation.
+   * @throws org.apache.maven.scm.ScmException if the operation fails.
+   * @throws ScmTimeoutException if the operation does not complete in time.
+   */
+  public <T> T run(final String name, final Operation<T> operation)
+    throws org.apache.maven.scm.ScmException, ScmTimeoutException
+  {
+    final long start = System.currentTimeMillis();
+    final long timeout = calcTimeout(start);
+    if (timeout < 0L)
+    {
+      timeouts.incrementAndGet();
+      throw new ScmTimeoutException("No time left to run SCM operation "
+                                    + name + '.');
+    }
+
+    operations.incrementAndGet();
+    T result = null;
+    try
+    {
+      if (timeout == 0L)
+      {
+        result = operation.execute();
+      }
+      else
+      {
+        result = runWithTimeout(name, operation, timeout);
+      }
+      return result;
+    }
+    finally
+    {
+      elapsedInMillis.addAndGet(System.currentTimeMillis() - start);
+      metrics.recordProcess(calcOutputLength(result));
+    }
+  }
+
+  /**
+   * Returns the length of the output of the command run by Maven SCM. The
+   * number of characters is used as an approximation of the number of bytes.
+   *
+   * @param result the result of the operation, may be <code>null</code>.
+   * @return the length of the output, <code>0</code> if unknown.
+   */
+  private static long calcOutputLength(final Object result)
+  {
+    if (result instanceof ScmResult)
+    {
+      final String output = ((ScmResult) result).getCommandOutput();
+      return output != null ? output.length() : 0L;
+    }
+    return 0L;
+  }
+
+  /**
+   * Calculates the time the next operation may take.
+   *
+   * @param now the current time in milliseconds.
+   * @return the time in milliseconds, <code>0</code> for no deadline or a
+   *         negative value if the deadline for all operations has passed.
+   */
+  private long calcTimeout(final long now)
+  {
+    if (deadline <= 0L)
+    {
+      return Math.max(0L, operationTimeoutInMillis);
+    }
+    final long remaining = deadline - now;
+    if (remaining <= 0L)
+    {
+      return -1L;
+    }
+    return operationTimeoutInMillis > 0L ? Math.min(operationTimeoutInMillis,
+        remaining) : remaining;
+  }
+
+  private <T> T runWithTimeout(final String name,
+      final Operation<T> operation, final long timeout)
+    throws org.apache.maven.scm.ScmException
+  {
+    final Future<T> future = ScmExecutor.submitOperation(new Callable<T>()
+    {
+      public T call() throws org.apache.maven.scm.ScmException
+      {
+        return operation.execute();
+      }
+    });
+    try
+    {
+      return future.get(timeout, TimeUnit.MILLISECONDS);
+    }
+    catch (final TimeoutException e)
+    {
+      future.cancel(true);
+      timeouts.incrementAndGet();
+      throw new ScmTimeoutException("SCM operation " + name
+                                    + " has not completed within " + timeout
+                                    + " ms.");
+    }
+    catch (final InterruptedException e)
+    {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new ScmException("Interrupted while waiting for SCM operation "
+                             + name + '.', e);
+    }
+    catch (final ExecutionException e)
+    {
+      final Throwable cause = e.getCause();
+      if (cause instanceof org.apache.maven.scm.ScmException)
+      {
+        throw (org.apache.maven.scm.ScmException) cause;
+      }
+      if (cause instanceof RuntimeException)
+      {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error)
+      {
+        throw (Error) cause;
+      }
+      throw new ScmException("SCM operation " + name + " failed.", cause);
+    }
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm;
+
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.maven.execution.MavenSession;
+
+/**
+ * Caches the results of SCM queries for the duration of a build session. The
+ * modules of a reactor build sharing the same working copy run the queries
+ * only once.
+ * <p>
+ * The first caller of a key computes the value, concurrent callers of the same
+ * key wait for the result. Failures are cached as well and rethrown to every
+ * caller.
+ * </p>
+ */
+public final class ScmResultCache
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The key to store the cache in the execution properties of the session.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String SESSION_KEY = ScmResultCache.class.getName();
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The pending and completed computations by key.
+   */
+  private final ConcurrentMap<String, FutureTask<Object>> results =
+      new ConcurrentHashMap<String, FutureTask<Object>>();
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   */
+  public ScmResultCache()
+  {
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  /**
+   * Returns the cache attached to the given session. The cache is created and
+   * attached on the first call.
+   *
+   * @param session the session to attach the cache to.
+   * @return the cache of the session.
+   */
+  public static ScmResultCache getInstance(final MavenSession session)
+  {
+    final Properties properties = session.getExecutionProperties();
+    synchronized (properties)
+    {
+      final Object cache = properties.get(SESSION_KEY);
+      if (cache instanceof ScmResultCache)
+      {
+        return (ScmResultCache) cache;
+      }
+
+      final ScmResultCache newCache = new ScmResultCache();
+      properties.put(SESSION_KEY, newCache);
+      return newCache;
+    }
+  }
+
+  // --- get&set --------------------------------------------------------------
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * Returns the cached value for the given key. If no value is cached, the
+   * computation is run and its result cached. If another thread is running the
+   * computation for this key, the call blocks until the result is available.
+   *
+   * @param <T> the type of the value.
+   * @param key the key to the value.
+   * @param computation the computation to run if the value is not cached.
+   * @return the value, may be <code>null</code> if the computation returned
+   *         <code>null</code>.
+   * @throws ScmException if the computation failed.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T get(final String key, final Callable<T> computation)
+    throws ScmException
+  {
+    FutureTask<Object> result = results.get(key);
+    if (result == null)
+    {
+      final FutureTask<Object> task =
+          new FutureTask<Object>((Callable<Object>) computation);
+      result = results.putIfAbsent(key, task);
+      if (result == null)
+      {
+        result = task;
+        task.run();
+      }
+    }
+
+    try
+    {
+      return (T) result.get();
+    }
+    catch (final InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new ScmException("Interrupted while waiting for SCM result '"
+                             + key + "'.", e);
+    }
+    catch (final ExecutionException e)
+    {
+      final Throwable cause = e.getCause();
+      if (cause instanceof ScmException)
+      {
+        throw (ScmException) cause;
+      }
+      throw new ScmException(cause);
+    }
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
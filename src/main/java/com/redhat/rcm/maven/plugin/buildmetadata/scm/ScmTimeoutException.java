@@ -0,0 +1,64 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm;
+
+/**
+ * Thrown if an SCM operation has not completed within its deadline.
+ */
+public class ScmTimeoutException extends ScmException
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The class version identifier.
+   * <p>
+   * The value of this constant is {@value}.
+   */
+  private static final long serialVersionUID = 1L;
+
+  // --- members --------------------------------------------------------------
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   *
+   * @param message the detail message. The detail message is saved for later
+   *          retrieval by the {@link #getMessage()} method.
+   * @see java.lang.RuntimeException#RuntimeException(java.lang.String)
+   */
+  public ScmTimeoutException(final String message)
+  {
+    super(message);
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  // --- get&set --------------------------------------------------------------
+
+  // --- business -------------------------------------------------------------
+
+  // --- object basics --------------------------------------------------------
+
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.maven.execution.MavenSession;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * Detects the type of the working copy a directory belongs to by searching
+ * the directory and its parents for the administrative files of Git,
+ * Mercurial and Subversion. The nearest working copy wins, so a Subversion
+ * checkout within a Git work tree is detected as Subversion. Linked Git work
+ * trees and submodules are recognized by their <code>gitdir:</code> file.
+ * <p>
+ * The results of probing a directory are kept for the duration of the build
+ * session, so the modules of a build share the probes of their common parent
+ * directories.
+ * </p>
+ */
+public final class ScmTypeDetector
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The key to store the detector in the execution properties of the session.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String SESSION_KEY = ScmTypeDetector.class.getName();
+
+  /**
+   * The result of probing a directory that contains no administrative files.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String NONE = "";
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The type of SCM found in each probed directory, {@link #NONE} if no
+   * administrative files have been found.
+   */
+  private final ConcurrentMap<File, String> probes =
+      new ConcurrentHashMap<File, String>();
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   */
+  public ScmTypeDetector()
+  {
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  /**
+   * A detected working copy.
+   */
+  public static final class WorkingCopy
+  {
+    /**
+     * The root directory of the working copy.
+     */
+    private final File root;
+
+    /**
+     * The type of the SCM, such as <code>git</code>.
+     */
+    private final String scmType;
+
+    private WorkingCopy(final File root, final String scmType)
+    {
+      this.root = root;
+      this.scmType = scmType;
+    }
+
+    /**
+     * Returns the root directory of the working copy.
+     *
+     * @return the root directory of the working copy.
+     */
+    public File getRoot()
+    {
+      return root;
+    }
+
+    /**
+     * Returns the type of the SCM, such as <code>git</code>, <code>svn</code>
+     * or <code>hg</code>.
+     *
+     * @return the type of the SCM.
+     */
+    public String getScmType()
+    {
+      return scmType;
+    }
+
+    /**
+     * Returns the string representation of the object.
+     *
+     * @return the string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+      return scmType + ':' + root;
+    }
+  }
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  /**
+   * Returns the detector attached to the given session. The detector is
+   * created and attached on the first call.
+   *
+   * @param session the session to attach the detector to.
+   * @return the detector of the session.
+   */
+  public static ScmTypeDetector getInstance(final MavenSession session)
+  {
+    final Properties properties = session.getExecutionProperties();
+    synchronized (properties)
+    {
+      final Object detector = properties.get(SESSION_KEY);
+      if (detector instanceof ScmTypeDetector)
+      {
+        return (ScmTypeDetector) detector;
+      }
+
+      final ScmTypeDetector newDetector = new ScmTypeDetector();
+      properties.put(SESSION_KEY, newDetector);
+      return newDetector;
+    }
+  }
+
+  // --- get&set --------------------------------------------------------------
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * Returns the working copy the given directory belongs to.
+   *
+   * @param directory the directory within the working copy.
+   * @return the working copy, <code>null</code> if the directory is not part
+   *         of a working copy.
+   */
+  public WorkingCopy detect(final File directory)
+  {
+    File current = directory.getAbsoluteFile();
+    while (current != null)
+    {
+      final String scmType = probe(current);
+      if (!NONE.equals(scmType))
+      {
+        final File root =
+            "svn".equals(scmType) ? WorkingCopyLocator.findRoot(current,
+                scmType) : current;
+        return new WorkingCopy(root, scmType);
+      }
+      current = current.getParentFile();
+    }
+    return null;
+  }
+
+  private String probe(final File directory)
+  {
+    final String cached = probes.get(directory);
+    if (cached != null)
+    {
+      return cached;
+    }
+    final String scmType = probeFiles(directory);
+    final String previous = probes.putIfAbsent(directory, scmType);
+    return previous != null ? previous : scmType;
+  }
+
+  private static String probeFiles(final File directory)
+  {
+    final File git = new File(directory, ".git");
+    if (git.isDirectory() || git.isFile() && isGitdirFile(git))
+    {
+      return "git";
+    }
+    else if (new File(directory, ".hg").isDirectory())
+    {
+      return "hg";
+    }
+    else if (new File(directory, ".svn").isDirectory())
+    {
+      return "svn";
+    }
+    return NONE;
+  }
+
+  private static boolean isGitdirFile(final File file)
+  {
+    try
+    {
+      return FileUtils.fileRead(file, "UTF-8").startsWith("gitdir:");
+    }
+    catch (final IOException e)
+    {
+      return false;
+    }
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm;
+
+import java.util.concurrent.Callable;
+
+import org.apache.maven.scm.ScmFileSet;
+
+/**
+ * Shares the results of a fetcher with all modules of a build session that
+ * access the same working copy. The results are stored in a
+ * {@link ScmResultCache}.
+ */
+public final class SharedRevisionNumberFetcher implements
+    RevisionNumberFetcher
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The cache to store the results in.
+   */
+  private final ScmResultCache cache;
+
+  /**
+   * The key identifying the working copy within the cache.
+   */
+  private final String key;
+
+  /**
+   * The description of the filter applied to the reported modifications. Only
+   * modification results with the same filter are shared. <code>null</code>
+   * if modification results are not shared.
+   */
+  private final String filter;
+
+  /**
+   * The fetcher to compute results not found in the cache.
+   */
+  private final RevisionNumberFetcher delegate;
+
+  /**
+   * The metrics to record the cache lookups in. May be <code>null</code>.
+   */
+  private final ScmMetrics metrics;
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   *
+   * @param cache the cache to store the results in.
+   * @param key the key identifying the working copy within the cache.
+   * @param delegate the fetcher to compute results not found in the cache.
+   */
+  public SharedRevisionNumberFetcher(final ScmResultCache cache,
+      final String key, final RevisionNumberFetcher delegate)
+  {
+    this(cache, key, "", delegate);
+  }
+
+  /**
+   * Constructor for fetchers filtering the reported modifications.
+   *
+   * @param cache the cache to store the results in.
+   * @param key the key identifying the working copy within the cache.
+   * @param filter the description of the filter applied to the reported
+   *          modifications, <code>null</code> to not share modification
+   *          results.
+   * @param delegate the fetcher to compute results not found in the cache.
+   */
+  public SharedRevisionNumberFetcher(final ScmResultCache cache,
+      final String key, final String filter,
+      final RevisionNumberFetcher delegate)
+  {
+    this(cache, key, filter, delegate, null);
+  }
+
+  /**
+   * Constructor for fetchers filtering the reported modifications and
+   * recording the cache lookups.
+   *
+   * @param cache the cache to store the results in.
+   * @param key the key identifying the working copy within the cache.
+   * @param filter the description of the filter applied to the reported
+   *          modifications, <code>null</code> to not share modification
+   *          results.
+   * @param delegate the fetcher to compute results not found in the cache.
+   * @param metrics the metrics to record the cache lookups in,
+   *          <code>null</code> to not record them.
+   */
+  public SharedRevisionNumberFetcher(final ScmResultCache cache,
+      final String key, final String filter,
+      final RevisionNumberFetcher delegate, final ScmMetrics metrics)
+  {
+    this.cache = cache;
+    this.key = key;
+    this.filter = filter;
+    this.delegate = delegate;
+    this.metrics = metrics;
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  // --- get&set --------------------------------------------------------------
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Revision fetchLatestRevisionNumber() throws ScmException
+  {
+    final boolean[] computed = new boolean[1];
+    final Revision revision =
+        cache.get(key + "#revision", new Callable<Revision>()
+        {
+          public Revision call()
+          {
+            computed[0] = true;
+            return delegate.fetchLatestRevisionNumber();
+          }
+        });
+    recordLookup(computed[0]);
+    return revision;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public LocallyModifiedInfo containsModifications(final ScmFileSet fileSet)
+    throws ScmException
+  {
+    if (filter == null)
+    {
+      return delegate.containsModifications(fileSet);
+    }
+
+    final String modificationsKey =
+        key + "#modifications:" + fileSet.getBasedir() + '|' + filter;
+    final boolean[] computed = new boolean[1];
+    final LocallyModifiedInfo info =
+        cache.get(modificationsKey, new Callable<LocallyModifiedInfo>()
+        {
+          public LocallyModifiedInfo call()
+          {
+            computed[0] = true;
+            return delegate.containsModifications(fileSet);
+          }
+        });
+    recordLookup(computed[0]);
+    return info;
+  }
+
+  private void recordLookup(final boolean computed)
+  {
+    if (metrics != null)
+    {
+      metrics.recordCacheLookup(!computed);
+    }
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
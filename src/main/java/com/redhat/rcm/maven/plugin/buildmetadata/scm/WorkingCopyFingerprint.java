@@ -0,0 +1,169 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.git.GitRepository;
+
+/**
+ * Creates a fingerprint of the state of a working copy from the
+ * administrative files of the SCM. The fingerprint changes if the checked out
+ * revision changes, but is cheap to compute since no SCM command is run.
+ * <p>
+ * The fingerprint covers the commit the working copy is based on. It does not
+ * cover changes to the files in the working copy that have not been
+ * registered with the SCM.
+ * </p>
+ */
+public final class WorkingCopyFingerprint
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  // --- members --------------------------------------------------------------
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Utilities pattern.
+   */
+  private WorkingCopyFingerprint()
+  {
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  // --- get&set --------------------------------------------------------------
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * Creates the fingerprint of the working copy the given directory belongs
+   * to.
+   *
+   * @param directory the directory within the working copy.
+   * @param scmType the type of the SCM as given in the connection URL.
+   * @return the fingerprint of the working copy, <code>null</code> if the SCM
+   *         type is not supported or the administrative files are not found.
+   */
+  public static String create(final File directory, final String scmType)
+  {
+    final File root = WorkingCopyLocator.findRoot(directory, scmType);
+    if (root == null)
+    {
+      return null;
+    }
+
+    if ("git".equals(scmType))
+    {
+      return createGitFingerprint(root);
+    }
+    else if ("svn".equals(scmType))
+    {
+      final String fingerprint = stamp(new File(root, ".svn/wc.db"));
+      return fingerprint != null ? fingerprint : stamp(new File(root,
+          ".svn/entries"));
+    }
+    else if ("hg".equals(scmType))
+    {
+      return stamp(new File(root, ".hg/dirstate"));
+    }
+    return null;
+  }
+
+  /**
+   * Creates the fingerprint of the working copy to validate a snapshot of its
+   * files. In addition to the checked out revision, the fingerprint of Git
+   * working copies covers the index and the repository specific exclude file,
+   * since files may be added, removed or ignored without touching the files of
+   * the working copy. The administrative files of other SCMs already reflect
+   * these changes.
+   *
+   * @param directory the directory within the working copy.
+   * @param scmType the type of the SCM as given in the connection URL.
+   * @return the fingerprint of the working copy, <code>null</code> if the SCM
+   *         type is not supported or the administrative files are not found.
+   */
+  public static String createStatusFingerprint(final File directory,
+      final String scmType)
+  {
+    final String fingerprint = create(directory, scmType);
+    if (fingerprint == null || !"git".equals(scmType))
+    {
+      return fingerprint;
+    }
+
+    try
+    {
+      final GitRepository repository = GitRepository.find(directory);
+      if (repository == null)
+      {
+        return null;
+      }
+      return fingerprint + '|'
+             + stamp(new File(repository.getGitDir(), "index")) + '|'
+             + stamp(new File(repository.getCommonDir(), "info/exclude"));
+    }
+    catch (final IOException e)
+    {
+      return null;
+    }
+  }
+
+  private static String createGitFingerprint(final File root)
+  {
+    try
+    {
+      final GitRepository repository = GitRepository.find(root);
+      if (repository == null)
+      {
+        return null;
+      }
+      final String head = repository.resolveHead();
+      if (head == null)
+      {
+        return null;
+      }
+      return repository.getGitDir().getAbsolutePath() + ':' + head;
+    }
+    catch (final IOException e)
+    {
+      return null;
+    }
+  }
+
+  private static String stamp(final File file)
+  {
+    if (!file.isFile())
+    {
+      return null;
+    }
+    return file.getAbsolutePath() + ':' + file.lastModified() + ':'
+           + file.length();
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
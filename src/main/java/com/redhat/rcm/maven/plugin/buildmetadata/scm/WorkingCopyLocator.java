@@ -0,0 +1,224 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.git.GitRepository;
+
+/**
+ * Locates the root directory of the working copy a directory belongs to by
+ * searching for the administrative directories of the SCM.
+ */
+public final class WorkingCopyLocator
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  // --- members --------------------------------------------------------------
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Utilities pattern.
+   */
+  private WorkingCopyLocator()
+  {
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  // --- get&set --------------------------------------------------------------
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * Returns the root directory of the working copy the given directory belongs
+   * to.
+   *
+   * @param directory the directory within the working copy.
+   * @param scmType the type of the SCM as given in the connection URL, such as
+   *          <code>git</code> or <code>svn</code>.
+   * @return the root directory of the working copy, <code>null</code> if the
+   *         SCM type is not supported or the directory is not part of a working
+   *         copy.
+   */
+  public static File findRoot(final File directory, final String scmType)
+  {
+    if (directory == null || scmType == null)
+    {
+      return null;
+    }
+
+    if ("git".equals(scmType))
+    {
+      return findGitRoot(directory);
+    }
+    else if ("svn".equals(scmType))
+    {
+      return findSvnRoot(directory);
+    }
+    else if ("hg".equals(scmType))
+    {
+      return findNearest(directory, ".hg");
+    }
+    else if ("bazaar".equals(scmType))
+    {
+      return findNearest(directory, ".bzr");
+    }
+    return null;
+  }
+
+  private static File findGitRoot(final File directory)
+  {
+    try
+    {
+      final GitRepository repository = GitRepository.find(directory);
+      return repository != null ? repository.getWorkTree() : null;
+    }
+    catch (final IOException e)
+    {
+      return null;
+    }
+  }
+
+  /**
+   * Working copies of Subversion 1.7 and later have a single
+   * <code>.svn</code> directory at the root containing <code>wc.db</code>.
+   * Older working copies have a <code>.svn</code> directory in every folder,
+   * so the topmost folder of the contiguous chain is the root.
+   */
+  private static File findSvnRoot(final File directory)
+  {
+    File root = findNearest(directory, ".svn");
+    if (root == null || new File(root, ".svn/wc.db").isFile())
+    {
+      return root;
+    }
+
+    File parent = root.getParentFile();
+    while (parent != null && new File(parent, ".svn").isDirectory())
+    {
+      root = parent;
+      parent = parent.getParentFile();
+    }
+    return root;
+  }
+
+  private static File findNearest(final File directory, final String adminDir)
+  {
+    File current = directory.getAbsoluteFile();
+    while (current != null)
+    {
+      if (new File(current, adminDir).isDirectory())
+      {
+        return current;
+      }
+      current = current.getParentFile();
+    }
+    return null;
+  }
+
+  /**
+   * Returns the working copies located below the given directory. Git
+   * submodules and Mercurial subrepositories are recognized by their
+   * administrative files, Subversion externals by the <code>wc.db</code> of
+   * Subversion 1.7 and later. Hidden directories and the <code>target</code>
+   * directories of Maven are not searched.
+   *
+   * @param directory the directory to search.
+   * @param maxDepth the number of directory levels to search below the given
+   *          directory.
+   * @return the working copies found, sorted by path. Working copies nested
+   *         within found working copies are included.
+   */
+  public static List<NestedWorkingCopy> findNested(final File directory,
+      final int maxDepth)
+  {
+    final List<NestedWorkingCopy> copies = new ArrayList<NestedWorkingCopy>();
+    findNested(directory, "", maxDepth, copies);
+    Collections.sort(copies, new Comparator<NestedWorkingCopy>()
+    {
+      public int compare(final NestedWorkingCopy o1, final NestedWorkingCopy o2)
+      {
+        return o1.getPath().compareTo(o2.getPath());
+      }
+    });
+    return copies;
+  }
+
+  private static void findNested(final File directory, final String prefix,
+      final int depth, final List<NestedWorkingCopy> copies)
+  {
+    if (depth <= 0)
+    {
+      return;
+    }
+    final File[] children = directory.listFiles();
+    if (children == null)
+    {
+      return;
+    }
+    for (final File child : children)
+    {
+      final String name = child.getName();
+      if (!child.isDirectory() || name.startsWith(".")
+          || "target".equals(name))
+      {
+        continue;
+      }
+      final String path = prefix + name;
+      final String scmType = detectScmType(child);
+      if (scmType != null)
+      {
+        copies.add(new NestedWorkingCopy(path, child, scmType));
+      }
+      findNested(child, path + '/', depth - 1, copies);
+    }
+  }
+
+  private static String detectScmType(final File directory)
+  {
+    if (new File(directory, ".git").exists())
+    {
+      return "git";
+    }
+    else if (new File(directory, ".hg").isDirectory())
+    {
+      return "hg";
+    }
+    else if (new File(directory, ".svn/wc.db").isFile())
+    {
+      return "svn";
+    }
+    return null;
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
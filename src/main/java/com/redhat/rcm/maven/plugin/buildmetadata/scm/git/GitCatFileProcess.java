@@ -0,0 +1,534 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.git;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.codehaus.plexus.util.IOUtil;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.Revision;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.maven.StringRevision;
+
+/**
+ * Reads objects of a Git repository with a single, long-lived
+ * <code>git cat-file --batch</code> process. Object names are written to the
+ * input of the process and the objects are read from its output in the same
+ * order, so any number of lookups are served without starting another
+ * process. Lookups of several threads are serialized; the names of a single
+ * lookup are pipelined. A lookup that does not complete in time terminates
+ * the process so that no thread waits for it any longer.
+ */
+final class GitCatFileProcess
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The maximum number of names to write before reading the responses. Limits
+   * the data buffered in the pipes so that neither side blocks while the
+   * other is writing.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int MAX_PIPELINED_NAMES = 128;
+
+  /**
+   * The maximum number of characters of the error output of the process to
+   * add to error messages.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int MAX_MESSAGE_LENGTH = 1024;
+
+  /**
+   * The maximum length of a response header.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int MAX_HEADER_LENGTH = 4096;
+
+  /**
+   * The timer to terminate processes whose lookups do not complete in time.
+   */
+  private static final Timer WATCHDOG = new Timer("git cat-file watchdog",
+      true);
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The process. May be <code>null</code> if the streams are not connected to
+   * a process.
+   */
+  private final Process process;
+
+  /**
+   * The stream to read the objects from.
+   */
+  private final InputStream in;
+
+  /**
+   * The stream to write the object names to.
+   */
+  private final OutputStream out;
+
+  /**
+   * The error output of the process, truncated to
+   * {@link #MAX_MESSAGE_LENGTH} characters.
+   */
+  private final StringBuffer error = new StringBuffer();
+
+  /**
+   * The flag that signals that the process can no longer be used, either
+   * because it has been closed or a lookup has failed.
+   */
+  private boolean closed;
+
+  /**
+   * The flag that signals that the process has been terminated because a
+   * lookup did not complete in time.
+   */
+  private volatile boolean timedOut;
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Constructor to communicate with a process via the given streams.
+   *
+   * @param process the process, <code>null</code> if the streams are not
+   *          connected to a process.
+   * @param in the stream to read the objects from.
+   * @param out the stream to write the object names to.
+   */
+  GitCatFileProcess(final Process process, final InputStream in,
+      final OutputStream out)
+  {
+    this.process = process;
+    this.in = new BufferedInputStream(in);
+    this.out = new BufferedOutputStream(out);
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  /**
+   * An object read by the process together with its identifier.
+   */
+  static final class BatchObject
+  {
+    /**
+     * The identifier of the object.
+     */
+    private final String id;
+
+    /**
+     * The object.
+     */
+    private final GitObjectDatabase.GitObject object;
+
+    private BatchObject(final String id,
+        final GitObjectDatabase.GitObject object)
+    {
+      this.id = id;
+      this.object = object;
+    }
+
+    /**
+     * Returns the identifier of the object.
+     *
+     * @return the identifier of the object.
+     */
+    String getId()
+    {
+      return id;
+    }
+
+    /**
+     * Returns the object.
+     *
+     * @return the object.
+     */
+    GitObjectDatabase.GitObject getObject()
+    {
+      return object;
+    }
+  }
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  /**
+   * Starts a process for the given working copy.
+   *
+   * @param workTree the root directory of the working copy.
+   * @return the started process.
+   * @throws IOException if the process cannot be started.
+   */
+  static GitCatFileProcess start(final File workTree) throws IOException
+  {
+    final Process process =
+        new ProcessBuilder("git", "cat-file", "--batch").directory(workTree)
+            .start();
+    final GitCatFileProcess catFile =
+        new GitCatFileProcess(process, process.getInputStream(),
+            process.getOutputStream());
+    catFile.drainErrors(process.getErrorStream());
+    return catFile;
+  }
+
+  /**
+   * Reads the error output of the process in the background so that the
+   * process never blocks on a full pipe.
+   *
+   * @param errorStream the error output of the process.
+   */
+  private void drainErrors(final InputStream errorStream)
+  {
+    final Thread thread = new Thread("git cat-file errors")
+    {
+      @Override
+      public void run()
+      {
+        final byte[] buffer = new byte[1024];
+        try
+        {
+          int count;
+          while ((count = errorStream.read(buffer)) != -1)
+          {
+            if (error.length() < MAX_MESSAGE_LENGTH)
+            {
+              error.append(new String(buffer, 0, count, "UTF-8"));
+            }
+          }
+        }
+        catch (final IOException e)
+        {
+          // the process has terminated.
+        }
+        finally
+        {
+          IOUtil.close(errorStream);
+        }
+      }
+    };
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  // --- get&set --------------------------------------------------------------
+
+  /**
+   * Checks if the process can no longer be used.
+   *
+   * @return <code>true</code> if the process has been closed or a lookup has
+   *         failed, <code>false</code> otherwise.
+   */
+  synchronized boolean isClosed()
+  {
+    return closed;
+  }
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * Reads the revision of the commit with the given name. Annotated tags are
+   * peeled to the commit they point to.
+   *
+   * @param name the name of the commit as accepted by
+   *          <code>git rev-parse</code>, such as <code>HEAD</code>.
+   * @param timeoutInMillis the time in milliseconds the lookup may take,
+   *          <code>0</code> or less for no deadline.
+   * @return the revision, <code>null</code> if there is no such commit.
+   * @throws InterruptedIOException if the commit has not been read in time.
+   *           The process is closed.
+   * @throws IOException if the commit cannot be read.
+   */
+  Revision readRevision(final String name, final long timeoutInMillis)
+    throws IOException
+  {
+    final BatchObject commit =
+        read(Collections.singletonList(name + "^{commit}"), timeoutInMillis)
+            .get(0);
+    if (commit == null)
+    {
+      return null;
+    }
+    return new StringRevision(commit.getId(),
+        GitRevisionReader.parseCommitterDate(commit.getId(), GitRevisionReader
+            .toString(commit.getObject().getData())));
+  }
+
+  /**
+   * Reads the objects with the given names. The names are pipelined to the
+   * process.
+   *
+   * @param names the names of the objects as accepted by
+   *          <code>git rev-parse</code>.
+   * @param timeoutInMillis the time in milliseconds the lookup may take,
+   *          <code>0</code> or less for no deadline.
+   * @return the objects in the order of the names, <code>null</code> elements
+   *         for names that do not resolve to an object.
+   * @throws InterruptedIOException if the objects have not been read in time.
+   *           The process is closed.
+   * @throws IOException if the objects cannot be read. The process is closed.
+   */
+  synchronized List<BatchObject> read(final List<String> names,
+      final long timeoutInMillis) throws IOException
+  {
+    if (closed)
+    {
+      throw new IOException("The git cat-file process has been closed.");
+    }
+
+    final List<BatchObject> objects = new ArrayList<BatchObject>(names.size());
+    final TimerTask watchdog = startWatchdog(timeoutInMillis);
+    boolean completed = false;
+    try
+    {
+      for (int start = 0; start < names.size(); start += MAX_PIPELINED_NAMES)
+      {
+        final List<String> chunk =
+            names.subList(start,
+                Math.min(names.size(), start + MAX_PIPELINED_NAMES));
+        for (final String name : chunk)
+        {
+          if (name.indexOf('\n') >= 0)
+          {
+            throw new IOException("Invalid Git object name '" + name + "'.");
+          }
+          out.write(name.getBytes("UTF-8"));
+          out.write('\n');
+        }
+        out.flush();
+        for (final String name : chunk)
+        {
+          objects.add(readObject(name));
+        }
+      }
+      completed = true;
+      return objects;
+    }
+    catch (final IOException e)
+    {
+      if (timedOut)
+      {
+        final InterruptedIOException timeout =
+            new InterruptedIOException("git cat-file has not answered within "
+                                       + timeoutInMillis + " ms.");
+        timeout.initCause(e);
+        throw timeout;
+      }
+      throw e;
+    }
+    finally
+    {
+      if (watchdog != null)
+      {
+        watchdog.cancel();
+      }
+      if (!completed)
+      {
+        closeProcess();
+      }
+    }
+  }
+
+  /**
+   * Schedules the termination of the process after the given time.
+   *
+   * @param timeoutInMillis the time in milliseconds to wait,
+   *          <code>0</code> or less for no deadline.
+   * @return the scheduled task, <code>null</code> if there is no deadline.
+   */
+  private TimerTask startWatchdog(final long timeoutInMillis)
+  {
+    if (timeoutInMillis <= 0L)
+    {
+      return null;
+    }
+    final TimerTask watchdog = new TimerTask()
+    {
+      @Override
+      public void run()
+      {
+        timedOut = true;
+        terminate();
+      }
+    };
+    WATCHDOG.schedule(watchdog, timeoutInMillis);
+    return watchdog;
+  }
+
+  private BatchObject readObject(final String name) throws IOException
+  {
+    final String header = readHeader(name);
+    if (header.endsWith(" missing") || header.endsWith(" ambiguous"))
+    {
+      return null;
+    }
+
+    // Format: <id> <type> <size>
+    final String[] fields = header.split(" ");
+    if (fields.length != 3)
+    {
+      throw new IOException("Unexpected response of git cat-file for '"
+                            + name + "': " + header);
+    }
+    final int type = toType(fields[1]);
+    final int size;
+    try
+    {
+      size = Integer.parseInt(fields[2]);
+    }
+    catch (final NumberFormatException e)
+    {
+      throw new IOException("Invalid size in response of git cat-file for '"
+                            + name + "': " + header);
+    }
+
+    final byte[] data = new byte[size];
+    int offset = 0;
+    while (offset < size)
+    {
+      final int count = in.read(data, offset, size - offset);
+      if (count == -1)
+      {
+        throw createTerminatedException(name);
+      }
+      offset += count;
+    }
+    if (in.read() != '\n')
+    {
+      throw new IOException("Unexpected end of object in response of"
+                            + " git cat-file for '" + name + "'.");
+    }
+    return new BatchObject(fields[0], new GitObjectDatabase.GitObject(type,
+        data));
+  }
+
+  private String readHeader(final String name) throws IOException
+  {
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream(64);
+    while (true)
+    {
+      final int b = in.read();
+      if (b == -1)
+      {
+        throw createTerminatedException(name);
+      }
+      if (b == '\n')
+      {
+        return buffer.toString("UTF-8");
+      }
+      if (buffer.size() >= MAX_HEADER_LENGTH)
+      {
+        throw new IOException("Response header of git cat-file for '" + name
+                              + "' is too long.");
+      }
+      buffer.write(b);
+    }
+  }
+
+  private EOFException createTerminatedException(final String name)
+  {
+    final String message = error.toString().trim();
+    return new EOFException("git cat-file terminated while reading '" + name
+                            + "'" + (message.length() > 0 ? ": " + message
+                                : "."));
+  }
+
+  private static int toType(final String name) throws IOException
+  {
+    if ("commit".equals(name))
+    {
+      return GitObjectDatabase.OBJ_COMMIT;
+    }
+    else if ("tree".equals(name))
+    {
+      return GitObjectDatabase.OBJ_TREE;
+    }
+    else if ("blob".equals(name))
+    {
+      return GitObjectDatabase.OBJ_BLOB;
+    }
+    else if ("tag".equals(name))
+    {
+      return GitObjectDatabase.OBJ_TAG;
+    }
+    throw new IOException("Unsupported Git object type '" + name + "'.");
+  }
+
+  /**
+   * Closes the process. A lookup still waiting for the process is aborted.
+   */
+  void close()
+  {
+    terminate();
+    synchronized (this)
+    {
+      closeProcess();
+    }
+  }
+
+  /**
+   * Terminates the process without waiting for the lock of a running lookup.
+   * The lookup fails since the output of the process is closed.
+   */
+  private void terminate()
+  {
+    if (process != null)
+    {
+      process.destroy();
+    }
+    IOUtil.close(in);
+  }
+
+  private void closeProcess()
+  {
+    if (closed)
+    {
+      return;
+    }
+    closed = true;
+    IOUtil.close(out);
+    if (process != null)
+    {
+      process.destroy();
+    }
+    IOUtil.close(in);
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
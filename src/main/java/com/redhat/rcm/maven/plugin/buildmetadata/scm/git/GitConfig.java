@@ -0,0 +1,254 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads the settings of Git configuration files. Only the syntax needed to
+ * look up single values is supported: sections with optional subsections,
+ * keys with optional values and comments. Included files are read, even if
+ * their inclusion is conditional, so that no setting is missed.
+ */
+final class GitConfig
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The maximum depth of included files.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int MAX_INCLUDE_DEPTH = 10;
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The last value of each key. Keys consist of the section, the optional
+   * subsection and the name separated by dots. Section and name are in lower
+   * case.
+   */
+  private final Map<String, String> values = new HashMap<String, String>();
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   */
+  GitConfig()
+  {
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  /**
+   * Reads the given configuration files. Values of later files override
+   * values of earlier files. Missing files are skipped.
+   *
+   * @param files the files to read.
+   * @return the configuration.
+   * @throws IOException if a file cannot be read.
+   */
+  static GitConfig read(final List<File> files) throws IOException
+  {
+    final GitConfig config = new GitConfig();
+    for (final File file : files)
+    {
+      config.readFile(file, 0);
+    }
+    return config;
+  }
+
+  private void readFile(final File file, final int depth) throws IOException
+  {
+    if (file == null || !file.isFile())
+    {
+      return;
+    }
+    if (depth > MAX_INCLUDE_DEPTH)
+    {
+      throw new IOException("Too many levels of included Git configuration"
+                            + " files at " + file + '.');
+    }
+    parse(new String(GitRepository.readFully(file), "UTF-8"), file, depth);
+  }
+
+  /**
+   * Parses the content of a configuration file.
+   *
+   * @param content the content of the file.
+   * @param file the file to resolve relative includes, <code>null</code> if
+   *          includes are not to be followed.
+   * @param depth the depth of the file in the chain of included files.
+   * @throws IOException if an included file cannot be read.
+   */
+  void parse(final String content, final File file, final int depth)
+    throws IOException
+  {
+    String section = null;
+    for (final String rawLine : content.split("\r?\n"))
+    {
+      final String line = stripComment(rawLine).trim();
+      if (line.length() == 0)
+      {
+        continue;
+      }
+      if (line.charAt(0) == '[')
+      {
+        section = parseSection(line);
+        continue;
+      }
+      if (section == null)
+      {
+        continue;
+      }
+
+      final int equals = line.indexOf('=');
+      final String name =
+          (equals >= 0 ? line.substring(0, equals) : line).trim().toLowerCase(
+              Locale.ENGLISH);
+      final String value =
+          equals >= 0 ? unquote(line.substring(equals + 1).trim()) : null;
+      values.put(section + '.' + name, value);
+
+      if ("path".equals(name) && value != null && file != null
+          && (section.equals("include") || section.startsWith("includeif.")))
+      {
+        readFile(resolveInclude(file, value), depth + 1);
+      }
+    }
+  }
+
+  private static String stripComment(final String line)
+  {
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++)
+    {
+      final char c = line.charAt(i);
+      if (c == '"')
+      {
+        quoted = !quoted;
+      }
+      else if ((c == '#' || c == ';') && !quoted)
+      {
+        return line.substring(0, i);
+      }
+    }
+    return line;
+  }
+
+  /**
+   * Parses a section header. The subsection of
+   * <code>[section "subsection"]</code> is case sensitive, the deprecated
+   * form <code>[section.subsection]</code> is not.
+   *
+   * @param line the section header.
+   * @return the key prefix of the section.
+   */
+  private static String parseSection(final String line)
+  {
+    final int end = line.lastIndexOf(']');
+    final String header = line.substring(1, end > 0 ? end : line.length());
+    final int quote = header.indexOf('"');
+    if (quote >= 0)
+    {
+      final String name = header.substring(0, quote).trim();
+      final String subsection = unquote(header.substring(quote).trim());
+      return name.toLowerCase(Locale.ENGLISH) + '.' + subsection;
+    }
+    return header.trim().toLowerCase(Locale.ENGLISH);
+  }
+
+  private static String unquote(final String value)
+  {
+    if (value.length() >= 2 && value.charAt(0) == '"'
+        && value.charAt(value.length() - 1) == '"')
+    {
+      return value.substring(1, value.length() - 1);
+    }
+    return value;
+  }
+
+  private static File resolveInclude(final File file, final String path)
+  {
+    if (path.startsWith("~/"))
+    {
+      return new File(System.getProperty("user.home"), path.substring(2));
+    }
+    final File include = new File(path);
+    return include.isAbsolute() ? include : new File(file.getParentFile(),
+        path);
+  }
+
+  // --- get&set --------------------------------------------------------------
+
+  /**
+   * Returns the value of the given key.
+   *
+   * @param key the key consisting of the section, the optional subsection and
+   *          the name separated by dots, such as <code>core.autocrlf</code>.
+   *          Section and name are in lower case.
+   * @return the value, <code>null</code> if the key is not set or has no
+   *         value.
+   */
+  String get(final String key)
+  {
+    return values.get(key);
+  }
+
+  /**
+   * Returns the boolean value of the given key.
+   *
+   * @param key the key consisting of the section, the optional subsection and
+   *          the name separated by dots. Section and name are in lower case.
+   * @param defaultValue the value to return if the key is not set.
+   * @return the value of the key.
+   */
+  boolean getBoolean(final String key, final boolean defaultValue)
+  {
+    if (!values.containsKey(key))
+    {
+      return defaultValue;
+    }
+    final String value = values.get(key);
+    if (value == null)
+    {
+      return true;
+    }
+    final String normalized = value.toLowerCase(Locale.ENGLISH);
+    return "true".equals(normalized) || "yes".equals(normalized)
+           || "on".equals(normalized) || "1".equals(normalized);
+  }
+
+  // --- business -------------------------------------------------------------
+
+  // --- object basics --------------------------------------------------------
+
+}
@@ -0,0 +1,402 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.codehaus.plexus.util.FileUtils;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.Revision;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.maven.StringRevision;
+
+/**
+ * Finds the commits that last changed a set of directories by walking the
+ * history of a Git repository once. The walk starts at <code>HEAD</code>,
+ * follows the first parent of each commit and stops as soon as the last
+ * change of every directory is known or the maximum number of commits has been
+ * read.
+ * <p>
+ * A commit changes a directory if the tree of the directory differs from the
+ * tree in its first parent. Changes merged from other branches are therefore
+ * reported with the merge commit. The walk also stops at the boundary of a
+ * shallow clone, since the parents of the boundary commits are not known.
+ * </p>
+ */
+public final class GitHistoryWalker
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The maximum number of parsed trees kept in memory. Most directories do not
+   * change from one commit to the next, so their trees are read only once.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int TREE_CACHE_SIZE = 4096;
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The repository to walk the history of.
+   */
+  private final GitRepository repository;
+
+  /**
+   * The maximum number of commits to read.
+   */
+  private final int maxCommits;
+
+  /**
+   * The parsed trees by identifier. Each tree maps the names of its entries to
+   * their identifiers.
+   */
+  private final Map<String, Map<String, String>> trees =
+      new LinkedHashMap<String, Map<String, String>>(256, 0.75f, true)
+      {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(
+            final Map.Entry<String, Map<String, String>> eldest)
+        {
+          return size() > TREE_CACHE_SIZE;
+        }
+      };
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   *
+   * @param repository the repository to walk the history of.
+   * @param maxCommits the maximum number of commits to read.
+   */
+  public GitHistoryWalker(final GitRepository repository, final int maxCommits)
+  {
+    this.repository = repository;
+    this.maxCommits = maxCommits;
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  /**
+   * The parts of a commit required for the walk.
+   */
+  private static final class Commit
+  {
+    /**
+     * The identifier of the commit.
+     */
+    private final String id;
+
+    /**
+     * The identifier of the tree of the commit.
+     */
+    private final String tree;
+
+    /**
+     * The identifier of the first parent, <code>null</code> for a root commit.
+     */
+    private final String parent;
+
+    /**
+     * The content of the commit to read the date from.
+     */
+    private final String content;
+
+    private Commit(final String id, final String tree, final String parent,
+        final String content)
+    {
+      this.id = id;
+      this.tree = tree;
+      this.parent = parent;
+      this.content = content;
+    }
+  }
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  // --- get&set --------------------------------------------------------------
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * Finds the commits that last changed the given directories.
+   *
+   * @param paths the paths of the directories relative to the root of the
+   *          working copy, separated by slashes. The empty string denotes the
+   *          root.
+   * @return the revisions of the last changes by path. Paths that are not
+   *         tracked at <code>HEAD</code> or have not changed within the commits
+   *         read are missing.
+   * @throws IOException if the repository cannot be read.
+   */
+  public Map<String, Revision> findLastChanges(final Collection<String> paths)
+    throws IOException
+  {
+    final Map<String, Revision> changes = new HashMap<String, Revision>();
+    final String head = repository.resolveHead();
+    if (head == null || paths.isEmpty())
+    {
+      return changes;
+    }
+
+    final GitObjectDatabase database = repository.getObjectDatabase();
+    final Set<String> shallow = readShallowCommits();
+    final Set<String> pending = new HashSet<String>(paths);
+    Commit commit = readCommit(database, head);
+    for (int count = 0; count < maxCommits && !pending.isEmpty(); count++)
+    {
+      final boolean boundary = shallow.contains(commit.id);
+      final Commit parent =
+          commit.parent != null && !boundary ? readCommit(database,
+              commit.parent) : null;
+      for (final Iterator<String> i = pending.iterator(); i.hasNext();)
+      {
+        final String path = i.next();
+        final String id = lookup(database, commit.tree, path);
+        if (id == null)
+        {
+          i.remove();
+        }
+        else if (parent != null)
+        {
+          if (!id.equals(lookup(database, parent.tree, path)))
+          {
+            changes.put(path, createRevision(commit));
+            i.remove();
+          }
+        }
+        else if (!boundary)
+        {
+          changes.put(path, createRevision(commit));
+          i.remove();
+        }
+      }
+      if (parent == null)
+      {
+        break;
+      }
+      commit = parent;
+    }
+    return changes;
+  }
+
+  private Set<String> readShallowCommits() throws IOException
+  {
+    final File file = new File(repository.getCommonDir(), "shallow");
+    if (!file.isFile())
+    {
+      return Collections.emptySet();
+    }
+    final Set<String> ids = new HashSet<String>();
+    for (final String line : FileUtils.fileRead(file, "US-ASCII").split("\n"))
+    {
+      final String id = line.trim();
+      if (id.length() > 0)
+      {
+        ids.add(id);
+      }
+    }
+    return ids;
+  }
+
+  private static Commit readCommit(final GitObjectDatabase database,
+      final String id) throws IOException
+  {
+    final GitObjectDatabase.GitObject object = database.read(id);
+    if (object.getType() != GitObjectDatabase.OBJ_COMMIT)
+    {
+      throw new IOException("Git object " + id + " is not a commit.");
+    }
+    final String content = GitRevisionReader.toString(object.getData());
+    final String tree = GitRevisionReader.readHeader(content, "tree");
+    if (tree == null)
+    {
+      throw new IOException("Git commit " + id + " has no tree.");
+    }
+    return new Commit(id, tree, GitRevisionReader.readHeader(content,
+        "parent"), content);
+  }
+
+  private static Revision createRevision(final Commit commit)
+    throws IOException
+  {
+    return new StringRevision(commit.id, GitRevisionReader.parseCommitterDate(
+        commit.id, commit.content));
+  }
+
+  /**
+   * Returns the identifier of the object at the given path.
+   *
+   * @param database the database to read trees from.
+   * @param rootTree the identifier of the root tree.
+   * @param path the path relative to the root tree.
+   * @return the identifier of the object, <code>null</code> if there is no
+   *         object at the path.
+   * @throws IOException if a tree cannot be read.
+   */
+  private String lookup(final GitObjectDatabase database,
+      final String rootTree, final String path) throws IOException
+  {
+    String id = rootTree;
+    if (path.length() == 0)
+    {
+      return id;
+    }
+    for (final String name : path.split("/"))
+    {
+      final Map<String, String> entries = readTree(database, id);
+      if (entries == null)
+      {
+        return null;
+      }
+      id = entries.get(name);
+      if (id == null)
+      {
+        return null;
+      }
+    }
+    return id;
+  }
+
+  /**
+   * Reads the entries of a tree.
+   *
+   * @param database the database to read the tree from.
+   * @param id the identifier of the tree.
+   * @return the identifiers of the entries by name, <code>null</code> if the
+   *         object is not a tree.
+   * @throws IOException if the tree cannot be read.
+   */
+  private Map<String, String> readTree(final GitObjectDatabase database,
+      final String id) throws IOException
+  {
+    final Map<String, String> cached = trees.get(id);
+    if (cached != null)
+    {
+      return cached;
+    }
+    final GitObjectDatabase.GitObject object = database.read(id);
+    if (object.getType() != GitObjectDatabase.OBJ_TREE)
+    {
+      return null;
+    }
+    final Map<String, String> entries = parseTree(object.getData());
+    trees.put(id, entries);
+    return entries;
+  }
+
+  /**
+   * Parses the entries of a tree. Each entry consists of the mode, a space, the
+   * name, a zero byte and the 20 bytes of the object identifier.
+   *
+   * @param data the content of the tree.
+   * @return the identifiers of the entries by name.
+   * @throws IOException if the tree is corrupt.
+   */
+  static Map<String, String> parseTree(final byte[] data) throws IOException
+  {
+    final Map<String, String> entries = new HashMap<String, String>();
+    int position = 0;
+    while (position < data.length)
+    {
+      final int space = indexOf(data, (byte) ' ', position);
+      final int nul = indexOf(data, (byte) 0, space + 1);
+      if (space < 0 || nul < 0 || nul + 21 > data.length)
+      {
+        throw new IOException("Corrupt Git tree.");
+      }
+      final String name = new String(data, space + 1, nul - space - 1, "UTF-8");
+      final byte[] id = new byte[20];
+      System.arraycopy(data, nul + 1, id, 0, 20);
+      entries.put(name, GitObjectDatabase.toHex(id));
+      position = nul + 21;
+    }
+    return entries;
+  }
+
+  private static int indexOf(final byte[] data, final byte value,
+      final int start)
+  {
+    for (int i = Math.max(0, start); i < data.length; i++)
+    {
+      if (data[i] == value)
+      {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the path of the given directory relative to the root of the
+   * working copy, as used by {@link #findLastChanges(Collection)}.
+   *
+   * @param workTree the root directory of the working copy.
+   * @param directory the directory within the working copy.
+   * @return the relative path, <code>null</code> if the directory is not
+   *         within the working copy.
+   * @throws IOException if the paths cannot be resolved.
+   */
+  public static String toPath(final File workTree, final File directory)
+    throws IOException
+  {
+    final List<String> names = new ArrayList<String>();
+    final File root = workTree.getCanonicalFile();
+    File current = directory.getCanonicalFile();
+    while (current != null && !current.equals(root))
+    {
+      names.add(0, current.getName());
+      current = current.getParentFile();
+    }
+    if (current == null)
+    {
+      return null;
+    }
+    final StringBuilder path = new StringBuilder(64);
+    for (final String name : names)
+    {
+      if (path.length() > 0)
+      {
+        path.append('/');
+      }
+      path.append(name);
+    }
+    return path.toString();
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
@@ -0,0 +1,473 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads the index of a Git working copy. Index versions 2 to 4 are supported.
+ * Indexes that are split or sparse are rejected, since their entries are not
+ * all stored in the index file.
+ */
+final class GitIndex
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The signature of an index file.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int SIGNATURE = 0x44495243; // DIRC
+
+  /**
+   * The length of the stat data, the identifier and the flags of an entry.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int ENTRY_HEADER_LENGTH = 62;
+
+  /**
+   * The flag of an entry that is assumed to be unchanged.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int FLAG_ASSUME_VALID = 0x8000;
+
+  /**
+   * The flag of an entry with extended flags.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int FLAG_EXTENDED = 0x4000;
+
+  /**
+   * The extended flag of an entry that is not checked out.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int FLAG_SKIP_WORKTREE = 0x4000;
+
+  /**
+   * The extended flag of an entry that is only intended to be added.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int FLAG_INTENT_TO_ADD = 0x2000;
+
+  /**
+   * The length of the trailing checksum of the index file.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int CHECKSUM_LENGTH = 20;
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The entries of the index sorted by path and stage.
+   */
+  private final List<Entry> entries;
+
+  /**
+   * The time of the last modification of the index file in milliseconds.
+   */
+  private final long lastModified;
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  private GitIndex(final List<Entry> entries, final long lastModified)
+  {
+    this.entries = entries;
+    this.lastModified = lastModified;
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  /**
+   * An entry of the index.
+   */
+  static final class Entry
+  {
+    /**
+     * The path of the file relative to the root of the working copy.
+     */
+    private final String path;
+
+    /**
+     * The file mode, such as <code>0100644</code>.
+     */
+    private final int mode;
+
+    /**
+     * The hexadecimal identifier of the staged object.
+     */
+    private final String id;
+
+    /**
+     * The seconds of the last modification time of the file when staged.
+     */
+    private final long mtimeSeconds;
+
+    /**
+     * The nanoseconds of the last modification time of the file when staged.
+     */
+    private final int mtimeNanos;
+
+    /**
+     * The size of the file when staged, truncated to 32 bits.
+     */
+    private final int size;
+
+    /**
+     * The flags of the entry including the extended flags.
+     */
+    private final int flags;
+
+    private Entry(final String path, final int mode, final String id,
+        final long mtimeSeconds, final int mtimeNanos, final int size,
+        final int flags)
+    {
+      this.path = path;
+      this.mode = mode;
+      this.id = id;
+      this.mtimeSeconds = mtimeSeconds;
+      this.mtimeNanos = mtimeNanos;
+      this.size = size;
+      this.flags = flags;
+    }
+
+    /**
+     * Returns the path of the file relative to the root of the working copy.
+     *
+     * @return the path of the file separated by slashes.
+     */
+    String getPath()
+    {
+      return path;
+    }
+
+    /**
+     * Returns the file mode.
+     *
+     * @return the file mode, such as <code>0100644</code>.
+     */
+    int getMode()
+    {
+      return mode;
+    }
+
+    /**
+     * Returns the identifier of the staged object.
+     *
+     * @return the hexadecimal identifier of the staged object.
+     */
+    String getId()
+    {
+      return id;
+    }
+
+    /**
+     * Returns the seconds of the last modification time of the file when
+     * staged.
+     *
+     * @return the seconds since the epoch.
+     */
+    long getMtimeSeconds()
+    {
+      return mtimeSeconds;
+    }
+
+    /**
+     * Returns the nanoseconds of the last modification time of the file when
+     * staged.
+     *
+     * @return the nanoseconds within the second.
+     */
+    int getMtimeNanos()
+    {
+      return mtimeNanos;
+    }
+
+    /**
+     * Returns the size of the file when staged.
+     *
+     * @return the size truncated to 32 bits.
+     */
+    int getSize()
+    {
+      return size;
+    }
+
+    /**
+     * Returns the merge stage of the entry.
+     *
+     * @return <code>0</code> for a merged entry, <code>1</code> to
+     *         <code>3</code> for the versions of a conflicting file.
+     */
+    int getStage()
+    {
+      return (flags >> 12) & 0x3;
+    }
+
+    /**
+     * Checks if the file is assumed to be unchanged.
+     *
+     * @return <code>true</code> if the file is assumed to be unchanged,
+     *         <code>false</code> otherwise.
+     */
+    boolean isAssumeValid()
+    {
+      return (flags & FLAG_ASSUME_VALID) != 0;
+    }
+
+    /**
+     * Checks if the file is excluded from the working copy.
+     *
+     * @return <code>true</code> if the file is not checked out,
+     *         <code>false</code> otherwise.
+     */
+    boolean isSkipWorktree()
+    {
+      return (flags & (FLAG_SKIP_WORKTREE << 16)) != 0;
+    }
+
+    /**
+     * Checks if the file is only intended to be added.
+     *
+     * @return <code>true</code> if the file has been added with
+     *         <code>git add -N</code>, <code>false</code> otherwise.
+     */
+    boolean isIntentToAdd()
+    {
+      return (flags & (FLAG_INTENT_TO_ADD << 16)) != 0;
+    }
+
+    /**
+     * Returns the string representation of the object.
+     *
+     * @return the string representation of the object.
+     */
+    @Override
+    public String toString()
+    {
+      return Integer.toOctalString(mode) + ' ' + id + ' ' + getStage() + '\t'
+             + path;
+    }
+  }
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  /**
+   * Reads the index file.
+   *
+   * @param file the index file.
+   * @return the index, empty if the file does not exist.
+   * @throws IOException if the index cannot be read or is not supported.
+   */
+  static GitIndex read(final File file) throws IOException
+  {
+    if (!file.isFile())
+    {
+      return new GitIndex(Collections.<Entry> emptyList(), 0L);
+    }
+    final long lastModified = file.lastModified();
+    return new GitIndex(parse(GitRepository.readFully(file)), lastModified);
+  }
+
+  /**
+   * Parses the content of an index file.
+   *
+   * @param data the content of the index file.
+   * @return the entries of the index.
+   * @throws IOException if the index is corrupt or not supported.
+   */
+  static List<Entry> parse(final byte[] data) throws IOException
+  {
+    if (data.length < 12 + CHECKSUM_LENGTH || readInt(data, 0) != SIGNATURE)
+    {
+      throw new IOException("Not a Git index file.");
+    }
+    final int version = readInt(data, 4);
+    if (version < 2 || version > 4)
+    {
+      throw new IOException("Unsupported Git index version " + version + '.');
+    }
+    final int count = readInt(data, 8);
+    final int end = data.length - CHECKSUM_LENGTH;
+
+    final List<Entry> entries = new ArrayList<Entry>(Math.max(0, count));
+    int position = 12;
+    String previous = "";
+    for (int i = 0; i < count; i++)
+    {
+      final int start = position;
+      if (position + ENTRY_HEADER_LENGTH > end)
+      {
+        throw new IOException("Corrupt Git index.");
+      }
+      final long mtimeSeconds = readInt(data, position + 8) & 0xffffffffL;
+      final int mtimeNanos = readInt(data, position + 12);
+      final int mode = readInt(data, position + 24);
+      final int size = readInt(data, position + 36);
+      final byte[] id = new byte[20];
+      System.arraycopy(data, position + 40, id, 0, id.length);
+      int flags = readShort(data, position + 60);
+      position += ENTRY_HEADER_LENGTH;
+      if ((flags & FLAG_EXTENDED) != 0)
+      {
+        if (version < 3 || position + 2 > end)
+        {
+          throw new IOException("Corrupt Git index.");
+        }
+        flags |= readShort(data, position) << 16;
+        position += 2;
+      }
+
+      final String path;
+      if (version == 4)
+      {
+        // Format: varint(bytes to strip from previous path) suffix NUL
+        int c = data[position++] & 0xff;
+        int strip = c & 0x7f;
+        while ((c & 0x80) != 0)
+        {
+          c = data[position++] & 0xff;
+          strip = ((strip + 1) << 7) | (c & 0x7f);
+        }
+        final int nul = indexOf(data, position, end);
+        final byte[] prefix = previous.getBytes("UTF-8");
+        if (strip > prefix.length)
+        {
+          throw new IOException("Corrupt Git index.");
+        }
+        path =
+            new String(prefix, 0, prefix.length - strip, "UTF-8")
+                + new String(data, position, nul - position, "UTF-8");
+        position = nul + 1;
+      }
+      else
+      {
+        final int nul = indexOf(data, position, end);
+        path = new String(data, position, nul - position, "UTF-8");
+        // Entries are padded with 1 to 8 NUL bytes to a multiple of eight.
+        position = start + ((nul - start + 8) & ~7);
+      }
+      entries.add(new Entry(path, mode, GitObjectDatabase.toHex(id),
+          mtimeSeconds, mtimeNanos, size, flags));
+      previous = path;
+    }
+
+    checkExtensions(data, position, end);
+    return entries;
+  }
+
+  /**
+   * Checks that the index has no extensions that are required to read it
+   * correctly. Optional extensions start with an upper case letter.
+   *
+   * @param data the content of the index file.
+   * @param start the position of the first extension.
+   * @param end the position of the trailing checksum.
+   * @throws IOException if a required extension is found.
+   */
+  private static void checkExtensions(final byte[] data, final int start,
+      final int end) throws IOException
+  {
+    int position = start;
+    while (position + 8 <= end)
+    {
+      final char first = (char) data[position];
+      if (first < 'A' || first > 'Z')
+      {
+        throw new IOException("Unsupported Git index extension '"
+                              + new String(data, position, 4, "US-ASCII")
+                              + "'.");
+      }
+      position += 8 + readInt(data, position + 4);
+    }
+  }
+
+  private static int indexOf(final byte[] data, final int start, final int end)
+    throws IOException
+  {
+    for (int i = start; i < end; i++)
+    {
+      if (data[i] == 0)
+      {
+        return i;
+      }
+    }
+    throw new IOException("Corrupt Git index.");
+  }
+
+  private static int readInt(final byte[] data, final int offset)
+  {
+    return (data[offset] & 0xff) << 24 | (data[offset + 1] & 0xff) << 16
+           | (data[offset + 2] & 0xff) << 8 | data[offset + 3] & 0xff;
+  }
+
+  private static int readShort(final byte[] data, final int offset)
+  {
+    return (data[offset] & 0xff) << 8 | data[offset + 1] & 0xff;
+  }
+
+  // --- get&set --------------------------------------------------------------
+
+  /**
+   * Returns the entries of the index.
+   *
+   * @return the entries sorted by path and stage.
+   */
+  List<Entry> getEntries()
+  {
+    return entries;
+  }
+
+  /**
+   * Returns the time of the last modification of the index file. Files
+   * modified at or after this time may have changed without a change of their
+   * stat data.
+   *
+   * @return the time in milliseconds since the epoch.
+   */
+  long getLastModified()
+  {
+    return lastModified;
+  }
+
+  // --- business -------------------------------------------------------------
+
+  // --- object basics --------------------------------------------------------
+
+}
@@ -0,0 +1,796 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.git;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+import org.codehaus.plexus.util.IOUtil;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmExecutor;
+
+/**
+ * Determines the modified files of a Git working copy from its index without
+ * running <code>git status</code>. The staged files are compared with the
+ * tree of <code>HEAD</code>, the other files with the working tree. Files
+ * whose stat data matches the index are not read, unless they have been
+ * modified in the same second the index was written ("racy git"). The files
+ * are checked concurrently on all processors and reported in order of their
+ * paths.
+ * <p>
+ * As with {@link GitStatusScanner} untracked files are not reported, so
+ * ignore rules never apply. Working copies that convert the content of files,
+ * either by configuration or by attributes, and files that are symbolic links
+ * or submodules are not supported. For these, and for index formats that are
+ * not supported, the scan fails before any file is reported, so that the
+ * caller may use <code>git status</code> instead.
+ * </p>
+ */
+final class GitIndexStatus
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The number of files checked by a single task.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int CHUNK_SIZE = 256;
+
+  /**
+   * The mask of the object type within a file mode.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int TYPE_MASK = 0170000;
+
+  /**
+   * The object type of a regular file.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int TYPE_REGULAR = 0100000;
+
+  /**
+   * The mode of a tree within a tree.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String MODE_TREE = "40000";
+
+  /**
+   * Matches attributes that convert the content of files between the
+   * repository and the working tree.
+   */
+  private static final Pattern CONVERTING_ATTRIBUTES = Pattern
+      .compile("\\b(text|eol|crlf|filter|ident|working-tree-encoding)\\b");
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The repository of the working copy.
+   */
+  private final GitRepository repository;
+
+  /**
+   * The handler to pass the modified files to.
+   */
+  private final GitStatusScanner.Handler handler;
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   *
+   * @param repository the repository of the working copy.
+   * @param handler the handler to pass the modified files to.
+   */
+  GitIndexStatus(final GitRepository repository,
+      final GitStatusScanner.Handler handler)
+  {
+    this.repository = repository;
+    this.handler = handler;
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  /**
+   * The paths to check relative to the root of the working copy.
+   */
+  private static final class Scope
+  {
+    /**
+     * The paths to check. The empty string stands for the whole working copy.
+     */
+    private final Set<String> paths = new HashSet<String>();
+
+    /**
+     * The parent directories of the paths to check.
+     */
+    private final Set<String> parents = new HashSet<String>();
+
+    private void add(final String path)
+    {
+      paths.add(path);
+      for (int slash = path.lastIndexOf('/'); slash > 0; slash =
+          path.lastIndexOf('/', slash - 1))
+      {
+        parents.add(path.substring(0, slash));
+      }
+    }
+
+    private boolean contains(final String path)
+    {
+      if (paths.contains("") || paths.contains(path))
+      {
+        return true;
+      }
+      for (int slash = path.lastIndexOf('/'); slash > 0; slash =
+          path.lastIndexOf('/', slash - 1))
+      {
+        if (paths.contains(path.substring(0, slash)))
+        {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private boolean isRelevantDirectory(final String directory)
+    {
+      return parents.contains(directory) || contains(directory);
+    }
+  }
+
+  /**
+   * The status of a path of the index or of the tree of <code>HEAD</code>.
+   */
+  private static final class Item
+  {
+    /**
+     * The mode and identifier of the file in the tree of <code>HEAD</code>,
+     * <code>null</code> if the file is not in the tree.
+     */
+    private String head;
+
+    /**
+     * The merged index entry, <code>null</code> if the file is not in the
+     * index or is in conflict.
+     */
+    private GitIndex.Entry entry;
+
+    /**
+     * The flag that signals that the file is in conflict.
+     */
+    private boolean conflict;
+
+    /**
+     * The position of the working tree check of the file, <code>-1</code> if
+     * the working tree is not checked.
+     */
+    private int check = -1;
+  }
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  // --- get&set --------------------------------------------------------------
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * Passes the modified files within the given directory to the handler.
+   *
+   * @param directory the directory to check.
+   * @param files the files to check relative to the directory. If empty, all
+   *          files of the directory are checked.
+   * @return <code>true</code> if the handler stopped the scan,
+   *         <code>false</code> if all modified files have been passed.
+   * @throws IOException if the working copy cannot be read or is not
+   *           supported. If the working copy is not supported, no file has
+   *           been passed to the handler.
+   */
+  boolean scan(final File directory, final List<File> files)
+    throws IOException
+  {
+    final File workTree = repository.getWorkTree();
+    final String prefix = GitHistoryWalker.toPath(workTree, directory);
+    if (prefix == null)
+    {
+      throw new IOException("Directory " + directory
+                            + " is not within the working copy " + workTree
+                            + '.');
+    }
+    final Scope scope = createScope(prefix, files);
+    final GitConfig config = readConfig();
+    checkConfig(config);
+    final GitIndex index =
+        GitIndex.read(new File(repository.getGitDir(), "index"));
+    checkAttributes(config, index);
+
+    final Map<String, Item> items = new TreeMap<String, Item>();
+    for (final GitIndex.Entry entry : index.getEntries())
+    {
+      if (scope.contains(entry.getPath()))
+      {
+        final int type = entry.getMode() & TYPE_MASK;
+        if (type != TYPE_REGULAR)
+        {
+          throw new IOException("Unsupported Git index entry " + entry + '.');
+        }
+        final Item item = getItem(items, entry.getPath());
+        if (entry.getStage() != 0)
+        {
+          item.conflict = true;
+        }
+        else
+        {
+          item.entry = entry;
+        }
+      }
+    }
+    final String head = repository.resolveHead();
+    if (head != null)
+    {
+      readHeadTree(repository.getObjectDatabase(), head, scope, items);
+    }
+
+    final List<GitIndex.Entry> checks = new ArrayList<GitIndex.Entry>();
+    for (final Item item : items.values())
+    {
+      if (toStagedType(item) == null && !item.entry.isSkipWorktree()
+          && !item.entry.isAssumeValid())
+      {
+        item.check = checks.size();
+        checks.add(item.entry);
+      }
+    }
+
+    final boolean fileMode = config.getBoolean("core.filemode", true);
+    final List<Future<String[]>> results =
+        startChecks(checks, fileMode, index.getLastModified());
+    boolean completed = false;
+    try
+    {
+      final String relativePrefix = prefix.length() > 0 ? prefix + '/' : "";
+      for (final Map.Entry<String, Item> entry : items.entrySet())
+      {
+        final Item item = entry.getValue();
+        String type = toStagedType(item);
+        if (type == null && item.check >= 0)
+        {
+          final String[] chunk =
+              getResult(results.get(item.check / CHUNK_SIZE));
+          type = chunk[item.check % CHUNK_SIZE];
+        }
+        final String path = entry.getKey();
+        if (type != null && path.startsWith(relativePrefix)
+            && handler.handle(path.substring(relativePrefix.length()), type))
+        {
+          return true;
+        }
+      }
+      completed = true;
+      return false;
+    }
+    finally
+    {
+      if (!completed)
+      {
+        for (final Future<String[]> result : results)
+        {
+          result.cancel(true);
+        }
+      }
+    }
+  }
+
+  private static Item getItem(final Map<String, Item> items, final String path)
+  {
+    Item item = items.get(path);
+    if (item == null)
+    {
+      item = new Item();
+      items.put(path, item);
+    }
+    return item;
+  }
+
+  /**
+   * Returns the status of the file in the index compared with the tree of
+   * <code>HEAD</code>, in terms of the Maven SCM API.
+   *
+   * @param item the file to check.
+   * @return the name of the status, <code>null</code> if the index matches
+   *         the tree of <code>HEAD</code>.
+   */
+  private static String toStagedType(final Item item)
+  {
+    if (item.conflict)
+    {
+      return "conflict";
+    }
+    if (item.entry == null)
+    {
+      return "deleted";
+    }
+    if (item.head == null)
+    {
+      return "added";
+    }
+    if (!item.head.equals(toHeadKey(Integer.toOctalString(item.entry
+        .getMode()), item.entry.getId())))
+    {
+      return "modified";
+    }
+    return null;
+  }
+
+  private static String toHeadKey(final String mode, final String id)
+  {
+    return mode + ' ' + id;
+  }
+
+  private Scope createScope(final String prefix, final List<File> files)
+    throws IOException
+  {
+    final Scope scope = new Scope();
+    if (files == null || files.isEmpty())
+    {
+      scope.add(prefix);
+      return scope;
+    }
+    final File workTree = repository.getWorkTree();
+    for (final File file : files)
+    {
+      if (file.isAbsolute())
+      {
+        final String path = GitHistoryWalker.toPath(workTree, file);
+        if (path != null)
+        {
+          scope.add(path);
+        }
+      }
+      else
+      {
+        final String path = normalize(file.getPath());
+        scope.add(prefix.length() == 0 ? path : path.length() == 0 ? prefix
+            : prefix + '/' + path);
+      }
+    }
+    return scope;
+  }
+
+  private static String normalize(final String path)
+  {
+    String normalized = path.replace(File.separatorChar, '/');
+    while (normalized.startsWith("./"))
+    {
+      normalized = normalized.substring(2);
+    }
+    while (normalized.endsWith("/"))
+    {
+      normalized = normalized.substring(0, normalized.length() - 1);
+    }
+    return ".".equals(normalized) ? "" : normalized;
+  }
+
+  /**
+   * Reads the configuration files in the order Git applies them.
+   *
+   * @return the configuration of the working copy.
+   * @throws IOException if a configuration file cannot be read.
+   */
+  private GitConfig readConfig() throws IOException
+  {
+    final List<File> files = new ArrayList<File>();
+    if (System.getenv("GIT_CONFIG_NOSYSTEM") == null)
+    {
+      final String system = System.getenv("GIT_CONFIG_SYSTEM");
+      files.add(new File(system != null ? system : "/etc/gitconfig"));
+    }
+    final String global = System.getenv("GIT_CONFIG_GLOBAL");
+    if (global != null)
+    {
+      files.add(new File(global));
+    }
+    else
+    {
+      files.add(new File(getXdgConfigHome(), "git/config"));
+      files.add(new File(System.getProperty("user.home"), ".gitconfig"));
+    }
+    files.add(new File(repository.getCommonDir(), "config"));
+    files.add(new File(repository.getGitDir(), "config.worktree"));
+    return GitConfig.read(files);
+  }
+
+  private static File getXdgConfigHome()
+  {
+    final String xdg = System.getenv("XDG_CONFIG_HOME");
+    return xdg != null && xdg.length() > 0 ? new File(xdg) : new File(
+        System.getProperty("user.home"), ".config");
+  }
+
+  /**
+   * Checks that the configuration does not convert the content of files and
+   * that objects are identified by SHA-1.
+   *
+   * @param config the configuration to check.
+   * @throws IOException if the configuration is not supported.
+   */
+  private static void checkConfig(final GitConfig config) throws IOException
+  {
+    if (File.separatorChar != '/')
+    {
+      // The location of the system configuration depends on the installation.
+      throw new IOException("Git configuration cannot be located.");
+    }
+    if (System.getenv("GIT_CONFIG_PARAMETERS") != null
+        || System.getenv("GIT_CONFIG_COUNT") != null)
+    {
+      throw new IOException("Git configuration is set by the environment.");
+    }
+    final String autocrlf = config.get("core.autocrlf");
+    if (autocrlf != null && !"false".equalsIgnoreCase(autocrlf))
+    {
+      throw new IOException("Git converts line endings (core.autocrlf="
+                            + autocrlf + ").");
+    }
+    final String format = config.get("extensions.objectformat");
+    if (format != null && !"sha1".equalsIgnoreCase(format))
+    {
+      throw new IOException("Unsupported Git object format " + format + '.');
+    }
+  }
+
+  /**
+   * Checks that no attributes convert the content of files.
+   *
+   * @param config the configuration that may name a file of attributes.
+   * @param index the index to find the attributes files of the working copy.
+   * @throws IOException if an attributes file cannot be read or the content of
+   *           files is converted.
+   */
+  private void checkAttributes(final GitConfig config, final GitIndex index)
+    throws IOException
+  {
+    final List<File> files = new ArrayList<File>();
+    files.add(new File("/etc/gitattributes"));
+    final String attributesFile = config.get("core.attributesfile");
+    files.add(attributesFile != null ? resolveHome(attributesFile) : new File(
+        getXdgConfigHome(), "git/attributes"));
+    files.add(new File(repository.getCommonDir(), "info/attributes"));
+    for (final GitIndex.Entry entry : index.getEntries())
+    {
+      final String path = entry.getPath();
+      if (path.equals(".gitattributes") || path.endsWith("/.gitattributes"))
+      {
+        files.add(new File(repository.getWorkTree(), path));
+      }
+    }
+
+    for (final File file : files)
+    {
+      if (file.isFile()
+          && CONVERTING_ATTRIBUTES.matcher(
+              new String(GitRepository.readFully(file), "UTF-8")).find())
+      {
+        throw new IOException("Git attributes in " + file
+                              + " convert the content of files.");
+      }
+    }
+  }
+
+  private static File resolveHome(final String path)
+  {
+    if (path.startsWith("~/"))
+    {
+      return new File(System.getProperty("user.home"), path.substring(2));
+    }
+    return new File(path);
+  }
+
+  /**
+   * Adds the files of the tree of <code>HEAD</code> within the scope to the
+   * items. Only trees that contain files of the scope are read.
+   *
+   * @param database the object database to read the trees from.
+   * @param commitId the identifier of the <code>HEAD</code> commit.
+   * @param scope the scope of the scan.
+   * @param items the items to add the files to.
+   * @throws IOException if a tree cannot be read.
+   */
+  private static void readHeadTree(final GitObjectDatabase database,
+      final String commitId, final Scope scope, final Map<String, Item> items)
+    throws IOException
+  {
+    final GitObjectDatabase.GitObject commit = database.read(commitId);
+    if (commit.getType() != GitObjectDatabase.OBJ_COMMIT)
+    {
+      throw new IOException("Git object " + commitId + " is not a commit.");
+    }
+    final String treeId =
+        GitRevisionReader.readHeader(
+            GitRevisionReader.toString(commit.getData()), "tree");
+    if (treeId == null)
+    {
+      throw new IOException("Git commit " + commitId + " has no tree.");
+    }
+    readTree(database, treeId, "", scope, items);
+  }
+
+  private static void readTree(final GitObjectDatabase database,
+      final String treeId, final String directory, final Scope scope,
+      final Map<String, Item> items) throws IOException
+  {
+    final GitObjectDatabase.GitObject tree = database.read(treeId);
+    if (tree.getType() != GitObjectDatabase.OBJ_TREE)
+    {
+      throw new IOException("Git object " + treeId + " is not a tree.");
+    }
+
+    // Format of each entry: mode SP name NUL 20-byte-id
+    final byte[] data = tree.getData();
+    int position = 0;
+    while (position < data.length)
+    {
+      final int space = indexOf(data, (byte) ' ', position);
+      final int nul = indexOf(data, (byte) 0, space + 1);
+      if (space < 0 || nul < 0 || nul + 21 > data.length)
+      {
+        throw new IOException("Corrupt Git tree " + treeId + '.');
+      }
+      final String mode = new String(data, position, space - position, "UTF-8");
+      final String name = new String(data, space + 1, nul - space - 1, "UTF-8");
+      final byte[] id = new byte[20];
+      System.arraycopy(data, nul + 1, id, 0, id.length);
+      position = nul + 21;
+
+      final String path =
+          directory.length() == 0 ? name : directory + '/' + name;
+      if (MODE_TREE.equals(mode))
+      {
+        if (scope.isRelevantDirectory(path))
+        {
+          readTree(database, GitObjectDatabase.toHex(id), path, scope, items);
+        }
+      }
+      else if (scope.contains(path))
+      {
+        getItem(items, path).head =
+            toHeadKey(mode, GitObjectDatabase.toHex(id));
+      }
+    }
+  }
+
+  private static int indexOf(final byte[] data, final byte value,
+      final int start)
+  {
+    for (int i = Math.max(0, start); i < data.length; i++)
+    {
+      if (data[i] == value)
+      {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Starts the checks of the working tree. Each task checks a chunk of
+   * {@link #CHUNK_SIZE} files.
+   *
+   * @param entries the entries of the files to check.
+   * @param fileMode the flag to compare the executable bit.
+   * @param indexModified the time of the last modification of the index.
+   * @return the results of the tasks.
+   */
+  private List<Future<String[]>> startChecks(
+      final List<GitIndex.Entry> entries, final boolean fileMode,
+      final long indexModified)
+  {
+    final List<Future<String[]>> results = new ArrayList<Future<String[]>>();
+    for (int start = 0; start < entries.size(); start += CHUNK_SIZE)
+    {
+      final List<GitIndex.Entry> chunk =
+          entries.subList(start, Math.min(entries.size(), start + CHUNK_SIZE));
+      results.add(ScmExecutor.submitWork(new Callable<String[]>()
+      {
+        public String[] call() throws IOException
+        {
+          final MessageDigest digest = createDigest();
+          final String[] types = new String[chunk.size()];
+          for (int i = 0; i < types.length; i++)
+          {
+            types[i] = check(chunk.get(i), fileMode, indexModified, digest);
+          }
+          return types;
+        }
+      }));
+    }
+    return results;
+  }
+
+  private static String[] getResult(final Future<String[]> result)
+    throws IOException
+  {
+    try
+    {
+      return result.get();
+    }
+    catch (final InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while checking the working tree.");
+    }
+    catch (final ExecutionException e)
+    {
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+      {
+        throw (IOException) cause;
+      }
+      final IOException exception =
+          new IOException("Cannot check the working tree.");
+      exception.initCause(cause);
+      throw exception;
+    }
+  }
+
+  /**
+   * Compares a file of the working tree with its index entry. The content is
+   * only read if the stat data does not match or the file may have been
+   * modified after the index has been written in the same second.
+   *
+   * @param entry the index entry of the file.
+   * @param fileMode the flag to compare the executable bit.
+   * @param indexModified the time of the last modification of the index.
+   * @param digest the digest to hash the content with.
+   * @return the name of the status, <code>null</code> if the file has not
+   *         been modified.
+   * @throws IOException if the file cannot be read.
+   */
+  private String check(final GitIndex.Entry entry, final boolean fileMode,
+      final long indexModified, final MessageDigest digest) throws IOException
+  {
+    final File file = new File(repository.getWorkTree(), entry.getPath());
+    if (!file.isFile())
+    {
+      return "deleted";
+    }
+    if (fileMode && ((entry.getMode() & 0111) != 0) != file.canExecute())
+    {
+      return "modified";
+    }
+
+    final long length = file.length();
+    final long lastModified = file.lastModified();
+    if ((int) length == entry.getSize() && matchesTime(entry, lastModified)
+        && !isRacy(entry, indexModified))
+    {
+      return null;
+    }
+    if ((int) length != entry.getSize() && entry.getSize() != 0)
+    {
+      return "modified";
+    }
+    return entry.getId().equals(hash(file, length, digest)) ? null
+        : "modified";
+  }
+
+  private static boolean matchesTime(final GitIndex.Entry entry,
+      final long lastModified)
+  {
+    if (lastModified / 1000L != entry.getMtimeSeconds())
+    {
+      return false;
+    }
+    // File systems or platforms may only provide seconds.
+    final long millis = lastModified % 1000L;
+    return millis == 0L || millis == entry.getMtimeNanos() / 1000000L;
+  }
+
+  private static boolean isRacy(final GitIndex.Entry entry,
+      final long indexModified)
+  {
+    final long entryModified =
+        entry.getMtimeSeconds() * 1000L + entry.getMtimeNanos() / 1000000L;
+    return entryModified >= indexModified;
+  }
+
+  /**
+   * Computes the object identifier of the content of the file.
+   *
+   * @param file the file to hash.
+   * @param length the length of the file.
+   * @param digest the digest to use.
+   * @return the hexadecimal object identifier.
+   * @throws IOException if the file cannot be read.
+   */
+  static String hash(final File file, final long length,
+      final MessageDigest digest) throws IOException
+  {
+    digest.reset();
+    digest.update(("blob " + length + '\0').getBytes("US-ASCII"));
+    final InputStream in = new FileInputStream(file);
+    try
+    {
+      final byte[] buffer = new byte[8192];
+      long remaining = length;
+      while (remaining > 0)
+      {
+        final int count =
+            in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+        if (count == -1)
+        {
+          break;
+        }
+        digest.update(buffer, 0, count);
+        remaining -= count;
+      }
+      if (remaining > 0)
+      {
+        // The file has been truncated while reading.
+        return null;
+      }
+    }
+    finally
+    {
+      IOUtil.close(in);
+    }
+    return GitObjectDatabase.toHex(digest.digest());
+  }
+
+  private static MessageDigest createDigest() throws IOException
+  {
+    try
+    {
+      return MessageDigest.getInstance("SHA-1");
+    }
+    catch (final NoSuchAlgorithmException e)
+    {
+      final IOException exception = new IOException("SHA-1 is not available.");
+      exception.initCause(e);
+      throw exception;
+    }
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
@@ -0,0 +1,748 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.git;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads objects from the loose object store and the pack files of a Git
+ * repository.
+ * <p>
+ * Packed objects are located with the help of the pack index files (version 1
+ * and 2). Deltified objects (<code>OFS_DELTA</code> and <code>REF_DELTA</code>)
+ * are resolved against their base objects.
+ * </p>
+ */
+public final class GitObjectDatabase
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The object type of a commit.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  public static final int OBJ_COMMIT = 1;
+
+  /**
+   * The object type of a tree.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  public static final int OBJ_TREE = 2;
+
+  /**
+   * The object type of a blob.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  public static final int OBJ_BLOB = 3;
+
+  /**
+   * The object type of an annotated tag.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  public static final int OBJ_TAG = 4;
+
+  /**
+   * The pack entry type of a delta against a base at a relative offset.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int OBJ_OFS_DELTA = 6;
+
+  /**
+   * The pack entry type of a delta against a base identified by its name.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int OBJ_REF_DELTA = 7;
+
+  /**
+   * The names of the object types in the order of their type numbers.
+   */
+  private static final String[] TYPE_NAMES =
+  { null, "commit", "tree", "blob", "tag" };
+
+  /**
+   * The magic number of pack index files of version 2 and later.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int PACK_IDX_MAGIC = 0xff744f63;
+
+  /**
+   * The maximum length of a chain of deltas. Git itself never writes longer
+   * chains, so longer chains indicate a corrupt or cyclic pack.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int MAX_DELTA_DEPTH = 4095;
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The object directories to search. The first is the repository's own,
+   * followed by its alternates.
+   */
+  private final List<File> objectDirectories;
+
+  /**
+   * The pack files of all object directories. Lazily loaded.
+   */
+  private List<Pack> packs;
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   *
+   * @param objectDirectories the object directories to search.
+   */
+  public GitObjectDatabase(final List<File> objectDirectories)
+  {
+    this.objectDirectories = new ArrayList<File>(objectDirectories);
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  /**
+   * An object read from the database.
+   */
+  public static final class GitObject
+  {
+    /**
+     * The type of the object.
+     */
+    private final int type;
+
+    /**
+     * The uncompressed content of the object without header.
+     */
+    private final byte[] data;
+
+    GitObject(final int type, final byte[] data)
+    {
+      this.type = type;
+      this.data = data;
+    }
+
+    /**
+     * Returns the type of the object.
+     *
+     * @return the type of the object.
+     */
+    public int getType()
+    {
+      return type;
+    }
+
+    /**
+     * Returns the uncompressed content of the object without header.
+     *
+     * @return the uncompressed content of the object.
+     */
+    public byte[] getData()
+    {
+      return data;
+    }
+  }
+
+  /**
+   * A pack file with its index.
+   */
+  private static final class Pack
+  {
+    /**
+     * The index file of the pack.
+     */
+    private final File indexFile;
+
+    /**
+     * The pack file containing the object data.
+     */
+    private final File packFile;
+
+    /**
+     * The version of the index file.
+     */
+    private int version;
+
+    /**
+     * The fan-out table of the index. Lazily loaded.
+     */
+    private int[] fanout;
+
+    private Pack(final File indexFile)
+    {
+      this.indexFile = indexFile;
+      final String name = indexFile.getName();
+      final String baseName = name.substring(0, name.length() - 4);
+      this.packFile = new File(indexFile.getParentFile(), baseName + ".pack");
+    }
+
+    /**
+     * Looks up the offset of the object within the pack file.
+     *
+     * @param id the binary object identifier.
+     * @return the offset of the object, <code>-1</code> if the object is not
+     *         part of this pack.
+     * @throws IOException if the index cannot be read.
+     */
+    private long findOffset(final byte[] id) throws IOException
+    {
+      final RandomAccessFile index = new RandomAccessFile(indexFile, "r");
+      try
+      {
+        if (fanout == null)
+        {
+          readFanout(index);
+        }
+
+        final int first = id[0] & 0xff;
+        int low = first == 0 ? 0 : fanout[first - 1];
+        int high = fanout[first];
+        final long total = fanout[255];
+        final byte[] candidate = new byte[id.length];
+        while (low < high)
+        {
+          final int mid = (low + high) >>> 1;
+          index.seek(namePosition(mid));
+          index.readFully(candidate);
+          final int comparison = compare(candidate, id);
+          if (comparison == 0)
+          {
+            return readOffset(index, mid, total, id.length);
+          }
+          else if (comparison < 0)
+          {
+            low = mid + 1;
+          }
+          else
+          {
+            high = mid;
+          }
+        }
+        return -1;
+      }
+      finally
+      {
+        index.close();
+      }
+    }
+
+    private void readFanout(final RandomAccessFile index) throws IOException
+    {
+      final int magic = index.readInt();
+      if (magic == PACK_IDX_MAGIC)
+      {
+        version = index.readInt();
+        if (version != 2)
+        {
+          throw new IOException("Unsupported pack index version " + version
+                                + " in " + indexFile + '.');
+        }
+      }
+      else
+      {
+        version = 1;
+        index.seek(0);
+      }
+
+      final int[] table = new int[256];
+      for (int i = 0; i < table.length; i++)
+      {
+        table[i] = index.readInt();
+      }
+      fanout = table;
+    }
+
+    private long namePosition(final int position)
+    {
+      if (version == 1)
+      {
+        return 256 * 4 + position * 24L + 4;
+      }
+      return 8 + 256 * 4 + position * 20L;
+    }
+
+    private long readOffset(final RandomAccessFile index, final int position,
+        final long total, final int idLength) throws IOException
+    {
+      if (version == 1)
+      {
+        index.seek(256 * 4 + position * 24L);
+        return index.readInt() & 0xffffffffL;
+      }
+
+      final long offsets = 8 + 256 * 4 + total * idLength + total * 4;
+      index.seek(offsets + position * 4L);
+      final int offset = index.readInt();
+      if ((offset & 0x80000000) == 0)
+      {
+        return offset;
+      }
+      index.seek(offsets + total * 4 + (offset & 0x7fffffff) * 8L);
+      return index.readLong();
+    }
+  }
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  private List<Pack> getPacks()
+  {
+    if (packs == null)
+    {
+      final List<Pack> list = new ArrayList<Pack>();
+      for (final File objectDirectory : objectDirectories)
+      {
+        final File packDirectory = new File(objectDirectory, "pack");
+        final File[] indexFiles = packDirectory.listFiles(new FilenameFilter()
+        {
+          public boolean accept(final File dir, final String name)
+          {
+            return name.startsWith("pack-") && name.endsWith(".idx");
+          }
+        });
+        if (indexFiles != null)
+        {
+          Arrays.sort(indexFiles);
+          for (final File indexFile : indexFiles)
+          {
+            list.add(new Pack(indexFile));
+          }
+        }
+      }
+      packs = list;
+    }
+    return packs;
+  }
+
+  // --- get&set --------------------------------------------------------------
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * Reads the object with the given identifier.
+   *
+   * @param objectId the hexadecimal object identifier.
+   * @return the object.
+   * @throws IOException if the object cannot be found or read.
+   */
+  public GitObject read(final String objectId) throws IOException
+  {
+    return read(objectId, 0);
+  }
+
+  private GitObject read(final String objectId, final int depth)
+    throws IOException
+  {
+    final byte[] id = parseId(objectId);
+
+    for (final File objectDirectory : objectDirectories)
+    {
+      final File loose =
+          new File(objectDirectory, objectId.substring(0, 2) + '/'
+                                    + objectId.substring(2));
+      if (loose.isFile())
+      {
+        return readLoose(loose);
+      }
+    }
+
+    for (final Pack pack : getPacks())
+    {
+      final long offset = pack.findOffset(id);
+      if (offset >= 0)
+      {
+        final RandomAccessFile file = new RandomAccessFile(pack.packFile, "r");
+        try
+        {
+          return readPacked(file, offset, depth);
+        }
+        finally
+        {
+          file.close();
+        }
+      }
+    }
+
+    throw new IOException("Cannot find Git object " + objectId + '.');
+  }
+
+  private static GitObject readLoose(final File file) throws IOException
+  {
+    final byte[] raw = inflate(GitRepository.readFully(file));
+    int separator = 0;
+    while (separator < raw.length && raw[separator] != 0)
+    {
+      separator++;
+    }
+    final String header = new String(raw, 0, separator, "US-ASCII");
+    final int space = header.indexOf(' ');
+    final String typeName = space > 0 ? header.substring(0, space) : header;
+    final int type = Arrays.asList(TYPE_NAMES).indexOf(typeName);
+    if (type <= 0 || separator == raw.length)
+    {
+      throw new IOException("Corrupt loose Git object " + file + '.');
+    }
+    final byte[] data = new byte[raw.length - separator - 1];
+    System.arraycopy(raw, separator + 1, data, 0, data.length);
+    return new GitObject(type, data);
+  }
+
+  private GitObject readPacked(final RandomAccessFile file,
+      final long offset, final int depth) throws IOException
+  {
+    if (depth > MAX_DELTA_DEPTH)
+    {
+      throw new IOException("Git delta chain at offset " + offset
+                            + " is longer than " + MAX_DELTA_DEPTH + '.');
+    }
+
+    file.seek(offset);
+    int c = file.readUnsignedByte();
+    final int type = (c >> 4) & 0x07;
+    long size = c & 0x0f;
+    int shift = 4;
+    while ((c & 0x80) != 0)
+    {
+      if (shift > 56)
+      {
+        throw new IOException("Corrupt Git pack entry size at offset "
+                              + offset + '.');
+      }
+      c = file.readUnsignedByte();
+      size += (long) (c & 0x7f) << shift;
+      shift += 7;
+    }
+
+    switch (type)
+    {
+      case OBJ_COMMIT:
+      case OBJ_TREE:
+      case OBJ_BLOB:
+      case OBJ_TAG:
+        return new GitObject(type, inflate(file, size));
+      case OBJ_OFS_DELTA:
+        c = file.readUnsignedByte();
+        long distance = c & 0x7f;
+        while ((c & 0x80) != 0 && distance <= offset)
+        {
+          c = file.readUnsignedByte();
+          distance = ((distance + 1) << 7) + (c & 0x7f);
+        }
+        if (distance <= 0 || distance > offset)
+        {
+          throw new IOException("Invalid Git delta base distance " + distance
+                                + " at offset " + offset + '.');
+        }
+        final byte[] ofsDelta = inflate(file, size);
+        final GitObject ofsBase =
+            readPacked(file, offset - distance, depth + 1);
+        return new GitObject(ofsBase.type, applyDelta(ofsBase.data, ofsDelta));
+      case OBJ_REF_DELTA:
+        final byte[] baseId = new byte[20];
+        file.readFully(baseId);
+        final byte[] refDelta = inflate(file, size);
+        final GitObject refBase = read(toHex(baseId), depth + 1);
+        return new GitObject(refBase.type, applyDelta(refBase.data, refDelta));
+      default:
+        throw new IOException("Unsupported Git pack entry type " + type
+                              + " at offset " + offset + '.');
+    }
+  }
+
+  private static byte[] inflate(final RandomAccessFile file, final long size)
+    throws IOException
+  {
+    if (size > Integer.MAX_VALUE)
+    {
+      throw new IOException("Git object too large: " + size + " bytes.");
+    }
+
+    final byte[] result = new byte[(int) size];
+    final byte[] input = new byte[8192];
+    final Inflater inflater = new Inflater();
+    try
+    {
+      int produced = 0;
+      while (produced < result.length)
+      {
+        if (inflater.needsInput())
+        {
+          final int count = file.read(input);
+          if (count == -1)
+          {
+            throw new IOException("Unexpected end of Git pack file.");
+          }
+          inflater.setInput(input, 0, count);
+        }
+        final int count =
+            inflater.inflate(result, produced, result.length - produced);
+        if (count == 0 && (inflater.finished() || inflater.needsDictionary()))
+        {
+          throw new IOException("Truncated Git pack entry.");
+        }
+        produced += count;
+      }
+      return result;
+    }
+    catch (final DataFormatException e)
+    {
+      throw new IOException("Corrupt Git pack entry: " + e.getMessage());
+    }
+    finally
+    {
+      inflater.end();
+    }
+  }
+
+  private static byte[] inflate(final byte[] compressed) throws IOException
+  {
+    final Inflater inflater = new Inflater();
+    try
+    {
+      inflater.setInput(compressed);
+      byte[] buffer = new byte[Math.max(64, compressed.length * 2)];
+      int produced = 0;
+      while (!inflater.finished())
+      {
+        if (produced == buffer.length)
+        {
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        final int count =
+            inflater.inflate(buffer, produced, buffer.length - produced);
+        if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+        {
+          throw new IOException("Truncated loose Git object.");
+        }
+        produced += count;
+      }
+      return Arrays.copyOf(buffer, produced);
+    }
+    catch (final DataFormatException e)
+    {
+      throw new IOException("Corrupt loose Git object: " + e.getMessage());
+    }
+    finally
+    {
+      inflater.end();
+    }
+  }
+
+  private static byte[] applyDelta(final byte[] base, final byte[] delta)
+    throws IOException
+  {
+    final int[] position = new int[1];
+    final long baseSize = readDeltaSize(delta, position);
+    if (baseSize != base.length)
+    {
+      throw new IOException("Git delta base size mismatch.");
+    }
+    final long resultSize = readDeltaSize(delta, position);
+    if (resultSize > Integer.MAX_VALUE)
+    {
+      throw new IOException("Git object too large: " + resultSize
+                            + " bytes.");
+    }
+    final byte[] result = new byte[(int) resultSize];
+
+    int pos = position[0];
+    int out = 0;
+    while (pos < delta.length)
+    {
+      final int op = delta[pos++] & 0xff;
+      if ((op & 0x80) != 0)
+      {
+        long copyOffset = 0;
+        int copySize = 0;
+        for (int i = 0; i < 4; i++)
+        {
+          if ((op & (1 << i)) != 0)
+          {
+            checkDeltaLength(delta, pos, 1);
+            copyOffset |= (long) (delta[pos++] & 0xff) << (8 * i);
+          }
+        }
+        for (int i = 0; i < 3; i++)
+        {
+          if ((op & (0x10 << i)) != 0)
+          {
+            checkDeltaLength(delta, pos, 1);
+            copySize |= (delta[pos++] & 0xff) << (8 * i);
+          }
+        }
+        if (copySize == 0)
+        {
+          copySize = 0x10000;
+        }
+        if (copyOffset + copySize > base.length)
+        {
+          throw new IOException("Git delta copies beyond the end of its base.");
+        }
+        checkResultLength(result, out, copySize);
+        System.arraycopy(base, (int) copyOffset, result, out, copySize);
+        out += copySize;
+      }
+      else if (op != 0)
+      {
+        checkDeltaLength(delta, pos, op);
+        checkResultLength(result, out, op);
+        System.arraycopy(delta, pos, result, out, op);
+        pos += op;
+        out += op;
+      }
+      else
+      {
+        throw new IOException("Unsupported Git delta instruction.");
+      }
+    }
+
+    if (out != result.length)
+    {
+      throw new IOException("Git delta result size mismatch.");
+    }
+    return result;
+  }
+
+  private static void checkDeltaLength(final byte[] delta, final int pos,
+      final int length) throws IOException
+  {
+    if (pos + length > delta.length)
+    {
+      throw new IOException("Truncated Git delta.");
+    }
+  }
+
+  private static void checkResultLength(final byte[] result, final int out,
+      final int length) throws IOException
+  {
+    if (out + length > result.length)
+    {
+      throw new IOException("Git delta result size mismatch.");
+    }
+  }
+
+  private static long readDeltaSize(final byte[] delta, final int[] position)
+    throws IOException
+  {
+    long size = 0;
+    int shift = 0;
+    int c;
+    do
+    {
+      if (position[0] >= delta.length || shift > 56)
+      {
+        throw new IOException("Truncated Git delta header.");
+      }
+      c = delta[position[0]++] & 0xff;
+      size |= (long) (c & 0x7f) << shift;
+      shift += 7;
+    }
+    while ((c & 0x80) != 0);
+    return size;
+  }
+
+  private static int compare(final byte[] a, final byte[] b)
+  {
+    for (int i = 0; i < a.length; i++)
+    {
+      final int diff = (a[i] & 0xff) - (b[i] & 0xff);
+      if (diff != 0)
+      {
+        return diff;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Converts the hexadecimal representation of an object identifier to its
+   * binary form.
+   *
+   * @param objectId the hexadecimal object identifier.
+   * @return the binary object identifier.
+   * @throws IOException if the identifier is not a valid SHA-1 identifier.
+   */
+  static byte[] parseId(final String objectId) throws IOException
+  {
+    if (objectId == null || objectId.length() != 40)
+    {
+      throw new IOException("Unsupported Git object identifier '" + objectId
+                            + "'.");
+    }
+
+    final byte[] id = new byte[20];
+    for (int i = 0; i < id.length; i++)
+    {
+      final int high = Character.digit(objectId.charAt(2 * i), 16);
+      final int low = Character.digit(objectId.charAt(2 * i + 1), 16);
+      if (high < 0 || low < 0)
+      {
+        throw new IOException("Invalid Git object identifier '" + objectId
+                              + "'.");
+      }
+      id[i] = (byte) ((high << 4) | low);
+    }
+    return id;
+  }
+
+  /**
+   * Converts the binary form of an object identifier to its hexadecimal
+   * representation.
+   *
+   * @param id the binary object identifier.
+   * @return the hexadecimal object identifier.
+   */
+  static String toHex(final byte[] id)
+  {
+    final StringBuilder buffer = new StringBuilder(id.length * 2);
+    for (final byte b : id)
+    {
+      buffer.append(Character.forDigit((b >> 4) & 0x0f, 16));
+      buffer.append(Character.forDigit(b & 0x0f, 16));
+    }
+    return buffer.toString();
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.maven.execution.MavenSession;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmMetrics;
+
+/**
+ * Keeps one <code>git cat-file --batch</code> process per Git repository for
+ * the duration of a build session. All modules of a build read the objects of
+ * a repository through the same process.
+ * <p>
+ * Modules {@link #acquire() acquire} the registry before they read objects
+ * and {@link #release() release} it when they are done. The processes are
+ * closed as soon as no module uses them any longer, so that no process
+ * outlives the work of a session in a long-lived virtual machine. Processes
+ * are only started while the registry is in use and never after it has been
+ * {@link #close() closed}.
+ * </p>
+ */
+public final class GitProcessRegistry
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The key to store the registry in the execution properties of the session.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String SESSION_KEY = GitProcessRegistry.class.getName();
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The running processes by Git directory.
+   */
+  private final Map<String, GitCatFileProcess> processes =
+      new HashMap<String, GitCatFileProcess>();
+
+  /**
+   * The Git directories of the repositories a process could not be started
+   * for. No further attempts are made for these repositories.
+   */
+  private final Set<String> failed = new HashSet<String>();
+
+  /**
+   * The hook to close the processes when the virtual machine shuts down.
+   * <code>null</code> as long as no process has been started.
+   */
+  private Thread shutdownHook;
+
+  /**
+   * The number of users that have acquired the registry and not yet released
+   * it.
+   */
+  private int users;
+
+  /**
+   * The flag that signals that the registry has been closed and no further
+   * processes are started.
+   */
+  private boolean closed;
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   */
+  public GitProcessRegistry()
+  {
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  /**
+   * Returns the registry attached to the given session. The registry is
+   * created and attached on the first call.
+   *
+   * @param session the session to attach the registry to.
+   * @return the registry of the session.
+   */
+  public static GitProcessRegistry getInstance(final MavenSession session)
+  {
+    final Properties properties = session.getExecutionProperties();
+    synchronized (properties)
+    {
+      final Object registry = properties.get(SESSION_KEY);
+      if (registry instanceof GitProcessRegistry)
+      {
+        return (GitProcessRegistry) registry;
+      }
+
+      final GitProcessRegistry newRegistry = new GitProcessRegistry();
+      properties.put(SESSION_KEY, newRegistry);
+      return newRegistry;
+    }
+  }
+
+  // --- get&set --------------------------------------------------------------
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * Registers a user of the processes. Each call must be matched by a call to
+   * {@link #release()}.
+   */
+  public synchronized void acquire()
+  {
+    users++;
+  }
+
+  /**
+   * Unregisters a user of the processes. The processes are closed if no
+   * other user is left.
+   */
+  public void release()
+  {
+    final List<GitCatFileProcess> running;
+    synchronized (this)
+    {
+      if (users > 0)
+      {
+        users--;
+      }
+      if (users > 0)
+      {
+        return;
+      }
+      running = removeProcesses();
+    }
+    closeProcesses(running);
+  }
+
+  /**
+   * Returns the process to read the objects of the given repository. The
+   * process is started on the first call for the repository and restarted if
+   * a previous lookup has failed.
+   *
+   * @param repository the repository to read objects from.
+   * @param metrics the metrics to record a started process in,
+   *          <code>null</code> to not record it.
+   * @return the process.
+   * @throws IOException if the process cannot be started or the registry is
+   *           not in use.
+   */
+  synchronized GitCatFileProcess getProcess(final GitRepository repository,
+      final ScmMetrics metrics) throws IOException
+  {
+    if (closed || users == 0)
+    {
+      throw new IOException("The git cat-file processes are not available"
+                            + " since the registry is not in use.");
+    }
+
+    final File gitDir = repository.getGitDir();
+    final String key = gitDir.getCanonicalPath();
+    final GitCatFileProcess process = processes.get(key);
+    if (process != null && !process.isClosed())
+    {
+      return process;
+    }
+    if (failed.contains(key))
+    {
+      throw new IOException("Cannot start git cat-file for " + gitDir + '.');
+    }
+
+    final GitCatFileProcess newProcess;
+    try
+    {
+      newProcess = GitCatFileProcess.start(repository.getWorkTree());
+    }
+    catch (final IOException e)
+    {
+      failed.add(key);
+      throw e;
+    }
+    if (metrics != null)
+    {
+      metrics.recordProcess(0L);
+    }
+    processes.put(key, newProcess);
+    registerShutdownHook();
+    return newProcess;
+  }
+
+  private void registerShutdownHook()
+  {
+    if (shutdownHook == null)
+    {
+      shutdownHook = new Thread("git cat-file shutdown")
+      {
+        @Override
+        public void run()
+        {
+          close();
+        }
+      };
+      Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+  }
+
+  /**
+   * Closes all processes of the registry. No processes are started after the
+   * registry has been closed.
+   */
+  public void close()
+  {
+    final List<GitCatFileProcess> running;
+    synchronized (this)
+    {
+      closed = true;
+      running = removeProcesses();
+    }
+    closeProcesses(running);
+  }
+
+  /**
+   * Removes all processes and the shutdown hook from the registry. Must be
+   * called while holding the lock of the registry.
+   *
+   * @return the removed processes.
+   */
+  private List<GitCatFileProcess> removeProcesses()
+  {
+    final List<GitCatFileProcess> running =
+        new ArrayList<GitCatFileProcess>(processes.values());
+    processes.clear();
+    if (shutdownHook != null)
+    {
+      try
+      {
+        Runtime.getRuntime().removeShutdownHook(shutdownHook);
+      }
+      catch (final IllegalStateException e)
+      {
+        // the virtual machine is already shutting down.
+      }
+      shutdownHook = null;
+    }
+    return running;
+  }
+
+  private static void closeProcesses(final List<GitCatFileProcess> running)
+  {
+    for (final GitCatFileProcess process : running)
+    {
+      process.close();
+    }
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
@@ -0,0 +1,435 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.git;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Locates the administrative directory of a Git working copy and resolves
+ * references by reading the files within it.
+ * <p>
+ * Linked work trees are supported by following the <code>gitdir:</code> file
+ * and the <code>commondir</code> file of the work tree.
+ * </p>
+ */
+public final class GitRepository
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The prefix of a symbolic reference.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String SYMREF_PREFIX = "ref:";
+
+  /**
+   * The prefix of a <code>.git</code> file pointing to the administrative
+   * directory of a linked work tree or submodule.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String GITDIR_PREFIX = "gitdir:";
+
+  /**
+   * The maximum number of symbolic references to follow.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int MAX_SYMREF_DEPTH = 5;
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The root directory of the working copy.
+   */
+  private final File workTree;
+
+  /**
+   * The administrative directory of the working copy. For linked work trees
+   * this directory contains the work tree specific <code>HEAD</code>.
+   */
+  private final File gitDir;
+
+  /**
+   * The directory shared by all work trees of the repository containing refs
+   * and objects.
+   */
+  private final File commonDir;
+
+  /**
+   * The object database of the repository. Lazily created.
+   */
+  private GitObjectDatabase objectDatabase;
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   *
+   * @param workTree the root directory of the working copy.
+   * @param gitDir the administrative directory of the working copy.
+   * @throws IOException if the common directory cannot be read.
+   */
+  private GitRepository(final File workTree, final File gitDir)
+    throws IOException
+  {
+    this.workTree = workTree;
+    this.gitDir = gitDir;
+    this.commonDir = readCommonDir(gitDir);
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  /**
+   * Searches the given directory and its parents for a Git working copy.
+   *
+   * @param directory the directory to start the search.
+   * @return the repository, <code>null</code> if the directory is not within a
+   *         Git working copy.
+   * @throws IOException if the administrative files cannot be read.
+   */
+  public static GitRepository find(final File directory) throws IOException
+  {
+    File current = directory != null ? directory.getAbsoluteFile() : null;
+    while (current != null)
+    {
+      final File dotGit = new File(current, ".git");
+      if (dotGit.isDirectory())
+      {
+        return new GitRepository(current, dotGit);
+      }
+      else if (dotGit.isFile())
+      {
+        final String content = readFirstLine(dotGit);
+        if (content != null && content.startsWith(GITDIR_PREFIX))
+        {
+          final File gitDir =
+              resolve(current, content.substring(GITDIR_PREFIX.length())
+                  .trim());
+          return new GitRepository(current, gitDir);
+        }
+      }
+      current = current.getParentFile();
+    }
+    return null;
+  }
+
+  private static File readCommonDir(final File gitDir) throws IOException
+  {
+    final File commonDirFile = new File(gitDir, "commondir");
+    if (commonDirFile.isFile())
+    {
+      final String path = readFirstLine(commonDirFile);
+      if (path != null && path.length() > 0)
+      {
+        return resolve(gitDir, path.trim());
+      }
+    }
+    return gitDir;
+  }
+
+  private static File resolve(final File base, final String path)
+  {
+    final File file = new File(path);
+    return file.isAbsolute() ? file : new File(base, path);
+  }
+
+  // --- get&set --------------------------------------------------------------
+
+  /**
+   * Returns the root directory of the working copy.
+   *
+   * @return the root directory of the working copy.
+   */
+  public File getWorkTree()
+  {
+    return workTree;
+  }
+
+  /**
+   * Returns the administrative directory of the working copy.
+   *
+   * @return the administrative directory of the working copy.
+   */
+  public File getGitDir()
+  {
+    return gitDir;
+  }
+
+  /**
+   * Returns the directory shared by all work trees of the repository.
+   *
+   * @return the directory shared by all work trees of the repository.
+   */
+  public File getCommonDir()
+  {
+    return commonDir;
+  }
+
+  /**
+   * Returns the object database of the repository.
+   *
+   * @return the object database of the repository.
+   * @throws IOException if the list of alternate object directories cannot be
+   *           read.
+   */
+  public GitObjectDatabase getObjectDatabase() throws IOException
+  {
+    if (objectDatabase == null)
+    {
+      objectDatabase = new GitObjectDatabase(readObjectDirectories());
+    }
+    return objectDatabase;
+  }
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * Resolves <code>HEAD</code> to the identifier of the commit it points to.
+   *
+   * @return the hexadecimal object identifier of <code>HEAD</code>,
+   *         <code>null</code> if <code>HEAD</code> points to a branch without
+   *         commits.
+   * @throws IOException if the references cannot be read.
+   */
+  public String resolveHead() throws IOException
+  {
+    return resolve("HEAD");
+  }
+
+  /**
+   * Checks if the parent of the <code>HEAD</code> commit can be read. It cannot
+   * be read for shallow clones, whose history is cut off, and if
+   * <code>HEAD</code> is a root commit. Repositories with grafts are treated
+   * like shallow clones, since grafts may replace the parents of commits.
+   *
+   * @return <code>true</code> if the parent of the <code>HEAD</code> commit is
+   *         available, <code>false</code> otherwise.
+   * @throws IOException if the references or the commit cannot be read.
+   */
+  public boolean isHeadParentAvailable() throws IOException
+  {
+    if (new File(commonDir, "shallow").isFile()
+        || new File(commonDir, "info/grafts").isFile())
+    {
+      return false;
+    }
+    final String head = resolveHead();
+    if (head == null)
+    {
+      return false;
+    }
+    final GitObjectDatabase.GitObject object = getObjectDatabase().read(head);
+    return object.getType() == GitObjectDatabase.OBJ_COMMIT
+           && GitRevisionReader.readHeader(
+               GitRevisionReader.toString(object.getData()), "parent") != null;
+  }
+
+  /**
+   * Resolves the given reference to an object identifier. Symbolic references
+   * are followed.
+   *
+   * @param refName the name of the reference, such as <code>HEAD</code> or
+   *          <code>refs/heads/master</code>.
+   * @return the hexadecimal object identifier the reference points to,
+   *         <code>null</code> if the reference does not exist.
+   * @throws IOException if the references cannot be read.
+   */
+  public String resolve(final String refName) throws IOException
+  {
+    String name = refName;
+    for (int depth = 0; depth <= MAX_SYMREF_DEPTH; depth++)
+    {
+      final String value = readRef(name);
+      if (value == null)
+      {
+        return null;
+      }
+      if (!value.startsWith(SYMREF_PREFIX))
+      {
+        return value;
+      }
+      name = value.substring(SYMREF_PREFIX.length()).trim();
+    }
+    throw new IOException("Too many levels of symbolic references resolving '"
+                          + refName + "' in " + gitDir + '.');
+  }
+
+  private String readRef(final String name) throws IOException
+  {
+    final File local = new File(gitDir, name);
+    if (local.isFile())
+    {
+      return readFirstLine(local);
+    }
+    if (!commonDir.equals(gitDir))
+    {
+      final File shared = new File(commonDir, name);
+      if (shared.isFile())
+      {
+        return readFirstLine(shared);
+      }
+    }
+    return readPackedRef(name);
+  }
+
+  private String readPackedRef(final String name) throws IOException
+  {
+    final File packedRefs = new File(commonDir, "packed-refs");
+    if (!packedRefs.isFile())
+    {
+      return null;
+    }
+
+    final BufferedReader reader =
+        new BufferedReader(new InputStreamReader(new FileInputStream(
+            packedRefs), "UTF-8"));
+    try
+    {
+      String line;
+      while ((line = reader.readLine()) != null)
+      {
+        if (line.length() == 0 || line.charAt(0) == '#'
+            || line.charAt(0) == '^')
+        {
+          continue;
+        }
+        final int space = line.indexOf(' ');
+        if (space > 0 && name.equals(line.substring(space + 1).trim()))
+        {
+          return line.substring(0, space);
+        }
+      }
+      return null;
+    }
+    finally
+    {
+      IOUtil.close(reader);
+    }
+  }
+
+  private List<File> readObjectDirectories() throws IOException
+  {
+    final List<File> directories = new ArrayList<File>();
+    final File objects = new File(commonDir, "objects");
+    directories.add(objects);
+
+    final File alternates = new File(objects, "info/alternates");
+    if (alternates.isFile())
+    {
+      final BufferedReader reader =
+          new BufferedReader(new InputStreamReader(new FileInputStream(
+              alternates), "UTF-8"));
+      try
+      {
+        String line;
+        while ((line = reader.readLine()) != null)
+        {
+          final String path = line.trim();
+          if (path.length() > 0 && path.charAt(0) != '#')
+          {
+            directories.add(resolve(objects, path));
+          }
+        }
+      }
+      finally
+      {
+        IOUtil.close(reader);
+      }
+    }
+    return directories;
+  }
+
+  /**
+   * Reads the first line of the given file.
+   *
+   * @param file the file to read.
+   * @return the first line of the file without line terminator,
+   *         <code>null</code> if the file is empty.
+   * @throws IOException if the file cannot be read.
+   */
+  static String readFirstLine(final File file) throws IOException
+  {
+    final String content = new String(readFully(file), "UTF-8");
+    final int end = content.indexOf('\n');
+    final String line = end >= 0 ? content.substring(0, end) : content;
+    final String trimmed = line.trim();
+    return trimmed.length() > 0 ? trimmed : null;
+  }
+
+  /**
+   * Reads the content of the given file.
+   *
+   * @param file the file to read.
+   * @return the content of the file.
+   * @throws IOException if the file cannot be read.
+   */
+  static byte[] readFully(final File file) throws IOException
+  {
+    final InputStream in = new FileInputStream(file);
+    try
+    {
+      final ByteArrayOutputStream out =
+          new ByteArrayOutputStream((int) Math.max(32, file.length()));
+      final byte[] buffer = new byte[8192];
+      int count;
+      while ((count = in.read(buffer)) != -1)
+      {
+        out.write(buffer, 0, count);
+      }
+      return out.toByteArray();
+    }
+    finally
+    {
+      IOUtil.close(in);
+    }
+  }
+
+  // --- object basics --------------------------------------------------------
+
+  /**
+   * Returns the string representation of the object.
+   *
+   * @return the string representation of the object.
+   */
+  @Override
+  public String toString()
+  {
+    return "Git repository: workTree=" + workTree + ", gitDir=" + gitDir;
+  }
+}
@@ -0,0 +1,388 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import org.apache.maven.scm.ScmFileSet;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.AbstractBuildMojo;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.LocallyModifiedInfo;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ModifiedFilesCollector;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.Revision;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.RevisionNumberFetcher;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmException;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmOperationTimer;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.maven.ScmAccessInfo;
+
+/**
+ * Fetches the latest revision of a Git working copy by reading the repository
+ * files. If the files cannot be read and a process registry is provided, the
+ * revision is read by the <code>git cat-file</code> process of the repository
+ * that is shared by all modules of the build. Otherwise the request is passed
+ * to the delegate.
+ * <p>
+ * If access information is provided, modifications are checked by scanning the
+ * output of <code>git status</code> while the command runs or, if requested,
+ * by comparing the index with the working tree without running
+ * <code>git</code>. Only a bounded summary of the modified files is kept. If
+ * the build is to fail on local modifications, the scan is stopped at the
+ * first reported file. If <code>git</code> cannot be run, the check is
+ * delegated. If a remote revision is given, the working tree is compared with
+ * that revision by scanning the names of the changed files from
+ * <code>git diff --name-status</code>, without producing the patch.
+ * </p>
+ */
+public final class GitRevisionNumberFetcher extends AbstractBuildMojo
+    implements RevisionNumberFetcher
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The reader to fetch the revision from the repository files.
+   */
+  private final GitRevisionReader reader;
+
+  /**
+   * The root directory of the working copy.
+   */
+  private final File rootDirectory;
+
+  /**
+   * The information to query the SCM. May be <code>null</code> if the check
+   * for modifications is always delegated.
+   */
+  private final ScmAccessInfo scmAccessInfo;
+
+  /**
+   * The revision to compare the working tree with. May be <code>null</code>
+   * if the working tree is checked for local modifications.
+   */
+  private final String remoteRevision;
+
+  /**
+   * The registry of the <code>git cat-file</code> processes to read the
+   * revision with if the repository files cannot be read. May be
+   * <code>null</code> if no process is to be used.
+   */
+  private final GitProcessRegistry processes;
+
+  /**
+   * The fetcher to use if the repository files cannot be read.
+   */
+  private final RevisionNumberFetcher delegate;
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   *
+   * @param rootDirectory the root directory of the working copy.
+   * @param delegate the fetcher to use if the repository files cannot be read.
+   */
+  public GitRevisionNumberFetcher(final File rootDirectory,
+      final RevisionNumberFetcher delegate)
+  {
+    this(rootDirectory, null, delegate);
+  }
+
+  /**
+   * Constructor to check for modifications by scanning the output of
+   * <code>git status</code>.
+   *
+   * @param rootDirectory the root directory of the working copy.
+   * @param scmAccessInfo the information to query the SCM. May be
+   *          <code>null</code> if the check for modifications is always
+   *          delegated.
+   * @param delegate the fetcher to use if the repository files cannot be read.
+   */
+  public GitRevisionNumberFetcher(final File rootDirectory,
+      final ScmAccessInfo scmAccessInfo, final RevisionNumberFetcher delegate)
+  {
+    this(rootDirectory, scmAccessInfo, null, delegate);
+  }
+
+  /**
+   * Constructor to read the revision with a <code>git cat-file</code> process
+   * if the repository files cannot be read.
+   *
+   * @param rootDirectory the root directory of the working copy.
+   * @param scmAccessInfo the information to query the SCM. May be
+   *          <code>null</code> if the check for modifications is always
+   *          delegated.
+   * @param processes the registry of the processes to read the revision
+   *          with. May be <code>null</code> if no process is to be used.
+   * @param delegate the fetcher to use if the revision cannot be read.
+   */
+  public GitRevisionNumberFetcher(final File rootDirectory,
+      final ScmAccessInfo scmAccessInfo, final GitProcessRegistry processes,
+      final RevisionNumberFetcher delegate)
+  {
+    this(rootDirectory, scmAccessInfo, null, processes, delegate);
+  }
+
+  /**
+   * Constructor to check for differences to a remote revision by scanning the
+   * output of <code>git diff --name-status</code>.
+   *
+   * @param rootDirectory the root directory of the working copy.
+   * @param scmAccessInfo the information to query the SCM. May be
+   *          <code>null</code> if the check for modifications is always
+   *          delegated.
+   * @param remoteRevision the revision to compare the working tree with,
+   *          <code>null</code> to check for local modifications.
+   * @param processes the registry of the processes to read the revision
+   *          with. May be <code>null</code> if no process is to be used.
+   * @param delegate the fetcher to use if the revision cannot be read.
+   */
+  public GitRevisionNumberFetcher(final File rootDirectory,
+      final ScmAccessInfo scmAccessInfo, final String remoteRevision,
+      final GitProcessRegistry processes, final RevisionNumberFetcher delegate)
+  {
+    this.reader = new GitRevisionReader(rootDirectory);
+    this.rootDirectory = rootDirectory;
+    this.scmAccessInfo = scmAccessInfo;
+    this.remoteRevision = remoteRevision;
+    this.processes = processes;
+    this.delegate = delegate;
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  // --- get&set --------------------------------------------------------------
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Revision fetchLatestRevisionNumber() throws ScmException
+  {
+    try
+    {
+      final Revision revision = reader.readHeadRevision();
+      if (revision != null)
+      {
+        if (getLog().isDebugEnabled())
+        {
+          getLog().debug("Read revision '" + revision
+                         + "' from Git repository files.");
+        }
+        return revision;
+      }
+    }
+    catch (final ScmException e)
+    {
+      if (processes != null)
+      {
+        if (getLog().isDebugEnabled())
+        {
+          getLog().debug(
+              "Cannot read Git repository files, using git cat-file.", e);
+        }
+        return fetchWithProcess();
+      }
+      if (getLog().isDebugEnabled())
+      {
+        getLog().debug(
+            "Cannot read Git repository files, using SCM provider.", e);
+      }
+    }
+    return delegate.fetchLatestRevisionNumber();
+  }
+
+  private Revision fetchWithProcess() throws ScmException
+  {
+    try
+    {
+      final GitRepository repository = GitRepository.find(rootDirectory);
+      final ScmOperationTimer timer =
+          scmAccessInfo != null ? scmAccessInfo.getOperationTimer() : null;
+      final long timeout = timer != null ? timer.getTimeoutInMillis() : 0L;
+      if (repository != null && timeout >= 0L)
+      {
+        final Revision revision =
+            processes.getProcess(repository,
+                timer != null ? timer.getMetrics() : null).readRevision(
+                "HEAD", timeout);
+        if (revision != null)
+        {
+          if (getLog().isDebugEnabled())
+          {
+            getLog().debug("Read revision '" + revision
+                           + "' with git cat-file.");
+          }
+          return revision;
+        }
+      }
+    }
+    catch (final InterruptedIOException e)
+    {
+      if (scmAccessInfo != null)
+      {
+        scmAccessInfo.getOperationTimer().recordTimeout();
+      }
+      getLog().warn(e.getMessage() + " Using SCM provider.");
+    }
+    catch (final IOException e)
+    {
+      if (getLog().isDebugEnabled())
+      {
+        getLog().debug("Cannot read revision with git cat-file,"
+                       + " using SCM provider.", e);
+      }
+    }
+    return delegate.fetchLatestRevisionNumber();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public LocallyModifiedInfo containsModifications(final ScmFileSet fileSet)
+    throws ScmException
+  {
+    if (scmAccessInfo != null)
+    {
+      try
+      {
+        final LocallyModifiedInfo info = scanModifications(fileSet);
+        if (getLog().isDebugEnabled())
+        {
+          getLog().debug("  Modifications have"
+                         + (info.isLocallyModified() ? "" : " not")
+                         + " been found.");
+        }
+        return info;
+      }
+      catch (final IOException e)
+      {
+        if (getLog().isDebugEnabled())
+        {
+          getLog().debug("Cannot scan git output, using SCM provider.", e);
+        }
+      }
+    }
+    return delegate.containsModifications(fileSet);
+  }
+
+  private LocallyModifiedInfo scanModifications(final ScmFileSet fileSet)
+    throws IOException
+  {
+    final GitRepository repository = GitRepository.find(rootDirectory);
+    if (repository == null)
+    {
+      throw new IOException("No Git working copy found at " + rootDirectory
+                            + '.');
+    }
+
+    if (remoteRevision == null && scmAccessInfo.isGitIndexStatus())
+    {
+      try
+      {
+        return scanModifications(repository, fileSet, true);
+      }
+      catch (final IOException e)
+      {
+        if (getLog().isDebugEnabled())
+        {
+          getLog().debug("Cannot check Git index, running git status.", e);
+        }
+      }
+    }
+    return scanModifications(repository, fileSet, false);
+  }
+
+  private LocallyModifiedInfo scanModifications(
+      final GitRepository repository, final ScmFileSet fileSet,
+      final boolean index) throws IOException
+  {
+    if (scmAccessInfo.isFailIndicated())
+    {
+      final String[] first = new String[1];
+      scan(repository, fileSet, index, new GitStatusScanner.Handler()
+      {
+        public boolean handle(final String path, final String type)
+        {
+          if (scmAccessInfo.isReportedModification(path))
+          {
+            first[0] = ModifiedFilesCollector.renderEntry(path, type);
+            return true;
+          }
+          return false;
+        }
+      });
+      return new LocallyModifiedInfo(first[0] != null, first[0]);
+    }
+
+    final ModifiedFilesCollector collector =
+        scmAccessInfo.createModifiedFilesCollector();
+    scan(repository, fileSet, index, new GitStatusScanner.Handler()
+    {
+      public boolean handle(final String path, final String type)
+      {
+        if (scmAccessInfo.isReportedModification(path))
+        {
+          collector.add(path, type);
+        }
+        return false;
+      }
+    });
+    return collector.createInfo();
+  }
+
+  private void scan(final GitRepository repository, final ScmFileSet fileSet,
+      final boolean index, final GitStatusScanner.Handler handler)
+    throws IOException
+  {
+    if (index)
+    {
+      new GitIndexStatus(repository, handler).scan(fileSet.getBasedir(),
+          fileSet.getFileList());
+    }
+    else
+    {
+      final GitStatusScanner scanner =
+          new GitStatusScanner(repository.getWorkTree(), scmAccessInfo
+              .getOperationTimer().getMetrics(), handler);
+      if (remoteRevision != null)
+      {
+        scanner.scanDiff(fileSet.getBasedir(), fileSet.getFileList(),
+            remoteRevision);
+      }
+      else
+      {
+        scanner.scan(fileSet.getBasedir(), fileSet.getFileList());
+      }
+    }
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.git;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.Date;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.Revision;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmException;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.maven.StringRevision;
+
+/**
+ * Reads the identifier and the committer date of the <code>HEAD</code> commit
+ * directly from the files of a Git repository.
+ */
+public final class GitRevisionReader
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The maximum number of annotated tags to peel to reach a commit.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int MAX_PEEL_DEPTH = 10;
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The directory within the working copy to start the search for the
+   * repository.
+   */
+  private final File directory;
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   *
+   * @param directory the directory within the working copy to start the search
+   *          for the repository.
+   */
+  public GitRevisionReader(final File directory)
+  {
+    this.directory = directory;
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  // --- get&set --------------------------------------------------------------
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * Reads the revision of the <code>HEAD</code> commit.
+   *
+   * @return the revision of the <code>HEAD</code> commit, <code>null</code> if
+   *         the directory is not part of a Git working copy or the current
+   *         branch has no commits.
+   * @throws ScmException if the repository files cannot be read.
+   */
+  public Revision readHeadRevision() throws ScmException
+  {
+    try
+    {
+      final GitRepository repository = GitRepository.find(directory);
+      if (repository == null)
+      {
+        return null;
+      }
+
+      final String head = repository.resolveHead();
+      if (head == null)
+      {
+        return null;
+      }
+
+      return readRevision(repository.getObjectDatabase(), head);
+    }
+    catch (final IOException e)
+    {
+      throw new ScmException("Cannot read Git revision from '" + directory
+                             + "'.", e);
+    }
+  }
+
+  /**
+   * Reads the revision of the commit with the given identifier. Annotated tags
+   * are peeled to the commit they point to.
+   *
+   * @param database the object database to read from.
+   * @param objectId the identifier of the commit or tag.
+   * @return the revision of the commit.
+   * @throws IOException if the commit cannot be read.
+   */
+  static Revision readRevision(final GitObjectDatabase database,
+      final String objectId) throws IOException
+  {
+    String id = objectId;
+    for (int depth = 0; depth <= MAX_PEEL_DEPTH; depth++)
+    {
+      final GitObjectDatabase.GitObject object = database.read(id);
+      final String content = toString(object.getData());
+      if (object.getType() == GitObjectDatabase.OBJ_COMMIT)
+      {
+        return new StringRevision(id, parseCommitterDate(id, content));
+      }
+      else if (object.getType() == GitObjectDatabase.OBJ_TAG)
+      {
+        id = readHeader(content, "object");
+        if (id == null)
+        {
+          throw new IOException("Git tag " + objectId
+                                + " does not reference an object.");
+        }
+      }
+      else
+      {
+        throw new IOException("Git object " + id + " is not a commit.");
+      }
+    }
+    throw new IOException("Too many levels of tags peeling " + objectId + '.');
+  }
+
+  /**
+   * Parses the committer date from the content of a commit.
+   *
+   * @param id the identifier of the commit for messages.
+   * @param content the content of the commit.
+   * @return the committer date.
+   * @throws IOException if the date cannot be parsed.
+   */
+  static Date parseCommitterDate(final String id, final String content)
+    throws IOException
+  {
+    final String committer = readHeader(content, "committer");
+    if (committer != null)
+    {
+      // Format: name <email> timestamp timezone
+      final int end = committer.lastIndexOf(' ');
+      final int start = end > 0 ? committer.lastIndexOf(' ', end - 1) : -1;
+      if (start >= 0)
+      {
+        try
+        {
+          final long seconds =
+              Long.parseLong(committer.substring(start + 1, end));
+          return new Date(seconds * 1000L);
+        }
+        catch (final NumberFormatException e)
+        {
+          // fall through to report the corrupt header.
+        }
+      }
+    }
+    throw new IOException("Cannot read committer date of Git commit " + id
+                          + '.');
+  }
+
+  /**
+   * Reads the value of the first header with the given name from the content
+   * of a commit or tag.
+   *
+   * @param content the content of the commit or tag.
+   * @param name the name of the header.
+   * @return the value of the header, <code>null</code> if it is missing.
+   */
+  static String readHeader(final String content, final String name)
+  {
+    final String prefix = name + ' ';
+    int start = 0;
+    while (start < content.length())
+    {
+      int end = content.indexOf('\n', start);
+      if (end < 0)
+      {
+        end = content.length();
+      }
+      if (end == start)
+      {
+        // An empty line terminates the headers.
+        return null;
+      }
+      if (content.startsWith(prefix, start))
+      {
+        return content.substring(start + prefix.length(), end);
+      }
+      start = end + 1;
+    }
+    return null;
+  }
+
+  /**
+   * Decodes the content of a commit or tag.
+   *
+   * @param data the raw content.
+   * @return the decoded content.
+   * @throws UnsupportedEncodingException never, UTF-8 is always supported.
+   */
+  static String toString(final byte[] data)
+    throws UnsupportedEncodingException
+  {
+    return new String(data, "UTF-8");
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
@@ -0,0 +1,504 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.git;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmMetrics;
+
+/**
+ * Scans the output of <code>git status</code> for modified files. The output
+ * is consumed while the command is running and the command is stopped as soon
+ * as the handler asks to. Untracked files are not reported, as with the Git
+ * provider of Maven SCM.
+ * <p>
+ * To compare the working tree with another revision, the names and status of
+ * the changed files are scanned from <code>git diff --name-status</code>.
+ * The content of the changes is never produced.
+ * </p>
+ */
+final class GitStatusScanner
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The maximum number of bytes of the error output of the command to add to
+   * error messages.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int MAX_MESSAGE_LENGTH = 1024;
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The root directory of the working copy.
+   */
+  private final File workTree;
+
+  /**
+   * The handler to pass the modified files to.
+   */
+  private final Handler handler;
+
+  /**
+   * The metrics to record started commands in. May be <code>null</code>.
+   */
+  private final ScmMetrics metrics;
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   *
+   * @param workTree the root directory of the working copy.
+   * @param handler the handler to pass the modified files to.
+   */
+  GitStatusScanner(final File workTree, final Handler handler)
+  {
+    this(workTree, null, handler);
+  }
+
+  /**
+   * Constructor recording the started commands.
+   *
+   * @param workTree the root directory of the working copy.
+   * @param metrics the metrics to record started commands in,
+   *          <code>null</code> to not record them.
+   * @param handler the handler to pass the modified files to.
+   */
+  GitStatusScanner(final File workTree, final ScmMetrics metrics,
+      final Handler handler)
+  {
+    this.workTree = workTree;
+    this.metrics = metrics;
+    this.handler = handler;
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  /**
+   * Receives the modified files.
+   */
+  interface Handler
+  {
+    /**
+     * Handles a modified file.
+     *
+     * @param path the path of the file relative to the checked directory.
+     * @param type the type of the modification in terms of the Maven SCM API,
+     *          for example <code>modified</code>.
+     * @return <code>true</code> to stop the scan, <code>false</code> to
+     *         continue.
+     */
+    boolean handle(String path, String type);
+  }
+
+  /**
+   * Consumes the error output of the command so that the command does not
+   * block on a full pipe. The beginning of the output is kept for error
+   * messages.
+   */
+  private static final class ErrorDrain extends Thread
+  {
+    /**
+     * The error output of the command.
+     */
+    private final InputStream in;
+
+    /**
+     * The beginning of the error output.
+     */
+    private final ByteArrayOutputStream message = new ByteArrayOutputStream();
+
+    /**
+     * Default constructor.
+     *
+     * @param in the error output of the command.
+     */
+    ErrorDrain(final InputStream in)
+    {
+      super("buildmetadata-git-status-stderr");
+      setDaemon(true);
+      this.in = in;
+    }
+
+    @Override
+    public void run()
+    {
+      final byte[] buffer = new byte[1024];
+      try
+      {
+        int count;
+        while ((count = in.read(buffer)) != -1)
+        {
+          synchronized (message)
+          {
+            final int room = MAX_MESSAGE_LENGTH - message.size();
+            message.write(buffer, 0, Math.max(0, Math.min(room, count)));
+          }
+        }
+      }
+      catch (final IOException e)
+      {
+        // the command has been stopped
+      }
+    }
+
+    /**
+     * Returns the beginning of the error output read so far.
+     *
+     * @return the beginning of the error output.
+     */
+    String getMessage()
+    {
+      try
+      {
+        join(1000L);
+      }
+      catch (final InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+      synchronized (message)
+      {
+        return message.toString().trim();
+      }
+    }
+  }
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  // --- get&set --------------------------------------------------------------
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * Passes the modified files within the given directory to the handler.
+   *
+   * @param directory the directory to check.
+   * @param files the files to check relative to the directory. If empty, all
+   *          files of the directory are checked.
+   * @return <code>true</code> if the handler stopped the scan,
+   *         <code>false</code> if all modified files have been passed.
+   * @throws IOException if the command cannot be run or fails.
+   */
+  boolean scan(final File directory, final List<File> files)
+    throws IOException
+  {
+    return run(directory, createCommand(files), false);
+  }
+
+  /**
+   * Passes the files within the given directory that differ from the given
+   * revision to the handler.
+   *
+   * @param directory the directory to check.
+   * @param files the files to check relative to the directory. If empty, all
+   *          files of the directory are checked.
+   * @param revision the revision to compare the working tree with.
+   * @return <code>true</code> if the handler stopped the scan,
+   *         <code>false</code> if all changed files have been passed.
+   * @throws IOException if the command cannot be run or fails.
+   */
+  boolean scanDiff(final File directory, final List<File> files,
+      final String revision) throws IOException
+  {
+    if (revision.length() == 0 || revision.charAt(0) == '-')
+    {
+      throw new IOException("Invalid revision to compare with: '" + revision
+                            + "'.");
+    }
+    return run(directory, createDiffCommand(revision, files), true);
+  }
+
+  private boolean run(final File directory, final List<String> command,
+      final boolean diff) throws IOException
+  {
+    final String prefix = createPrefix(directory);
+    final ProcessBuilder builder =
+        new ProcessBuilder(command).directory(directory);
+    final Process process = builder.start();
+    if (metrics != null)
+    {
+      metrics.recordProcess(0L);
+    }
+    final ErrorDrain errors = new ErrorDrain(process.getErrorStream());
+    errors.start();
+    boolean completed = false;
+    try
+    {
+      process.getOutputStream().close();
+      final InputStream in = new BufferedInputStream(process.getInputStream());
+      String entry;
+      while ((entry = readEntry(in)) != null)
+      {
+        final String type;
+        String path;
+        if (diff)
+        {
+          // Format: status NUL path NUL, renames and copies: NUL old NUL new
+          if (entry.length() == 0)
+          {
+            continue;
+          }
+          type = toDiffType(entry.charAt(0));
+          path = readEntry(in);
+          if (entry.charAt(0) == 'R' || entry.charAt(0) == 'C')
+          {
+            path = readEntry(in);
+          }
+          if (path == null)
+          {
+            break;
+          }
+        }
+        else
+        {
+          if (!isStatusEntry(entry))
+          {
+            continue;
+          }
+          type = toType(entry);
+          path = entry.substring(3);
+          final char x = entry.charAt(0);
+          if (x == 'R' || x == 'C')
+          {
+            readEntry(in);
+          }
+        }
+        final String relativePath = relativize(prefix, path);
+        if (relativePath != null && handler.handle(relativePath, type))
+        {
+          return true;
+        }
+      }
+
+      final int exitCode = waitFor(process);
+      completed = true;
+      if (exitCode != 0)
+      {
+        throw new IOException("git " + command.get(1)
+                              + " failed with exit code " + exitCode + ": "
+                              + errors.getMessage());
+      }
+      return false;
+    }
+    finally
+    {
+      if (!completed)
+      {
+        process.destroy();
+      }
+      process.getInputStream().close();
+    }
+  }
+
+  private static List<String> createCommand(final List<File> files)
+  {
+    final List<String> command = new ArrayList<String>();
+    command.add("git");
+    command.add("status");
+    command.add("--porcelain");
+    command.add("-z");
+    command.add("--untracked-files=no");
+    addPaths(command, files);
+    return command;
+  }
+
+  private static List<String> createDiffCommand(final String revision,
+      final List<File> files)
+  {
+    final List<String> command = new ArrayList<String>();
+    command.add("git");
+    command.add("diff");
+    command.add("--name-status");
+    command.add("-z");
+    command.add("--no-renames");
+    command.add("--no-ext-diff");
+    command.add(revision);
+    addPaths(command, files);
+    return command;
+  }
+
+  private static void addPaths(final List<String> command,
+      final List<File> files)
+  {
+    command.add("--");
+    if (files == null || files.isEmpty())
+    {
+      command.add(".");
+    }
+    else
+    {
+      for (final File file : files)
+      {
+        command.add(file.getPath());
+      }
+    }
+  }
+
+  /**
+   * Returns the path of the directory relative to the root of the working
+   * copy with a trailing slash. The porcelain format reports paths relative
+   * to the root of the working copy.
+   *
+   * @param directory the directory to check.
+   * @return the prefix to strip from reported paths, the empty string if the
+   *         directory is the root of the working copy.
+   * @throws IOException if the directory is not within the working copy.
+   */
+  private String createPrefix(final File directory) throws IOException
+  {
+    final String root = workTree.getCanonicalPath();
+    final String path = directory.getCanonicalPath();
+    if (path.equals(root))
+    {
+      return "";
+    }
+    if (!path.startsWith(root + File.separatorChar))
+    {
+      throw new IOException("Directory " + directory
+                            + " is not within the working copy " + workTree
+                            + '.');
+    }
+    return path.substring(root.length() + 1).replace(File.separatorChar, '/')
+           + '/';
+  }
+
+  private static String relativize(final String prefix, final String path)
+  {
+    if (path.startsWith(prefix))
+    {
+      return path.substring(prefix.length());
+    }
+    return null;
+  }
+
+  /**
+   * Maps the status of the entry to the name of the status in the Maven SCM
+   * API. The status of the index takes precedence over the status of the
+   * working tree.
+   *
+   * @param entry the entry in porcelain format.
+   * @return the name of the status.
+   */
+  private static String toType(final String entry)
+  {
+    final char x = entry.charAt(0);
+    final char status = x != ' ' ? x : entry.charAt(1);
+    switch (status)
+    {
+      case 'A':
+        return "added";
+      case 'D':
+        return "deleted";
+      case 'R':
+        return "renamed";
+      case 'C':
+        return "copied";
+      case 'U':
+        return "conflict";
+      case '?':
+        return "unknown";
+      default:
+        return "modified";
+    }
+  }
+
+  /**
+   * Maps the status letter of <code>git diff --name-status</code> to the name
+   * of the status in the Maven SCM API.
+   *
+   * @param status the status letter.
+   * @return the name of the status.
+   */
+  private static String toDiffType(final char status)
+  {
+    switch (status)
+    {
+      case 'A':
+        return "added";
+      case 'D':
+        return "deleted";
+      case 'R':
+        return "renamed";
+      case 'C':
+        return "copied";
+      case 'U':
+        return "conflict";
+      default:
+        return "modified";
+    }
+  }
+
+  private static boolean isStatusEntry(final String entry)
+  {
+    return entry.length() > 3 && entry.charAt(2) == ' ';
+  }
+
+  /**
+   * Reads the next NUL terminated entry.
+   *
+   * @param in the stream to read from.
+   * @return the entry, <code>null</code> at the end of the stream.
+   * @throws IOException on any problem reading from the stream.
+   */
+  private static String readEntry(final InputStream in) throws IOException
+  {
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream(128);
+    int b;
+    while ((b = in.read()) != -1 && b != 0)
+    {
+      buffer.write(b);
+    }
+    if (b == -1 && buffer.size() == 0)
+    {
+      return null;
+    }
+    return buffer.toString("UTF-8");
+  }
+
+  private static int waitFor(final Process process) throws IOException
+  {
+    try
+    {
+      return process.waitFor();
+    }
+    catch (final InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      process.destroy();
+      throw new IOException("Interrupted while waiting for git.");
+    }
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.hg;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Runs <code>hg</code> commands in a single Mercurial process. The process is
+ * started as a command server with <code>hg serve --cmdserver pipe</code> and
+ * runs each command without starting the Python interpreter and loading the
+ * repository again. Commands that ask for input are answered with end of
+ * input.
+ */
+final class HgCommandServer
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The encoding to use if the server does not report a supported encoding.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String DEFAULT_ENCODING = "UTF-8";
+
+  /**
+   * The maximum number of characters of the error output of a command to add
+   * to error messages.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int MAX_MESSAGE_LENGTH = 1024;
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The server process. May be <code>null</code> if the streams are not
+   * connected to a process.
+   */
+  private final Process process;
+
+  /**
+   * The stream to read the messages of the server from.
+   */
+  private final DataInputStream in;
+
+  /**
+   * The stream to send requests to the server.
+   */
+  private final DataOutputStream out;
+
+  /**
+   * The encoding the server uses for arguments and output.
+   */
+  private String encoding = DEFAULT_ENCODING;
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Constructor to communicate with a server via the given streams.
+   *
+   * @param process the server process, <code>null</code> if the streams are
+   *          not connected to a process.
+   * @param in the stream to read the messages of the server from.
+   * @param out the stream to send requests to the server.
+   */
+  HgCommandServer(final Process process, final InputStream in,
+      final OutputStream out)
+  {
+    this.process = process;
+    this.in = new DataInputStream(new BufferedInputStream(in));
+    this.out = new DataOutputStream(new BufferedOutputStream(out));
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  /**
+   * Receives the output of a command.
+   */
+  interface OutputHandler
+  {
+    /**
+     * Handles a chunk of the output of a command.
+     *
+     * @param data the chunk of the output.
+     * @param encoding the encoding of the output.
+     * @return <code>true</code> to stop the command, <code>false</code> to
+     *         continue.
+     * @throws IOException if the output cannot be handled.
+     */
+    boolean handle(byte[] data, String encoding) throws IOException;
+  }
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  /**
+   * Starts a command server for the given working copy.
+   *
+   * @param rootDirectory the root directory of the working copy.
+   * @return the started server.
+   * @throws IOException if the server cannot be started.
+   */
+  static HgCommandServer start(final File rootDirectory) throws IOException
+  {
+    final ProcessBuilder builder =
+        new ProcessBuilder("hg", "serve", "--cmdserver", "pipe", "--config",
+            "ui.interactive=False", "-R", rootDirectory.getAbsolutePath())
+            .directory(rootDirectory);
+    builder.environment().put("HGPLAIN", "1");
+    final Process process = builder.start();
+    final HgCommandServer server =
+        new HgCommandServer(process, process.getInputStream(),
+            process.getOutputStream());
+    boolean started = false;
+    try
+    {
+      server.readHello();
+      started = true;
+      return server;
+    }
+    catch (final EOFException e)
+    {
+      throw new IOException("Cannot start Mercurial command server: "
+                            + readError(process));
+    }
+    finally
+    {
+      if (!started)
+      {
+        process.destroy();
+      }
+    }
+  }
+
+  private static String readError(final Process process)
+  {
+    try
+    {
+      final String error = IOUtil.toString(process.getErrorStream()).trim();
+      return error.length() > MAX_MESSAGE_LENGTH ? error.substring(0,
+          MAX_MESSAGE_LENGTH) : error;
+    }
+    catch (final IOException e)
+    {
+      return e.getMessage();
+    }
+  }
+
+  /**
+   * Reads the hello message the server sends on start.
+   *
+   * @throws IOException if the message cannot be read or the server does not
+   *           support running commands.
+   */
+  void readHello() throws IOException
+  {
+    final int channel = in.read();
+    if (channel == -1)
+    {
+      throw new EOFException();
+    }
+    final byte[] data = readData(in.readInt());
+    if (channel != 'o')
+    {
+      throw new IOException("Unexpected channel '" + (char) channel
+                            + "' in hello message of command server.");
+    }
+
+    boolean runcommand = false;
+    for (final String line : new String(data, "US-ASCII").split("\n"))
+    {
+      if (line.startsWith("capabilities:"))
+      {
+        runcommand =
+            (' ' + line.substring("capabilities:".length()) + ' ')
+                .contains(" runcommand ");
+      }
+      else if (line.startsWith("encoding:"))
+      {
+        final String name = line.substring("encoding:".length()).trim();
+        if (Charset.isSupported(name))
+        {
+          encoding = name;
+        }
+      }
+    }
+    if (!runcommand)
+    {
+      throw new IOException("Command server does not support runcommand.");
+    }
+  }
+
+  // --- get&set --------------------------------------------------------------
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * Runs a command and passes its output to the handler.
+   *
+   * @param handler the handler to pass the output to.
+   * @param arguments the arguments of the command, starting with the command
+   *          name.
+   * @return <code>true</code> if the command has completed,
+   *         <code>false</code> if the handler has stopped it. A stopped command
+   *         leaves the server in an undefined state and the server must be
+   *         closed.
+   * @throws IOException if the command cannot be run or fails.
+   */
+  boolean runCommand(final OutputHandler handler, final String... arguments)
+    throws IOException
+  {
+    final StringBuilder command = new StringBuilder(64);
+    for (final String argument : arguments)
+    {
+      if (command.length() > 0)
+      {
+        command.append('\0');
+      }
+      command.append(argument);
+    }
+    final byte[] payload = command.toString().getBytes(encoding);
+    out.write("runcommand\n".getBytes("US-ASCII"));
+    out.writeInt(payload.length);
+    out.write(payload);
+    out.flush();
+
+    final StringBuilder error = new StringBuilder();
+    while (true)
+    {
+      final int channel = in.read();
+      if (channel == -1)
+      {
+        throw new EOFException("Command server terminated while running "
+                               + arguments[0] + '.');
+      }
+      final int length = in.readInt();
+      switch (channel)
+      {
+        case 'o':
+          if (handler.handle(readData(length), encoding))
+          {
+            return false;
+          }
+          break;
+        case 'e':
+          if (error.length() < MAX_MESSAGE_LENGTH)
+          {
+            error.append(new String(readData(length), encoding));
+          }
+          else
+          {
+            readData(length);
+          }
+          break;
+        case 'r':
+          final int exitCode = toInt(readData(length));
+          if (exitCode != 0)
+          {
+            throw new IOException("hg " + arguments[0]
+                                  + " failed with exit code " + exitCode
+                                  + ": " + error.toString().trim());
+          }
+          return true;
+        case 'I':
+        case 'L':
+          out.writeInt(0);
+          out.flush();
+          break;
+        default:
+          if (Character.isUpperCase((char) channel))
+          {
+            throw new IOException("Unsupported channel '" + (char) channel
+                                  + "' requested by command server.");
+          }
+          readData(length);
+          break;
+      }
+    }
+  }
+
+  private static int toInt(final byte[] data) throws IOException
+  {
+    if (data.length != 4)
+    {
+      throw new IOException("Invalid result of command server.");
+    }
+    return (data[0] & 0xff) << 24 | (data[1] & 0xff) << 16
+           | (data[2] & 0xff) << 8 | data[3] & 0xff;
+  }
+
+  private byte[] readData(final int length) throws IOException
+  {
+    final byte[] data = new byte[length];
+    in.readFully(data);
+    return data;
+  }
+
+  /**
+   * Closes the server. If the server has completed all commands, it is
+   * allowed to terminate on its own. Otherwise the process is destroyed.
+   *
+   * @param completed the flag that signals that all commands have completed.
+   */
+  void close(final boolean completed)
+  {
+    IOUtil.close(out);
+    if (process != null)
+    {
+      if (completed)
+      {
+        try
+        {
+          process.waitFor();
+        }
+        catch (final InterruptedException e)
+        {
+          Thread.currentThread().interrupt();
+        }
+      }
+      process.destroy();
+    }
+    IOUtil.close(in);
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
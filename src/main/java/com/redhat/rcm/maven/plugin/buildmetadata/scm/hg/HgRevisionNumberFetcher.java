@@ -0,0 +1,355 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.hg;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.maven.scm.ScmFileSet;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.AbstractBuildMojo;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.LocallyModifiedInfo;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ModifiedFilesCollector;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.Revision;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.RevisionNumberFetcher;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmException;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.maven.ScmAccessInfo;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.maven.StringRevision;
+
+/**
+ * Fetches the revision of the working directory parent of a Mercurial working
+ * copy and its local modifications with a single <code>hg</code> process. Both
+ * <code>hg log</code> and <code>hg status</code> are run by one command
+ * server the first time either is requested, so that the Python interpreter
+ * is started and the repository is loaded only once.
+ * <p>
+ * The check for modifications is combined only if access information is
+ * provided and the whole working copy is checked. Other checks, and all
+ * requests if <code>hg</code> cannot be run, are passed to the delegate. If
+ * the build is to fail on local modifications, the status is stopped at the
+ * first reported file.
+ * </p>
+ */
+public final class HgRevisionNumberFetcher extends AbstractBuildMojo
+    implements RevisionNumberFetcher
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The template to print the node and date of a changeset.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String LOG_TEMPLATE = "{node}\\n{date|hgdate}\\n";
+
+  /**
+   * The node of the null revision, reported for working copies without
+   * commits.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String NULL_NODE =
+      "0000000000000000000000000000000000000000";
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The root directory of the working copy.
+   */
+  private final File rootDirectory;
+
+  /**
+   * The information to query the SCM. May be <code>null</code> if the check
+   * for modifications is always delegated.
+   */
+  private final ScmAccessInfo scmAccessInfo;
+
+  /**
+   * The fetcher to use if <code>hg</code> cannot be run.
+   */
+  private final RevisionNumberFetcher delegate;
+
+  /**
+   * The flag that signals that the command server has been run.
+   */
+  private boolean sessionRun;
+
+  /**
+   * The revision read by the command server. May be <code>null</code> if the
+   * revision could not be read.
+   */
+  private Revision revision;
+
+  /**
+   * The modifications found by the command server. May be <code>null</code>
+   * if the check has not been combined or has failed.
+   */
+  private LocallyModifiedInfo modifications;
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   *
+   * @param rootDirectory the root directory of the working copy.
+   * @param scmAccessInfo the information to query the SCM. May be
+   *          <code>null</code> if the check for modifications is always
+   *          delegated.
+   * @param delegate the fetcher to use if <code>hg</code> cannot be run.
+   */
+  public HgRevisionNumberFetcher(final File rootDirectory,
+      final ScmAccessInfo scmAccessInfo, final RevisionNumberFetcher delegate)
+  {
+    this.rootDirectory = rootDirectory;
+    this.scmAccessInfo = scmAccessInfo;
+    this.delegate = delegate;
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  // --- get&set --------------------------------------------------------------
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Revision fetchLatestRevisionNumber() throws ScmException
+  {
+    runSession();
+    if (revision != null)
+    {
+      return revision;
+    }
+    return delegate.fetchLatestRevisionNumber();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public LocallyModifiedInfo containsModifications(final ScmFileSet fileSet)
+    throws ScmException
+  {
+    if (scmAccessInfo != null && isWholeWorkingCopy(fileSet))
+    {
+      runSession();
+      if (modifications != null)
+      {
+        return modifications;
+      }
+    }
+    return delegate.containsModifications(fileSet);
+  }
+
+  private boolean isWholeWorkingCopy(final ScmFileSet fileSet)
+    throws ScmException
+  {
+    final List<?> files = fileSet.getFileList();
+    if (files != null && !files.isEmpty())
+    {
+      return false;
+    }
+    try
+    {
+      return rootDirectory.getCanonicalFile().equals(
+          fileSet.getBasedir().getCanonicalFile());
+    }
+    catch (final IOException e)
+    {
+      throw new ScmException("Cannot resolve directory "
+                             + fileSet.getBasedir() + '.', e);
+    }
+  }
+
+  /**
+   * Runs the command server once to fetch the revision and, if requested, the
+   * modifications. Failures are logged and leave the respective result
+   * <code>null</code>.
+   */
+  private synchronized void runSession()
+  {
+    if (sessionRun)
+    {
+      return;
+    }
+    sessionRun = true;
+
+    final HgCommandServer server;
+    try
+    {
+      server = HgCommandServer.start(rootDirectory);
+      if (scmAccessInfo != null)
+      {
+        scmAccessInfo.getOperationTimer().getMetrics().recordProcess(0L);
+      }
+    }
+    catch (final IOException e)
+    {
+      logFailure("Cannot start Mercurial, using SCM provider.", e);
+      return;
+    }
+
+    boolean completed = false;
+    try
+    {
+      revision = readRevision(server);
+      if (scmAccessInfo != null)
+      {
+        completed = readModifications(server);
+      }
+      else
+      {
+        completed = true;
+      }
+    }
+    catch (final IOException e)
+    {
+      logFailure("Cannot run Mercurial command server, using SCM provider.",
+          e);
+    }
+    catch (final ScmException e)
+    {
+      logFailure("Cannot collect Mercurial status, using SCM provider.", e);
+    }
+    finally
+    {
+      server.close(completed);
+    }
+  }
+
+  private Revision readRevision(final HgCommandServer server)
+    throws IOException
+  {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream(128);
+    final String[] encoding = new String[1];
+    server.runCommand(new HgCommandServer.OutputHandler()
+    {
+      public boolean handle(final byte[] data, final String dataEncoding)
+      {
+        output.write(data, 0, data.length);
+        encoding[0] = dataEncoding;
+        return false;
+      }
+    }, "log", "-r", ".", "--template", LOG_TEMPLATE);
+    final Revision read =
+        parseRevision(encoding[0] != null ? output.toString(encoding[0]) : "");
+    if (getLog().isDebugEnabled())
+    {
+      getLog().debug("Read revision '" + read + "' from Mercurial.");
+    }
+    return read;
+  }
+
+  private boolean readModifications(final HgCommandServer server)
+    throws IOException, ScmException
+  {
+    if (scmAccessInfo.isFailIndicated())
+    {
+      final String[] first = new String[1];
+      final boolean completed =
+          server.runCommand(new HgStatusParser(new HgStatusParser.Handler()
+          {
+            public boolean handle(final String path, final String type)
+            {
+              if (scmAccessInfo.isReportedModification(path))
+              {
+                first[0] = ModifiedFilesCollector.renderEntry(path, type);
+                return true;
+              }
+              return false;
+            }
+          }), "status", "--print0");
+      modifications = new LocallyModifiedInfo(first[0] != null, first[0]);
+      return completed;
+    }
+
+    final ModifiedFilesCollector collector =
+        scmAccessInfo.createModifiedFilesCollector();
+    server.runCommand(new HgStatusParser(new HgStatusParser.Handler()
+    {
+      public boolean handle(final String path, final String type)
+      {
+        if (scmAccessInfo.isReportedModification(path))
+        {
+          collector.add(path, type);
+        }
+        return false;
+      }
+    }), "status", "--print0");
+    modifications = collector.createInfo();
+    return true;
+  }
+
+  private void logFailure(final String message, final Exception e)
+  {
+    if (getLog().isDebugEnabled())
+    {
+      getLog().debug(message, e);
+    }
+  }
+
+  /**
+   * Parses the node and date printed by <code>hg log</code> with
+   * {@link #LOG_TEMPLATE}.
+   *
+   * @param output the output of the command.
+   * @return the revision.
+   * @throws IOException if the output cannot be parsed or denotes the null
+   *           revision.
+   */
+  static Revision parseRevision(final String output) throws IOException
+  {
+    final String[] lines = output.trim().split("\n");
+    if (lines.length < 2)
+    {
+      throw new IOException("Unexpected output of hg log: " + output);
+    }
+    final String node = lines[0].trim();
+    if (NULL_NODE.equals(node))
+    {
+      throw new IOException("The working copy has no parent revision.");
+    }
+    final String[] date = lines[1].trim().split(" ");
+    try
+    {
+      return new StringRevision(node, new Date(
+          Long.parseLong(date[0]) * 1000L));
+    }
+    catch (final NumberFormatException e)
+    {
+      throw new IOException("Unexpected date in output of hg log: "
+                            + lines[1]);
+    }
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
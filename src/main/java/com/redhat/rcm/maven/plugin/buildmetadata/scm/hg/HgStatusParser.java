@@ -0,0 +1,137 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.hg;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Parses the output of <code>hg status --print0</code> while the command is
+ * running. The output may be passed in chunks that split entries. Files that
+ * are not tracked are reported, as with the Mercurial provider of Maven SCM.
+ */
+final class HgStatusParser implements HgCommandServer.OutputHandler
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The handler to pass the modified files to.
+   */
+  private final Handler handler;
+
+  /**
+   * The bytes of the entry not yet terminated.
+   */
+  private final ByteArrayOutputStream entry = new ByteArrayOutputStream(128);
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   *
+   * @param handler the handler to pass the modified files to.
+   */
+  HgStatusParser(final Handler handler)
+  {
+    this.handler = handler;
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  /**
+   * Receives the modified files.
+   */
+  interface Handler
+  {
+    /**
+     * Handles a modified file.
+     *
+     * @param path the path of the file relative to the root directory of the
+     *          working copy.
+     * @param type the type of the modification in terms of the Maven SCM API,
+     *          for example <code>modified</code>.
+     * @return <code>true</code> to stop the command, <code>false</code> to
+     *         continue.
+     */
+    boolean handle(String path, String type);
+  }
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  // --- get&set --------------------------------------------------------------
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   */
+  public boolean handle(final byte[] data, final String encoding)
+    throws IOException
+  {
+    int start = 0;
+    for (int i = 0; i < data.length; i++)
+    {
+      if (data[i] == 0)
+      {
+        entry.write(data, start, i - start);
+        start = i + 1;
+        final String line = entry.toString(encoding);
+        entry.reset();
+        if (line.length() > 2
+            && handler.handle(line.substring(2), toType(line.charAt(0))))
+        {
+          return true;
+        }
+      }
+    }
+    entry.write(data, start, data.length - start);
+    return false;
+  }
+
+  /**
+   * Maps the status code of Mercurial to the name of the status in Maven SCM.
+   *
+   * @param code the status code reported by <code>hg status</code>.
+   * @return the name of the status.
+   */
+  static String toType(final char code)
+  {
+    switch (code)
+    {
+      case 'A':
+        return "added";
+      case 'R':
+        return "deleted";
+      case '!':
+        return "missing";
+      case '?':
+        return "unknown";
+      default:
+        return "modified";
+    }
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.maven;
+
+import java.util.List;
+
+import org.apache.maven.scm.ScmException;
+import org.apache.maven.scm.command.changelog.ChangeLogScmResult;
+import org.apache.maven.scm.command.changelog.ChangeLogSet;
+
+/**
+ * Searches for a query range in days that returns a change log entry. Since
+ * the range always ends now, any range with an entry contains the latest
+ * change. The search widens the range until an entry is found, the
+ * number of attempts is exhausted or the deadline has passed.
+ */
+public final class ChangeLogWindowSearch
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The name of the strategy that widens the range by the initial range on
+   * each attempt.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  public static final String STRATEGY_LINEAR = "linear";
+
+  /**
+   * The name of the strategy that doubles the range on each attempt.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  public static final String STRATEGY_EXPONENTIAL = "exponential";
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The range in days of the first query.
+   */
+  private final int initialRangeInDays;
+
+  /**
+   * The number of queries to run at most.
+   */
+  private final int maxAttempts;
+
+  /**
+   * The flag to double the range on each attempt instead of widening it by the
+   * initial range.
+   */
+  private final boolean exponential;
+
+  /**
+   * The point in time in milliseconds after which no further query is
+   * started. A value of <code>0</code> or less disables the deadline.
+   */
+  private final long deadline;
+
+  /**
+   * The range in days of the last query that returned an entry.
+   * <code>0</code> if no query has returned an entry.
+   */
+  private int successfulRangeInDays;
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   *
+   * @param initialRangeInDays the range in days of the first query.
+   * @param maxAttempts the number of queries to run at most.
+   * @param strategy the name of the strategy to widen the range. Unknown names
+   *          select the {@value #STRATEGY_EXPONENTIAL} strategy.
+   * @param deadline the point in time in milliseconds after which no further
+   *          query is started, <code>0</code> for no deadline.
+   */
+  public ChangeLogWindowSearch(final int initialRangeInDays,
+      final int maxAttempts, final String strategy, final long deadline)
+  {
+    this.initialRangeInDays = Math.max(1, initialRangeInDays);
+    this.maxAttempts = maxAttempts;
+    this.exponential = !STRATEGY_LINEAR.equals(strategy);
+    this.deadline = deadline;
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  /**
+   * Runs a change log query for a given range.
+   */
+  public interface Query
+  {
+    /**
+     * Fetches the change log of the given number of days up to now.
+     *
+     * @param rangeInDays the number of days to fetch the change log for.
+     * @return the change log.
+     * @throws ScmException if the change log cannot be fetched.
+     */
+    ChangeLogScmResult fetch(int rangeInDays) throws ScmException;
+  }
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  // --- get&set --------------------------------------------------------------
+
+  /**
+   * Returns the range in days of the last query that returned an entry.
+   *
+   * @return the range in days of the last successful query, <code>0</code> if
+   *         no query has returned an entry.
+   */
+  public int getSuccessfulRangeInDays()
+  {
+    return successfulRangeInDays;
+  }
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * Runs the query with widening ranges until a change log entry is found.
+   *
+   * @param query the query to run.
+   * @return the result of the last query run, <code>null</code> if no query
+   *         has been run.
+   * @throws ScmException if the change log cannot be fetched.
+   */
+  public ChangeLogScmResult search(final Query query) throws ScmException
+  {
+    ChangeLogScmResult result = null;
+    int range = initialRangeInDays;
+    for (int i = 0; i < maxAttempts; i++)
+    {
+      if (i > 0 && deadline > 0 && System.currentTimeMillis() >= deadline)
+      {
+        break;
+      }
+
+      result = query.fetch(range);
+      if (!isEmpty(result))
+      {
+        successfulRangeInDays = range;
+        return result;
+      }
+      range = widen(range);
+    }
+    return result;
+  }
+
+  private int widen(final int range)
+  {
+    final long next =
+        exponential ? 2L * range : (long) range + initialRangeInDays;
+    return (int) Math.min(Integer.MAX_VALUE, next);
+  }
+
+  /**
+   * Checks if the given result contains change logs or not.
+   *
+   * @param result result the result to be checked.
+   * @return <code>true</code> if no change logs have been found,
+   *         <code>false</code> if any reference up the path to the change logs
+   *         is <code>null</code> or the set is not empty.
+   */
+  static boolean isEmpty(final ChangeLogScmResult result)
+  {
+    if (result != null)
+    {
+      final ChangeLogSet changeLogSet = result.getChangeLog();
+      if (changeLogSet != null)
+      {
+        final List<?> changeLogSets = changeLogSet.getChangeSets();
+        if (changeLogSets != null)
+        {
+          return changeLogSets.isEmpty();
+        }
+      }
+    }
+    return false;
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
@@ -15,12 +15,7 @@
  */
 package com.redhat.rcm.maven.plugin.buildmetadata.scm.maven;
 
-import java.util.Collection;
-import java.util.Comparator;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
-import java.util.TreeSet;
 import org.apache.maven.scm.ChangeSet;
 import org.apache.maven.scm.ScmFile;
 import org.apache.maven.scm.ScmFileSet;
@@ -33,12 +28,14 @@ import org.apache.maven.scm.manager.NoSuchScmProviderException;
 import org.apache.maven.scm.manager.ScmManager;
 import org.apache.maven.scm.provider.ScmProvider;
 import org.apache.maven.scm.repository.ScmRepository;
-import org.codehaus.plexus.util.StringUtils;
 import com.redhat.rcm.maven.plugin.buildmetadata.AbstractBuildMojo;
 import com.redhat.rcm.maven.plugin.buildmetadata.scm.LocallyModifiedInfo;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ModifiedFilesCollector;
 import com.redhat.rcm.maven.plugin.buildmetadata.scm.Revision;
 import com.redhat.rcm.maven.plugin.buildmetadata.scm.RevisionNumberFetcher;
 import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmException;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmMetrics;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmOperationTimer;
 
 /**
  * Implementation on the Maven SCM implementation to fetch the latest revision
@@ -71,6 +68,11 @@ public final class MavenScmRevisionNumberFetcher extends AbstractBuildMojo imple
    */
   private final ScmAccessInfo scmAccessInfo;
 
+  /**
+   * The registry to look up repositories and providers.
+   */
+  private final ScmRepositoryRegistry repositoryRegistry;
+
   // ****************************** Initializer *******************************
 
   // ****************************** Constructors ******************************
@@ -85,8 +87,27 @@ public final class MavenScmRevisionNumberFetcher extends AbstractBuildMojo imple
   public MavenScmRevisionNumberFetcher(final ScmManager scmManager,
       final ScmConnectionInfo scmConnectionInfo,
       final ScmAccessInfo scmAccessInfo)
+  {
+    this(scmManager, new ScmRepositoryRegistry(), scmConnectionInfo,
+        scmAccessInfo);
+  }
+
+  /**
+   * Constructor to share repositories and providers via a registry.
+   *
+   * @param scmManager the SCM manager to access to SCM system.
+   * @param repositoryRegistry the registry to look up repositories and
+   *          providers.
+   * @param scmConnectionInfo the information to connect to the SCM system.
+   * @param scmAccessInfo the value for scmAccessInfo.
+   */
+  public MavenScmRevisionNumberFetcher(final ScmManager scmManager,
+      final ScmRepositoryRegistry repositoryRegistry,
+      final ScmConnectionInfo scmConnectionInfo,
+      final ScmAccessInfo scmAccessInfo)
   {
     this.scmManager = scmManager;
+    this.repositoryRegistry = repositoryRegistry;
     this.scmConnectionInfo = scmConnectionInfo;
     this.scmAccessInfo = scmAccessInfo;
   }
@@ -154,7 +175,8 @@ public Revision fetchLatestRevisionNumber() throws ScmException
       }
 
       final ScmRepository repository =
-              scmConnectionInfo.createRepository(scmManager);
+              repositoryRegistry.getRepository(scmManager, scmConnectionInfo,
+                      scmAccessInfo.getOperationTimer().getMetrics());
       final ScmProvider provider = createScmProvider(repository);
       final ChangeLogScmResult result =
               scmAccessInfo.fetchChangeLog(repository, provider);
@@ -195,10 +217,13 @@ public LocallyModifiedInfo containsModifications(final ScmFileSet fileSet)
                 + this.scmConnectionInfo + "\n    " + this.scmAccessInfo);
     }
 
+    final ScmMetrics metrics = scmAccessInfo.getOperationTimer().getMetrics();
+    final long start = System.currentTimeMillis();
     try
     {
       final ScmRepository repository =
-          scmConnectionInfo.createRepository(scmManager);
+          repositoryRegistry.getRepository(scmManager, scmConnectionInfo,
+              metrics);
       final ScmProvider provider = createScmProvider(repository);
 
       final ScmResultWrapper result = execute(fileSet, repository, provider);
@@ -221,6 +246,10 @@ public LocallyModifiedInfo containsModifications(final ScmFileSet fileSet)
     {
       throw new ScmException(e);
     }
+    finally
+    {
+      metrics.recordCall(ScmMetrics.STATUS, System.currentTimeMillis() - start);
+    }
   }
 
   private ScmResultWrapper execute(final ScmFileSet fileSet,
@@ -228,18 +257,35 @@ public LocallyModifiedInfo containsModifications(final ScmFileSet fileSet)
     throws org.apache.maven.scm.ScmException
   {
     final ScmVersion remoteVersion = scmConnectionInfo.getRemoteVersion();
+    final ScmOperationTimer timer = scmAccessInfo.getOperationTimer();
     final ScmResultWrapper result;
     if (remoteVersion != null)
     {
       final ScmVersion localVersion = null;
       result =
-          createScmDiffResultWrapper(provider.diff(repository, fileSet,
-              remoteVersion, localVersion));
+          createScmDiffResultWrapper(timer.run("diff",
+              new ScmOperationTimer.Operation<DiffScmResult>()
+              {
+                public DiffScmResult execute()
+                  throws org.apache.maven.scm.ScmException
+                {
+                  return provider.diff(repository, fileSet, remoteVersion,
+                      localVersion);
+                }
+              }));
     }
     else
     {
       result =
-          createScmStatusResultWrapper(provider.status(repository, fileSet));
+          createScmStatusResultWrapper(timer.run("status",
+              new ScmOperationTimer.Operation<StatusScmResult>()
+              {
+                public StatusScmResult execute()
+                  throws org.apache.maven.scm.ScmException
+                {
+                  return provider.status(repository, fileSet);
+                }
+              }));
     }
     return result;
   }
@@ -272,76 +318,67 @@ public LocallyModifiedInfo containsModifications(final ScmFileSet fileSet)
   private LocallyModifiedInfo createLocallyModifiedInfo(
       final ScmResultWrapper result)
   {
-    final List<ScmFile> changedFiles = filter(result.getChangedFiles());
-    final boolean locallyModified = !changedFiles.isEmpty();
-    if (getLog().isDebugEnabled())
+    if (scmAccessInfo.isFailIndicated())
     {
-      getLog().debug("  Modifications have" + (locallyModified ? "" : " not")
-                + " been found.");
+      return createFirstModificationInfo(result);
     }
-    return new LocallyModifiedInfo(locallyModified, locallyModified
-        ? toString(createSortedFiles(changedFiles)) : null);
-  }
 
-  private static Set<ScmFile> createSortedFiles(final List<ScmFile> changedFiles)
-  {
-    final Set<ScmFile> set = new TreeSet<ScmFile>(new Comparator<ScmFile>()
+    final ModifiedFilesCollector collector =
+        scmAccessInfo.createModifiedFilesCollector();
+    for (final ScmFile file : result.getChangedFiles())
     {
-      @Override
-    public int compare(final ScmFile o1, final ScmFile o2)
+      if (scmAccessInfo.isReportedModification(file.getPath()))
       {
-        return o2.compareTo(o1);
+        collector.add(file.getPath(), String.valueOf(file.getStatus()));
       }
-    });
-
-    set.addAll(changedFiles);
-
-    return set;
-  }
-
-  private List<ScmFile> filter(final List<ScmFile> files)
-  {
-    if (this.scmAccessInfo.isIgnoreDotFilesInBaseDir())
-    {
-      filterDotFiles(files);
     }
-    return files;
-  }
-
-  private void filterDotFiles(final List<ScmFile> files)
-  {
-    for (final Iterator<ScmFile> i = files.iterator(); i.hasNext();)
+    final LocallyModifiedInfo info = collector.createInfo();
+    if (getLog().isDebugEnabled())
     {
-      final ScmFile file = i.next();
-      final String path = file.getPath();
-      if (path.length() > 0 && path.charAt(0) == '.')
-      {
-        i.remove();
-      }
+      getLog().debug("  Modifications have"
+                     + (info.isLocallyModified() ? "" : " not")
+                     + " been found.");
     }
+    return info;
   }
 
   /**
-   * Renders the files to a blank separated list of file names.
+   * Reports the first modified file only. Since the build is going to fail,
+   * the complete list is not required.
    *
-   * @param items the file items.
-   * @return the string representation of the files.
+   * @param result the result of the SCM command.
+   * @return the modification information with at most one file.
    */
-  private String toString(final Collection<?> items)
+  private LocallyModifiedInfo createFirstModificationInfo(
+      final ScmResultWrapper result)
   {
-    final StringBuilder buffer = new StringBuilder(512);
-    for (final Object item : items)
+    final ScmFile file = findFirstReported(result.getChangedFiles());
+    if (getLog().isDebugEnabled())
     {
-      buffer.append(item).append(' ');
+      getLog().debug("  Modifications have" + (file != null ? "" : " not")
+                + " been found.");
     }
-    return StringUtils.chomp(buffer.toString());
+    return new LocallyModifiedInfo(file != null, file != null
+        ? ModifiedFilesCollector.renderEntry(file.getPath(),
+            String.valueOf(file.getStatus())) : null);
   }
 
+  private ScmFile findFirstReported(final List<ScmFile> files)
+  {
+    for (final ScmFile file : files)
+    {
+      if (scmAccessInfo.isReportedModification(file.getPath()))
+      {
+        return file;
+      }
+    }
+    return null;
+  }
 
   /**
-   * Creates the provider instance to access the given repository.
+   * Returns the provider instance to access the given repository.
    *
-   * @param repository the repository to access with the provider to be created.
+   * @param repository the repository to access with the provider.
    * @return the provider to access the given repository.
    * @throws ScmException if the provider cannot be created.
    */
@@ -350,9 +387,7 @@ public LocallyModifiedInfo containsModifications(final ScmFileSet fileSet)
   {
     try
     {
-      final ScmProvider provider =
-          scmManager.getProviderByRepository(repository);
-      return provider;
+      return repositoryRegistry.getProvider(scmManager, repository);
     }
     catch (final NoSuchScmProviderException e)
     {
@@ -16,8 +16,19 @@
 package com.redhat.rcm.maven.plugin.buildmetadata.scm.maven;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+import org.apache.maven.scm.ChangeFile;
+import org.apache.maven.scm.ChangeSet;
 import org.apache.maven.scm.ScmFileSet;
 import org.apache.maven.scm.ScmRevision;
 import org.apache.maven.scm.command.changelog.ChangeLogScmRequest;
@@ -28,7 +39,15 @@ import org.apache.maven.scm.command.info.InfoScmResult;
 import org.apache.maven.scm.provider.ScmProvider;
 import org.apache.maven.scm.repository.ScmRepository;
 import org.codehaus.plexus.util.StringUtils;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.io.CacheFileHelper;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ModificationScope;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ModifiedFilesCollector;
 import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmException;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmMetrics;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmOperationTimer;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.git.GitProcessRegistry;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.git.GitRepository;
 /**
  * Provides access information to retrieve revision information from the SCM.
  *
@@ -57,6 +76,15 @@ public final class ScmAccessInfo implements Serializable
    */
   public static final int DEFAULT_RETRY_COUNT = 5;
 
+  /**
+   * The key to the query range in days of the last successful change log query
+   * within the revision cache file.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String KEY_QUERY_RANGE = "changelog.rangeInDays";
+
   // --- members --------------------------------------------------------------
 
   /**
@@ -71,13 +99,51 @@ public final class ScmAccessInfo implements Serializable
 
   /**
    * The range of the query in days to fetch change log entries from the SCM. If
-   * no change logs have been found, the range is incremented up to
-   * {@value #DEFAULT_RETRY_COUNT} times. If no change log has been found after
+   * no change logs have been found, the range is widened according to the
+   * query range strategy up to {@value #DEFAULT_RETRY_COUNT} times. If no change log has been found after
    * these {@value #DEFAULT_RETRY_COUNT} additional queries, the revision number
    * will not be set with a valid value.
    */
   private int queryRangeInDays;
 
+  /**
+   * The name of the strategy to widen the query range if no change log has
+   * been found. Either {@value ChangeLogWindowSearch#STRATEGY_EXPONENTIAL} or
+   * {@value ChangeLogWindowSearch#STRATEGY_LINEAR}.
+   */
+  private String queryRangeStrategy;
+
+  /**
+   * The time in seconds after which no further change log query is started.
+   * A value of <code>0</code> or less disables the deadline.
+   */
+  private int queryDeadlineInSeconds;
+
+  /**
+   * The time in seconds a single SCM operation may take before it is stopped.
+   * A value of <code>0</code> or less disables the deadline.
+   */
+  private int operationTimeoutInSeconds;
+
+  /**
+   * The time in seconds all SCM operations may take together before they are
+   * stopped. A value of <code>0</code> or less disables the deadline.
+   */
+  private int timeoutInSeconds;
+
+  /**
+   * The timer to run the SCM operations with. Created with the first
+   * operation.
+   */
+  private transient ScmOperationTimer operationTimer;
+
+  /**
+   * The registry of the <code>git cat-file</code> processes shared by all
+   * modules of the build. May be <code>null</code> if no process is to be
+   * used.
+   */
+  private transient GitProcessRegistry gitProcessRegistry;
+
   /**
    * The flag to fail if local modifications have been found. The value is
    * <code>true</code> if the build should fail if there are modifications (any
@@ -95,6 +161,106 @@ public final class ScmAccessInfo implements Serializable
    */
   private boolean ignoreDotFilesInBaseDir;
 
+  /**
+   * The flag to read the revision of Git working copies directly from the
+   * repository files instead of launching the <code>git</code> executable.
+   */
+  private boolean nativeGit;
+
+  /**
+   * The flag to read the last changed revision of Subversion working copies
+   * from the working copy metadata without contacting the repository server.
+   */
+  private boolean svnLocalRevision;
+
+  /**
+   * The flag to fetch the revision and the local modifications of Mercurial
+   * working copies with a single command server process.
+   */
+  private boolean hgCommandServer;
+
+  /**
+   * The flag to check Git working copies for modifications by comparing the
+   * index with the working tree instead of running <code>git status</code>.
+   */
+  private boolean gitIndexStatus;
+
+  /**
+   * The flag to read the revision from the environment variables of the
+   * continuous integration server.
+   */
+  private boolean ciRevision;
+
+  /**
+   * The names of the environment variables to read the revision identifier
+   * from. If empty, the defaults are used.
+   */
+  private List<String> ciRevisionIdVariables = Collections.emptyList();
+
+  /**
+   * The names of the environment variables to read the revision date from. If
+   * empty, the defaults are used.
+   */
+  private List<String> ciRevisionDateVariables = Collections.emptyList();
+
+  /**
+   * The flag to determine the last change of each module of the build.
+   */
+  private boolean moduleRevision;
+
+  /**
+   * The maximum number of commits to read to determine the last change of the
+   * modules of the build.
+   */
+  private int moduleRevisionMaxCommits;
+
+  /**
+   * The base directories of all modules of the build. May be empty if the
+   * modules are not known.
+   */
+  private List<File> reactorDirectories = Collections.emptyList();
+
+  /**
+   * The flag to add metrics of the SCM queries to the build meta data.
+   */
+  private boolean scmMetrics;
+
+  /**
+   * The file to persist the revision to between builds. May be
+   * <code>null</code> if the revision is not to be persisted.
+   */
+  private File revisionCacheFile;
+
+  /**
+   * The file to store the snapshot of the working copy in after a check found
+   * no modifications. May be <code>null</code> if every check is to query all
+   * files.
+   */
+  private File modificationSnapshotFile;
+
+  /**
+   * The base directory of the module the build meta data are created for.
+   */
+  private File moduleDirectory;
+
+  /**
+   * The part of the working copy to check for local modifications. May be
+   * <code>null</code> if the whole working copy is checked.
+   */
+  private ModificationScope modificationScope;
+
+  /**
+   * The maximum number of modified files to report per type of modification.
+   * A value of <code>0</code> or less reports all files.
+   */
+  private int modifiedFilesLimit;
+
+  /**
+   * The file to write the complete list of modified files to. May be
+   * <code>null</code> if the list is not to be written.
+   */
+  private File modifiedFilesFile;
+
   // ****************************** Initializer *******************************
 
   // ****************************** Constructors ******************************
@@ -242,6 +408,558 @@ public final class ScmAccessInfo implements Serializable
     this.ignoreDotFilesInBaseDir = ignoreDotFilesInBaseDir;
   }
 
+  /**
+   * Returns the name of the strategy to widen the query range if no change log
+   * has been found.
+   *
+   * @return the name of the strategy to widen the query range.
+   */
+  public String getQueryRangeStrategy()
+  {
+    return queryRangeStrategy;
+  }
+
+  /**
+   * Sets the name of the strategy to widen the query range if no change log
+   * has been found.
+   *
+   * @param queryRangeStrategy the name of the strategy to widen the query
+   *          range.
+   */
+  public void setQueryRangeStrategy(final String queryRangeStrategy)
+  {
+    this.queryRangeStrategy = queryRangeStrategy;
+  }
+
+  /**
+   * Returns the time in seconds after which no further change log query is
+   * started.
+   *
+   * @return the time in seconds after which no further change log query is
+   *         started, <code>0</code> or less for no deadline.
+   */
+  public int getQueryDeadlineInSeconds()
+  {
+    return queryDeadlineInSeconds;
+  }
+
+  /**
+   * Sets the time in seconds after which no further change log query is
+   * started.
+   *
+   * @param queryDeadlineInSeconds the time in seconds after which no further
+   *          change log query is started, <code>0</code> or less for no
+   *          deadline.
+   */
+  public void setQueryDeadlineInSeconds(final int queryDeadlineInSeconds)
+  {
+    this.queryDeadlineInSeconds = queryDeadlineInSeconds;
+  }
+
+  /**
+   * Returns the time in seconds a single SCM operation may take before it is
+   * stopped.
+   *
+   * @return the time in seconds a single SCM operation may take,
+   *         <code>0</code> or less for no deadline.
+   */
+  public int getOperationTimeoutInSeconds()
+  {
+    return operationTimeoutInSeconds;
+  }
+
+  /**
+   * Sets the time in seconds a single SCM operation may take before it is
+   * stopped.
+   *
+   * @param operationTimeoutInSeconds the time in seconds a single SCM
+   *          operation may take, <code>0</code> or less for no deadline.
+   */
+  public void setOperationTimeoutInSeconds(final int operationTimeoutInSeconds)
+  {
+    this.operationTimeoutInSeconds = operationTimeoutInSeconds;
+  }
+
+  /**
+   * Returns the time in seconds all SCM operations may take together before
+   * they are stopped.
+   *
+   * @return the time in seconds all SCM operations may take, <code>0</code> or
+   *         less for no deadline.
+   */
+  public int getTimeoutInSeconds()
+  {
+    return timeoutInSeconds;
+  }
+
+  /**
+   * Sets the time in seconds all SCM operations may take together before they
+   * are stopped.
+   *
+   * @param timeoutInSeconds the time in seconds all SCM operations may take,
+   *          <code>0</code> or less for no deadline.
+   */
+  public void setTimeoutInSeconds(final int timeoutInSeconds)
+  {
+    this.timeoutInSeconds = timeoutInSeconds;
+  }
+
+  /**
+   * Returns the timer to run the SCM operations with. The deadline for all
+   * operations starts when the timer is first requested.
+   *
+   * @return the timer to run the SCM operations with.
+   */
+  public synchronized ScmOperationTimer getOperationTimer()
+  {
+    if (operationTimer == null)
+    {
+      operationTimer =
+          new ScmOperationTimer(operationTimeoutInSeconds, timeoutInSeconds);
+    }
+    return operationTimer;
+  }
+
+  /**
+   * Returns the registry of the <code>git cat-file</code> processes shared by
+   * all modules of the build.
+   *
+   * @return the registry of the processes, <code>null</code> if no process is
+   *         to be used.
+   */
+  public GitProcessRegistry getGitProcessRegistry()
+  {
+    return gitProcessRegistry;
+  }
+
+  /**
+   * Sets the registry of the <code>git cat-file</code> processes shared by all
+   * modules of the build.
+   *
+   * @param gitProcessRegistry the registry of the processes,
+   *          <code>null</code> if no process is to be used.
+   */
+  public void setGitProcessRegistry(
+      final GitProcessRegistry gitProcessRegistry)
+  {
+    this.gitProcessRegistry = gitProcessRegistry;
+  }
+
+  /**
+   * Returns the flag to read the revision of Git working copies directly from
+   * the repository files instead of launching the <code>git</code> executable.
+   *
+   * @return the flag to read the revision of Git working copies directly from
+   *         the repository files.
+   */
+  public boolean isNativeGit()
+  {
+    return nativeGit;
+  }
+
+  /**
+   * Sets the flag to read the revision of Git working copies directly from the
+   * repository files instead of launching the <code>git</code> executable.
+   *
+   * @param nativeGit the flag to read the revision of Git working copies
+   *          directly from the repository files.
+   */
+  public void setNativeGit(final boolean nativeGit)
+  {
+    this.nativeGit = nativeGit;
+  }
+
+  /**
+   * Returns the flag to read the last changed revision of Subversion working
+   * copies from the working copy metadata without contacting the repository
+   * server.
+   *
+   * @return the flag to read the last changed revision of Subversion working
+   *         copies from the working copy metadata.
+   */
+  public boolean isSvnLocalRevision()
+  {
+    return svnLocalRevision;
+  }
+
+  /**
+   * Sets the flag to read the last changed revision of Subversion working
+   * copies from the working copy metadata without contacting the repository
+   * server.
+   *
+   * @param svnLocalRevision the flag to read the last changed revision of
+   *          Subversion working copies from the working copy metadata.
+   */
+  public void setSvnLocalRevision(final boolean svnLocalRevision)
+  {
+    this.svnLocalRevision = svnLocalRevision;
+  }
+
+  /**
+   * Returns the flag to fetch the revision and the local modifications of
+   * Mercurial working copies with a single command server process.
+   *
+   * @return the flag to fetch the revision and the local modifications of
+   *         Mercurial working copies with a single command server process.
+   */
+  public boolean isHgCommandServer()
+  {
+    return hgCommandServer;
+  }
+
+  /**
+   * Sets the flag to fetch the revision and the local modifications of
+   * Mercurial working copies with a single command server process.
+   *
+   * @param hgCommandServer the flag to fetch the revision and the local
+   *          modifications of Mercurial working copies with a single command
+   *          server process.
+   */
+  public void setHgCommandServer(final boolean hgCommandServer)
+  {
+    this.hgCommandServer = hgCommandServer;
+  }
+
+  /**
+   * Returns the flag to check Git working copies for modifications by
+   * comparing the index with the working tree instead of running
+   * <code>git status</code>.
+   *
+   * @return the flag to check Git working copies for modifications by
+   *         comparing the index with the working tree.
+   */
+  public boolean isGitIndexStatus()
+  {
+    return gitIndexStatus;
+  }
+
+  /**
+   * Sets the flag to check Git working copies for modifications by comparing
+   * the index with the working tree instead of running
+   * <code>git status</code>.
+   *
+   * @param gitIndexStatus the flag to check Git working copies for
+   *          modifications by comparing the index with the working tree.
+   */
+  public void setGitIndexStatus(final boolean gitIndexStatus)
+  {
+    this.gitIndexStatus = gitIndexStatus;
+  }
+
+  /**
+   * Returns the flag to read the revision from the environment variables of
+   * the continuous integration server.
+   *
+   * @return the flag to read the revision from the environment variables of
+   *         the continuous integration server.
+   */
+  public boolean isCiRevision()
+  {
+    return ciRevision;
+  }
+
+  /**
+   * Sets the flag to read the revision from the environment variables of the
+   * continuous integration server.
+   *
+   * @param ciRevision the flag to read the revision from the environment
+   *          variables of the continuous integration server.
+   */
+  public void setCiRevision(final boolean ciRevision)
+  {
+    this.ciRevision = ciRevision;
+  }
+
+  /**
+   * Returns the names of the environment variables to read the revision
+   * identifier from.
+   *
+   * @return the names of the environment variables to read the revision
+   *         identifier from, empty to use the defaults.
+   */
+  public List<String> getCiRevisionIdVariables()
+  {
+    return ciRevisionIdVariables;
+  }
+
+  /**
+   * Sets the names of the environment variables to read the revision
+   * identifier from.
+   *
+   * @param ciRevisionIdVariables the names of the environment variables to
+   *          read the revision identifier from.
+   */
+  public void setCiRevisionIdVariables(final List<String> ciRevisionIdVariables)
+  {
+    this.ciRevisionIdVariables =
+        ciRevisionIdVariables != null ? ciRevisionIdVariables : Collections
+            .<String> emptyList();
+  }
+
+  /**
+   * Returns the names of the environment variables to read the revision date
+   * from.
+   *
+   * @return the names of the environment variables to read the revision date
+   *         from, empty to use the defaults.
+   */
+  public List<String> getCiRevisionDateVariables()
+  {
+    return ciRevisionDateVariables;
+  }
+
+  /**
+   * Sets the names of the environment variables to read the revision date
+   * from.
+   *
+   * @param ciRevisionDateVariables the names of the environment variables to
+   *          read the revision date from.
+   */
+  public void setCiRevisionDateVariables(
+      final List<String> ciRevisionDateVariables)
+  {
+    this.ciRevisionDateVariables =
+        ciRevisionDateVariables != null ? ciRevisionDateVariables
+            : Collections.<String> emptyList();
+  }
+
+  /**
+   * Returns the flag to determine the last change of each module of the build.
+   *
+   * @return the flag to determine the last change of each module of the build.
+   */
+  public boolean isModuleRevision()
+  {
+    return moduleRevision;
+  }
+
+  /**
+   * Sets the flag to determine the last change of each module of the build.
+   *
+   * @param moduleRevision the flag to determine the last change of each module
+   *          of the build.
+   */
+  public void setModuleRevision(final boolean moduleRevision)
+  {
+    this.moduleRevision = moduleRevision;
+  }
+
+  /**
+   * Returns the maximum number of commits to read to determine the last change
+   * of the modules of the build.
+   *
+   * @return the maximum number of commits to read.
+   */
+  public int getModuleRevisionMaxCommits()
+  {
+    return moduleRevisionMaxCommits;
+  }
+
+  /**
+   * Sets the maximum number of commits to read to determine the last change of
+   * the modules of the build.
+   *
+   * @param moduleRevisionMaxCommits the maximum number of commits to read.
+   */
+  public void setModuleRevisionMaxCommits(final int moduleRevisionMaxCommits)
+  {
+    this.moduleRevisionMaxCommits = moduleRevisionMaxCommits;
+  }
+
+  /**
+   * Returns the base directories of all modules of the build.
+   *
+   * @return the base directories of all modules of the build, empty if the
+   *         modules are not known.
+   */
+  public List<File> getReactorDirectories()
+  {
+    return reactorDirectories;
+  }
+
+  /**
+   * Sets the base directories of all modules of the build.
+   *
+   * @param reactorDirectories the base directories of all modules of the
+   *          build.
+   */
+  public void setReactorDirectories(final List<File> reactorDirectories)
+  {
+    this.reactorDirectories = reactorDirectories;
+  }
+
+  /**
+   * Returns the flag to add metrics of the SCM queries to the build meta data.
+   *
+   * @return the flag to add metrics of the SCM queries to the build meta data.
+   */
+  public boolean isScmMetrics()
+  {
+    return scmMetrics;
+  }
+
+  /**
+   * Sets the flag to add metrics of the SCM queries to the build meta data.
+   *
+   * @param scmMetrics the flag to add metrics of the SCM queries to the build
+   *          meta data.
+   */
+  public void setScmMetrics(final boolean scmMetrics)
+  {
+    this.scmMetrics = scmMetrics;
+  }
+
+  /**
+   * Returns the file to persist the revision to between builds.
+   *
+   * @return the file to persist the revision to between builds,
+   *         <code>null</code> if the revision is not to be persisted.
+   */
+  public File getRevisionCacheFile()
+  {
+    return revisionCacheFile;
+  }
+
+  /**
+   * Sets the file to persist the revision to between builds.
+   *
+   * @param revisionCacheFile the file to persist the revision to between
+   *          builds, <code>null</code> if the revision is not to be persisted.
+   */
+  public void setRevisionCacheFile(final File revisionCacheFile)
+  {
+    this.revisionCacheFile = revisionCacheFile;
+  }
+
+  /**
+   * Returns the file to store the snapshot of the working copy in after a
+   * check found no modifications.
+   *
+   * @return the file to store the snapshot in, <code>null</code> if every
+   *         check is to query all files.
+   */
+  public File getModificationSnapshotFile()
+  {
+    return modificationSnapshotFile;
+  }
+
+  /**
+   * Sets the file to store the snapshot of the working copy in after a check
+   * found no modifications.
+   *
+   * @param modificationSnapshotFile the file to store the snapshot in,
+   *          <code>null</code> if every check is to query all files.
+   */
+  public void setModificationSnapshotFile(final File modificationSnapshotFile)
+  {
+    this.modificationSnapshotFile = modificationSnapshotFile;
+  }
+
+  /**
+   * Returns the base directory of the module the build meta data are created
+   * for.
+   *
+   * @return the base directory of the module.
+   */
+  public File getModuleDirectory()
+  {
+    return moduleDirectory;
+  }
+
+  /**
+   * Sets the base directory of the module the build meta data are created
+   * for.
+   *
+   * @param moduleDirectory the base directory of the module.
+   */
+  public void setModuleDirectory(final File moduleDirectory)
+  {
+    this.moduleDirectory = moduleDirectory;
+  }
+
+  /**
+   * Returns the part of the working copy to check for local modifications.
+   *
+   * @return the part of the working copy to check, <code>null</code> if the
+   *         whole working copy is checked.
+   */
+  public ModificationScope getModificationScope()
+  {
+    return modificationScope;
+  }
+
+  /**
+   * Sets the part of the working copy to check for local modifications.
+   *
+   * @param modificationScope the part of the working copy to check,
+   *          <code>null</code> if the whole working copy is checked.
+   */
+  public void setModificationScope(final ModificationScope modificationScope)
+  {
+    this.modificationScope = modificationScope;
+  }
+
+  /**
+   * Returns the maximum number of modified files to report per type of
+   * modification.
+   *
+   * @return the maximum number of modified files to report per type, a value
+   *         of <code>0</code> or less reports all files.
+   */
+  public int getModifiedFilesLimit()
+  {
+    return modifiedFilesLimit;
+  }
+
+  /**
+   * Sets the maximum number of modified files to report per type of
+   * modification.
+   *
+   * @param modifiedFilesLimit the maximum number of modified files to report
+   *          per type, a value of <code>0</code> or less reports all files.
+   */
+  public void setModifiedFilesLimit(final int modifiedFilesLimit)
+  {
+    this.modifiedFilesLimit = modifiedFilesLimit;
+  }
+
+  /**
+   * Returns the file to write the complete list of modified files to.
+   *
+   * @return the file to write the complete list to, <code>null</code> if the
+   *         list is not to be written.
+   */
+  public File getModifiedFilesFile()
+  {
+    return modifiedFilesFile;
+  }
+
+  /**
+   * Sets the file to write the complete list of modified files to.
+   *
+   * @param modifiedFilesFile the file to write the complete list to,
+   *          <code>null</code> if the list is not to be written.
+   */
+  public void setModifiedFilesFile(final File modifiedFilesFile)
+  {
+    this.modifiedFilesFile = modifiedFilesFile;
+  }
+
+  /**
+   * Creates the collector for the modified files reported by a check. If the
+   * complete list is requested, it is streamed to a file next to the
+   * {@link #getModifiedFilesFile() list file}.
+   *
+   * @return the collector for the modified files.
+   * @throws ScmException if the collector cannot be created.
+   */
+  public ModifiedFilesCollector createModifiedFilesCollector()
+    throws ScmException
+  {
+    return new ModifiedFilesCollector(modifiedFilesLimit,
+        modifiedFilesFile != null ? ModifiedFilesCollector
+            .createListFile(modifiedFilesFile) : null);
+  }
 
 
   /**
@@ -256,16 +974,31 @@ public final class ScmAccessInfo implements Serializable
   public ChangeLogScmResult fetchChangeLog(final ScmRepository repository,
       final ScmProvider provider) throws ScmException
   {
+    final long startTime = System.currentTimeMillis();
     try
     {
         ChangeLogScmResult result = null;
         ScmRevision endRev = null;
         ScmRevision startRev = null;
-        ScmFileSet fileSet = createFileSet();
+        final ScmFileSet fileSet = createFileSet();
+        final ScmOperationTimer timer = getOperationTimer();
 
-        InfoScmResult isr = provider.info(repository.getProviderRepository(), fileSet, null);
+        InfoScmResult isr = timer.run("info", new ScmOperationTimer.Operation<InfoScmResult>()
+        {
+            public InfoScmResult execute()
+                throws org.apache.maven.scm.ScmException
+            {
+                return provider.info(repository.getProviderRepository(), fileSet, null);
+            }
+        });
         if (isr != null)
         {
+            final ChangeLogScmResult infoResult = createInfoResult(isr);
+            if (infoResult != null)
+            {
+                // The info already names the last change, e.g. for SVN.
+                return infoResult;
+            }
             for (InfoItem ii : isr.getInfoItems())
             {
                 if (StringUtils.isNotEmpty(ii.getRevision()))
@@ -276,9 +1009,14 @@ public final class ScmAccessInfo implements Serializable
             }
         }
 
-        int currentRange = queryRangeInDays;
         if (repository.getProvider().equals("git"))
         {
+            if (!isGitHeadParentAvailable())
+            {
+                // Shallow clones and root commits have no HEAD^, so every
+                // widened range would fail the same way.
+                return fetchHeadChangeLog(repository, provider, fileSet, timer);
+            }
             // Git can't handle x->x so use an inbuilt shortcut.
             startRev = new ScmRevision ("HEAD^");
         }
@@ -296,68 +1034,223 @@ public final class ScmAccessInfo implements Serializable
             return result;
         }
 
-        for (int i = 0; i <= DEFAULT_RETRY_COUNT; i++)
+        final ScmRevision start = startRev;
+        final ScmRevision end = endRev;
+        final ScmFileSet queryFileSet = fileSet;
+        final ChangeLogWindowSearch search = createChangeLogWindowSearch();
+        result = search.search(new ChangeLogWindowSearch.Query()
         {
-            ChangeLogScmRequest scmRequest = new ChangeLogScmRequest (repository, fileSet);
-            scmRequest.setStartRevision(startRev);
-            scmRequest.setEndRevision(endRev);
-            scmRequest.setDatePattern(dateFormat);
-            scmRequest.setNumDays(currentRange);
-            scmRequest.setDateRange(null, null);
-            scmRequest.setLimit(Integer.valueOf(1));
-
-            result = provider.changeLog(scmRequest);
+            private boolean retry;
 
-            if (!isEmpty(result))
+            public ChangeLogScmResult fetch(final int rangeInDays)
+                throws org.apache.maven.scm.ScmException
             {
-                return result;
+                final ChangeLogScmRequest scmRequest = new ChangeLogScmRequest (repository, queryFileSet);
+                scmRequest.setStartRevision(start);
+                scmRequest.setEndRevision(end);
+                scmRequest.setDatePattern(dateFormat);
+                scmRequest.setNumDays(rangeInDays);
+                scmRequest.setDateRange(null, null);
+                scmRequest.setLimit(Integer.valueOf(1));
+
+                if (retry)
+                {
+                    timer.recordRetry();
+                }
+                retry = true;
+                return timer.run("changelog", new ScmOperationTimer.Operation<ChangeLogScmResult>()
+                {
+                    public ChangeLogScmResult execute()
+                        throws org.apache.maven.scm.ScmException
+                    {
+                        return provider.changeLog(scmRequest);
+                    }
+                });
             }
-            currentRange += queryRangeInDays;
-        }
+        });
+        rememberQueryRange(search.getSuccessfulRangeInDays());
         return result;
     }
     catch (final org.apache.maven.scm.ScmException e)
     {
       throw new ScmException("Cannot fetch change log from repository.", e);
     }
+    finally
+    {
+      getOperationTimer().getMetrics().recordCall(ScmMetrics.CHANGELOG,
+          System.currentTimeMillis() - startTime);
+    }
   }
 
 
   /**
-   * Checks if the given result contains change logs or not.
-   * <p>
-   * Calls
-   * {@link com.redhat.rcm.maven.plugin.buildmetadata.scm.maven.ScmAccessInfo#isEmpty(org.apache.maven.scm.command.changelog.ChangeLogSet)}
-   * with argument list (&lt;changeLogSet&gt;).
+   * Creates a change log result from the info result, if the info names the
+   * last changed revision and its date. Subversion provides both, so no change
+   * log query is required.
    *
-   * @param result result the result to be checked.
-   * @return <code>true</code> if change logs have been found,<code>false</code>
-   *         if any reference up the path to the change logs is
-   *         <code>null</code> or the set is empty.
-   * @see com.redhat.rcm.maven.plugin.buildmetadata.scm.maven.ScmAccessInfo#isEmpty(org.apache.maven.scm.command.changelog.ChangeLogSet)
+   * @param infoResult the result of the info query.
+   * @return the result with the last change, <code>null</code> if the info
+   *         does not name the last change.
    */
-  private boolean isEmpty(final ChangeLogScmResult result)
+  private static ChangeLogScmResult createInfoResult(
+      final InfoScmResult infoResult)
   {
-    if (result != null)
+    if (!infoResult.isSuccess() || infoResult.getInfoItems() == null)
+    {
+      return null;
+    }
+    for (final InfoItem item : infoResult.getInfoItems())
     {
-      final ChangeLogSet changeLogSet = result.getChangeLog();
-      if (changeLogSet != null)
+      final String revision = item.getLastChangedRevision();
+      final Date date = parseLastChangedDate(item.getLastChangedDate());
+      if (StringUtils.isNotBlank(revision) && date != null)
       {
-        return isEmpty(changeLogSet);
+        final ChangeSet changeSet =
+            new ChangeSet(date, null, item.getLastChangedAuthor(),
+                new ArrayList<ChangeFile>());
+        changeSet.setRevision(revision.trim());
+        final List<ChangeSet> changeSets = new ArrayList<ChangeSet>(1);
+        changeSets.add(changeSet);
+        return new ChangeLogScmResult(infoResult.getCommandLine(),
+            new ChangeLogSet(changeSets, null, null));
       }
     }
-    return false;
+    return null;
+  }
+
+  /**
+   * Parses the last changed date as reported by <code>svn info</code>, such as
+   * <code>2014-03-05 10:11:12 +0100 (Wed, 05 Mar 2014)</code>.
+   *
+   * @param value the date to parse.
+   * @return the date, <code>null</code> if the value cannot be parsed.
+   */
+  static Date parseLastChangedDate(final String value)
+  {
+    if (StringUtils.isBlank(value))
+    {
+      return null;
+    }
+    try
+    {
+      return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss Z", Locale.ENGLISH)
+          .parse(value.trim());
+    }
+    catch (final ParseException e)
+    {
+      return null;
+    }
   }
 
-  private boolean isEmpty(final ChangeLogSet changeLogSet)
+  /**
+   * Checks if the parent of the <code>HEAD</code> commit of the Git working
+   * copy is available, so that it can be used as the start of the change log
+   * query. If the repository cannot be read, the parent is assumed to be
+   * available.
+   *
+   * @return <code>true</code> if the parent is available or unknown,
+   *         <code>false</code> for shallow clones and root commits.
+   */
+  private boolean isGitHeadParentAvailable()
+  {
+    try
+    {
+      final GitRepository repository = GitRepository.find(rootDirectory);
+      return repository == null || repository.isHeadParentAvailable();
+    }
+    catch (final IOException e)
+    {
+      return true;
+    }
+  }
+
+  /**
+   * Fetches the change log entry of <code>HEAD</code> with a single query
+   * without revision or date range.
+   *
+   * @param repository the repository to fetch the change log from.
+   * @param provider the provider to use to access the repository.
+   * @param fileSet the file set to query.
+   * @param timer the timer to run the query with.
+   * @return the change log with the entry of <code>HEAD</code>.
+   * @throws org.apache.maven.scm.ScmException if the change log cannot be
+   *           fetched.
+   */
+  private ChangeLogScmResult fetchHeadChangeLog(final ScmRepository repository,
+      final ScmProvider provider, final ScmFileSet fileSet,
+      final ScmOperationTimer timer) throws org.apache.maven.scm.ScmException
+  {
+    final ChangeLogScmRequest request =
+        new ChangeLogScmRequest(repository, fileSet);
+    request.setDatePattern(dateFormat);
+    request.setNumDays(0);
+    request.setDateRange(null, null);
+    request.setLimit(Integer.valueOf(1));
+    return timer.run("changelog",
+        new ScmOperationTimer.Operation<ChangeLogScmResult>()
+        {
+          public ChangeLogScmResult execute()
+            throws org.apache.maven.scm.ScmException
+          {
+            return provider.changeLog(request);
+          }
+        });
+  }
+
+  /**
+   * Creates the search for the change log query range. The search starts with
+   * the range of the last successful query, if it has been stored in the
+   * revision cache file, and with the configured range otherwise.
+   *
+   * @return the search for the change log query range.
+   */
+  private ChangeLogWindowSearch createChangeLogWindowSearch()
   {
-    final List<?> changeLogSets = changeLogSet.getChangeSets();
-    if (changeLogSets != null)
+    int initialRange = queryRangeInDays;
+    if (revisionCacheFile != null)
     {
-      return changeLogSets.isEmpty();
+      try
+      {
+        final String range =
+            new CacheFileHelper(revisionCacheFile).read().getProperty(
+                KEY_QUERY_RANGE);
+        if (range != null)
+        {
+          initialRange = Integer.parseInt(range);
+        }
+      }
+      catch (final IOException e)
+      {
+        // start with the configured range.
+      }
+      catch (final NumberFormatException e)
+      {
+        // start with the configured range.
+      }
     }
 
-    return false;
+    final long deadline =
+        queryDeadlineInSeconds > 0 ? System.currentTimeMillis()
+                                     + queryDeadlineInSeconds * 1000L : 0L;
+    return new ChangeLogWindowSearch(initialRange, DEFAULT_RETRY_COUNT + 1,
+        queryRangeStrategy, deadline);
+  }
+
+  private void rememberQueryRange(final int rangeInDays)
+  {
+    if (revisionCacheFile != null && rangeInDays > 0)
+    {
+      final Properties properties = new Properties();
+      properties.setProperty(KEY_QUERY_RANGE, String.valueOf(rangeInDays));
+      try
+      {
+        new CacheFileHelper(revisionCacheFile).update(properties);
+      }
+      catch (final IOException e)
+      {
+        // the range is only a hint for the next build.
+      }
+    }
   }
 
   /**
@@ -383,6 +1276,25 @@ public final class ScmAccessInfo implements Serializable
     return isFailOnLocalModifications() && !isIgnoreDotFilesInBaseDir();
   }
 
+  /**
+   * Checks whether a modification of the file with the given path is to be
+   * reported. Dot files are not reported if they are to be ignored and files
+   * not matching the patterns of the modification scope are never reported.
+   *
+   * @param path the path of the modified file as reported by the SCM.
+   * @return <code>true</code> if the modification is to be reported,
+   *         <code>false</code> if it is to be ignored.
+   */
+  public boolean isReportedModification(final String path)
+  {
+    if (ignoreDotFilesInBaseDir && path.length() > 0 && path.charAt(0) == '.')
+    {
+      return false;
+    }
+    return modificationScope == null || !modificationScope.isFiltered()
+           || modificationScope.isReported(path);
+  }
+
   // --- object basics --------------------------------------------------------
 
   /**
@@ -400,10 +1312,39 @@ public final class ScmAccessInfo implements Serializable
     buffer.append("SCM access info: rootDirectory=").append(rootDirectory);
     appendIfExists(buffer, "dateFormat", dateFormat);
     appendIfExists(buffer, "queryRangeInDays", String.valueOf(queryRangeInDays));
+    appendIfExists(buffer, "queryRangeStrategy", queryRangeStrategy);
+    appendIfExists(buffer, "queryDeadlineInSeconds",
+        String.valueOf(queryDeadlineInSeconds));
+    appendIfExists(buffer, "operationTimeoutInSeconds",
+        String.valueOf(operationTimeoutInSeconds));
+    appendIfExists(buffer, "timeoutInSeconds", String.valueOf(timeoutInSeconds));
     appendIfExists(buffer, "failOnLocalModifications",
         String.valueOf(failOnLocalModifications));
     appendIfExists(buffer, "ignoreDotFilesInBaseDir",
         String.valueOf(ignoreDotFilesInBaseDir));
+    appendIfExists(buffer, "nativeGit", String.valueOf(nativeGit));
+    appendIfExists(buffer, "svnLocalRevision",
+        String.valueOf(svnLocalRevision));
+    appendIfExists(buffer, "hgCommandServer", String.valueOf(hgCommandServer));
+    appendIfExists(buffer, "gitIndexStatus", String.valueOf(gitIndexStatus));
+    appendIfExists(buffer, "ciRevision", String.valueOf(ciRevision));
+    appendIfExists(buffer, "moduleRevision", String.valueOf(moduleRevision));
+    appendIfExists(buffer, "moduleRevisionMaxCommits",
+        String.valueOf(moduleRevisionMaxCommits));
+    appendIfExists(buffer, "scmMetrics", String.valueOf(scmMetrics));
+    appendIfExists(buffer, "revisionCacheFile",
+        revisionCacheFile != null ? revisionCacheFile.getPath() : null);
+    appendIfExists(buffer, "modificationSnapshotFile",
+        modificationSnapshotFile != null ? modificationSnapshotFile.getPath()
+            : null);
+    appendIfExists(buffer, "moduleDirectory",
+        moduleDirectory != null ? moduleDirectory.getPath() : null);
+    appendIfExists(buffer, "modificationScope",
+        modificationScope != null ? modificationScope.toString() : null);
+    appendIfExists(buffer, "modifiedFilesLimit",
+        String.valueOf(modifiedFilesLimit));
+    appendIfExists(buffer, "modifiedFilesFile",
+        modifiedFilesFile != null ? modifiedFilesFile.getPath() : null);
 
     return buffer.toString();
   }
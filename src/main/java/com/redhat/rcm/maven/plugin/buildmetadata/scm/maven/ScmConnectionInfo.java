@@ -243,6 +243,34 @@ public final class ScmConnectionInfo implements Serializable
     this.remoteVersion = remoteVersion;
   }
 
+  /**
+   * Returns the type of the SCM provider as specified by the
+   * {@link #getConnectionUrl() connection URL}. For instance for the URL
+   * <code>scm:git:https://example.com/repo.git</code> the type is
+   * <code>git</code>.
+   *
+   * @return the type of the SCM provider, <code>null</code> if the connection
+   *         URL does not follow the <code>scm:&lt;type&gt;:</code> format.
+   */
+  public String getScmType()
+  {
+    if (connectionUrl == null || !connectionUrl.startsWith("scm:"))
+    {
+      return null;
+    }
+
+    final String url = connectionUrl.substring(4);
+    for (int i = 0; i < url.length(); i++)
+    {
+      final char c = url.charAt(i);
+      if (c == ':' || c == '|')
+      {
+        return i > 0 ? url.substring(0, i) : null;
+      }
+    }
+    return null;
+  }
+
   // --- business -------------------------------------------------------------
 
   /**
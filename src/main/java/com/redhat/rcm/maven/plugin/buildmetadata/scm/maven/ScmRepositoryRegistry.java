@@ -0,0 +1,233 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.maven;
+
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.scm.manager.NoSuchScmProviderException;
+import org.apache.maven.scm.manager.ScmManager;
+import org.apache.maven.scm.provider.ScmProvider;
+import org.apache.maven.scm.repository.ScmRepository;
+import org.apache.maven.scm.repository.ScmRepositoryException;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmException;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmMetrics;
+
+/**
+ * Keeps the SCM repositories and providers for the duration of a build
+ * session. Connection URLs are parsed and repositories configured only once
+ * per URL and set of credentials, providers are looked up only once per SCM
+ * type. All modules of a build use the same instances.
+ */
+public final class ScmRepositoryRegistry
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The key to store the registry in the execution properties of the session.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String SESSION_KEY =
+      ScmRepositoryRegistry.class.getName();
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The repositories as parsed from the connection URL, by URL.
+   */
+  private final ConcurrentMap<String, ScmRepository> parsedRepositories =
+      new ConcurrentHashMap<String, ScmRepository>();
+
+  /**
+   * The repositories configured with credentials, by URL and credentials.
+   */
+  private final ConcurrentMap<String, ScmRepository> repositories =
+      new ConcurrentHashMap<String, ScmRepository>();
+
+  /**
+   * The providers by SCM type.
+   */
+  private final ConcurrentMap<String, ScmProvider> providers =
+      new ConcurrentHashMap<String, ScmProvider>();
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   */
+  public ScmRepositoryRegistry()
+  {
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  /**
+   * Returns the registry attached to the given session. The registry is
+   * created and attached on the first call.
+   *
+   * @param session the session to attach the registry to.
+   * @return the registry of the session.
+   */
+  public static ScmRepositoryRegistry getInstance(final MavenSession session)
+  {
+    final Properties properties = session.getExecutionProperties();
+    synchronized (properties)
+    {
+      final Object registry = properties.get(SESSION_KEY);
+      if (registry instanceof ScmRepositoryRegistry)
+      {
+        return (ScmRepositoryRegistry) registry;
+      }
+
+      final ScmRepositoryRegistry newRegistry = new ScmRepositoryRegistry();
+      properties.put(SESSION_KEY, newRegistry);
+      return newRegistry;
+    }
+  }
+
+  // --- get&set --------------------------------------------------------------
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * Returns the repository for the given connection URL as parsed, without
+   * credentials. The instance must not be changed.
+   *
+   * @param scmManager the manager to parse the connection URL.
+   * @param connectionUrl the connection URL.
+   * @return the repository.
+   * @throws ScmRepositoryException if the connection URL is invalid.
+   * @throws NoSuchScmProviderException if there is no provider for the
+   *           connection URL.
+   */
+  public ScmRepository getParsedRepository(final ScmManager scmManager,
+      final String connectionUrl) throws ScmRepositoryException,
+    NoSuchScmProviderException
+  {
+    final ScmRepository repository = parsedRepositories.get(connectionUrl);
+    if (repository != null)
+    {
+      return repository;
+    }
+    final ScmRepository newRepository =
+        scmManager.makeScmRepository(connectionUrl);
+    final ScmRepository existing =
+        parsedRepositories.putIfAbsent(connectionUrl, newRepository);
+    return existing != null ? existing : newRepository;
+  }
+
+  /**
+   * Returns the repository for the given connection information, configured
+   * with its credentials.
+   *
+   * @param scmManager the manager to create the repository.
+   * @param scmConnectionInfo the information to connect to the SCM.
+   * @return the configured repository.
+   * @throws ScmException if the repository cannot be created or configured.
+   */
+  public ScmRepository getRepository(final ScmManager scmManager,
+      final ScmConnectionInfo scmConnectionInfo) throws ScmException
+  {
+    return getRepository(scmManager, scmConnectionInfo, null);
+  }
+
+  /**
+   * Returns the repository for the given connection information, configured
+   * with its credentials, and records the lookup.
+   *
+   * @param scmManager the manager to create the repository.
+   * @param scmConnectionInfo the information to connect to the SCM.
+   * @param metrics the metrics to record the lookup and the time to create
+   *          the repository in, <code>null</code> to not record them.
+   * @return the configured repository.
+   * @throws ScmException if the repository cannot be created or configured.
+   */
+  public ScmRepository getRepository(final ScmManager scmManager,
+      final ScmConnectionInfo scmConnectionInfo, final ScmMetrics metrics)
+    throws ScmException
+  {
+    final String key = createKey(scmConnectionInfo);
+    final ScmRepository repository = repositories.get(key);
+    if (metrics != null)
+    {
+      metrics.recordCacheLookup(repository != null);
+    }
+    if (repository != null)
+    {
+      return repository;
+    }
+    final long start = System.currentTimeMillis();
+    final ScmRepository newRepository =
+        scmConnectionInfo.createRepository(scmManager);
+    if (metrics != null)
+    {
+      metrics.recordCall(ScmMetrics.REPOSITORY, System.currentTimeMillis()
+                                                - start);
+    }
+    final ScmRepository existing = repositories.putIfAbsent(key, newRepository);
+    return existing != null ? existing : newRepository;
+  }
+
+  /**
+   * Returns the provider to access the given repository.
+   *
+   * @param scmManager the manager to look up the provider.
+   * @param repository the repository to access.
+   * @return the provider.
+   * @throws NoSuchScmProviderException if there is no provider for the
+   *           repository.
+   */
+  public ScmProvider getProvider(final ScmManager scmManager,
+      final ScmRepository repository) throws NoSuchScmProviderException
+  {
+    final String type = repository.getProvider();
+    final ScmProvider provider = providers.get(type);
+    if (provider != null)
+    {
+      return provider;
+    }
+    final ScmProvider newProvider =
+        scmManager.getProviderByRepository(repository);
+    final ScmProvider existing = providers.putIfAbsent(type, newProvider);
+    return existing != null ? existing : newProvider;
+  }
+
+  private static String createKey(final ScmConnectionInfo info)
+  {
+    final StringBuilder buffer = new StringBuilder(128);
+    buffer.append(info.getConnectionUrl()).append('\0')
+        .append(info.getUserName()).append('\0').append(info.getPassword())
+        .append('\0').append(info.getPrivateKey()).append('\0')
+        .append(info.getPassPhrase()).append('\0').append(info.getTagBase());
+    return buffer.toString();
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.svn;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.Revision;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmException;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.maven.StringRevision;
+
+/**
+ * Reads the last changed revision and date of a Subversion working copy. The
+ * information is read with <code>svn info</code> on the working copy, which
+ * uses the working copy metadata only and does not contact the repository
+ * server.
+ */
+public final class SvnInfoReader
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The pattern of the dates reported by Subversion, without fractions of
+   * seconds and time zone.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String DATE_PATTERN = "yyyy-MM-dd'T'HH:mm:ss";
+
+  /**
+   * The number of characters of a date matched by {@link #DATE_PATTERN}.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int DATE_LENGTH = 19;
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The directory of the working copy to read the information for.
+   */
+  private final File directory;
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   *
+   * @param directory the directory of the working copy to read the information
+   *          for.
+   */
+  public SvnInfoReader(final File directory)
+  {
+    this.directory = directory;
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  // --- get&set --------------------------------------------------------------
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * Reads the revision the directory has last been changed in.
+   *
+   * @return the last changed revision.
+   * @throws ScmException if the information cannot be read.
+   */
+  public Revision readLastChangedRevision() throws ScmException
+  {
+    final byte[] output;
+    try
+    {
+      output = runInfo();
+    }
+    catch (final IOException e)
+    {
+      throw new ScmException("Cannot run svn info in " + directory + '.', e);
+    }
+    return parse(new ByteArrayInputStream(output));
+  }
+
+  private byte[] runInfo() throws IOException
+  {
+    final Process process =
+        new ProcessBuilder("svn", "info", "--xml", "--non-interactive", ".")
+            .directory(directory).start();
+    boolean completed = false;
+    try
+    {
+      process.getOutputStream().close();
+      final ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+      IOUtil.copy(process.getInputStream(), out);
+      final String error = IOUtil.toString(process.getErrorStream());
+      final int exitCode = process.waitFor();
+      completed = true;
+      if (exitCode != 0)
+      {
+        throw new IOException("svn info failed with exit code " + exitCode
+                              + ": " + error.trim());
+      }
+      return out.toByteArray();
+    }
+    catch (final InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for svn info.");
+    }
+    finally
+    {
+      if (!completed)
+      {
+        process.destroy();
+      }
+    }
+  }
+
+  /**
+   * Parses the last changed revision from the XML output of
+   * <code>svn info</code>.
+   *
+   * @param in the XML output.
+   * @return the last changed revision of the first entry.
+   * @throws ScmException if the output cannot be parsed.
+   */
+  static Revision parse(final InputStream in) throws ScmException
+  {
+    try
+    {
+      final DocumentBuilder builder =
+          DocumentBuilderFactory.newInstance().newDocumentBuilder();
+      final Document document = builder.parse(in);
+      final NodeList commits = document.getElementsByTagName("commit");
+      if (commits.getLength() == 0)
+      {
+        throw new ScmException("No commit information found in svn info.");
+      }
+      final Element commit = (Element) commits.item(0);
+      final String id = commit.getAttribute("revision");
+      final NodeList dates = commit.getElementsByTagName("date");
+      if (id.length() == 0 || dates.getLength() == 0)
+      {
+        throw new ScmException("Incomplete commit information in svn info.");
+      }
+      return new StringRevision(id, parseDate(dates.item(0).getTextContent()));
+    }
+    catch (final ParserConfigurationException e)
+    {
+      throw new ScmException("Cannot parse svn info.", e);
+    }
+    catch (final SAXException e)
+    {
+      throw new ScmException("Cannot parse svn info.", e);
+    }
+    catch (final IOException e)
+    {
+      throw new ScmException("Cannot parse svn info.", e);
+    }
+  }
+
+  /**
+   * Parses a date reported by Subversion, for example
+   * <code>2014-03-05T10:11:12.123456Z</code>. The dates are always in UTC.
+   *
+   * @param value the date to parse.
+   * @return the parsed date.
+   * @throws ScmException if the date cannot be parsed.
+   */
+  static Date parseDate(final String value) throws ScmException
+  {
+    final String trimmed = value.trim();
+    final SimpleDateFormat format =
+        new SimpleDateFormat(DATE_PATTERN, Locale.ENGLISH);
+    format.setTimeZone(TimeZone.getTimeZone("UTC"));
+    format.setLenient(false);
+    try
+    {
+      long time = format.parse(trimmed.substring(0, DATE_LENGTH)).getTime();
+      if (trimmed.length() > DATE_LENGTH + 1
+          && trimmed.charAt(DATE_LENGTH) == '.')
+      {
+        final String digits =
+            trimmed.substring(DATE_LENGTH + 1).replaceAll("[^0-9].*$", "");
+        final String fraction = (digits + "000").substring(0, 3);
+        time += Integer.parseInt(fraction);
+      }
+      return new Date(time);
+    }
+    catch (final ParseException e)
+    {
+      throw new ScmException("Cannot parse date '" + value + "'.", e);
+    }
+    catch (final IndexOutOfBoundsException e)
+    {
+      throw new ScmException("Cannot parse date '" + value + "'.", e);
+    }
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.svn;
+
+import java.io.File;
+
+import org.apache.maven.scm.ScmFileSet;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.AbstractBuildMojo;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.LocallyModifiedInfo;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.Revision;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.RevisionNumberFetcher;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmException;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmOperationTimer;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmTimeoutException;
+
+/**
+ * Fetches the last changed revision of a Subversion working copy from the
+ * working copy metadata. The repository server is not contacted. If the
+ * metadata cannot be read, for example because no <code>svn</code> client is
+ * installed or the client is older than the working copy, the delegate is
+ * asked for the revision. Checking for modifications is always delegated,
+ * since <code>svn status</code> does not contact the server either.
+ */
+public final class SvnRevisionNumberFetcher extends AbstractBuildMojo
+    implements RevisionNumberFetcher
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The reader to fetch the revision from the working copy.
+   */
+  private final SvnInfoReader reader;
+
+  /**
+   * The timer to run the reader within the deadlines of SCM operations. May
+   * be <code>null</code> to run the reader without deadlines.
+   */
+  private final ScmOperationTimer timer;
+
+  /**
+   * The fetcher to delegate the checks for modifications to and to ask for
+   * the revision if the working copy metadata cannot be read.
+   */
+  private final RevisionNumberFetcher delegate;
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Constructor running the reader without deadlines.
+   *
+   * @param rootDirectory the directory of the working copy to read the
+   *          revision for.
+   * @param delegate the fetcher to delegate the checks for modifications to
+   *          and to ask for the revision if the metadata cannot be read.
+   */
+  public SvnRevisionNumberFetcher(final File rootDirectory,
+      final RevisionNumberFetcher delegate)
+  {
+    this(rootDirectory, null, delegate);
+  }
+
+  /**
+   * Default constructor.
+   *
+   * @param rootDirectory the directory of the working copy to read the
+   *          revision for.
+   * @param timer the timer to run the reader within the deadlines of SCM
+   *          operations, <code>null</code> to run it without deadlines.
+   * @param delegate the fetcher to delegate the checks for modifications to
+   *          and to ask for the revision if the metadata cannot be read.
+   */
+  public SvnRevisionNumberFetcher(final File rootDirectory,
+      final ScmOperationTimer timer, final RevisionNumberFetcher delegate)
+  {
+    this.reader = new SvnInfoReader(rootDirectory);
+    this.timer = timer;
+    this.delegate = delegate;
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  // --- get&set --------------------------------------------------------------
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * Asks the delegate if the working copy metadata cannot be read.
+   * </p>
+   */
+  @Override
+  public Revision fetchLatestRevisionNumber() throws ScmException
+  {
+    try
+    {
+      final Revision revision = readRevision();
+      if (getLog().isDebugEnabled())
+      {
+        getLog().debug("Read revision '" + revision
+                       + "' from Subversion working copy.");
+      }
+      return revision;
+    }
+    catch (final ScmTimeoutException e)
+    {
+      throw e;
+    }
+    catch (final ScmException e)
+    {
+      handleFailedRead(e);
+    }
+    catch (final org.apache.maven.scm.ScmException e)
+    {
+      handleFailedRead(e);
+    }
+    return delegate.fetchLatestRevisionNumber();
+  }
+
+  private Revision readRevision() throws org.apache.maven.scm.ScmException
+  {
+    if (timer == null)
+    {
+      return reader.readLastChangedRevision();
+    }
+    return timer.run("svn info", new ScmOperationTimer.Operation<Revision>()
+    {
+      public Revision execute()
+      {
+        return reader.readLastChangedRevision();
+      }
+    });
+  }
+
+  private void handleFailedRead(final Exception e)
+  {
+    if (getLog().isDebugEnabled())
+    {
+      getLog().debug("Cannot read Subversion working copy, using SCM"
+                     + " provider.", e);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public LocallyModifiedInfo containsModifications(final ScmFileSet fileSet)
+    throws ScmException
+  {
+    return delegate.containsModifications(fileSet);
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.svn;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.codehaus.plexus.util.IOUtil;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.LocallyModifiedInfo;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmException;
+
+/**
+ * Checks a Subversion working copy for modifications. The check runs
+ * <code>svn status --quiet</code> on the working copy, which uses the working
+ * copy metadata only and does not contact the repository server. Unversioned
+ * files and externals are not reported.
+ */
+public final class SvnStatusReader
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The number of status columns in front of the path of a status line.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int STATUS_COLUMNS = 7;
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The directory of the working copy to check.
+   */
+  private final File directory;
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  /**
+   * Default constructor.
+   *
+   * @param directory the directory of the working copy to check.
+   */
+  public SvnStatusReader(final File directory)
+  {
+    this.directory = directory;
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  // --- get&set --------------------------------------------------------------
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * Checks the working copy for modifications.
+   *
+   * @return the modification status with the first modified file.
+   * @throws ScmException if the status cannot be read.
+   */
+  public LocallyModifiedInfo readModifications() throws ScmException
+  {
+    final String output;
+    try
+    {
+      output = runStatus();
+    }
+    catch (final IOException e)
+    {
+      throw new ScmException("Cannot run svn status in " + directory + '.', e);
+    }
+    final String file = parse(output);
+    return new LocallyModifiedInfo(file != null, file);
+  }
+
+  private String runStatus() throws IOException
+  {
+    final Process process =
+        new ProcessBuilder("svn", "status", "--quiet", "--ignore-externals",
+            "--non-interactive", ".").directory(directory)
+            .redirectErrorStream(true).start();
+    boolean completed = false;
+    try
+    {
+      process.getOutputStream().close();
+      final String output = IOUtil.toString(process.getInputStream());
+      final int exitCode = process.waitFor();
+      completed = true;
+      if (exitCode != 0)
+      {
+        throw new IOException("svn status failed with exit code " + exitCode
+                              + ": " + output.trim());
+      }
+      return output;
+    }
+    catch (final InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for svn status.");
+    }
+    finally
+    {
+      if (!completed)
+      {
+        process.destroy();
+      }
+    }
+  }
+
+  /**
+   * Parses the output of <code>svn status --quiet</code>. Items are modified
+   * if their content or properties are changed or if they are in conflict.
+   * Locks and the information lines of tree conflicts are ignored.
+   *
+   * @param output the output of the command.
+   * @return the path of the first modified item, <code>null</code> if no item
+   *         is modified.
+   */
+  static String parse(final String output)
+  {
+    for (final String line : output.split("\r?\n"))
+    {
+      if (line.length() > STATUS_COLUMNS && isModified(line))
+      {
+        return line.substring(STATUS_COLUMNS).trim();
+      }
+    }
+    return null;
+  }
+
+  private static boolean isModified(final String line)
+  {
+    final char item = line.charAt(0);
+    final char properties = line.charAt(1);
+    final char treeConflict = line.charAt(6);
+    return (item != ' ' && item != 'X' && item != '?' && item != 'I')
+           || properties != ' ' || treeConflict == 'C';
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
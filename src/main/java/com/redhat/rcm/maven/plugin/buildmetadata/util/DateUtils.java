@@ -0,0 +1,107 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.util;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Utilities to parse dates provided from outside of the build.
+ */
+public final class DateUtils
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * Matches an ISO 8601 timestamp with an optional fraction of seconds and a
+   * time zone designator.
+   */
+  private static final Pattern ISO_DATE = Pattern
+      .compile("(\\d{4}-\\d{2}-\\d{2}[T ]\\d{2}:\\d{2}:\\d{2})(?:\\.\\d+)?"
+               + "(Z|[+-]\\d{2}(?::?\\d{2})?)");
+
+  // --- members --------------------------------------------------------------
+
+  // ****************************** Initializer *******************************
+
+  // ****************************** Constructors ******************************
+
+  private DateUtils()
+  {
+  }
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- init -----------------------------------------------------------------
+
+  // --- get&set --------------------------------------------------------------
+
+  // --- business -------------------------------------------------------------
+
+  /**
+   * Parses an ISO 8601 timestamp such as
+   * <code>2014-03-05T10:11:12+01:00</code> or the seconds since the epoch.
+   *
+   * @param value the value to parse.
+   * @return the date, <code>null</code> if the value cannot be parsed.
+   */
+  public static Date parseDate(final String value)
+  {
+    if (value.matches("\\d{9,11}"))
+    {
+      return new Date(Long.parseLong(value) * 1000L);
+    }
+
+    final Matcher matcher = ISO_DATE.matcher(value);
+    if (!matcher.matches())
+    {
+      return null;
+    }
+    final String zone = matcher.group(2);
+    final String offset;
+    if ("Z".equals(zone))
+    {
+      offset = "+0000";
+    }
+    else
+    {
+      final String digits = zone.replace(":", "");
+      offset = digits.length() == 3 ? digits + "00" : digits;
+    }
+    final SimpleDateFormat format =
+        new SimpleDateFormat("yyyy-MM-dd HH:mm:ssZ", Locale.ENGLISH);
+    format.setLenient(false);
+    try
+    {
+      return format.parse(matcher.group(1).replace('T', ' ') + offset);
+    }
+    catch (final ParseException e)
+    {
+      return null;
+    }
+  }
+
+  // --- object basics --------------------------------------------------------
+
+}
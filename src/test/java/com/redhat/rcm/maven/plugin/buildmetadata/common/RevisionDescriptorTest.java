@@ -0,0 +1,202 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Properties;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmException;
+
+/**
+ * Tests {@link RevisionDescriptor}.
+ */
+public class RevisionDescriptorTest
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The pattern to format revision dates with.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String DATE_PATTERN = "yyyy-MM-dd'T'HH:mm:ssZ";
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The folder to create the descriptors in.
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- prepare --------------------------------------------------------------
+
+  // --- helper ---------------------------------------------------------------
+
+  private RevisionDescriptor read(final String name, final String content)
+    throws IOException
+  {
+    final File file = new File(folder.getRoot(), name);
+    FileUtils.fileWrite(file.getAbsolutePath(), "UTF-8", content);
+    return RevisionDescriptor.read(file);
+  }
+
+  private static Properties provide(final RevisionDescriptor descriptor,
+      final boolean includeModifications)
+  {
+    final Properties properties = new Properties();
+    descriptor.provide(properties, DATE_PATTERN, includeModifications);
+    return properties;
+  }
+
+  private void assertRejected(final String value)
+  {
+    try
+    {
+      read("revision.json", "{\"build.scmRevision.id\": \"1200\",\n"
+                            + "\"build.scmRevision.number\": " + value + "}");
+    }
+    catch (final IOException e)
+    {
+      return;
+    }
+    throw new AssertionError("Invalid value " + value + " has been accepted.");
+  }
+
+  // --- tests ----------------------------------------------------------------
+
+  @Test
+  public void readsProperties() throws Exception
+  {
+    final RevisionDescriptor descriptor =
+        read("revision.properties", "build.scmRevision.id=1200\n"
+                                    + "build.scmRevision.date=1394014272\n"
+                                    + "build.scmLocallyModified=true\n"
+                                    + "build.scmLocallyModified.files=a.txt\n"
+                                    + "build.version=1.0\n");
+
+    final Properties properties = provide(descriptor, true);
+
+    assertEquals("1200", descriptor.getRevisionId());
+    assertTrue(descriptor.isLocallyModified());
+    assertEquals("a.txt", descriptor.getLocallyModifiedFiles());
+    assertEquals(4, properties.size());
+    assertEquals(new SimpleDateFormat(DATE_PATTERN, Locale.ENGLISH)
+        .format(new Date(1394014272000L)), properties
+        .getProperty(Constant.PROP_NAME_SCM_REVISION_DATE));
+  }
+
+  @Test
+  public void readsNestedJson() throws Exception
+  {
+    final RevisionDescriptor descriptor =
+        read("revision.json", "{\n  \"build\": {\n    \"scmRevision\": {\n"
+                              + "      \"id\": \"0123abc\",\n"
+                              + "      \"url\": \"scm:git:x\\u0041\",\n"
+                              + "      \"date\": 1394014272000\n    },\n"
+                              + "    \"scmLocallyModified\": false,\n"
+                              + "    \"other\": null\n  }\n}\n");
+
+    final Properties properties = provide(descriptor, false);
+
+    assertEquals("0123abc", descriptor.getRevisionId());
+    assertEquals("scm:git:xA", descriptor.getUrl());
+    assertFalse(descriptor.isLocallyModified());
+    assertEquals(3, properties.size());
+    assertNull(properties.getProperty(Constant.PROP_NAME_SCM_LOCALLY_MODIFIED));
+  }
+
+  @Test
+  public void readsDatesInBuildPattern() throws Exception
+  {
+    final RevisionDescriptor descriptor =
+        read("revision.properties", "build.scmRevision.id=1200\n"
+                                    + "build.scmRevision.date="
+                                    + "05.03.2014 10:11 +0000\n");
+
+    final Properties properties = new Properties();
+    descriptor.provide(properties, "dd.MM.yyyy HH:mm Z", true);
+    final SimpleDateFormat format =
+        new SimpleDateFormat("dd.MM.yyyy HH:mm Z", Locale.ENGLISH);
+    assertEquals(format.format(new Date(1394014260000L)),
+        properties.getProperty(Constant.PROP_NAME_SCM_REVISION_DATE));
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsMissingRevision() throws Exception
+  {
+    read("revision.json", "{\"build.scmRevision.date\": \"1394014272\"}");
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsMalformedJson() throws Exception
+  {
+    read("revision.json", "{\"build.scmRevision.id\": \"1200\"");
+  }
+
+  @Test(expected = ScmException.class)
+  public void rejectsUnknownDate() throws Exception
+  {
+    provide(read("revision.properties", "build.scmRevision.id=1200\n"
+                                        + "build.scmRevision.date=yesterday\n"),
+        true);
+  }
+
+  @Test
+  public void readsJsonNumbers() throws Exception
+  {
+    final RevisionDescriptor descriptor =
+        read("revision.json", "{\"build.scmRevision.id\": \"1200\",\n"
+                              + "\"build.scmRevision.number\": -1.5e+3}");
+
+    assertEquals("-1.5e+3", provide(descriptor, false).getProperty(
+        "build.scmRevision.number"));
+  }
+
+  @Test
+  public void rejectsInvalidLiterals()
+  {
+    assertRejected("tfnrue");
+    assertRejected("truefalse");
+    assertRejected("nul");
+    assertRejected("01");
+    assertRejected("1.");
+    assertRejected("-");
+    assertRejected("1e");
+    assertRejected("+1");
+  }
+}
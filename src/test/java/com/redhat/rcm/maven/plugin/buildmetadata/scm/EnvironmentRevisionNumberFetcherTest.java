@@ -0,0 +1,194 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.maven.scm.ScmFileSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.maven.StringRevision;
+import com.redhat.rcm.maven.plugin.buildmetadata.util.DateUtils;
+
+/**
+ * Tests {@link EnvironmentRevisionNumberFetcher}.
+ */
+public class EnvironmentRevisionNumberFetcherTest
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The commit identifier set by the continuous integration server.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String COMMIT_ID =
+      "0123456789abcdef0123456789abcdef01234567";
+
+  /**
+   * The date of the revision the delegate returns.
+   */
+  private static final Date DATE = new Date(1394014272000L);
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The environment to read the variables from.
+   */
+  private final Map<String, String> environment =
+      new HashMap<String, String>();
+
+  /**
+   * The revision the delegate returns.
+   */
+  private Revision delegateRevision;
+
+  /**
+   * The number of revision queries sent to the delegate.
+   */
+  private int queries;
+
+  /**
+   * The fetcher the instance under test delegates to.
+   */
+  private RevisionNumberFetcher delegate;
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- prepare --------------------------------------------------------------
+
+  @Before
+  public void setUp()
+  {
+    delegate = new RevisionNumberFetcher()
+    {
+      public Revision fetchLatestRevisionNumber()
+      {
+        queries++;
+        return delegateRevision;
+      }
+
+      public LocallyModifiedInfo containsModifications(final ScmFileSet fileSet)
+      {
+        return new LocallyModifiedInfo(true, "modified");
+      }
+    };
+  }
+
+  // --- helper ---------------------------------------------------------------
+
+  private Revision fetch(final String scmType)
+  {
+    final EnvironmentRevisionNumberFetcher uut =
+        new EnvironmentRevisionNumberFetcher(scmType, null, null,
+            environment, delegate);
+    return uut.fetchLatestRevisionNumber();
+  }
+
+  // --- tests ----------------------------------------------------------------
+
+  @Test
+  public void skipsScmIfIdAndDateAreSet()
+  {
+    environment.put("GIT_COMMIT", COMMIT_ID);
+    environment.put("CI_COMMIT_TIMESTAMP", "2014-03-05T11:11:12+01:00");
+
+    final Revision revision = fetch("git");
+
+    assertEquals(COMMIT_ID, revision.getId());
+    assertEquals(DATE, revision.getDate());
+    assertEquals(0, queries);
+  }
+
+  @Test
+  public void usesDateOfScmIfOnlyIdIsSet()
+  {
+    environment.put("GITHUB_SHA", COMMIT_ID);
+    delegateRevision = new StringRevision(COMMIT_ID, DATE);
+
+    final Revision revision = fetch("git");
+
+    assertEquals(COMMIT_ID, revision.getId());
+    assertEquals(DATE, revision.getDate());
+    assertEquals(1, queries);
+  }
+
+  @Test
+  public void prefersWorkingCopyIfIdDiffers()
+  {
+    environment.put("GIT_COMMIT", COMMIT_ID);
+    delegateRevision =
+        new StringRevision("fedcba9876543210fedcba9876543210fedcba98", DATE);
+
+    assertEquals(delegateRevision, fetch("git"));
+  }
+
+  @Test
+  public void ignoresIdsOfOtherScmTypes()
+  {
+    environment.put("GIT_COMMIT", COMMIT_ID);
+    environment.put("SVN_REVISION", "1200");
+    environment.put("CI_COMMIT_TIMESTAMP", "1394014272");
+
+    final Revision revision = fetch("svn");
+
+    assertEquals("1200", revision.getId());
+    assertEquals(DATE, revision.getDate());
+    assertEquals(0, queries);
+  }
+
+  @Test
+  public void readsConfiguredVariables()
+  {
+    environment.put("BUILD_REVISION", COMMIT_ID);
+    environment.put("BUILD_DATE", "2014-03-05T10:11:12.5Z");
+    final EnvironmentRevisionNumberFetcher uut =
+        new EnvironmentRevisionNumberFetcher("hg",
+            Collections.singletonList("BUILD_REVISION"),
+            Collections.singletonList("BUILD_DATE"), environment, delegate);
+
+    final Revision revision = uut.fetchLatestRevisionNumber();
+
+    assertEquals(COMMIT_ID, revision.getId());
+    assertEquals(DATE, revision.getDate());
+  }
+
+  @Test
+  public void delegatesIfNothingIsSet()
+  {
+    assertNull(fetch("git"));
+    assertEquals(1, queries);
+  }
+
+  @Test
+  public void rejectsUnknownDateFormats()
+  {
+    assertNull(DateUtils.parseDate("05.03.2014"));
+    assertEquals(DATE, DateUtils.parseDate("2014-03-05 05:11:12-0500"));
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.scm.ScmFileSet;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests {@link IncrementalRevisionNumberFetcher}.
+ */
+public class IncrementalRevisionNumberFetcherTest
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * A commit identifier for the <code>HEAD</code> of the test repository.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String COMMIT_ID =
+      "0123456789012345678901234567890123456789";
+
+  /**
+   * A modification time well before the snapshots taken by the tests.
+   */
+  private static final long PAST = System.currentTimeMillis() - 60000L;
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The folder to create the working copy in.
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * The root directory of the working copy.
+   */
+  private File workTree;
+
+  /**
+   * The file sets passed to the delegate.
+   */
+  private final List<ScmFileSet> checked = new ArrayList<ScmFileSet>();
+
+  /**
+   * The result the delegate returns.
+   */
+  private LocallyModifiedInfo delegateResult =
+      new LocallyModifiedInfo(false, null);
+
+  /**
+   * The instance under test.
+   */
+  private IncrementalRevisionNumberFetcher uut;
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- prepare --------------------------------------------------------------
+
+  @Before
+  public void setUp() throws Exception
+  {
+    workTree = folder.newFolder("work");
+    write(new File(workTree, ".git/HEAD"), "ref: refs/heads/master\n");
+    write(new File(workTree, ".git/refs/heads/master"), COMMIT_ID + '\n');
+    write(new File(workTree, "pom.xml"), "<project/>");
+    write(new File(workTree, "src/A.java"), "class A {}");
+
+    final RevisionNumberFetcher delegate = new RevisionNumberFetcher()
+    {
+      public Revision fetchLatestRevisionNumber()
+      {
+        return null;
+      }
+
+      public LocallyModifiedInfo containsModifications(final ScmFileSet fileSet)
+      {
+        checked.add(fileSet);
+        return delegateResult;
+      }
+    };
+    uut =
+        new IncrementalRevisionNumberFetcher(new File(workTree,
+            "target/snapshot.txt"), workTree, "git", delegate);
+  }
+
+  // --- helper ---------------------------------------------------------------
+
+  private static void write(final File file, final String content)
+    throws IOException
+  {
+    file.getParentFile().mkdirs();
+    FileUtils.fileWrite(file.getAbsolutePath(), content);
+    file.setLastModified(PAST);
+  }
+
+  private LocallyModifiedInfo check()
+  {
+    return uut.containsModifications(new ScmFileSet(workTree));
+  }
+
+  // --- tests ----------------------------------------------------------------
+
+  @Test
+  public void skipsScmIfNothingChanged()
+  {
+    check();
+    check();
+
+    assertEquals(1, checked.size());
+  }
+
+  @Test
+  public void checksChangedFilesOnly() throws Exception
+  {
+    check();
+    write(new File(workTree, "src/A.java"), "class A { int a; }");
+    write(new File(workTree, "src/B.java"), "class B {}");
+
+    check();
+
+    assertEquals(2, checked.size());
+    final List<File> files = checked.get(1).getFileList();
+    assertEquals(2, files.size());
+    assertTrue(files.contains(new File("src/A.java")));
+    assertTrue(files.contains(new File("src/B.java")));
+  }
+
+  @Test
+  public void ignoresBuildDirectory() throws Exception
+  {
+    check();
+    write(new File(workTree, "target/classes/A.class"), "binary");
+
+    check();
+
+    assertEquals(1, checked.size());
+  }
+
+  @Test
+  public void skipsSymbolicLinksToDirectories() throws Exception
+  {
+    final Process process =
+        new ProcessBuilder("ln", "-s", "..", "src/parent").directory(workTree)
+            .start();
+    assumeTrue(process.waitFor() == 0);
+
+    check();
+    write(new File(workTree, "src/B.java"), "class B {}");
+    check();
+
+    assertEquals(2, checked.size());
+    assertEquals(1, checked.get(1).getFileList().size());
+  }
+
+  @Test
+  public void checksAllFilesIfHeadChanged() throws Exception
+  {
+    check();
+    write(new File(workTree, ".git/refs/heads/master"),
+        COMMIT_ID.replace('0', 'f') + '\n');
+
+    check();
+
+    assertEquals(2, checked.size());
+    assertTrue(checked.get(1).getFileList().isEmpty());
+  }
+
+  @Test
+  public void keepsCheckingWhileModified() throws Exception
+  {
+    delegateResult = new LocallyModifiedInfo(true, "src/A.java");
+    check();
+    delegateResult = new LocallyModifiedInfo(false, null);
+    check();
+    final LocallyModifiedInfo info = check();
+
+    assertEquals(2, checked.size());
+    assertFalse(info.isLocallyModified());
+    assertNull(info.getFiles());
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests {@link ModificationScope}.
+ */
+public class ModificationScopeTest
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The folder to create the working copy in.
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- prepare --------------------------------------------------------------
+
+  // --- helper ---------------------------------------------------------------
+
+  private static ModificationScope createModuleScope(final String... paths)
+  {
+    return new ModificationScope(ModificationScope.SCOPE_MODULE,
+        Arrays.asList(paths), null, null);
+  }
+
+  // --- tests ----------------------------------------------------------------
+
+  @Test
+  public void repositoryScopeChecksRootDirectory() throws Exception
+  {
+    final File root = folder.newFolder("root");
+    final File module = new File(root, "module");
+    final ModificationScope uut =
+        new ModificationScope(null, Arrays.asList("../other"), null, null);
+
+    final List<File> directories = uut.getDirectories(root, module);
+
+    assertFalse(uut.isModuleScoped());
+    assertEquals(Arrays.asList(root), directories);
+  }
+
+  @Test
+  public void moduleScopeChecksModuleAndExistingPaths() throws Exception
+  {
+    final File root = folder.newFolder("root");
+    final File module = new File(root, "module");
+    final File shared = new File(root, "shared");
+    module.mkdirs();
+    shared.mkdirs();
+    final ModificationScope uut = createModuleScope("../shared", "../missing");
+
+    final List<File> directories = uut.getDirectories(root, module);
+
+    assertEquals(Arrays.asList(module.getCanonicalFile(),
+        shared.getCanonicalFile()), directories);
+  }
+
+  @Test
+  public void moduleScopeDropsNestedPaths() throws Exception
+  {
+    final File root = folder.newFolder("root");
+    final File module = new File(root, "module");
+    new File(module, "src").mkdirs();
+    final ModificationScope uut = createModuleScope("src", "..");
+
+    final List<File> directories = uut.getDirectories(root, module);
+
+    assertEquals(Arrays.asList(root.getCanonicalFile()), directories);
+  }
+
+  @Test
+  public void reportsMatchingFilesOnly()
+  {
+    final ModificationScope uut =
+        new ModificationScope(ModificationScope.SCOPE_MODULE, null,
+            Arrays.asList("src/**"), Arrays.asList("**/*.txt"));
+
+    assertTrue(uut.isFiltered());
+    assertTrue(uut.isReported("src/main/java/A.java"));
+    assertFalse(uut.isReported("src/main/resources/notes.txt"));
+    assertFalse(uut.isReported("pom.xml"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsUnknownScope()
+  {
+    new ModificationScope("artifact", null, null, null);
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests {@link ModifiedFilesCollector}.
+ */
+public class ModifiedFilesCollectorTest
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The folder to write the lists of modified files to.
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- prepare --------------------------------------------------------------
+
+  // --- helper ---------------------------------------------------------------
+
+  private File target()
+  {
+    return new File(folder.getRoot(), "target/modified-files.txt");
+  }
+
+  private File listFile()
+  {
+    return ModifiedFilesCollector.createListFile(target());
+  }
+
+  // --- tests ----------------------------------------------------------------
+
+  @Test
+  public void reportsCleanWorkingCopy()
+  {
+    final LocallyModifiedInfo info =
+        new ModifiedFilesCollector(2, null).createInfo();
+
+    assertFalse(info.isLocallyModified());
+    assertNull(info.getFiles());
+    assertEquals(0, info.getCount());
+  }
+
+  @Test
+  public void keepsFirstPathsPerType()
+  {
+    final ModifiedFilesCollector uut = new ModifiedFilesCollector(2, null);
+    uut.add("d.txt", "modified");
+    uut.add("c.txt", "modified");
+    uut.add("b.txt", "modified");
+    uut.add("z.txt", "added");
+
+    final LocallyModifiedInfo info = uut.createInfo();
+
+    assertTrue(info.isLocallyModified());
+    assertEquals(4, info.getCount());
+    assertEquals("[z.txt:added] [c.txt:modified] [b.txt:modified]",
+        info.getFiles());
+  }
+
+  @Test
+  public void digestDoesNotDependOnOrder()
+  {
+    final ModifiedFilesCollector first = new ModifiedFilesCollector(1, null);
+    first.add("a.txt", "modified");
+    first.add("b.txt", "added");
+    final ModifiedFilesCollector second = new ModifiedFilesCollector(1, null);
+    second.add("b.txt", "added");
+    second.add("a.txt", "modified");
+    final ModifiedFilesCollector other = new ModifiedFilesCollector(1, null);
+    other.add("a.txt", "added");
+    other.add("b.txt", "added");
+
+    final String digest = first.createInfo().getDigest();
+
+    assertEquals(40, digest.length());
+    assertEquals(digest, second.createInfo().getDigest());
+    assertFalse(digest.equals(other.createInfo().getDigest()));
+  }
+
+  @Test
+  public void writesCompleteList() throws Exception
+  {
+    final ModifiedFilesCollector uut =
+        new ModifiedFilesCollector(1, listFile());
+    uut.add("a.txt", "modified");
+    uut.add("dir\\b.txt", "modified");
+
+    final LocallyModifiedInfo info = uut.createInfo();
+
+    assertEquals("[a.txt:modified]", info.getFiles());
+    assertEquals("modified\ta.txt\nmodified\tdir/b.txt\n",
+        FileUtils.fileRead(info.getListFile().getAbsolutePath()));
+  }
+
+  @Test
+  public void mergesLikeSingleCheck() throws Exception
+  {
+    final ModifiedFilesCollector all =
+        new ModifiedFilesCollector(0, listFile());
+    all.add("a.txt", "modified");
+    all.add("b.txt", "deleted");
+    final ModifiedFilesCollector first =
+        new ModifiedFilesCollector(0, listFile());
+    first.add("a.txt", "modified");
+    final ModifiedFilesCollector second =
+        new ModifiedFilesCollector(0, listFile());
+    second.add("b.txt", "deleted");
+    final ModifiedFilesCollector clean = new ModifiedFilesCollector(0, null);
+
+    final LocallyModifiedInfo expected = all.createInfo();
+    final LocallyModifiedInfo merged =
+        ModifiedFilesCollector.merge(Arrays.asList(first.createInfo(),
+            clean.createInfo(), second.createInfo()));
+
+    assertTrue(merged.isLocallyModified());
+    assertEquals(2, merged.getCount());
+    assertEquals(expected.getDigest(), merged.getDigest());
+    assertEquals(FileUtils.fileRead(expected.getListFile().getAbsolutePath()),
+        FileUtils.fileRead(merged.getListFile().getAbsolutePath()));
+  }
+
+  @Test
+  public void leavesOnlyFinalListBehind() throws Exception
+  {
+    final ModifiedFilesCollector first =
+        new ModifiedFilesCollector(0, listFile());
+    first.add("a.txt", "modified");
+    final ModifiedFilesCollector second =
+        new ModifiedFilesCollector(0, listFile());
+    second.add("b.txt", "deleted");
+
+    final LocallyModifiedInfo merged =
+        ModifiedFilesCollector.merge(Arrays.asList(first.createInfo(),
+            second.createInfo()));
+    ModifiedFilesCollector.moveListFile(merged.getListFile(), target());
+
+    assertEquals(Arrays.asList("modified-files.txt"), Arrays.asList(target()
+        .getParentFile().list()));
+    assertEquals("modified\ta.txt\ndeleted\tb.txt\n",
+        FileUtils.fileRead(target().getAbsolutePath()));
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.SortedMap;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link ScmMetrics}.
+ */
+public class ScmMetricsTest
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The instance under test.
+   */
+  private final ScmMetrics uut = new ScmMetrics();
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- prepare --------------------------------------------------------------
+
+  // --- helper ---------------------------------------------------------------
+
+  // --- tests ----------------------------------------------------------------
+
+  @Test
+  public void addsUpCallsOfSameKind()
+  {
+    uut.recordCall(ScmMetrics.CHANGELOG, 100L);
+    uut.recordCall(ScmMetrics.CHANGELOG, 50L);
+    uut.recordCall(ScmMetrics.STATUS, 20L);
+
+    final SortedMap<String, ScmMetrics.Call> calls = uut.getCalls();
+    assertEquals(2, calls.get(ScmMetrics.CHANGELOG).getCount());
+    assertEquals(150L, calls.get(ScmMetrics.CHANGELOG).getTimeInMillis());
+    assertEquals(1, calls.get(ScmMetrics.STATUS).getCount());
+  }
+
+  @Test
+  public void summarizesOnSingleLine()
+  {
+    uut.recordCall(ScmMetrics.STATUS, 20L);
+    uut.recordCall(ScmMetrics.CHANGELOG, 100L);
+    uut.recordProcess(42L);
+    uut.recordCacheLookup(true);
+    uut.recordCacheLookup(false);
+    uut.recordCacheLookup(false);
+
+    assertEquals("changelog=1/100ms, status=1/20ms, processes=1, output=42B,"
+                 + " cache=1 hits/2 misses", uut.toString());
+  }
+}
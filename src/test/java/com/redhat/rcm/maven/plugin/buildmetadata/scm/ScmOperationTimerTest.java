@@ -0,0 +1,165 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.scm.ScmResult;
+import org.junit.Test;
+
+/**
+ * Tests {@link ScmOperationTimer}.
+ */
+public class ScmOperationTimerTest
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  // --- members --------------------------------------------------------------
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- prepare --------------------------------------------------------------
+
+  // --- helper ---------------------------------------------------------------
+
+  private static ScmOperationTimer.Operation<String> result(final String value)
+  {
+    return new ScmOperationTimer.Operation<String>()
+    {
+      public String execute()
+      {
+        return value;
+      }
+    };
+  }
+
+  // --- tests ----------------------------------------------------------------
+
+  @Test
+  public void runsOnCallingThreadWithoutDeadline() throws Exception
+  {
+    final ScmOperationTimer timer = new ScmOperationTimer(0, 0);
+    final Thread caller = Thread.currentThread();
+
+    final Thread thread =
+        timer.run("test", new ScmOperationTimer.Operation<Thread>()
+        {
+          public Thread execute()
+          {
+            return Thread.currentThread();
+          }
+        });
+
+    assertSame(caller, thread);
+    assertEquals(1, timer.getOperations());
+    assertEquals(0, timer.getTimeouts());
+  }
+
+  @Test
+  public void returnsResultWithinDeadline() throws Exception
+  {
+    final ScmOperationTimer timer = new ScmOperationTimer(10, 60);
+
+    assertEquals("done", timer.run("test", result("done")));
+    assertEquals(0, timer.getTimeouts());
+  }
+
+  @Test
+  public void recordsProcessAndOutputOfScmResults() throws Exception
+  {
+    final ScmOperationTimer timer = new ScmOperationTimer(0, 0);
+
+    timer.run("test", new ScmOperationTimer.Operation<ScmResult>()
+    {
+      public ScmResult execute()
+      {
+        return new ScmResult("git status", null, "output", true);
+      }
+    });
+    timer.run("test", result("done"));
+
+    assertEquals(2, timer.getMetrics().getProcesses());
+    assertEquals(6L, timer.getMetrics().getOutputBytes());
+  }
+
+  @Test
+  public void interruptsOperationAfterDeadline() throws Exception
+  {
+    final ScmOperationTimer timer = new ScmOperationTimer(1, 0);
+    final CountDownLatch interrupted = new CountDownLatch(1);
+
+    try
+    {
+      timer.run("test", new ScmOperationTimer.Operation<String>()
+      {
+        public String execute()
+        {
+          try
+          {
+            Thread.sleep(30000L);
+          }
+          catch (final InterruptedException e)
+          {
+            interrupted.countDown();
+          }
+          return null;
+        }
+      });
+      fail("Expected a timeout.");
+    }
+    catch (final ScmTimeoutException e)
+    {
+      // expected
+    }
+
+    assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    assertEquals(1, timer.getTimeouts());
+  }
+
+  @Test(expected = org.apache.maven.scm.ScmException.class)
+  public void rethrowsFailureOfOperation() throws Exception
+  {
+    new ScmOperationTimer(10, 0).run("test",
+        new ScmOperationTimer.Operation<String>()
+        {
+          public String execute() throws org.apache.maven.scm.ScmException
+          {
+            throw new org.apache.maven.scm.ScmException("failed");
+          }
+        });
+  }
+
+  @Test
+  public void countsRetries()
+  {
+    final ScmOperationTimer timer = new ScmOperationTimer(0, 0);
+
+    timer.recordRetry();
+    timer.recordRetry();
+
+    assertEquals(2, timer.getRetries());
+  }
+}
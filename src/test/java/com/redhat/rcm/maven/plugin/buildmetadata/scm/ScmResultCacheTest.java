@@ -0,0 +1,151 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link ScmResultCache}.
+ */
+public class ScmResultCacheTest
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The number of threads querying the cache concurrently.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int THREAD_COUNT = 8;
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The instance under test.
+   */
+  private final ScmResultCache uut = new ScmResultCache();
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- tests ----------------------------------------------------------------
+
+  @Test
+  public void computesValueOnceForConcurrentCallers() throws Exception
+  {
+    final AtomicInteger computations = new AtomicInteger();
+    final CountDownLatch start = new CountDownLatch(1);
+    final String[] values = new String[THREAD_COUNT];
+    final Thread[] threads = new Thread[THREAD_COUNT];
+    for (int i = 0; i < THREAD_COUNT; i++)
+    {
+      final int index = i;
+      threads[i] = new Thread()
+      {
+        @Override
+        public void run()
+        {
+          try
+          {
+            start.await();
+          }
+          catch (final InterruptedException e)
+          {
+            return;
+          }
+          values[index] = uut.get("key", new Callable<String>()
+          {
+            public String call() throws Exception
+            {
+              computations.incrementAndGet();
+              Thread.sleep(50);
+              return "value";
+            }
+          });
+        }
+      };
+      threads[i].start();
+    }
+    start.countDown();
+    for (final Thread thread : threads)
+    {
+      thread.join();
+    }
+
+    assertEquals(1, computations.get());
+    for (final String value : values)
+    {
+      assertEquals("value", value);
+    }
+  }
+
+  @Test
+  public void rethrowsCachedFailure()
+  {
+    final ScmException failure = new ScmException("failure");
+    final Callable<String> computation = new Callable<String>()
+    {
+      public String call()
+      {
+        throw failure;
+      }
+    };
+
+    for (int i = 0; i < 2; i++)
+    {
+      try
+      {
+        uut.get("key", computation);
+        fail("Expected cached failure.");
+      }
+      catch (final ScmException e)
+      {
+        assertSame(failure, e);
+      }
+    }
+  }
+
+  @Test
+  public void cachesNullValue()
+  {
+    final AtomicInteger computations = new AtomicInteger();
+    final Callable<Object> computation = new Callable<Object>()
+    {
+      public Object call()
+      {
+        computations.incrementAndGet();
+        return null;
+      }
+    };
+
+    uut.get("key", computation);
+    uut.get("key", computation);
+
+    assertEquals(1, computations.get());
+  }
+}
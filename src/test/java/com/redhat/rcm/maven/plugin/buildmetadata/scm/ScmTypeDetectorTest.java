@@ -0,0 +1,135 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests {@link ScmTypeDetector}.
+ */
+public class ScmTypeDetectorTest
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The folder to create the working copies in.
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * The instance under test.
+   */
+  private final ScmTypeDetector uut = new ScmTypeDetector();
+
+  /**
+   * The root of the test folder, with canonical path.
+   */
+  private File root;
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- prepare --------------------------------------------------------------
+
+  @Before
+  public void setUp() throws Exception
+  {
+    root = folder.getRoot().getCanonicalFile();
+  }
+
+  // --- helper ---------------------------------------------------------------
+
+  private File mkdirs(final String path)
+  {
+    final File directory = new File(root, path);
+    directory.mkdirs();
+    return directory;
+  }
+
+  private void assertDetected(final String scmType, final File expectedRoot,
+      final File directory)
+  {
+    final ScmTypeDetector.WorkingCopy workingCopy = uut.detect(directory);
+    assertEquals(scmType, workingCopy.getScmType());
+    assertEquals(expectedRoot, workingCopy.getRoot());
+  }
+
+  // --- tests ----------------------------------------------------------------
+
+  @Test
+  public void detectsGitWorkTreeAbove()
+  {
+    mkdirs("repo/.git");
+
+    assertDetected("git", new File(root, "repo"), mkdirs("repo/module/src"));
+  }
+
+  @Test
+  public void detectsLinkedGitWorkTree() throws Exception
+  {
+    final File workTree = mkdirs("worktree");
+    FileUtils.fileWrite(new File(workTree, ".git").getAbsolutePath(),
+        "gitdir: ../repo/.git/worktrees/worktree\n");
+
+    assertDetected("git", workTree, mkdirs("worktree/module"));
+  }
+
+  @Test
+  public void ignoresOtherGitFiles() throws Exception
+  {
+    mkdirs("repo/.hg");
+    final File module = mkdirs("repo/module");
+    FileUtils.fileWrite(new File(module, ".git").getAbsolutePath(),
+        "not a link");
+
+    assertDetected("hg", new File(root, "repo"), module);
+  }
+
+  @Test
+  public void prefersNearestWorkingCopy()
+  {
+    mkdirs("repo/.git");
+    mkdirs("repo/external/.svn");
+    mkdirs("repo/external/module/.svn");
+
+    assertDetected("svn", new File(root, "repo/external"),
+        mkdirs("repo/external/module"));
+  }
+
+  @Test
+  public void returnsNullOutsideWorkingCopies()
+  {
+    assumeTrue(uut.detect(root.getParentFile()) == null);
+
+    assertNull(uut.detect(mkdirs("plain/module")));
+  }
+}
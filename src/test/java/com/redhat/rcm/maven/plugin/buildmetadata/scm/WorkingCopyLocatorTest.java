@@ -0,0 +1,134 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests {@link WorkingCopyLocator}.
+ */
+public class WorkingCopyLocatorTest
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The folder to create the working copies in.
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * The root directory of the enclosing working copy.
+   */
+  private File root;
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- prepare --------------------------------------------------------------
+
+  @Before
+  public void setUp() throws Exception
+  {
+    root = folder.newFolder("root");
+    new File(root, ".git").mkdirs();
+  }
+
+  // --- helper ---------------------------------------------------------------
+
+  private void write(final String path) throws IOException
+  {
+    final File file = new File(root, path);
+    file.getParentFile().mkdirs();
+    FileUtils.fileWrite(file.getAbsolutePath(), "");
+  }
+
+  private void mkdirs(final String path)
+  {
+    new File(root, path).mkdirs();
+  }
+
+  private static String render(final List<NestedWorkingCopy> copies)
+  {
+    final StringBuilder buffer = new StringBuilder();
+    for (final NestedWorkingCopy copy : copies)
+    {
+      if (buffer.length() > 0)
+      {
+        buffer.append(", ");
+      }
+      buffer.append(copy);
+    }
+    return buffer.toString();
+  }
+
+  // --- tests ----------------------------------------------------------------
+
+  @Test
+  public void findsNestedWorkingCopiesOfAllTypes() throws Exception
+  {
+    write("lib/core/.git");
+    mkdirs("lib/core/deps/util/.git");
+    mkdirs("ext/hg/.hg");
+    write("ext/svn/.svn/wc.db");
+    mkdirs("src/main/java");
+
+    assertEquals("ext/hg (hg), ext/svn (svn), lib/core (git), "
+                 + "lib/core/deps/util (git)",
+        render(WorkingCopyLocator.findNested(root, 4)));
+  }
+
+  @Test
+  public void skipsHiddenAndBuildDirectories() throws Exception
+  {
+    mkdirs("target/checkout/.git");
+    mkdirs(".cache/repo/.git");
+
+    assertEquals("", render(WorkingCopyLocator.findNested(root, 4)));
+  }
+
+  @Test
+  public void skipsOldSubversionDirectories() throws Exception
+  {
+    mkdirs("module/.svn");
+
+    assertEquals("", render(WorkingCopyLocator.findNested(root, 4)));
+  }
+
+  @Test
+  public void stopsAtMaximumDepth() throws Exception
+  {
+    mkdirs("a/.git");
+    mkdirs("b/c/.git");
+
+    assertEquals("a (git)", render(WorkingCopyLocator.findNested(root, 1)));
+  }
+}
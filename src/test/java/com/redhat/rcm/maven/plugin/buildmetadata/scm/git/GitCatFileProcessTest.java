@@ -0,0 +1,294 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.git;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.Revision;
+
+/**
+ * Tests {@link GitCatFileProcess}. The tests with a running process are
+ * skipped if the <code>git</code> executable is not available.
+ */
+public class GitCatFileProcessTest
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The content of a commit.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String COMMIT =
+      "tree 4b825dc642cb6eb9a060e54bf8d69288fbee4904\n"
+          + "author A <a@example.com> 1394014272 +0100\n"
+          + "committer C <c@example.com> 1394014300 +0100\n" + "\n"
+          + "message\n";
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The folder to create the working copy in.
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- prepare --------------------------------------------------------------
+
+  // --- helper ---------------------------------------------------------------
+
+  private static GitCatFileProcess process(final String response,
+      final ByteArrayOutputStream requests) throws Exception
+  {
+    return new GitCatFileProcess(null, new ByteArrayInputStream(
+        response.getBytes("UTF-8")), requests);
+  }
+
+  private static String git(final File workTree, final String... arguments)
+  {
+    final String[] command = new String[arguments.length + 1];
+    command[0] = "git";
+    System.arraycopy(arguments, 0, command, 1, arguments.length);
+    try
+    {
+      final Process process =
+          new ProcessBuilder(command).directory(workTree).start();
+      process.getOutputStream().close();
+      final String output = IOUtil.toString(process.getInputStream());
+      return process.waitFor() == 0 ? output.trim() : null;
+    }
+    catch (final IOException e)
+    {
+      return null;
+    }
+    catch (final InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+  }
+
+  /**
+   * Returns a stream that blocks reads until it is closed.
+   *
+   * @return the stream.
+   */
+  private static InputStream silentStream()
+  {
+    return new InputStream()
+    {
+      private boolean closed;
+
+      @Override
+      public synchronized int read() throws IOException
+      {
+        while (!closed)
+        {
+          try
+          {
+            wait();
+          }
+          catch (final InterruptedException e)
+          {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+          }
+        }
+        throw new IOException("Stream closed.");
+      }
+
+      @Override
+      public synchronized void close()
+      {
+        closed = true;
+        notifyAll();
+      }
+    };
+  }
+
+  private static void assertUnavailable(final GitProcessRegistry registry,
+      final GitRepository repository)
+  {
+    try
+    {
+      registry.getProcess(repository, null);
+    }
+    catch (final IOException e)
+    {
+      return;
+    }
+    throw new AssertionError("Process has been started without a user.");
+  }
+
+  // --- tests ----------------------------------------------------------------
+
+  @Test
+  public void pipelinesNamesAndReadsObjectsInOrder() throws Exception
+  {
+    final ByteArrayOutputStream requests = new ByteArrayOutputStream();
+    final GitCatFileProcess process =
+        process("1111 blob 3\nabc\n" + "nope missing\n"
+                + "2222 tree 0\n\n", requests);
+
+    final List<GitCatFileProcess.BatchObject> objects =
+        process.read(Arrays.asList("HEAD:a", "nope", "HEAD^{tree}"), 0L);
+
+    assertEquals("HEAD:a\nnope\nHEAD^{tree}\n", requests.toString("UTF-8"));
+    assertEquals("1111", objects.get(0).getId());
+    assertEquals(GitObjectDatabase.OBJ_BLOB, objects.get(0).getObject()
+        .getType());
+    assertEquals("abc", new String(objects.get(0).getObject().getData(),
+        "UTF-8"));
+    assertNull(objects.get(1));
+    assertEquals(GitObjectDatabase.OBJ_TREE, objects.get(2).getObject()
+        .getType());
+  }
+
+  @Test
+  public void readsRevisionOfPeeledCommit() throws Exception
+  {
+    final ByteArrayOutputStream requests = new ByteArrayOutputStream();
+    final byte[] content = COMMIT.getBytes("UTF-8");
+    final GitCatFileProcess process =
+        process("abcd commit " + content.length + '\n' + COMMIT + '\n',
+            requests);
+
+    final Revision revision = process.readRevision("HEAD", 0L);
+
+    assertEquals("HEAD^{commit}\n", requests.toString("UTF-8"));
+    assertEquals("abcd", revision.getId());
+    assertEquals(1394014300000L, revision.getDate().getTime());
+  }
+
+  @Test
+  public void closesOnTruncatedResponse() throws Exception
+  {
+    final GitCatFileProcess process =
+        process("1111 blob 10\nabc", new ByteArrayOutputStream());
+
+    try
+    {
+      process.read(Arrays.asList("HEAD:a"), 0L);
+    }
+    catch (final IOException e)
+    {
+      assertTrue(process.isClosed());
+      return;
+    }
+    throw new AssertionError("Truncated response has been accepted.");
+  }
+
+  @Test
+  public void closesIfNoResponseInTime() throws Exception
+  {
+    final GitCatFileProcess process =
+        new GitCatFileProcess(null, silentStream(),
+            new ByteArrayOutputStream());
+
+    try
+    {
+      process.read(Arrays.asList("HEAD:a"), 100L);
+    }
+    catch (final InterruptedIOException e)
+    {
+      assertTrue(process.isClosed());
+      return;
+    }
+    throw new AssertionError("Lookup without response has completed.");
+  }
+
+  @Test
+  public void sharesProcessPerRepository() throws Exception
+  {
+    final File workTree = folder.newFolder("work");
+    assumeTrue(git(workTree, "init", "-q") != null);
+    FileUtils.fileWrite(new File(workTree, "a.txt").getAbsolutePath(), "a");
+    assumeTrue(git(workTree, "add", ".") != null);
+    assumeTrue(git(workTree, "-c", "user.name=test", "-c",
+        "user.email=test@example.com", "commit", "-q", "-m", "initial")
+               != null);
+    final String head = git(workTree, "rev-parse", "HEAD");
+    final File module = new File(workTree, "module");
+    module.mkdirs();
+
+    final GitProcessRegistry registry = new GitProcessRegistry();
+    registry.acquire();
+    try
+    {
+      final GitCatFileProcess process =
+          registry.getProcess(GitRepository.find(workTree), null);
+      assertSame(process, registry.getProcess(GitRepository.find(module),
+          null));
+      assertEquals(head, process.readRevision("HEAD", 0L).getId());
+      assertEquals(head, process.readRevision("HEAD", 0L).getId());
+      assertNull(process.read(Arrays.asList("HEAD:missing.txt"), 0L)
+          .get(0));
+    }
+    finally
+    {
+      registry.close();
+    }
+  }
+
+  @Test
+  public void closesProcessesWhenLastUserReleases() throws Exception
+  {
+    final File workTree = folder.newFolder("work");
+    assumeTrue(git(workTree, "init", "-q") != null);
+    final GitRepository repository = GitRepository.find(workTree);
+
+    final GitProcessRegistry registry = new GitProcessRegistry();
+    registry.acquire();
+    registry.acquire();
+    final GitCatFileProcess process = registry.getProcess(repository, null);
+    registry.release();
+    assertFalse(process.isClosed());
+    registry.release();
+    assertTrue(process.isClosed());
+    assertUnavailable(registry, repository);
+
+    registry.acquire();
+    registry.close();
+    assertUnavailable(registry, repository);
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.git;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests {@link GitConfig}.
+ */
+public class GitConfigTest
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The folder to create the configuration files in.
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- prepare --------------------------------------------------------------
+
+  // --- helper ---------------------------------------------------------------
+
+  // --- tests ----------------------------------------------------------------
+
+  @Test
+  public void readsSectionsSubsectionsAndBooleans() throws Exception
+  {
+    final GitConfig config = new GitConfig();
+    config.parse("# comment\n" + "[Core]\n" + "\tfileMode = false ; no\n"
+                 + "\tbare\n" + "[remote \"Origin\"]\n"
+                 + "\turl = \"https://example.com/repo.git\"\n", null, 0);
+
+    assertFalse(config.getBoolean("core.filemode", true));
+    assertTrue(config.getBoolean("core.bare", false));
+    assertTrue(config.getBoolean("core.missing", true));
+    assertEquals("https://example.com/repo.git",
+        config.get("remote.Origin.url"));
+    assertNull(config.get("remote.origin.url"));
+  }
+
+  @Test
+  public void laterFilesAndIncludesOverrideValues() throws Exception
+  {
+    final File include = folder.newFile("include");
+    FileUtils.fileWrite(include.getAbsolutePath(),
+        "[core]\nautocrlf = input\n");
+    final File first = folder.newFile("first");
+    FileUtils.fileWrite(first.getAbsolutePath(), "[core]\nautocrlf = true\n");
+    final File second = folder.newFile("second");
+    FileUtils.fileWrite(second.getAbsolutePath(),
+        "[core]\nautocrlf = false\n[include]\npath = include\n");
+
+    assertEquals("input", GitConfig.read(Arrays.asList(first, second))
+        .get("core.autocrlf"));
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.git;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.Revision;
+
+/**
+ * Tests {@link GitHistoryWalker}. The tests are skipped if the
+ * <code>git</code> executable is not available.
+ */
+public class GitHistoryWalkerTest
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The folder to create the working copy in.
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * The root directory of the working copy.
+   */
+  private File workTree;
+
+  /**
+   * The commit that added both modules.
+   */
+  private String initial;
+
+  /**
+   * The commit that changed the first module only.
+   */
+  private String change;
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- prepare --------------------------------------------------------------
+
+  @Before
+  public void setUp() throws Exception
+  {
+    workTree = folder.newFolder("work");
+    assumeTrue(git("init", "-q") != null);
+    write("a/src/A.java", "class A {}");
+    write("b/B.java", "class B {}");
+    initial = commit("initial");
+    write("a/src/A.java", "class A { int a; }");
+    change = commit("change");
+  }
+
+  // --- helper ---------------------------------------------------------------
+
+  private String git(final String... arguments)
+  {
+    final String[] command = new String[arguments.length + 1];
+    command[0] = "git";
+    System.arraycopy(arguments, 0, command, 1, arguments.length);
+    try
+    {
+      final Process process =
+          new ProcessBuilder(command).directory(workTree).start();
+      process.getOutputStream().close();
+      final String output = IOUtil.toString(process.getInputStream());
+      return process.waitFor() == 0 ? output.trim() : null;
+    }
+    catch (final IOException e)
+    {
+      return null;
+    }
+    catch (final InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+  }
+
+  private String commit(final String message)
+  {
+    assumeTrue(git("add", ".") != null);
+    assumeTrue(git("-c", "user.name=test", "-c", "user.email=test@example.com",
+        "commit", "-q", "-m", message) != null);
+    final String id = git("rev-parse", "HEAD");
+    assumeTrue(id != null);
+    return id;
+  }
+
+  private void write(final String path, final String content)
+    throws IOException
+  {
+    final File file = new File(workTree, path);
+    file.getParentFile().mkdirs();
+    FileUtils.fileWrite(file.getAbsolutePath(), content);
+  }
+
+  private Map<String, Revision> findLastChanges(final int maxCommits,
+      final String... paths) throws IOException
+  {
+    final GitRepository repository = GitRepository.find(workTree);
+    return new GitHistoryWalker(repository, maxCommits)
+        .findLastChanges(Arrays.asList(paths));
+  }
+
+  // --- tests ----------------------------------------------------------------
+
+  @Test
+  public void findsLastChangeOfEachPath() throws Exception
+  {
+    final Map<String, Revision> changes =
+        findLastChanges(100, "", "a", "a/src", "b");
+
+    assertEquals(change, changes.get("").getId());
+    assertEquals(change, changes.get("a").getId());
+    assertEquals(change, changes.get("a/src").getId());
+    assertEquals(initial, changes.get("b").getId());
+    assertNotNull(changes.get("b").getDate());
+  }
+
+  @Test
+  public void skipsPathsNotTrackedAtHead() throws Exception
+  {
+    final Map<String, Revision> changes = findLastChanges(100, "c", "b/B.java");
+
+    assertFalse(changes.containsKey("c"));
+    assertEquals(initial, changes.get("b/B.java").getId());
+  }
+
+  @Test
+  public void stopsAfterMaximumNumberOfCommits() throws Exception
+  {
+    final Map<String, Revision> changes = findLastChanges(1, "a", "b");
+
+    assertEquals(change, changes.get("a").getId());
+    assertFalse(changes.containsKey("b"));
+  }
+
+  @Test
+  public void stopsAtShallowBoundary() throws Exception
+  {
+    final File gitDir = new File(workTree, ".git");
+    FileUtils.fileWrite(new File(gitDir, "shallow").getAbsolutePath(), change
+                                                                       + '\n');
+
+    final Map<String, Revision> changes = findLastChanges(100, "a", "b");
+
+    assertFalse(changes.containsKey("a"));
+    assertFalse(changes.containsKey("b"));
+  }
+
+  @Test
+  public void resolvesPathsRelativeToWorkTree() throws Exception
+  {
+    assertEquals("a/src",
+        GitHistoryWalker.toPath(workTree, new File(workTree, "a/src")));
+    assertEquals("", GitHistoryWalker.toPath(workTree, workTree));
+    assertEquals(null,
+        GitHistoryWalker.toPath(workTree, folder.getRoot().getParentFile()));
+  }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.git;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests {@link GitIndexStatus}. The results are compared with the results of
+ * {@link GitStatusScanner}. The tests are skipped if the <code>git</code>
+ * executable is not available.
+ */
+public class GitIndexStatusTest
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The folder to create the working copy in.
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * The root directory of the working copy.
+   */
+  private File workTree;
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- prepare --------------------------------------------------------------
+
+  @Before
+  public void setUp() throws Exception
+  {
+    workTree = folder.newFolder("work");
+    assumeTrue(git("init", "-q"));
+    write("module/src/A.java", "class A {}");
+    write("module/src/B.java", "class B {}");
+    write("other/C.java", "class C {}");
+    assumeTrue(git("add", "."));
+    assumeTrue(git("-c", "user.name=test", "-c", "user.email=test@example.com",
+        "commit", "-q", "-m", "initial"));
+  }
+
+  // --- helper ---------------------------------------------------------------
+
+  private boolean git(final String... arguments)
+  {
+    final String[] command = new String[arguments.length + 1];
+    command[0] = "git";
+    System.arraycopy(arguments, 0, command, 1, arguments.length);
+    try
+    {
+      final Process process =
+          new ProcessBuilder(command).directory(workTree)
+              .redirectErrorStream(true).start();
+      process.getOutputStream().close();
+      IOUtil.toString(process.getInputStream());
+      return process.waitFor() == 0;
+    }
+    catch (final IOException e)
+    {
+      return false;
+    }
+    catch (final InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private void write(final String path, final String content)
+    throws IOException
+  {
+    final File file = new File(workTree, path);
+    file.getParentFile().mkdirs();
+    FileUtils.fileWrite(file.getAbsolutePath(), content);
+  }
+
+  private List<String> scanIndex(final File directory, final File... files)
+    throws IOException
+  {
+    final List<String> handled = new ArrayList<String>();
+    new GitIndexStatus(GitRepository.find(workTree), collect(handled)).scan(
+        directory, Arrays.asList(files));
+    return handled;
+  }
+
+  private List<String> scanStatus(final File directory, final File... files)
+    throws IOException
+  {
+    final List<String> handled = new ArrayList<String>();
+    new GitStatusScanner(workTree, collect(handled)).scan(directory,
+        Arrays.asList(files));
+    return handled;
+  }
+
+  private static GitStatusScanner.Handler collect(final List<String> handled)
+  {
+    return new GitStatusScanner.Handler()
+    {
+      public boolean handle(final String path, final String type)
+      {
+        handled.add(path + ':' + type);
+        return false;
+      }
+    };
+  }
+
+  private void assertSameAsStatus(final File directory, final File... files)
+    throws IOException
+  {
+    assertEquals(scanStatus(directory, files), scanIndex(directory, files));
+  }
+
+  // --- tests ----------------------------------------------------------------
+
+  @Test
+  public void reportsNothingForCleanWorkingCopy() throws Exception
+  {
+    assertEquals(Collections.emptyList(), scanIndex(workTree));
+  }
+
+  @Test
+  public void reportsModifiedAddedAndDeletedFiles() throws Exception
+  {
+    write("module/src/A.java", "class A { int a; }");
+    write("module/src/D.java", "class D {}");
+    assertTrue(git("add", "module/src/D.java"));
+    new File(workTree, "other/C.java").delete();
+    assertTrue(git("rm", "-q", "--cached", "module/src/B.java"));
+
+    assertEquals(Arrays.asList("module/src/A.java:modified",
+        "module/src/B.java:deleted", "module/src/D.java:added",
+        "other/C.java:deleted"), scanIndex(workTree));
+    assertSameAsStatus(workTree);
+  }
+
+  @Test
+  public void detectsRacyModificationWithUnchangedSize() throws Exception
+  {
+    // The index has been written in the same instant the file was modified.
+    final File file = new File(workTree, "module/src/A.java");
+    final long lastModified = file.lastModified();
+    write("module/src/A.java", "class X {}");
+    file.setLastModified(lastModified);
+    new File(workTree, ".git/index").setLastModified(lastModified);
+
+    assertEquals(Arrays.asList("module/src/A.java:modified"),
+        scanIndex(workTree));
+  }
+
+  @Test
+  public void reportsPathsRelativeToDirectory() throws Exception
+  {
+    write("module/src/A.java", "class A { int a; }");
+    write("other/C.java", "class C { int c; }");
+
+    assertEquals(Arrays.asList("src/A.java:modified"), scanIndex(new File(
+        workTree, "module")));
+    assertSameAsStatus(new File(workTree, "module"));
+  }
+
+  @Test
+  public void checksGivenFilesOnly() throws Exception
+  {
+    write("module/src/A.java", "class A { int a; }");
+    write("module/src/B.java", "class B { int b; }");
+
+    assertEquals(Arrays.asList("module/src/B.java:modified"), scanIndex(
+        workTree, new File("module/src/B.java")));
+  }
+
+  @Test
+  public void readsIndexVersionFour() throws Exception
+  {
+    assumeTrue(git("update-index", "--index-version", "4"));
+    write("module/src/B.java", "class B { int b; }");
+    write("other/E.java", "class E {}");
+    assertTrue(git("add", "other/E.java"));
+
+    assertSameAsStatus(workTree);
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsLineEndingConversion() throws Exception
+  {
+    assumeTrue(git("config", "core.autocrlf", "input"));
+
+    scanIndex(workTree);
+  }
+}
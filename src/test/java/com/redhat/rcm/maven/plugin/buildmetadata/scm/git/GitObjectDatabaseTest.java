@@ -0,0 +1,375 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.git;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.maven.scm.ScmFileSet;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.LocallyModifiedInfo;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.Revision;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.RevisionNumberFetcher;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.maven.StringRevision;
+
+/**
+ * Tests {@link GitObjectDatabase} on pack files. The tests with packs written
+ * by Git are skipped if the <code>git</code> executable is not available.
+ */
+public class GitObjectDatabaseTest
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The number of versions of the test file to commit.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final int VERSIONS = 5;
+
+  /**
+   * The identifier of the base object of the hand-written pack.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String BASE_ID =
+      "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa";
+
+  /**
+   * The identifier of the delta that copies from beyond its base.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String OUT_OF_BASE_ID =
+      "bbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb";
+
+  /**
+   * The identifier of the delta whose instructions are truncated.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String TRUNCATED_ID =
+      "cccccccccccccccccccccccccccccccccccccccc";
+
+  /**
+   * The identifier of the delta that names itself as its base.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String SELF_BASE_ID =
+      "dddddddddddddddddddddddddddddddddddddddd";
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The folder to create the test repositories in.
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- prepare --------------------------------------------------------------
+
+  // --- helper ---------------------------------------------------------------
+
+  private static String git(final File workTree, final String... arguments)
+  {
+    final String[] command = new String[arguments.length + 1];
+    command[0] = "git";
+    System.arraycopy(arguments, 0, command, 1, arguments.length);
+    try
+    {
+      final Process process =
+          new ProcessBuilder(command).directory(workTree).start();
+      process.getOutputStream().close();
+      final String output = IOUtil.toString(process.getInputStream());
+      return process.waitFor() == 0 ? output.trim() : null;
+    }
+    catch (final IOException e)
+    {
+      return null;
+    }
+    catch (final InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+  }
+
+  private static String createContent(final int version)
+  {
+    final StringBuilder buffer = new StringBuilder();
+    for (int line = 0; line < 200; line++)
+    {
+      buffer.append("line ").append(line).append(" of the test file");
+      if (line == version * 10)
+      {
+        buffer.append(" changed in version ").append(version);
+      }
+      buffer.append('\n');
+    }
+    return buffer.toString();
+  }
+
+  /**
+   * Commits several versions of a file, repacks the repository with the given
+   * options and checks that every version is read from the pack.
+   */
+  private void assertReadsPackedHistory(final String... repack)
+    throws Exception
+  {
+    final File workTree = folder.newFolder("work");
+    assumeTrue(git(workTree, "init", "-q") != null);
+    final File file = new File(workTree, "file.txt");
+    for (int version = 0; version < VERSIONS; version++)
+    {
+      FileUtils.fileWrite(file.getAbsolutePath(), createContent(version));
+      assumeTrue(git(workTree, "add", ".") != null);
+      assumeTrue(git(workTree, "-c", "user.name=test", "-c",
+          "user.email=test@example.com", "commit", "-q", "-m",
+          "version " + version) != null);
+    }
+    assumeTrue(git(workTree, repack) != null);
+    final File packDir = new File(workTree, ".git/objects/pack");
+    final String[] indexes = packDir.list();
+    assertTrue(indexes != null && indexes.length > 0);
+    assertTrue(countDeltas(workTree, packDir) > 0);
+
+    final GitObjectDatabase database =
+        GitRepository.find(workTree).getObjectDatabase();
+    for (int version = 0; version < VERSIONS; version++)
+    {
+      final String id =
+          git(workTree, "rev-parse", "HEAD~" + (VERSIONS - 1 - version)
+                                     + ":file.txt");
+      final GitObjectDatabase.GitObject blob = database.read(id);
+      assertEquals(GitObjectDatabase.OBJ_BLOB, blob.getType());
+      assertEquals(createContent(version), new String(blob.getData(),
+          "UTF-8"));
+    }
+    assertEquals(git(workTree, "rev-parse", "HEAD"), new GitRevisionReader(
+        workTree).readHeadRevision().getId());
+  }
+
+  private static int countDeltas(final File workTree, final File packDir)
+  {
+    int deltas = 0;
+    for (final String name : packDir.list())
+    {
+      if (name.endsWith(".idx"))
+      {
+        final String output =
+            git(workTree, "verify-pack", "-v", new File(packDir, name)
+                .getAbsolutePath());
+        assumeTrue(output != null);
+        for (final String line : output.split("\n"))
+        {
+          if (line.trim().split("\\s+").length == 7)
+          {
+            deltas++;
+          }
+        }
+      }
+    }
+    return deltas;
+  }
+
+  /**
+   * Writes a pack with a base object and three corrupt deltas together with
+   * an index of version 1.
+   */
+  private File writeCorruptPack() throws Exception
+  {
+    final File workTree = folder.newFolder("corrupt");
+    final File objects = new File(workTree, ".git/objects");
+    final File packDir = new File(objects, "pack");
+    packDir.mkdirs();
+    new File(workTree, ".git/refs/heads").mkdirs();
+
+    final ByteArrayOutputStream pack = new ByteArrayOutputStream();
+    final DataOutputStream packOut = new DataOutputStream(pack);
+    packOut.writeBytes("PACK");
+    packOut.writeInt(2);
+    packOut.writeInt(4);
+
+    final int baseOffset = pack.size();
+    writeEntry(packOut, 3, null, "hello".getBytes("UTF-8"));
+    final int outOfBaseOffset = pack.size();
+    writeEntry(packOut, 6, new byte[]
+    { (byte) (outOfBaseOffset - baseOffset) }, new byte[]
+    { 5, 5, (byte) 0x9f, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+     5 });
+    final int truncatedOffset = pack.size();
+    writeEntry(packOut, 6, new byte[]
+    { (byte) (truncatedOffset - baseOffset) }, new byte[]
+    { 5, 5, (byte) 0x91 });
+    final int selfBaseOffset = pack.size();
+    writeEntry(packOut, 6, new byte[]
+    { 0 }, new byte[]
+    { 5, 5, 0x05 });
+    packOut.flush();
+    write(new File(packDir, "pack-test.pack"), pack.toByteArray());
+
+    final ByteArrayOutputStream index = new ByteArrayOutputStream();
+    final DataOutputStream indexOut = new DataOutputStream(index);
+    final String[] ids =
+    { BASE_ID, OUT_OF_BASE_ID, TRUNCATED_ID, SELF_BASE_ID };
+    final int[] offsets =
+    { baseOffset, outOfBaseOffset, truncatedOffset, selfBaseOffset };
+    for (int i = 0; i < 256; i++)
+    {
+      int count = 0;
+      for (final String id : ids)
+      {
+        if (Integer.parseInt(id.substring(0, 2), 16) <= i)
+        {
+          count++;
+        }
+      }
+      indexOut.writeInt(count);
+    }
+    for (int i = 0; i < ids.length; i++)
+    {
+      indexOut.writeInt(offsets[i]);
+      indexOut.write(GitObjectDatabase.parseId(ids[i]));
+    }
+    indexOut.flush();
+    write(new File(packDir, "pack-test.idx"), index.toByteArray());
+    return workTree;
+  }
+
+  private static void writeEntry(final DataOutputStream out, final int type,
+      final byte[] base, final byte[] data) throws IOException
+  {
+    out.write((type << 4) | data.length);
+    if (base != null)
+    {
+      out.write(base);
+    }
+    final DeflaterOutputStream deflater = new DeflaterOutputStream(out);
+    deflater.write(data);
+    deflater.finish();
+  }
+
+  private static void write(final File file, final byte[] content)
+    throws IOException
+  {
+    final OutputStream out = new FileOutputStream(file);
+    try
+    {
+      out.write(content);
+    }
+    finally
+    {
+      IOUtil.close(out);
+    }
+  }
+
+  private static void assertCorrupt(final GitObjectDatabase database,
+      final String id)
+  {
+    try
+    {
+      database.read(id);
+    }
+    catch (final IOException e)
+    {
+      return;
+    }
+    throw new AssertionError("Corrupt delta " + id + " has been accepted.");
+  }
+
+  // --- tests ----------------------------------------------------------------
+
+  @Test
+  public void readsOffsetDeltas() throws Exception
+  {
+    assertReadsPackedHistory("repack", "-a", "-d", "-f", "-q");
+  }
+
+  @Test
+  public void readsReferenceDeltas() throws Exception
+  {
+    assertReadsPackedHistory("-c", "repack.useDeltaBaseOffset=false",
+        "repack", "-a", "-d", "-f", "-q");
+  }
+
+  @Test
+  public void rejectsCorruptDeltas() throws Exception
+  {
+    final File workTree = writeCorruptPack();
+    final GitObjectDatabase database =
+        new GitObjectDatabase(Arrays.asList(new File(workTree,
+            ".git/objects")));
+
+    assertEquals("hello", new String(database.read(BASE_ID).getData(),
+        "UTF-8"));
+    assertCorrupt(database, OUT_OF_BASE_ID);
+    assertCorrupt(database, TRUNCATED_ID);
+    assertCorrupt(database, SELF_BASE_ID);
+  }
+
+  @Test
+  public void asksDelegateIfDeltaIsCorrupt() throws Exception
+  {
+    final File workTree = writeCorruptPack();
+    FileUtils.fileWrite(new File(workTree, ".git/HEAD").getAbsolutePath(),
+        OUT_OF_BASE_ID + '\n');
+    final Revision expected = new StringRevision("1200", new Date());
+    final RevisionNumberFetcher delegate = new RevisionNumberFetcher()
+    {
+      public Revision fetchLatestRevisionNumber()
+      {
+        return expected;
+      }
+
+      public LocallyModifiedInfo containsModifications(final ScmFileSet fileSet)
+      {
+        return null;
+      }
+    };
+
+    assertSame(expected, new GitRevisionNumberFetcher(workTree, null,
+        delegate).fetchLatestRevisionNumber());
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.git;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests {@link GitRepository}. The tests are skipped if the <code>git</code>
+ * executable is not available.
+ */
+public class GitRepositoryTest
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The folder to create the working copy in.
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * The root directory of the working copy.
+   */
+  private File workTree;
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- prepare --------------------------------------------------------------
+
+  @Before
+  public void setUp() throws Exception
+  {
+    workTree = folder.newFolder("work");
+    assumeTrue(git("init", "-q"));
+    commit("initial");
+  }
+
+  // --- helper ---------------------------------------------------------------
+
+  private boolean git(final String... arguments)
+  {
+    final String[] command = new String[arguments.length + 1];
+    command[0] = "git";
+    System.arraycopy(arguments, 0, command, 1, arguments.length);
+    try
+    {
+      final Process process =
+          new ProcessBuilder(command).directory(workTree)
+              .redirectErrorStream(true).start();
+      process.getOutputStream().close();
+      IOUtil.toString(process.getInputStream());
+      return process.waitFor() == 0;
+    }
+    catch (final IOException e)
+    {
+      return false;
+    }
+    catch (final InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private void commit(final String message) throws IOException
+  {
+    FileUtils.fileWrite(new File(workTree, "file.txt").getAbsolutePath(),
+        message);
+    assumeTrue(git("add", "."));
+    assumeTrue(git("-c", "user.name=test", "-c", "user.email=test@example.com",
+        "commit", "-q", "-m", message));
+  }
+
+  private boolean isHeadParentAvailable() throws IOException
+  {
+    return GitRepository.find(workTree).isHeadParentAvailable();
+  }
+
+  // --- tests ----------------------------------------------------------------
+
+  @Test
+  public void reportsMissingParentOfRootCommit() throws Exception
+  {
+    assertFalse(isHeadParentAvailable());
+  }
+
+  @Test
+  public void reportsParentOfSecondCommit() throws Exception
+  {
+    commit("second");
+
+    assertTrue(isHeadParentAvailable());
+  }
+
+  @Test
+  public void reportsMissingParentInShallowClone() throws Exception
+  {
+    commit("second");
+    FileUtils.fileWrite(new File(workTree, ".git/shallow").getAbsolutePath(),
+        "");
+
+    assertFalse(isHeadParentAvailable());
+  }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.git;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.zip.DeflaterOutputStream;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.Revision;
+
+/**
+ * Tests {@link GitRevisionReader} on repositories with loose objects.
+ */
+public class GitRevisionReaderTest
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The committer time stamp of the test commit in seconds.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final long COMMIT_TIME = 1400000000L;
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The folder to create the test repositories in.
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * The root directory of the working copy.
+   */
+  private File workTree;
+
+  /**
+   * The administrative directory of the working copy.
+   */
+  private File gitDir;
+
+  /**
+   * The identifier of the test commit.
+   */
+  private String commitId;
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- prepare --------------------------------------------------------------
+
+  @Before
+  public void setUp() throws Exception
+  {
+    workTree = folder.newFolder("work");
+    gitDir = new File(workTree, ".git");
+    new File(gitDir, "refs/heads").mkdirs();
+    commitId =
+        writeObject("commit", "tree 4b825dc642cb6eb9a060e54bf8d69288fbee4904\n"
+                              + "author A <a@example.com> 1300000000 +0100\n"
+                              + "committer C <c@example.com> " + COMMIT_TIME
+                              + " +0200\n\nTest commit\n");
+  }
+
+  // --- helper ---------------------------------------------------------------
+
+  private String writeObject(final String type, final String content)
+    throws Exception
+  {
+    final byte[] data = content.getBytes("UTF-8");
+    final byte[] header = (type + ' ' + data.length + '\0').getBytes("UTF-8");
+    final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+    digest.update(header);
+    digest.update(data);
+    final String id = GitObjectDatabase.toHex(digest.digest());
+
+    final File file =
+        new File(gitDir, "objects/" + id.substring(0, 2) + '/'
+                         + id.substring(2));
+    file.getParentFile().mkdirs();
+    final OutputStream out =
+        new DeflaterOutputStream(new FileOutputStream(file));
+    try
+    {
+      out.write(header);
+      out.write(data);
+    }
+    finally
+    {
+      IOUtil.close(out);
+    }
+    return id;
+  }
+
+  private void write(final File file, final String content) throws IOException
+  {
+    file.getParentFile().mkdirs();
+    FileUtils.fileWrite(file.getAbsolutePath(), content);
+  }
+
+  private void assertRevision(final File directory)
+  {
+    final Revision revision = new GitRevisionReader(directory).readHeadRevision();
+    assertEquals(commitId, revision.getId());
+    assertEquals(COMMIT_TIME * 1000L, revision.getDate().getTime());
+  }
+
+  // --- tests ----------------------------------------------------------------
+
+  @Test
+  public void readsLooseBranch() throws Exception
+  {
+    write(new File(gitDir, "HEAD"), "ref: refs/heads/master\n");
+    write(new File(gitDir, "refs/heads/master"), commitId + '\n');
+
+    assertRevision(workTree);
+  }
+
+  @Test
+  public void readsPackedBranch() throws Exception
+  {
+    write(new File(gitDir, "HEAD"), "ref: refs/heads/master\n");
+    write(new File(gitDir, "packed-refs"), "# pack-refs with: peeled\n"
+                                           + commitId + " refs/heads/master\n");
+
+    assertRevision(workTree);
+  }
+
+  @Test
+  public void readsDetachedHeadFromSubdirectory() throws Exception
+  {
+    write(new File(gitDir, "HEAD"), commitId + '\n');
+    final File module = new File(workTree, "module/src");
+    module.mkdirs();
+
+    assertRevision(module);
+  }
+
+  @Test
+  public void peelsAnnotatedTag() throws Exception
+  {
+    final String tagId =
+        writeObject("tag", "object " + commitId + "\ntype commit\ntag v1\n"
+                           + "tagger T <t@example.com> 1 +0000\n\nTag\n");
+    write(new File(gitDir, "HEAD"), tagId + '\n');
+
+    assertRevision(workTree);
+  }
+
+  @Test
+  public void followsGitDirFile() throws Exception
+  {
+    write(new File(gitDir, "HEAD"), "ref: refs/heads/master\n");
+    write(new File(gitDir, "refs/heads/master"), commitId + '\n');
+    final File linked = folder.newFolder("linked");
+    final File linkedGitDir = new File(gitDir, "worktrees/linked");
+    write(new File(linked, ".git"), "gitdir: " + linkedGitDir + '\n');
+    write(new File(linkedGitDir, "commondir"), "../..\n");
+    write(new File(linkedGitDir, "HEAD"), "ref: refs/heads/master\n");
+
+    assertRevision(linked);
+  }
+
+  @Test
+  public void returnsNullForUnbornBranch() throws Exception
+  {
+    write(new File(gitDir, "HEAD"), "ref: refs/heads/master\n");
+
+    assertNull(new GitRevisionReader(workTree).readHeadRevision());
+  }
+}
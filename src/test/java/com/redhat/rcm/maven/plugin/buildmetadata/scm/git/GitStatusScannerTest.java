@@ -0,0 +1,239 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.git;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmMetrics;
+
+/**
+ * Tests {@link GitStatusScanner}. The tests are skipped if the
+ * <code>git</code> executable is not available.
+ */
+public class GitStatusScannerTest
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The folder to create the working copy in.
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * The root directory of the working copy.
+   */
+  private File workTree;
+
+  /**
+   * The files passed to the handler, rendered as path and type.
+   */
+  private final List<String> handled = new ArrayList<String>();
+
+  /**
+   * The instance under test. Stops at the first file that is not a dot file.
+   */
+  private GitStatusScanner uut;
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- prepare --------------------------------------------------------------
+
+  @Before
+  public void setUp() throws Exception
+  {
+    workTree = folder.newFolder("work");
+    assumeTrue(git("init", "-q"));
+    write("module/src/A.java", "class A {}");
+    write("other/B.java", "class B {}");
+    assumeTrue(git("add", "."));
+    assumeTrue(git("-c", "user.name=test", "-c", "user.email=test@example.com",
+        "commit", "-q", "-m", "initial"));
+    uut = new GitStatusScanner(workTree, new GitStatusScanner.Handler()
+    {
+      public boolean handle(final String path, final String type)
+      {
+        handled.add(path + ':' + type);
+        return path.charAt(0) != '.';
+      }
+    });
+  }
+
+  // --- helper ---------------------------------------------------------------
+
+  private boolean git(final String... arguments)
+  {
+    final String[] command = new String[arguments.length + 1];
+    command[0] = "git";
+    System.arraycopy(arguments, 0, command, 1, arguments.length);
+    try
+    {
+      final Process process =
+          new ProcessBuilder(command).directory(workTree)
+              .redirectErrorStream(true).start();
+      process.getOutputStream().close();
+      IOUtil.toString(process.getInputStream());
+      return process.waitFor() == 0;
+    }
+    catch (final IOException e)
+    {
+      return false;
+    }
+    catch (final InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private String scan(final File directory, final File... files)
+    throws IOException
+  {
+    final boolean stopped = uut.scan(directory, Arrays.asList(files));
+    return stopped ? handled.get(handled.size() - 1) : null;
+  }
+
+  private void write(final String path, final String content)
+    throws IOException
+  {
+    final File file = new File(workTree, path);
+    file.getParentFile().mkdirs();
+    FileUtils.fileWrite(file.getAbsolutePath(), content);
+  }
+
+  // --- tests ----------------------------------------------------------------
+
+  @Test
+  public void reportsNothingForCleanWorkingCopy() throws Exception
+  {
+    assertNull(scan(workTree));
+  }
+
+  @Test
+  public void reportsModifiedFile() throws Exception
+  {
+    write("other/B.java", "class B { int b; }");
+
+    assertEquals("other/B.java:modified", scan(workTree));
+  }
+
+  @Test
+  public void reportsAddedFileRelativeToDirectory() throws Exception
+  {
+    write("module/src/C.java", "class C {}");
+    assertTrue(git("add", "module/src/C.java"));
+
+    assertEquals("src/C.java:added", scan(new File(workTree, "module")));
+  }
+
+  @Test
+  public void ignoresUntrackedFiles() throws Exception
+  {
+    write("module/src/C.java", "class C {}");
+
+    assertNull(scan(workTree));
+  }
+
+  @Test
+  public void ignoresModificationsOutsideDirectory() throws Exception
+  {
+    write("other/B.java", "class B { int b; }");
+
+    assertNull(scan(new File(workTree, "module")));
+  }
+
+  @Test
+  public void continuesIfHandlerAsks() throws Exception
+  {
+    write(".project", "<projectDescription/>");
+    assertTrue(git("add", ".project"));
+
+    assertNull(scan(workTree));
+    assertEquals(Arrays.asList(".project:added"), handled);
+  }
+
+  @Test
+  public void checksGivenFilesOnly() throws Exception
+  {
+    write("other/B.java", "class B { int b; }");
+    write("module/src/A.java", "class A { int a; }");
+
+    assertEquals("module/src/A.java:modified", scan(workTree, new File(
+        "module/src/A.java")));
+  }
+
+  @Test
+  public void reportsDifferencesToRevision() throws Exception
+  {
+    assertTrue(git("tag", "base"));
+    write("module/src/C.java", "class C {}");
+    write("other/B.java", "class B { int b; }");
+    assertTrue(git("add", "."));
+    assertTrue(git("-c", "user.name=test", "-c",
+        "user.email=test@example.com", "commit", "-q", "-m", "change"));
+    write("module/src/A.java", "class A { int a; }");
+
+    assertTrue(uut.scanDiff(new File(workTree, "module"),
+        new ArrayList<File>(), "HEAD"));
+    assertEquals(Arrays.asList("src/A.java:modified"), handled);
+
+    handled.clear();
+    write(".project", "<projectDescription/>");
+    assertTrue(git("add", ".project"));
+    assertTrue(uut.scanDiff(workTree, new ArrayList<File>(), "base"));
+    assertEquals(Arrays.asList(".project:added", "module/src/A.java:modified"),
+        handled);
+  }
+
+  @Test
+  public void recordsStartedCommand() throws Exception
+  {
+    final ScmMetrics metrics = new ScmMetrics();
+    write("module/src/A.java", "class A { int a; }");
+
+    new GitStatusScanner(workTree, metrics, new GitStatusScanner.Handler()
+    {
+      public boolean handle(final String path, final String type)
+      {
+        return false;
+      }
+    }).scan(workTree, new ArrayList<File>());
+
+    assertEquals(1, metrics.getProcesses());
+  }
+}
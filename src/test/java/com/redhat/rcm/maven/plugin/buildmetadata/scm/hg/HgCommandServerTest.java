@@ -0,0 +1,188 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.hg;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.Revision;
+
+/**
+ * Tests {@link HgCommandServer}, {@link HgStatusParser} and the parsing of
+ * {@link HgRevisionNumberFetcher}.
+ */
+public class HgCommandServerTest
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The hello message of a command server.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String HELLO =
+      "capabilities: getencoding runcommand\nencoding: UTF-8\npid: 42";
+
+  // --- members --------------------------------------------------------------
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- prepare --------------------------------------------------------------
+
+  // --- helper ---------------------------------------------------------------
+
+  private static void chunk(final DataOutputStream out, final char channel,
+      final byte[] data) throws IOException
+  {
+    out.write(channel);
+    out.writeInt(data.length);
+    out.write(data);
+  }
+
+  private static byte[] result(final int exitCode) throws IOException
+  {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    new DataOutputStream(bytes).writeInt(exitCode);
+    return bytes.toByteArray();
+  }
+
+  private static HgCommandServer server(final byte[] messages,
+      final ByteArrayOutputStream requests) throws IOException
+  {
+    final HgCommandServer server =
+        new HgCommandServer(null, new ByteArrayInputStream(messages), requests);
+    server.readHello();
+    return server;
+  }
+
+  // --- tests ----------------------------------------------------------------
+
+  @Test
+  public void runsCommandAndCollectsOutput() throws Exception
+  {
+    final ByteArrayOutputStream messages = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream(messages);
+    chunk(out, 'o', HELLO.getBytes("US-ASCII"));
+    chunk(out, 'o', "M pom.xml\0? ne".getBytes("UTF-8"));
+    chunk(out, 'd', "debug".getBytes("UTF-8"));
+    chunk(out, 'o', "w.txt\0".getBytes("UTF-8"));
+    chunk(out, 'r', result(0));
+    final ByteArrayOutputStream requests = new ByteArrayOutputStream();
+    final List<String> entries = new ArrayList<String>();
+
+    final boolean completed =
+        server(messages.toByteArray(), requests).runCommand(
+            new HgStatusParser(new HgStatusParser.Handler()
+            {
+              public boolean handle(final String path, final String type)
+              {
+                entries.add(path + ':' + type);
+                return false;
+              }
+            }), "status", "--print0");
+
+    assertTrue(completed);
+    assertEquals("[pom.xml:modified, new.txt:unknown]", entries.toString());
+    final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    final DataOutputStream request = new DataOutputStream(expected);
+    request.write("runcommand\n".getBytes("US-ASCII"));
+    request.writeInt(15);
+    request.write("status\0--print0".getBytes("US-ASCII"));
+    assertArrayEquals(expected.toByteArray(), requests.toByteArray());
+  }
+
+  @Test
+  public void stopsWhenHandlerAsks() throws Exception
+  {
+    final ByteArrayOutputStream messages = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream(messages);
+    chunk(out, 'o', HELLO.getBytes("US-ASCII"));
+    chunk(out, 'o', "A a.txt\0R b.txt\0".getBytes("UTF-8"));
+    final List<String> entries = new ArrayList<String>();
+
+    final boolean completed =
+        server(messages.toByteArray(), new ByteArrayOutputStream())
+            .runCommand(new HgStatusParser(new HgStatusParser.Handler()
+            {
+              public boolean handle(final String path, final String type)
+              {
+                entries.add(path + ':' + type);
+                return true;
+              }
+            }), "status", "--print0");
+
+    assertFalse(completed);
+    assertEquals("[a.txt:added]", entries.toString());
+  }
+
+  @Test(expected = IOException.class)
+  public void reportsFailedCommand() throws Exception
+  {
+    final ByteArrayOutputStream messages = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream(messages);
+    chunk(out, 'o', HELLO.getBytes("US-ASCII"));
+    chunk(out, 'e', "abort: unknown revision\n".getBytes("UTF-8"));
+    chunk(out, 'r', result(255));
+
+    server(messages.toByteArray(), new ByteArrayOutputStream()).runCommand(
+        new HgStatusParser(null), "log", "-r", ".");
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsServerWithoutRunCommand() throws Exception
+  {
+    final ByteArrayOutputStream messages = new ByteArrayOutputStream();
+    chunk(new DataOutputStream(messages), 'o',
+        "capabilities: getencoding\nencoding: UTF-8".getBytes("US-ASCII"));
+
+    server(messages.toByteArray(), new ByteArrayOutputStream());
+  }
+
+  @Test
+  public void parsesRevision() throws Exception
+  {
+    final Revision revision =
+        HgRevisionNumberFetcher
+            .parseRevision("0123456789abcdef0123456789abcdef01234567\n"
+                           + "1394014272 -3600\n");
+
+    assertEquals("0123456789abcdef0123456789abcdef01234567", revision.getId());
+    assertEquals(1394014272000L, revision.getDate().getTime());
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsNullRevision() throws Exception
+  {
+    HgRevisionNumberFetcher
+        .parseRevision("0000000000000000000000000000000000000000\n0 0\n");
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.scm.ChangeSet;
+import org.apache.maven.scm.command.changelog.ChangeLogScmResult;
+import org.apache.maven.scm.command.changelog.ChangeLogSet;
+import org.junit.Test;
+
+/**
+ * Tests {@link ChangeLogWindowSearch}.
+ */
+public class ChangeLogWindowSearchTest
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  // --- members --------------------------------------------------------------
+
+  // ****************************** Inner Classes *****************************
+
+  /**
+   * Simulates a repository whose latest change is a given number of days ago.
+   */
+  private static final class RecordingQuery implements
+      ChangeLogWindowSearch.Query
+  {
+    private final int daysSinceLastChange;
+
+    private final List<Integer> ranges = new ArrayList<Integer>();
+
+    private RecordingQuery(final int daysSinceLastChange)
+    {
+      this.daysSinceLastChange = daysSinceLastChange;
+    }
+
+    public ChangeLogScmResult fetch(final int rangeInDays)
+    {
+      ranges.add(Integer.valueOf(rangeInDays));
+      final List<ChangeSet> changeSets =
+          rangeInDays >= daysSinceLastChange ? Collections
+              .singletonList(new ChangeSet()) : Collections
+              .<ChangeSet> emptyList();
+      return new ChangeLogScmResult("log", new ChangeLogSet(changeSets, null,
+          null));
+    }
+  }
+
+  // ********************************* Methods ********************************
+
+  // --- tests ----------------------------------------------------------------
+
+  @Test
+  public void doublesRangeWithExponentialStrategy() throws Exception
+  {
+    final RecordingQuery query = new RecordingQuery(100);
+    final ChangeLogWindowSearch uut =
+        new ChangeLogWindowSearch(30, 6,
+            ChangeLogWindowSearch.STRATEGY_EXPONENTIAL, 0L);
+
+    assertNotNull(uut.search(query));
+    assertEquals("[30, 60, 120]", query.ranges.toString());
+    assertEquals(120, uut.getSuccessfulRangeInDays());
+  }
+
+  @Test
+  public void widensRangeLinearlyWithLinearStrategy() throws Exception
+  {
+    final RecordingQuery query = new RecordingQuery(100);
+    final ChangeLogWindowSearch uut =
+        new ChangeLogWindowSearch(30, 6, ChangeLogWindowSearch.STRATEGY_LINEAR,
+            0L);
+
+    uut.search(query);
+    assertEquals("[30, 60, 90, 120]", query.ranges.toString());
+  }
+
+  @Test
+  public void stopsAfterMaximumAttempts() throws Exception
+  {
+    final RecordingQuery query = new RecordingQuery(Integer.MAX_VALUE);
+    final ChangeLogWindowSearch uut = new ChangeLogWindowSearch(1, 3, null, 0L);
+
+    assertTrue(ChangeLogWindowSearch.isEmpty(uut.search(query)));
+    assertEquals(3, query.ranges.size());
+    assertEquals(0, uut.getSuccessfulRangeInDays());
+  }
+
+  @Test
+  public void stopsWhenDeadlineHasPassed() throws Exception
+  {
+    final RecordingQuery query = new RecordingQuery(100);
+    final ChangeLogWindowSearch uut = new ChangeLogWindowSearch(1, 6, null, 1L);
+
+    uut.search(query);
+    assertEquals(1, query.ranges.size());
+  }
+}
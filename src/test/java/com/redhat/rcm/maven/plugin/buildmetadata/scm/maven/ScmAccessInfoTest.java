@@ -0,0 +1,58 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link ScmAccessInfo}.
+ */
+public class ScmAccessInfoTest
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  // --- members --------------------------------------------------------------
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- prepare --------------------------------------------------------------
+
+  // --- helper ---------------------------------------------------------------
+
+  // --- tests ----------------------------------------------------------------
+
+  @Test
+  public void parsesSubversionLastChangedDate()
+  {
+    assertEquals(1394010672000L,
+        ScmAccessInfo.parseLastChangedDate(
+            "2014-03-05 10:11:12 +0100 (Wed, 05 Mar 2014)").getTime());
+  }
+
+  @Test
+  public void ignoresUnparsableLastChangedDate()
+  {
+    assertNull(ScmAccessInfo.parseLastChangedDate("yesterday"));
+    assertNull(ScmAccessInfo.parseLastChangedDate(null));
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.apache.maven.scm.manager.ScmManager;
+import org.apache.maven.scm.provider.ScmProvider;
+import org.apache.maven.scm.provider.ScmProviderRepository;
+import org.apache.maven.scm.repository.ScmRepository;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link ScmRepositoryRegistry}.
+ */
+public class ScmRepositoryRegistryTest
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The connection URL used by the tests.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String URL = "scm:svn:https://svn.example.com/trunk";
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The number of repositories created by the manager.
+   */
+  private int repositoryCount;
+
+  /**
+   * The number of providers looked up by the manager.
+   */
+  private int providerCount;
+
+  /**
+   * The manager counting its calls.
+   */
+  private ScmManager scmManager;
+
+  /**
+   * The registry to test.
+   */
+  private ScmRepositoryRegistry uut;
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- prepare --------------------------------------------------------------
+
+  @Before
+  public void setUp()
+  {
+    final ScmProvider provider =
+        (ScmProvider) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] { ScmProvider.class }, new InvocationHandler()
+            {
+              public Object invoke(final Object proxy, final Method method,
+                  final Object[] args)
+              {
+                return null;
+              }
+            });
+    scmManager =
+        (ScmManager) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] { ScmManager.class }, new InvocationHandler()
+            {
+              public Object invoke(final Object proxy, final Method method,
+                  final Object[] args)
+              {
+                if ("makeScmRepository".equals(method.getName()))
+                {
+                  repositoryCount++;
+                  return new ScmRepository("svn", new ScmProviderRepository()
+                  {
+                  });
+                }
+                if ("getProviderByRepository".equals(method.getName()))
+                {
+                  providerCount++;
+                  return provider;
+                }
+                throw new UnsupportedOperationException(method.getName());
+              }
+            });
+    uut = new ScmRepositoryRegistry();
+  }
+
+  // --- helper ---------------------------------------------------------------
+
+  private static ScmConnectionInfo createInfo(final String userName)
+  {
+    final ScmConnectionInfo info = new ScmConnectionInfo();
+    info.setScmConnectionUrl(URL);
+    info.setUserName(userName);
+    return info;
+  }
+
+  // --- tests ----------------------------------------------------------------
+
+  @Test
+  public void reusesRepositoryForSameCredentials()
+  {
+    final ScmRepository first = uut.getRepository(scmManager, createInfo("a"));
+    final ScmRepository second = uut.getRepository(scmManager, createInfo("a"));
+
+    assertSame(first, second);
+    assertEquals(1, repositoryCount);
+  }
+
+  @Test
+  public void separatesRepositoriesByCredentials()
+  {
+    final ScmRepository first = uut.getRepository(scmManager, createInfo("a"));
+    final ScmRepository second = uut.getRepository(scmManager, createInfo("b"));
+
+    assertNotSame(first, second);
+    assertEquals(2, repositoryCount);
+  }
+
+  @Test
+  public void reusesParsedRepository() throws Exception
+  {
+    uut.getParsedRepository(scmManager, URL);
+    uut.getParsedRepository(scmManager, URL);
+
+    assertEquals(1, repositoryCount);
+  }
+
+  @Test
+  public void reusesProviderForSameType() throws Exception
+  {
+    final ScmRepository first = uut.getRepository(scmManager, createInfo("a"));
+    final ScmRepository second = uut.getRepository(scmManager, createInfo("b"));
+
+    assertSame(uut.getProvider(scmManager, first),
+        uut.getProvider(scmManager, second));
+    assertEquals(1, providerCount);
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.svn;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import org.junit.Test;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.Revision;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmException;
+
+/**
+ * Tests {@link SvnInfoReader}.
+ */
+public class SvnInfoReaderTest
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  /**
+   * The output of <code>svn info --xml</code> for a working copy.
+   * <p>
+   * The value of this constant is {@value}.
+   * </p>
+   */
+  private static final String INFO =
+      "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+          + "<info>\n"
+          + "<entry kind=\"dir\" path=\".\" revision=\"1234\">\n"
+          + "<url>https://svn.example.com/repo/trunk</url>\n"
+          + "<wc-info><schedule>normal</schedule><depth>infinity</depth>"
+          + "</wc-info>\n"
+          + "<commit revision=\"1200\">\n"
+          + "<author>someone</author>\n"
+          + "<date>2014-03-05T10:11:12.345678Z</date>\n"
+          + "</commit>\n"
+          + "</entry>\n"
+          + "</info>\n";
+
+  // --- members --------------------------------------------------------------
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- prepare --------------------------------------------------------------
+
+  // --- helper ---------------------------------------------------------------
+
+  private static InputStream stream(final String content) throws Exception
+  {
+    return new ByteArrayInputStream(content.getBytes("UTF-8"));
+  }
+
+  // --- tests ----------------------------------------------------------------
+
+  @Test
+  public void readsLastChangedRevision() throws Exception
+  {
+    final Revision revision = SvnInfoReader.parse(stream(INFO));
+
+    assertEquals("1200", revision.getId());
+    assertEquals(1394014272345L, revision.getDate().getTime());
+  }
+
+  @Test
+  public void parsesDateWithoutFraction() throws Exception
+  {
+    assertEquals(1394014272000L, SvnInfoReader.parseDate("2014-03-05T10:11:12Z")
+        .getTime());
+  }
+
+  @Test(expected = ScmException.class)
+  public void rejectsMissingCommit() throws Exception
+  {
+    SvnInfoReader.parse(stream("<info><entry kind=\"dir\" revision=\"0\"/>"
+                               + "</info>"));
+  }
+}
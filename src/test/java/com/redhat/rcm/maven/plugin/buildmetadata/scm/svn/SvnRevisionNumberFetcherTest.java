@@ -0,0 +1,82 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.svn;
+
+import static org.junit.Assert.assertSame;
+
+import java.util.Date;
+
+import org.apache.maven.scm.ScmFileSet;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.LocallyModifiedInfo;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.Revision;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.RevisionNumberFetcher;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.ScmOperationTimer;
+import com.redhat.rcm.maven.plugin.buildmetadata.scm.maven.StringRevision;
+
+/**
+ * Tests {@link SvnRevisionNumberFetcher}.
+ */
+public class SvnRevisionNumberFetcherTest
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  // --- members --------------------------------------------------------------
+
+  /**
+   * The folder that is not a Subversion working copy.
+   */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- prepare --------------------------------------------------------------
+
+  // --- helper ---------------------------------------------------------------
+
+  // --- tests ----------------------------------------------------------------
+
+  @Test
+  public void asksDelegateIfMetadataCannotBeRead()
+  {
+    final Revision expected = new StringRevision("1200", new Date());
+    final RevisionNumberFetcher delegate = new RevisionNumberFetcher()
+    {
+      public Revision fetchLatestRevisionNumber()
+      {
+        return expected;
+      }
+
+      public LocallyModifiedInfo containsModifications(final ScmFileSet fileSet)
+      {
+        return null;
+      }
+    };
+    final SvnRevisionNumberFetcher uut =
+        new SvnRevisionNumberFetcher(folder.getRoot(),
+            new ScmOperationTimer(0, 0), delegate);
+
+    assertSame(expected, uut.fetchLatestRevisionNumber());
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2006-2014 smartics, Kronseder & Reiner GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.redhat.rcm.maven.plugin.buildmetadata.scm.svn;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link SvnStatusReader}.
+ */
+public class SvnStatusReaderTest
+{
+  // ********************************* Fields *********************************
+
+  // --- constants ------------------------------------------------------------
+
+  // --- members --------------------------------------------------------------
+
+  // ****************************** Inner Classes *****************************
+
+  // ********************************* Methods ********************************
+
+  // --- prepare --------------------------------------------------------------
+
+  // --- helper ---------------------------------------------------------------
+
+  // --- tests ----------------------------------------------------------------
+
+  @Test
+  public void reportsNothingForCleanWorkingCopy()
+  {
+    assertNull(SvnStatusReader.parse(""));
+  }
+
+  @Test
+  public void reportsFirstModifiedItem()
+  {
+    assertEquals("src/A.java", SvnStatusReader.parse("M       src/A.java\n"
+                                                     + "A       src/B.java\n"));
+  }
+
+  @Test
+  public void reportsPropertyChanges()
+  {
+    assertEquals("pom.xml", SvnStatusReader.parse(" M      pom.xml\n"));
+  }
+
+  @Test
+  public void ignoresLocksAndExternals()
+  {
+    assertNull(SvnStatusReader.parse("  L     locked\n"
+                                     + "X       external\n"
+                                     + "     K  token\n"));
+  }
+
+  @Test
+  public void reportsTreeConflicts()
+  {
+    assertEquals("moved", SvnStatusReader.parse("      C moved\n"
+        + "      >   local edit, incoming delete upon update\n"));
+  }
+}